@@ -0,0 +1,77 @@
+package com.alvaro.psicoapp.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Entry point of benchmarks.jar: the usual JMH command line, plus a JSON result file named
+ * after the commit being measured, so two runs can be compared with {@link CompareResults}.
+ *
+ *   java -jar target/benchmarks.jar                       all benchmarks
+ *   java -jar target/benchmarks.jar Matching -p psychologists=500
+ *   java -jar target/benchmarks.jar -l                    list them
+ *
+ * Results go to results/&lt;label&gt;.json (results/ is git-ignored). The label is
+ * -Dbenchmark.label if given, otherwise `git describe --always --dirty`, so a run on
+ * uncommitted changes is never mistaken for the commit it started from. Passing -rf/-rff
+ * explicitly overrides all of this.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {}
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli;
+        try {
+            cli = new CommandLineOptions(args);
+        } catch (CommandLineOptionException e) {
+            System.err.println("Error parsing command line: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (cli.shouldHelp() || cli.shouldList() || cli.shouldListWithParams() || cli.shouldListProfilers()
+                || cli.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(cli);
+        if (cli.getResult().hasValue() || cli.getResultFormat().hasValue()) {
+            new Runner(builder.build()).run();
+            return;
+        }
+
+        Path file = Path.of("results", label() + ".json");
+        Files.createDirectories(file.getParent());
+        Options options = builder.resultFormat(ResultFormatType.JSON).result(file.toString()).build();
+        new Runner(options).run();
+        System.out.println("Results written to " + file.toAbsolutePath());
+    }
+
+    private static String label() {
+        String label = System.getProperty("benchmark.label");
+        if (label != null && !label.isBlank()) return label.replaceAll("[^A-Za-z0-9._-]", "_");
+        try {
+            Process git = new ProcessBuilder("git", "describe", "--always", "--dirty").redirectErrorStream(true).start();
+            String out;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(git.getInputStream(), StandardCharsets.UTF_8))) {
+                out = reader.readLine();
+            }
+            if (git.waitFor() == 0 && out != null && !out.isBlank()) return out.trim();
+        } catch (Exception ignored) {
+            // not a checkout, or git not installed
+        }
+        return "local-" + System.currentTimeMillis();
+    }
+}
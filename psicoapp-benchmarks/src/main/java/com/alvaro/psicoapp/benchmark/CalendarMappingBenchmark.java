@@ -0,0 +1,112 @@
+package com.alvaro.psicoapp.benchmark;
+
+import com.alvaro.psicoapp.domain.*;
+import com.alvaro.psicoapp.dto.CalendarDtos;
+import com.alvaro.psicoapp.repository.AppointmentRatingRepository;
+import com.alvaro.psicoapp.repository.AppointmentRepository;
+import com.alvaro.psicoapp.repository.AppointmentRequestRepository;
+import com.alvaro.psicoapp.service.CalendarService;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity → DTO mapping behind the patient's calendar screens: upcoming appointments plus
+ * pending requests (getMyAppointments: filter, map, merge, sort) and past appointments with
+ * their ratings (getPastAppointments). appointments: one patient's history, half of it in
+ * the past; every third past appointment is rated.
+ *
+ * Repositories are in-memory stubs, so the rating lookup per past row costs a map get here;
+ * against a database it is one query per row.
+ *
+ * Run: java -jar target/benchmarks.jar CalendarMappingBenchmark (see BenchmarkRunner)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CalendarMappingBenchmark {
+
+    @Param({"20", "200"})
+    public int appointments;
+
+    private CalendarService service;
+    private UserEntity patient;
+
+    @Setup
+    public void setUp() {
+        patient = new UserEntity();
+        patient.setId(1L);
+        patient.setName("Paciente Benchmark");
+        patient.setEmail("paciente.benchmark@example.com");
+        UserEntity psychologist = new UserEntity();
+        psychologist.setId(2L);
+        psychologist.setName("Psicóloga Benchmark");
+        psychologist.setEmail("psicologa.benchmark@example.com");
+
+        // A week apart, centred on now so half are past and half upcoming
+        Instant first = Instant.now().minus(Duration.ofDays(7L * appointments / 2));
+        List<AppointmentEntity> history = new ArrayList<>();
+        List<AppointmentRequestEntity> requests = new ArrayList<>();
+        Map<Long, AppointmentRatingEntity> ratings = new HashMap<>();
+        for (int i = 0; i < appointments; i++) {
+            AppointmentEntity appointment = new AppointmentEntity();
+            appointment.setId(100L + i);
+            appointment.setPsychologist(psychologist);
+            appointment.setUser(patient);
+            appointment.setStartTime(first.plus(Duration.ofDays(7L * i)));
+            appointment.setEndTime(appointment.getStartTime().plus(Duration.ofMinutes(50)));
+            appointment.setStatus(i % 10 == 9 ? AppointmentStatusEnum.FREE : AppointmentStatusEnum.CONFIRMED);
+            appointment.setPrice(new BigDecimal("60.00"));
+            appointment.setPaymentStatus(PaymentStatusEnum.PAID);
+            appointment.setConfirmedAt(appointment.getStartTime().minus(Duration.ofDays(3)));
+            appointment.setNotes(i % 2 == 0 ? "Seguimiento semanal" : null);
+            history.add(appointment);
+
+            if (appointment.getStatus() == AppointmentStatusEnum.FREE) {
+                AppointmentRequestEntity request = new AppointmentRequestEntity();
+                request.setId(1000L + i);
+                request.setAppointment(appointment);
+                request.setUser(patient);
+                request.setRequestedAt(appointment.getStartTime().minus(Duration.ofDays(5)));
+                request.setStatus(RequestStatusEnum.PENDING);
+                requests.add(request);
+            } else if (i % 3 == 0) {
+                AppointmentRatingEntity rating = new AppointmentRatingEntity();
+                rating.setId(5000L + i);
+                rating.setAppointment(appointment);
+                rating.setUser(patient);
+                rating.setRating(4 + i % 2);
+                rating.setComment("Muy buena sesión");
+                rating.setCreatedAt(appointment.getEndTime());
+                ratings.put(appointment.getId(), rating);
+            }
+        }
+
+        AppointmentRepository appointmentRepository = Stubs.repository(AppointmentRepository.class, Map.of(
+                "findByUser_IdOrderByStartTimeAsc", a -> history));
+        AppointmentRequestRepository requestRepository = Stubs.repository(AppointmentRequestRepository.class, Map.of(
+                "findByUser_IdOrderByRequestedAtDesc", a -> requests));
+        AppointmentRatingRepository ratingRepository = Stubs.repository(AppointmentRatingRepository.class, Map.of(
+                "findByAppointment_IdAndUser_Id", a -> Optional.ofNullable(ratings.get((Long) a[0]))));
+
+        service = new CalendarService(appointmentRepository, requestRepository, ratingRepository,
+                null, null, null, null, null, null, null, null);
+    }
+
+    @Benchmark
+    public List<CalendarDtos.AppointmentListItemDto> myAppointments() {
+        return service.getMyAppointments(patient);
+    }
+
+    @Benchmark
+    public List<CalendarDtos.PastAppointmentDto> pastAppointments() {
+        return service.getPastAppointments(patient);
+    }
+}
@@ -0,0 +1,88 @@
+package com.alvaro.psicoapp.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files written by {@link BenchmarkRunner}:
+ *
+ *   java -cp target/benchmarks.jar com.alvaro.psicoapp.benchmark.CompareResults \
+ *       results/a1b2c3d.json results/e4f5a6b-dirty.json [threshold %, default 5]
+ *
+ * Rows are matched on benchmark name plus parameters. A row is a regression when it got worse
+ * by more than the threshold AND by more than the two runs' error bars combined, so noise on
+ * a short run isn't reported as a slowdown. "Worse" is slower for time modes and fewer ops
+ * for throughput. Exits with 1 if anything regressed, to be usable from a script.
+ */
+public final class CompareResults {
+
+    private record Result(String mode, double score, double error, String unit) {
+        boolean higherIsBetter() {
+            return mode.equals("thrpt");
+        }
+    }
+
+    private CompareResults() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareResults <baseline.json> <candidate.json> [threshold %]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 5.0;
+        Map<String, Result> baseline = read(new File(args[0]));
+        Map<String, Result> candidate = read(new File(args[1]));
+
+        List<String> regressions = new ArrayList<>();
+        System.out.printf("%-70s %14s %14s %9s%n", "benchmark", "baseline", "candidate", "change");
+        for (Map.Entry<String, Result> entry : candidate.entrySet()) {
+            Result before = baseline.get(entry.getKey());
+            Result after = entry.getValue();
+            if (before == null || !before.unit().equals(after.unit())) {
+                System.out.printf("%-70s %14s %14.3f %9s%n", entry.getKey(), "-", after.score(), "new");
+                continue;
+            }
+            // Positive = worse, whichever direction the mode counts in
+            double delta = after.higherIsBetter() ? before.score() - after.score() : after.score() - before.score();
+            double percent = before.score() == 0 ? 0 : 100.0 * delta / before.score();
+            boolean regressed = percent > threshold && delta > before.error() + after.error();
+            boolean improved = percent < -threshold && -delta > before.error() + after.error();
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%% %s%s%n", entry.getKey(), before.score(), after.score(),
+                    percent, after.unit(), regressed ? "  REGRESSION" : improved ? "  improved" : "");
+            if (regressed) regressions.add(entry.getKey());
+        }
+        for (String key : baseline.keySet()) {
+            if (!candidate.containsKey(key)) System.out.printf("%-70s %14s%n", key, "removed");
+        }
+
+        if (!regressions.isEmpty()) {
+            System.out.println();
+            System.out.println(regressions.size() + " regression(s) over " + threshold + "%:");
+            regressions.forEach(r -> System.out.println("  " + r));
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Result> read(File file) throws IOException {
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            String benchmark = run.path("benchmark").asText().replace("com.alvaro.psicoapp.benchmark.", "");
+            Map<String, String> params = new TreeMap<>();
+            run.path("params").fields().forEachRemaining(p -> params.put(p.getKey(), p.getValue().asText()));
+            String key = params.isEmpty() ? benchmark : benchmark + " " + params;
+            JsonNode metric = run.path("primaryMetric");
+            double error = metric.path("scoreError").asDouble(0);
+            results.put(key, new Result(run.path("mode").asText(), metric.path("score").asDouble(),
+                    Double.isNaN(error) ? 0 : error, metric.path("scoreUnit").asText()));
+        }
+        return results;
+    }
+}
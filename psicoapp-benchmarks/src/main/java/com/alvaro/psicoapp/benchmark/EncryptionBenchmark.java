@@ -0,0 +1,116 @@
+package com.alvaro.psicoapp.benchmark;
+
+import com.alvaro.psicoapp.domain.ChatConversationEntity;
+import com.alvaro.psicoapp.repository.ChatConversationRepository;
+import com.alvaro.psicoapp.service.ChatEncryptionService;
+import com.alvaro.psicoapp.service.PiiEncryptionService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-value cost of the two AES-GCM services outside the JPA converters (see
+ * PiiConverterBenchmark for the converter path): PII fields, and chat messages with the
+ * per-conversation key already derived. chatHistory is one page of a conversation (50
+ * messages) through decryptAll, as the chat endpoint loads it.
+ *
+ * chatKeyDerivation is the first message of a conversation: PBKDF2 with 100k iterations
+ * before the key lands in the cache. Reported in ms; it dwarfs everything else here.
+ *
+ * Run: java -jar target/benchmarks.jar EncryptionBenchmark (see BenchmarkRunner)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncryptionBenchmark {
+
+    private static final long PSYCHOLOGIST_ID = 7L;
+    private static final long USER_ID = 42L;
+
+    @Param({"64", "1024"})
+    public int messageLength;
+
+    private PiiEncryptionService pii;
+    private ChatEncryptionService chat;
+
+    private String piiPlain;
+    private String piiCipher;
+    private String[] emails;
+    private int nextEmail;
+    private String message;
+    private String messageCipher;
+    private List<String> history;
+
+    @Setup
+    public void setUp() {
+        // Memo off and rotating emails, so the deterministic path measures HMAC + cipher rather
+        // than the memo or the per-thread last-result shortcut
+        pii = new PiiEncryptionService("benchmark-pii-key-32-characters!!", 1, "", 0);
+        piiPlain = "+34 600 123 456";
+        piiCipher = pii.encrypt(piiPlain);
+        emails = new String[1024];
+        for (int i = 0; i < emails.length; i++) emails[i] = "paciente" + i + "@example.com";
+
+        byte[] salt = new byte[32];
+        new Random(42).nextBytes(salt);
+        ChatConversationEntity conversation =
+                new ChatConversationEntity(PSYCHOLOGIST_ID, USER_ID, Base64.getEncoder().encodeToString(salt));
+        ChatConversationRepository conversations = Stubs.repository(ChatConversationRepository.class, Map.of(
+                "findByPsychologistIdAndUserId", a -> Optional.of(conversation)));
+        chat = new ChatEncryptionService(conversations);
+
+        message = "x".repeat(messageLength);
+        messageCipher = chat.encrypt(message, PSYCHOLOGIST_ID, USER_ID);
+        history = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            history.add(chat.encrypt(message + i, PSYCHOLOGIST_ID, USER_ID));
+        }
+    }
+
+    @Benchmark
+    public String piiEncrypt() {
+        return pii.encrypt(piiPlain);
+    }
+
+    @Benchmark
+    public String piiDecrypt() {
+        return pii.decrypt(piiCipher);
+    }
+
+    @Benchmark
+    public String piiEncryptDeterministic() {
+        return pii.encryptDeterministic(emails[nextEmail++ & (emails.length - 1)]);
+    }
+
+    @Benchmark
+    public String chatEncrypt() {
+        return chat.encrypt(message, PSYCHOLOGIST_ID, USER_ID);
+    }
+
+    @Benchmark
+    public String chatDecrypt() {
+        return chat.decrypt(messageCipher, PSYCHOLOGIST_ID, USER_ID);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<String> chatHistory() {
+        return chat.decryptAll(history, PSYCHOLOGIST_ID, USER_ID);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object chatKeyDerivation() {
+        chat.clearKeyCache();
+        return chat.getOrCreateKey(PSYCHOLOGIST_ID, USER_ID);
+    }
+}
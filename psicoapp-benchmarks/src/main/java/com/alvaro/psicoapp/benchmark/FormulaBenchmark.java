@@ -0,0 +1,84 @@
+package com.alvaro.psicoapp.benchmark;
+
+import com.alvaro.psicoapp.util.FormulaEvaluator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Factor evaluation of one 16PF-sized submission (16 subfactors, 5 global factors and IG on
+ * top of two of them). LEGACY re-tokenises every formula and resolves codes through maps on
+ * each call, as scoring did before; COMPILED is the precompiled plan over the score table.
+ *
+ * Run: java -jar target/benchmarks.jar FormulaBenchmark (see BenchmarkRunner)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormulaBenchmark {
+
+    private static final List<String> SUBFACTORS =
+            List.of("A", "B", "C", "E", "F", "G", "H", "I", "L", "M", "N", "O", "Q1", "Q2", "Q3", "Q4");
+    private static final List<String> FACTORS = List.of("EXT", "ANS", "DUR", "IND", "AUT", "IG");
+    private static final List<String> FORMULAS = List.of(
+            "A+F+H+N+Q2", "C+L+O+Q4", "A+I+M+Q1", "E+H+L+Q1", "F+G+N+Q3", "EXT+ANS");
+
+    private FormulaEvaluator.CompiledFormulas compiled;
+    private double[] subfactorScore;
+    private double[] subfactorMax;
+    private double[] score;
+    private double[] max;
+
+    @Setup
+    public void setup() {
+        compiled = FormulaEvaluator.compile(SUBFACTORS, FACTORS, FORMULAS, new int[FACTORS.size()][], true);
+        Random random = new Random(42);
+        subfactorScore = new double[SUBFACTORS.size()];
+        subfactorMax = new double[SUBFACTORS.size()];
+        for (int i = 0; i < SUBFACTORS.size(); i++) {
+            subfactorMax[i] = 20;
+            subfactorScore[i] = random.nextInt(21);
+        }
+        score = new double[compiled.tableSize()];
+        max = new double[compiled.tableSize()];
+    }
+
+    @Benchmark
+    public double compiled() {
+        System.arraycopy(subfactorScore, 0, score, 0, subfactorScore.length);
+        System.arraycopy(subfactorMax, 0, max, 0, subfactorMax.length);
+        compiled.evaluate(score, max);
+        return score[compiled.factorSlot(FACTORS.size() - 1)];
+    }
+
+    @Benchmark
+    public double legacy() {
+        Map<String, double[]> sub = new HashMap<>();
+        for (int i = 0; i < SUBFACTORS.size(); i++) {
+            sub.put(SUBFACTORS.get(i), new double[]{subfactorScore[i], subfactorMax[i]});
+        }
+        Map<String, double[]> factors = new HashMap<>();
+        // Two passes: plain formulas first, then those referencing other factors
+        for (int pass = 0; pass < 2; pass++) {
+            for (int f = 0; f < FACTORS.size(); f++) {
+                List<String> terms = FormulaEvaluator.parseTerms(FORMULAS.get(f));
+                boolean onFactors = terms.stream().anyMatch(FACTORS::contains);
+                if (onFactors != (pass == 1)) continue;
+                double total = 0.0;
+                double totalMax = 0.0;
+                for (String term : terms) {
+                    double[] value = sub.containsKey(term) ? sub.get(term) : factors.get(term);
+                    if (value == null || value[1] <= 0) continue;
+                    total += value[0];
+                    totalMax += value[1];
+                }
+                if (totalMax > 0) factors.put(FACTORS.get(f), new double[]{total, totalMax});
+            }
+        }
+        return factors.get("IG")[0];
+    }
+}
@@ -0,0 +1,40 @@
+package com.alvaro.psicoapp.benchmark;
+
+import com.alvaro.psicoapp.security.JwtService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token work done on every authenticated request (parseSubject: signature check and claims)
+ * and on every login/refresh (generateAccessToken).
+ *
+ * Run: java -jar target/benchmarks.jar JwtBenchmark (see BenchmarkRunner)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtBenchmark {
+
+    private JwtService jwtService;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService("benchmark-jwt-secret-at-least-32-bytes-long", 3_600_000, 604_800_000);
+        token = jwtService.generateAccessToken("paciente.benchmark@example.com");
+    }
+
+    @Benchmark
+    public String parseSubject() {
+        return jwtService.parseSubject(token);
+    }
+
+    @Benchmark
+    public String generateAccessToken() {
+        return jwtService.generateAccessToken("paciente.benchmark@example.com");
+    }
+}
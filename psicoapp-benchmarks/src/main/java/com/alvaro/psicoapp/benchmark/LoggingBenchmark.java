@@ -0,0 +1,113 @@
+package com.alvaro.psicoapp.benchmark;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.encoder.Encoder;
+import com.alvaro.psicoapp.logging.DebugDiscardingAsyncAppender;
+import com.alvaro.psicoapp.logging.JsonLogEncoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Log throughput of the prod pipeline against the previous setup.
+ *
+ * encoder: PATTERN_REGEX is the old JSON-ish pattern with %replace(%msg){email-regex};
+ * JSON_REDACTED / JSON_PLAIN are JsonLogEncoder with and without redaction.
+ * async: whether the appender sits behind DebugDiscardingAsyncAppender (measures the cost
+ * seen by the calling thread). Output goes to a null stream so I/O doesn't dominate.
+ *
+ * Run: java -jar target/benchmarks.jar LoggingBenchmark (see BenchmarkRunner)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggingBenchmark {
+
+    private static final String LEGACY_PATTERN =
+            "{\"timestamp\":\"%d{yyyy-MM-dd'T'HH:mm:ss.SSSZ}\",\"level\":\"%level\",\"logger\":\"%logger{36}\","
+                    + "\"thread\":\"%thread\",\"message\":\"%replace(%msg){'[a-zA-Z0-9._%+\\-]+@[a-zA-Z0-9.\\-]+\\.[a-zA-Z]{2,}','[REDACTED_EMAIL]'}\"}%n";
+
+    public enum EncoderKind { PATTERN_REGEX, JSON_REDACTED, JSON_PLAIN }
+
+    @Param({"PATTERN_REGEX", "JSON_REDACTED", "JSON_PLAIN"})
+    public EncoderKind encoder;
+
+    @Param({"false", "true"})
+    public boolean async;
+
+    private LoggerContext context;
+    private Logger logger;
+    private long userId = 42;
+
+    @Setup
+    public void setUp() {
+        context = new LoggerContext();
+
+        Encoder<ILoggingEvent> enc = switch (encoder) {
+            case PATTERN_REGEX -> {
+                PatternLayoutEncoder pattern = new PatternLayoutEncoder();
+                pattern.setPattern(LEGACY_PATTERN);
+                yield pattern;
+            }
+            case JSON_REDACTED -> new JsonLogEncoder();
+            case JSON_PLAIN -> {
+                JsonLogEncoder json = new JsonLogEncoder();
+                json.setRedact(false);
+                yield json;
+            }
+        };
+        enc.setContext(context);
+        enc.start();
+
+        OutputStreamAppender<ILoggingEvent> sink = new OutputStreamAppender<>();
+        sink.setContext(context);
+        sink.setEncoder(enc);
+        sink.setOutputStream(OutputStream.nullOutputStream());
+        sink.setImmediateFlush(false);
+        sink.start();
+
+        Appender<ILoggingEvent> appender = sink;
+        if (async) {
+            DebugDiscardingAsyncAppender asyncAppender = new DebugDiscardingAsyncAppender();
+            asyncAppender.setContext(context);
+            asyncAppender.setQueueSize(8192);
+            asyncAppender.setDiscardingThreshold(1638);
+            asyncAppender.addAppender(sink);
+            asyncAppender.start();
+            appender = asyncAppender;
+        }
+
+        logger = context.getLogger("com.alvaro.psicoapp.service.CalendarService");
+        logger.setAdditive(false);
+        logger.addAppender(appender);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.stop();
+    }
+
+    @Benchmark
+    public void plainMessage() {
+        logger.info("Appointment {} booked by user {}", 1234L, userId);
+    }
+
+    @Benchmark
+    public void messageWithEmail() {
+        logger.info("Sending confirmation for appointment {} to {}", 1234L, "maria.lopez+citas@example.com");
+    }
+
+    @Benchmark
+    public void auditLine() {
+        logger.info("AUDIT: method={} path={} userId={} status={}", "GET", "/api/calendar/me", userId, 200);
+    }
+}
@@ -0,0 +1,172 @@
+package com.alvaro.psicoapp.benchmark;
+
+import com.alvaro.psicoapp.domain.*;
+import com.alvaro.psicoapp.repository.*;
+import com.alvaro.psicoapp.service.MatchingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One patient's matching against every approved psychologist: grouping the bulk-loaded
+ * answers, the absolute filters and the affinity score per psychologist, then the sort.
+ * Repositories are in-memory stubs, so this is the CPU side of /api/matching only.
+ *
+ * Answers are drawn with a fixed seed from the real answer texts of both matching tests
+ * (modality, areas, experience, languages, schedule...), so the string matching in the
+ * scorer sees the same inputs as in production. psychologists: size of the directory.
+ *
+ * Run: java -jar target/benchmarks.jar MatchingBenchmark (see BenchmarkRunner)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatchingBenchmark {
+
+    private static final String PATIENT_TEST = "PATIENT_MATCHING";
+    private static final String PSYCH_TEST = "PSYCHOLOGIST_MATCHING";
+
+    private static final Map<Integer, List<String>> PATIENT_OPTIONS = Map.of(
+            1, List.of("Terapia individual", "Terapia de pareja", "Terapia para menor de edad"),
+            6, List.of("Sí", "No"),
+            8, List.of("Ansiedad", "Estrés", "Depresión", "Problemas de pareja", "Duelo", "Autoestima",
+                    "Trauma o experiencias difíciles", "TDAH, atención u organización", "Adicciones o consumo"),
+            9, List.of("Menos de 1 mes", "1–6 meses", "Más de 6 meses", "Años"),
+            10, List.of("Poco", "Bastante", "Mucho", "Muchísimo"),
+            12, List.of("Sí", "No"),
+            13, List.of("Mujer", "Hombre", "Indiferente"),
+            14, List.of("Español", "Inglés", "Catalán"),
+            15, List.of("Más práctico", "Más exploratorio", "Equilibrado"),
+            16, List.of("Mañanas", "Tardes", "Fines de semana"));
+
+    private static final Map<Integer, List<String>> PSYCH_OPTIONS = Map.ofEntries(
+            Map.entry(1, List.of("Terapia individual adultos", "Terapia de pareja", "Terapia infantojuvenil")),
+            Map.entry(2, List.of("Sí", "No")),
+            Map.entry(3, List.of("< 1 año", "1–3 años", "3–7 años", "> 7 años")),
+            Map.entry(4, List.of("< 1 año", "1–3 años", "3–7 años", "> 7 años")),
+            Map.entry(5, List.of("Ansiedad", "Depresión", "Pareja", "Familia", "Duelo", "Trauma", "Autoestima",
+                    "Conducta alimentaria", "Adicciones", "Sexualidad", "TDAH")),
+            Map.entry(6, List.of("Casos leves", "Casos moderados", "Casos complejos", "Me adapto")),
+            Map.entry(8, List.of("Más práctica", "Más exploratoria", "Equilibrada")),
+            Map.entry(9, List.of("Adultos 18–30", "Adultos 30–50", "Adultos +50", "Todas las edades")),
+            Map.entry(10, List.of("Alta", "Media", "Baja")),
+            Map.entry(11, List.of("Español", "Inglés", "Catalán", "Francés")),
+            Map.entry(13, List.of("Mujer", "Hombre")),
+            Map.entry(14, List.of("Mañanas", "Tardes", "Fines de semana")),
+            Map.entry(16, List.of("Sí, habitualmente", "En algunos casos", "No")));
+
+    /** Positions where several answers may be picked */
+    private static final Set<Integer> PATIENT_MULTIPLE = Set.of(8, 14, 16);
+    private static final Set<Integer> PSYCH_MULTIPLE = Set.of(1, 5, 11, 14);
+
+    @Param({"50", "500"})
+    public int psychologists;
+
+    private MatchingService service;
+    private long nextId = 1;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        TestEntity patientTest = test(PATIENT_TEST);
+        TestEntity psychTest = test(PSYCH_TEST);
+        List<QuestionEntity> patientQuestions = questions(patientTest, 16);
+        List<QuestionEntity> psychQuestions = questions(psychTest, 16);
+
+        UserEntity patient = user(RoleConstants.USER);
+        patient.setAge(34);
+        List<UserAnswerEntity> patientAnswers = answers(patient, patientQuestions, PATIENT_OPTIONS, PATIENT_MULTIPLE, random);
+
+        List<UserEntity> psychs = new ArrayList<>();
+        List<PsychologistProfileEntity> approved = new ArrayList<>();
+        List<UserAnswerEntity> psychAnswers = new ArrayList<>();
+        for (int i = 0; i < psychologists; i++) {
+            UserEntity psych = user(RoleConstants.PSYCHOLOGIST);
+            psych.setIsFull(random.nextInt(20) == 0);
+            psychs.add(psych);
+            if (random.nextInt(10) != 0) {
+                PsychologistProfileEntity profile = new PsychologistProfileEntity();
+                profile.setUser(psych);
+                profile.setApproved(true);
+                approved.add(profile);
+            }
+            psychAnswers.addAll(answers(psych, psychQuestions, PSYCH_OPTIONS, PSYCH_MULTIPLE, random));
+        }
+
+        TestRepository tests = Stubs.repository(TestRepository.class, Map.of(
+                "findByCode", a -> Optional.of(PATIENT_TEST.equals(a[0]) ? patientTest : psychTest)));
+        QuestionRepository questions = Stubs.repository(QuestionRepository.class, Map.of(
+                "findByTestOrderByPositionAsc", a -> a[0] == patientTest ? patientQuestions : psychQuestions));
+        UserAnswerRepository userAnswers = Stubs.repository(UserAnswerRepository.class, Map.of(
+                "findByUser", a -> patientAnswers,
+                "findByUserIdIn", a -> psychAnswers));
+        UserRepository users = Stubs.repository(UserRepository.class, Map.of(
+                "findById", a -> Optional.of(patient),
+                "findByRole", a -> psychs));
+        PsychologistProfileRepository profiles = Stubs.repository(PsychologistProfileRepository.class, Map.of(
+                "findByApprovedTrueOrderByUpdatedAtDesc", a -> approved));
+
+        service = new MatchingService(tests, questions, null, userAnswers, users, null, profiles, null, null);
+    }
+
+    @Benchmark
+    public List<MatchingService.MatchingResult> calculateMatching() {
+        return service.calculateMatching(1L);
+    }
+
+    private TestEntity test(String code) {
+        TestEntity test = new TestEntity();
+        test.setId(nextId++);
+        test.setCode(code);
+        return test;
+    }
+
+    private List<QuestionEntity> questions(TestEntity test, int count) {
+        List<QuestionEntity> questions = new ArrayList<>();
+        for (int position = 1; position <= count; position++) {
+            QuestionEntity question = new QuestionEntity();
+            question.setId(nextId++);
+            question.setTest(test);
+            question.setPosition(position);
+            questions.add(question);
+        }
+        return questions;
+    }
+
+    private UserEntity user(String role) {
+        UserEntity user = new UserEntity();
+        user.setId(nextId++);
+        user.setRole(role);
+        user.setName("Usuario " + user.getId());
+        return user;
+    }
+
+    private List<UserAnswerEntity> answers(UserEntity user, List<QuestionEntity> questions,
+                                           Map<Integer, List<String>> options, Set<Integer> multiple, Random random) {
+        List<UserAnswerEntity> answers = new ArrayList<>();
+        for (QuestionEntity question : questions) {
+            List<String> texts = options.get(question.getPosition());
+            if (texts == null) continue;
+            List<String> picked = new ArrayList<>(texts);
+            Collections.shuffle(picked, random);
+            int count = multiple.contains(question.getPosition()) ? 1 + random.nextInt(Math.min(3, texts.size())) : 1;
+            for (String text : picked.subList(0, count)) {
+                AnswerEntity answer = new AnswerEntity();
+                answer.setId(nextId++);
+                answer.setQuestion(question);
+                answer.setText(text);
+                UserAnswerEntity userAnswer = new UserAnswerEntity();
+                userAnswer.setId(nextId++);
+                userAnswer.setUser(user);
+                userAnswer.setQuestion(question);
+                userAnswer.setAnswer(answer);
+                answers.add(userAnswer);
+            }
+        }
+        return answers;
+    }
+}
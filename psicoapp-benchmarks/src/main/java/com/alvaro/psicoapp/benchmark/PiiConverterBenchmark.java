@@ -0,0 +1,76 @@
+package com.alvaro.psicoapp.benchmark;
+
+import com.alvaro.psicoapp.config.PiiDeterministicConverter;
+import com.alvaro.psicoapp.config.PiiEncryptConverter;
+import com.alvaro.psicoapp.service.PiiEncryptionService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the PII converters on an entity read: each row decrypts a name and a phone
+ * (randomized) and an email (deterministic), as Hibernate does when loading UserEntity.
+ *
+ * distinctEmails: how many different emails the rows share. A small number models a hot
+ * set (logged-in users looked up again and again, served by the memo); rows models a
+ * listing where every email is different. Scores are per read of all rows; divide by rows
+ * for the per-row cost.
+ *
+ * Run: java -jar target/benchmarks.jar PiiConverterBenchmark (see BenchmarkRunner)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PiiConverterBenchmark {
+
+    @Param({"1000", "10000"})
+    public int rows;
+
+    @Param({"50", "10000"})
+    public int distinctEmails;
+
+    private final PiiEncryptConverter encryptConverter = new PiiEncryptConverter();
+    private final PiiDeterministicConverter deterministicConverter = new PiiDeterministicConverter();
+
+    private String[] names;
+    private String[] phones;
+    private String[] emails;
+
+    @Setup
+    public void setUp() {
+        // Memo smaller than the widest email set, so distinctEmails=10000 measures real decryption
+        PiiEncryptionService service = new PiiEncryptionService("benchmark-pii-key-32-characters!!", 1, "", 1_000);
+        PiiEncryptConverter.setEncryptionService(service);
+        PiiDeterministicConverter.setEncryptionService(service);
+
+        names = new String[rows];
+        phones = new String[rows];
+        emails = new String[rows];
+        for (int i = 0; i < rows; i++) {
+            names[i] = encryptConverter.convertToDatabaseColumn("Paciente Número " + i);
+            phones[i] = encryptConverter.convertToDatabaseColumn("+34 600 " + String.format("%06d", i));
+            emails[i] = deterministicConverter.convertToDatabaseColumn("paciente" + (i % distinctEmails) + "@example.com");
+        }
+    }
+
+    @Benchmark
+    public void readRows(Blackhole bh) {
+        for (int i = 0; i < rows; i++) {
+            bh.consume(encryptConverter.convertToEntityAttribute(names[i]));
+            bh.consume(encryptConverter.convertToEntityAttribute(phones[i]));
+            bh.consume(deterministicConverter.convertToEntityAttribute(emails[i]));
+        }
+    }
+
+    @Benchmark
+    public void writeRows(Blackhole bh) {
+        for (int i = 0; i < rows; i++) {
+            bh.consume(encryptConverter.convertToDatabaseColumn("Paciente Número " + i));
+            bh.consume(deterministicConverter.convertToDatabaseColumn("paciente" + (i % distinctEmails) + "@example.com"));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.alvaro.psicoapp.benchmark;
+
+import com.alvaro.psicoapp.security.filter.RateLimitFilter;
+import com.alvaro.psicoapp.service.SecurityBreachService;
+import jakarta.servlet.FilterChain;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RateLimitFilter's counter updates under contention: four threads share one filter, as
+ * Tomcat's workers do.
+ *
+ * traffic=SPREAD: every request comes from a client IP not seen before, cycling over 4
+ * endpoints, so requests are admitted and the maps keep filling up to their tracking caps and
+ * being cleared; the cost includes building the IP string. traffic=HOT: 16 IPs per thread on
+ * one endpoint, throttled within the first second, which measures the 429 path (its log lines
+ * are switched off in this module's logback.xml).
+ *
+ * Run: java -jar target/benchmarks.jar RateLimitBenchmark (see BenchmarkRunner)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RateLimitBenchmark {
+
+    public enum Traffic { SPREAD, HOT }
+
+    private static final String[] ENDPOINTS = {
+            "/api/calendar/my-appointments", "/api/chat/conversations", "/api/tests", "/api/user/me"};
+    private static final FilterChain CHAIN = (request, response) -> {};
+
+    @Param({"SPREAD", "HOT"})
+    public Traffic traffic;
+
+    private RateLimitFilter filter;
+
+    @Setup
+    public void setUp() {
+        filter = new RateLimitFilter(new SecurityBreachService());
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        MockHttpServletRequest[] requests;
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        boolean spread;
+        int threadIndex;
+        int next;
+        long requestCount;
+
+        @Setup
+        public void setUp(RateLimitBenchmark benchmark, ThreadParams thread) {
+            spread = benchmark.traffic == Traffic.SPREAD;
+            threadIndex = thread.getThreadIndex();
+            int ips = spread ? 1 : 16;
+            int endpoints = spread ? ENDPOINTS.length : 1;
+            requests = new MockHttpServletRequest[ips * endpoints];
+            for (int i = 0; i < requests.length; i++) {
+                MockHttpServletRequest request = new MockHttpServletRequest("GET", ENDPOINTS[i / ips]);
+                request.setRemoteAddr("10." + threadIndex + ".0." + (i % ips));
+                requests[i] = request;
+            }
+        }
+
+        MockHttpServletRequest nextRequest() {
+            MockHttpServletRequest request = requests[next];
+            next = next + 1 == requests.length ? 0 : next + 1;
+            if (spread) {
+                // Only used as a map key by the filter; needn't be a valid address
+                request.setRemoteAddr("10." + threadIndex + "." + requestCount++);
+            }
+            return request;
+        }
+    }
+
+    @Benchmark
+    public int doFilter(Client client) throws Exception {
+        MockHttpServletRequest request = client.nextRequest();
+        // Keeps the 429 bodies from piling up in the reused response
+        client.response.reset();
+        filter.doFilter(request, client.response, CHAIN);
+        return client.response.getStatus();
+    }
+}
@@ -0,0 +1,32 @@
+package com.alvaro.psicoapp.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * In-memory stand-ins for Spring Data repositories, so services can be benchmarked on
+ * synthetic entities without a database. Only the methods named in the map answer; anything
+ * else throws, which keeps a benchmark from silently measuring a code path it didn't set up.
+ */
+final class Stubs {
+
+    private Stubs() {}
+
+    @SuppressWarnings("unchecked")
+    static <T> T repository(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals": return proxy == args[0];
+                case "hashCode": return System.identityHashCode(proxy);
+                case "toString": return "stub " + type.getSimpleName();
+                default:
+            }
+            Function<Object[], Object> answer = answers.get(method.getName());
+            if (answer == null) {
+                throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName() + " not stubbed");
+            }
+            return answer.apply(args);
+        });
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.cache.support.CompositeCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
 
 import java.time.Duration;
 import java.util.List;
@@ -19,6 +20,8 @@ public class CacheConfig {
      * Primary cache manager with two tiers:
      * - "adminStats": short TTL (5 min) since stats change with every user action
      * - All others (testsByCategory, testsByTopic): longer TTL (15 min) for rarely changing data
+     * - "testDefinitions": full questionnaires, evicted on change and expired after 15 min like
+     *   the test lists, since evictions only reach the node that made the edit
      */
     @Bean
     public CacheManager cacheManager() {
@@ -38,8 +41,20 @@ public class CacheConfig {
             .expireAfterWrite(Duration.ofMinutes(15))
         );
 
+        // Questionnaire snapshots (TestDefinitionCache), evicted on every test edit on this node;
+        // other replicas see the edit when their entry expires, as with the test lists.
+        // Transaction-aware so an eviction inside an admin transaction applies after commit and
+        // a concurrent reader can't re-cache the pre-edit tree.
+        CaffeineCacheManager definitionsCacheManager = new CaffeineCacheManager();
+        definitionsCacheManager.setCacheNames(List.of("testDefinitions"));
+        definitionsCacheManager.setCaffeine(Caffeine.newBuilder()
+            .maximumSize(200)
+            .expireAfterWrite(Duration.ofMinutes(15))
+        );
+
         CompositeCacheManager compositeCacheManager = new CompositeCacheManager();
-        compositeCacheManager.setCacheManagers(List.of(statsCacheManager, testsCacheManager));
+        compositeCacheManager.setCacheManagers(List.of(statsCacheManager, testsCacheManager,
+            new TransactionAwareCacheManagerProxy(definitionsCacheManager)));
         compositeCacheManager.setFallbackToNoOpCache(false);
         return compositeCacheManager;
     }
@@ -4,6 +4,9 @@ import com.alvaro.psicoapp.service.PiiEncryptionService;
 import jakarta.persistence.AttributeConverter;
 import jakarta.persistence.Converter;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * JPA converter that transparently encrypts/decrypts PII fields
  * using deterministic AES-256-GCM (same plaintext → same ciphertext).
@@ -21,6 +24,15 @@ public class PiiDeterministicConverter implements AttributeConverter<String, Str
         encryptionService = service;
     }
 
+    /**
+     * Values to match the column against for an equality lookup; see
+     * {@link PiiEncryptionService#deterministicLookupValues}.
+     */
+    public static List<String> lookupValues(String attribute) {
+        if (encryptionService == null) return Collections.singletonList(attribute);
+        return encryptionService.deterministicLookupValues(attribute);
+    }
+
     @Override
     public String convertToDatabaseColumn(String attribute) {
         if (encryptionService == null) return attribute;
@@ -0,0 +1,57 @@
+package com.alvaro.psicoapp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Scheduler lanes: each @Scheduled job names one with scheduler = ..., so a long run in one
+ * lane never delays the jobs of another.
+ *
+ * - critical: payment expiry and reminders, which users notice when they run late
+ * - periodic: short housekeeping (token/code/rate-limit cleanups, norm flushes); also the
+ *   default for a @Scheduled without a lane
+ * - bulk: long batch runs (retention, slot generation, norm rebuilds), one at a time so they
+ *   never hold more than one connection each
+ *
+ * Overlap prevention, metrics and manual runs are in ScheduledJobService.
+ */
+@Configuration
+public class SchedulingConfig {
+    public static final String CRITICAL = "criticalScheduler";
+    public static final String PERIODIC = "periodicScheduler";
+    public static final String BULK = "bulkScheduler";
+
+    @Bean(name = CRITICAL)
+    public ThreadPoolTaskScheduler criticalScheduler(@Value("${app.scheduling.lanes.critical-threads:2}") int threads) {
+        return lane("critical-", threads);
+    }
+
+    @Bean(name = PERIODIC)
+    @Primary
+    public ThreadPoolTaskScheduler periodicScheduler(@Value("${app.scheduling.lanes.periodic-threads:2}") int threads) {
+        return lane("periodic-", threads);
+    }
+
+    @Bean(name = BULK)
+    public ThreadPoolTaskScheduler bulkScheduler(@Value("${app.scheduling.lanes.bulk-threads:1}") int threads) {
+        return lane("bulk-", threads);
+    }
+
+    /** Lane name as used in metrics and the admin API: "critical" for criticalScheduler */
+    public static String laneOf(String schedulerBeanName) {
+        return schedulerBeanName.isEmpty() ? laneOf(PERIODIC) : schedulerBeanName.replace("Scheduler", "");
+    }
+
+    private static ThreadPoolTaskScheduler lane(String prefix, int threads) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(Math.max(1, threads));
+        scheduler.setThreadNamePrefix(prefix);
+        scheduler.setWaitForTasksToCompleteOnShutdown(false);
+        // Failures are logged and counted by ScheduledJobService; the next run goes ahead
+        scheduler.setErrorHandler(t -> { });
+        return scheduler;
+    }
+}
@@ -0,0 +1,31 @@
+package com.alvaro.psicoapp.config;
+
+import com.alvaro.psicoapp.monitoring.InstrumentedDataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Routes the application DataSource through {@link InstrumentedDataSource} so requests and
+ * scheduled jobs report their SQL statements. app.sql.instrumentation=false turns it off.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.sql.instrumentation", havingValue = "true", matchIfMissing = true)
+public class SqlInstrumentationConfig {
+
+    @Bean
+    static BeanPostProcessor sqlInstrumentationPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof InstrumentedDataSource)) {
+                    return new InstrumentedDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+}
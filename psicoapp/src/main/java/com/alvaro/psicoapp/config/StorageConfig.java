@@ -0,0 +1,34 @@
+package com.alvaro.psicoapp.config;
+
+import com.alvaro.psicoapp.service.BlobStore;
+import com.alvaro.psicoapp.service.FileDeliveryService;
+import com.alvaro.psicoapp.service.LocalBlobStore;
+import com.alvaro.psicoapp.service.S3BlobStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URI;
+
+@Configuration
+public class StorageConfig {
+
+    /**
+     * app.storage.type: "local" (default, uploads/ on disk) or "s3" (any S3-compatible endpoint)
+     */
+    @Bean
+    public BlobStore blobStore(@Value("${app.storage.type:local}") String type,
+                               @Value("${app.storage.s3.endpoint:}") String endpoint,
+                               @Value("${app.storage.s3.region:us-east-1}") String region,
+                               @Value("${app.storage.s3.bucket:}") String bucket,
+                               @Value("${app.storage.s3.access-key:}") String accessKey,
+                               @Value("${app.storage.s3.secret-key:}") String secretKey) {
+        if ("s3".equalsIgnoreCase(type)) {
+            if (endpoint.isBlank() || bucket.isBlank()) {
+                throw new IllegalStateException("app.storage.s3.endpoint y app.storage.s3.bucket son obligatorios con app.storage.type=s3");
+            }
+            return new S3BlobStore(URI.create(endpoint), region, bucket, accessKey, secretKey);
+        }
+        return new LocalBlobStore(FileDeliveryService.resolveUploadsRoot());
+    }
+}
@@ -2,6 +2,7 @@ package com.alvaro.psicoapp.config;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
@@ -17,6 +18,11 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Value("${app.cors.allowed-origins:http://localhost:5173,http://localhost:4200}")
     private String allowedOrigins;
 
+    // spring.threads.virtual.enabled covers Tomcat and the task executor/scheduler; the STOMP
+    // channels keep their own thread pools unless given an executor here
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
     public WebSocketConfig(WebSocketAuthInterceptor authInterceptor,
                            WebSocketRateLimitInterceptor rateLimitInterceptor) {
         this.authInterceptor = authInterceptor;
@@ -39,5 +45,15 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
         registration.interceptors(authInterceptor, rateLimitInterceptor);
+        if (virtualThreads) {
+            registration.executor(new VirtualThreadTaskExecutor("stomp-inbound-"));
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        if (virtualThreads) {
+            registration.executor(new VirtualThreadTaskExecutor("stomp-outbound-"));
+        }
     }
 }
@@ -1,5 +1,6 @@
 package com.alvaro.psicoapp.config;
 
+import com.alvaro.psicoapp.service.ClusterJob;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.messaging.Message;
@@ -74,7 +75,8 @@ public class WebSocketRateLimitInterceptor implements ChannelInterceptor {
     /**
      * Cleanup old entries every 2 minutes to prevent memory leaks from disconnected users.
      */
-    @Scheduled(fixedRate = 120000)
+    @Scheduled(fixedRate = 120000, scheduler = SchedulingConfig.PERIODIC)
+    @ClusterJob(ClusterJob.Mode.EVERY_NODE)
     public void cleanupOldEntries() {
         Instant cutoff = Instant.now().minusSeconds(120);
         rateLimits.entrySet().removeIf(entry -> entry.getValue().getLastActivity().isBefore(cutoff));
@@ -5,7 +5,11 @@ import com.alvaro.psicoapp.dto.AdminDtos;
 import com.alvaro.psicoapp.dto.TestImportDtos;
 import com.alvaro.psicoapp.service.AdminService;
 import com.alvaro.psicoapp.service.PiiMigrationRunner;
+import com.alvaro.psicoapp.service.ScheduledJobService;
+import com.alvaro.psicoapp.service.ScoreNormService;
+import com.alvaro.psicoapp.service.TestBatchImportService;
 import com.alvaro.psicoapp.service.TestImportService;
+import com.alvaro.psicoapp.service.TestRescoringService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -34,19 +38,61 @@ public class AdminController {
     private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
     private final AdminService adminService;
     private final TestImportService testImportService;
+    private final TestBatchImportService testBatchImportService;
     private final PiiMigrationRunner piiMigrationRunner;
+    private final TestRescoringService testRescoringService;
+    private final ScoreNormService scoreNormService;
+    private final ScheduledJobService scheduledJobService;
 
-    public AdminController(AdminService adminService, TestImportService testImportService, PiiMigrationRunner piiMigrationRunner) {
+    public AdminController(AdminService adminService, TestImportService testImportService, TestBatchImportService testBatchImportService,
+                           PiiMigrationRunner piiMigrationRunner, TestRescoringService testRescoringService, ScoreNormService scoreNormService,
+                           ScheduledJobService scheduledJobService) {
         this.adminService = adminService;
         this.testImportService = testImportService;
+        this.testBatchImportService = testBatchImportService;
         this.piiMigrationRunner = piiMigrationRunner;
+        this.testRescoringService = testRescoringService;
+        this.scoreNormService = scoreNormService;
+        this.scheduledJobService = scheduledJobService;
     }
 
     @PostMapping("/pii/migrate")
-    @Operation(summary = "Encrypt PII data", description = "Encrypts all plaintext name/email/totp in users table. Run before enabling @Convert.")
-    public ResponseEntity<Map<String, Object>> migratePii() {
-        int count = piiMigrationRunner.migrateAll();
-        return ResponseEntity.ok(Map.of("migrated", count, "message", "PII migration complete. Now uncomment @Convert in UserEntity and restart."));
+    @Operation(summary = "Encrypt PII data", description = "Starts encrypting plaintext name/email/totp in the users table, and re-encrypting values under older key versions, in the background. Resumes from the last checkpoint unless restart=true. Run before enabling @Convert.")
+    @ApiResponses(value = {
+		@ApiResponse(responseCode = "200", description = "Migración iniciada"),
+		@ApiResponse(responseCode = "409", description = "Ya hay una migración en curso")
+	})
+    public ResponseEntity<AdminDtos.PiiMigrationStatus> migratePii(@RequestParam(defaultValue = "false") boolean restart) {
+        return ResponseEntity.ok(piiMigrationRunner.start(restart));
+    }
+
+    @GetMapping("/pii/migrate")
+    @Operation(summary = "PII migration progress", description = "Users checked and skipped, total, rate, ETA and checkpoint of the PII migration")
+    public ResponseEntity<AdminDtos.PiiMigrationStatus> getPiiMigrationStatus() {
+        return ResponseEntity.ok(piiMigrationRunner.getStatus());
+    }
+
+    @DeleteMapping("/pii/migrate")
+    @Operation(summary = "Cancel PII migration", description = "Stops the running migration; it can be resumed later from the checkpoint")
+    public ResponseEntity<AdminDtos.PiiMigrationStatus> cancelPiiMigration() {
+        return ResponseEntity.ok(piiMigrationRunner.cancel());
+    }
+
+    @GetMapping("/jobs")
+    @Operation(summary = "Scheduled jobs", description = "Every @Scheduled job with its lane, schedule, whether it is running, next due time and last run (duration, outcome, error)")
+    public ResponseEntity<List<AdminDtos.ScheduledJobStatus>> listScheduledJobs() {
+        return ResponseEntity.ok(scheduledJobService.list());
+    }
+
+    @PostMapping("/jobs/{name}/run")
+    @Operation(summary = "Run a scheduled job now", description = "Runs the job once on its lane, outside its schedule; poll GET /jobs for the outcome")
+    @ApiResponses(value = {
+		@ApiResponse(responseCode = "202", description = "Ejecución iniciada"),
+		@ApiResponse(responseCode = "404", description = "Tarea programada no encontrada"),
+		@ApiResponse(responseCode = "409", description = "La tarea ya se está ejecutando")
+	})
+    public ResponseEntity<AdminDtos.ScheduledJobStatus> runScheduledJob(@PathVariable String name) {
+        return ResponseEntity.accepted().body(scheduledJobService.trigger(name));
     }
 
     @GetMapping("/tests")
@@ -114,6 +160,44 @@ public class AdminController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    @PostMapping("/tests/{testId}/rescore")
+    @Operation(summary = "Recalcular resultados del test", description = "Recalcula en segundo plano los resultados de todos los usuarios que respondieron el test. Reanuda desde el último punto de control salvo que restart=true")
+    @ApiResponses(value = {
+		@ApiResponse(responseCode = "200", description = "Recálculo iniciado"),
+		@ApiResponse(responseCode = "404", description = "Test no encontrado"),
+		@ApiResponse(responseCode = "409", description = "Ya hay un recálculo en curso")
+	})
+    public ResponseEntity<AdminDtos.RescoreStatus> startRescore(@PathVariable Long testId,
+                                                                @RequestParam(defaultValue = "false") boolean restart) {
+        return ResponseEntity.ok(testRescoringService.start(testId, restart));
+    }
+
+    @GetMapping("/tests/{testId}/rescore")
+    @Operation(summary = "Progreso del recálculo", description = "Usuarios procesados, fallidos, total, velocidad y punto de control del recálculo del test")
+    public ResponseEntity<AdminDtos.RescoreStatus> getRescoreStatus(@PathVariable Long testId) {
+        return ResponseEntity.ok(testRescoringService.getStatus(testId));
+    }
+
+    @DeleteMapping("/tests/{testId}/rescore")
+    @Operation(summary = "Cancelar recálculo", description = "Detiene el recálculo en curso; se puede reanudar después desde el punto de control")
+    public ResponseEntity<AdminDtos.RescoreStatus> cancelRescore(@PathVariable Long testId) {
+        return ResponseEntity.ok(testRescoringService.cancel(testId));
+    }
+
+    @GetMapping("/tests/{testId}/norms")
+    @Operation(summary = "Baremos del test", description = "Distribución de la población por subfactor y factor: tamaño de muestra, percentiles 10/25/50/75/90 e histograma")
+    @ApiResponse(responseCode = "200", description = "Distribuciones obtenidas exitosamente")
+    public ResponseEntity<List<AdminDtos.ScaleNormDto>> getTestNorms(@PathVariable Long testId) {
+        return ResponseEntity.ok(scoreNormService.describe(testId));
+    }
+
+    @PostMapping("/tests/{testId}/norms/rebuild")
+    @Operation(summary = "Reconstruir baremos", description = "Recalcula las distribuciones del test a partir de los resultados guardados")
+    public ResponseEntity<Map<String, Object>> rebuildTestNorms(@PathVariable Long testId) {
+        long results = scoreNormService.rebuild(testId);
+        return ResponseEntity.ok(Map.of("message", "Baremos reconstruidos", "results", results));
+    }
+
     @PostMapping("/factors")
     @Operation(summary = "Crear factor", description = "Crea un nuevo factor para un test")
     @ApiResponse(responseCode = "200", description = "Factor creado exitosamente")
@@ -347,8 +431,17 @@ public class AdminController {
         @ApiResponse(responseCode = "400", description = "Datos inválidos"),
         @ApiResponse(responseCode = "409", description = "Ya existe un test con ese código")
     })
-    public ResponseEntity<TestImportDtos.ImportResponse> confirmTestImport(@RequestBody TestImportDtos.ImportRequest req) {
-        return ResponseEntity.ok(testImportService.importTest(req));
+    public ResponseEntity<TestImportDtos.ImportResponse> confirmTestImport(@RequestBody TestImportDtos.ImportRequest req,
+                                                                           @RequestParam(defaultValue = "false") boolean dryRun) {
+        return ResponseEntity.ok(testImportService.importTest(req, dryRun));
+    }
+
+    @PostMapping("/tests/import/confirm-batch")
+    @Operation(summary = "Importar varios tests", description = "Crea varios tests en paralelo, cada uno en su propia transacción; con dryRun=true solo valida")
+    @ApiResponse(responseCode = "200", description = "Resultado de cada test, en el orden recibido")
+    public ResponseEntity<List<TestImportDtos.BatchImportResult>> confirmTestImportBatch(@RequestBody List<TestImportDtos.ImportRequest> requests,
+                                                                                        @RequestParam(defaultValue = "false") boolean dryRun) {
+        return ResponseEntity.ok(testBatchImportService.importTests(requests, dryRun));
     }
 
     @GetMapping("/psychologists/pending")
@@ -330,7 +330,7 @@ public class CalendarController {
     @ApiResponse(responseCode = "200", description = "Slots generados exitosamente")
     public ResponseEntity<WeeklyScheduleDtos.GenerateResult> generateSlotsNow(Principal principal) {
         UserEntity user = currentUser(principal);
-        WeeklyScheduleDtos.GenerateResult result = weeklyScheduleService.generateSlots(user.getId(), 2);
+        WeeklyScheduleDtos.GenerateResult result = weeklyScheduleService.generateSlots(user.getId(), WeeklyScheduleService.WEEKS_AHEAD);
         return ResponseEntity.ok(result);
     }
 
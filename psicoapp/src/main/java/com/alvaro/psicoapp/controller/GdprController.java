@@ -4,6 +4,7 @@ import com.alvaro.psicoapp.domain.UserEntity;
 import com.alvaro.psicoapp.repository.UserRepository;
 import com.alvaro.psicoapp.security.filter.JwtAuthFilter;
 import com.alvaro.psicoapp.service.CurrentUserService;
+import com.alvaro.psicoapp.service.GdprExportService;
 import com.alvaro.psicoapp.service.GdprService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -11,6 +12,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.security.Principal;
 import java.time.Instant;
@@ -22,20 +24,23 @@ import java.util.Map;
 public class GdprController {
     private final CurrentUserService currentUserService;
     private final GdprService gdprService;
+    private final GdprExportService gdprExportService;
     private final UserRepository userRepository;
 
-    public GdprController(CurrentUserService currentUserService, GdprService gdprService, UserRepository userRepository) {
+    public GdprController(CurrentUserService currentUserService, GdprService gdprService,
+                          GdprExportService gdprExportService, UserRepository userRepository) {
         this.currentUserService = currentUserService;
         this.gdprService = gdprService;
+        this.gdprExportService = gdprExportService;
         this.userRepository = userRepository;
     }
 
     @GetMapping("/export-data")
-    @Transactional(readOnly = true)
-    @Operation(summary = "Exportar mis datos (RGPD)", description = "Exporta todos los datos del usuario en formato JSON conforme al RGPD Art. 20")
+    @Operation(summary = "Exportar mis datos (RGPD)", description = "Exporta todos los datos del usuario conforme al RGPD Art. 20, como JSON o como ZIP con un fichero por categoría (format=zip)")
     @ApiResponse(responseCode = "200", description = "Datos exportados exitosamente")
-    public ResponseEntity<Map<String, Object>> exportMyData(Principal principal) {
-        return ResponseEntity.ok(gdprService.exportUserData(currentUserService.getCurrentUser(principal)));
+    public ResponseEntity<StreamingResponseBody> exportMyData(Principal principal,
+                                                              @RequestParam(defaultValue = "json") String format) {
+        return gdprExportService.export(currentUserService.getCurrentUser(principal), GdprExportService.parseFormat(format));
     }
 
     @DeleteMapping("/delete-account")
@@ -5,6 +5,7 @@ import com.alvaro.psicoapp.service.InitialTestService;
 import com.alvaro.psicoapp.service.TemporarySessionService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.HashMap;
 import java.util.List;
@@ -29,9 +30,9 @@ public class InitialTestController {
     }
 
     @GetMapping
-    public ResponseEntity<?> getInitialTest(@RequestParam String sessionId) {
+    public ResponseEntity<?> getInitialTest(@RequestParam String sessionId, WebRequest request) {
         try {
-            return ResponseEntity.ok(initialTestService.getInitialTest(sessionId));
+            return initialTestService.getInitialTest(sessionId).toResponse(request);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         } catch (Exception e) {
@@ -13,6 +13,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.security.Principal;
 import java.util.Map;
@@ -33,26 +34,24 @@ public class MatchingController {
     }
 
     @GetMapping("/patient-test")
-    @Transactional(readOnly = true)
     @Operation(summary = "Obtener test de matching para paciente", description = "Obtiene el test de matching que deben completar los pacientes")
     @ApiResponse(responseCode = "200", description = "Test obtenido exitosamente")
-    public ResponseEntity<?> getPatientMatchingTest(Principal principal) {
-        return ResponseEntity.ok(matchingService.getMatchingTest(PATIENT_MATCHING_TEST_CODE));
+    public ResponseEntity<?> getPatientMatchingTest(Principal principal, WebRequest request) {
+        return matchingService.getMatchingTest(PATIENT_MATCHING_TEST_CODE).toResponse(request);
     }
 
     @GetMapping("/psychologist-test")
-    @Transactional(readOnly = true)
     @Operation(summary = "Obtener test de matching para psicólogo", description = "Obtiene el test de matching que deben completar los psicólogos")
     @ApiResponses(value = {
 		@ApiResponse(responseCode = "200", description = "Test obtenido exitosamente"),
 		@ApiResponse(responseCode = "403", description = "Solo psicólogos pueden acceder a este test")
 	})
-    public ResponseEntity<?> getPsychologistMatchingTest(Principal principal) {
+    public ResponseEntity<?> getPsychologistMatchingTest(Principal principal, WebRequest request) {
         var user = currentUserService.getCurrentUser(principal);
         if (!RoleConstants.PSYCHOLOGIST.equals(user.getRole())) {
             return ResponseEntity.status(403).body(new MatchingDtos.MatchingErrorResponse("Solo psicólogos pueden acceder a este test"));
         }
-        return ResponseEntity.ok(matchingService.getMatchingTest(PSYCHOLOGIST_MATCHING_TEST_CODE));
+        return matchingService.getMatchingTest(PSYCHOLOGIST_MATCHING_TEST_CODE).toResponse(request);
     }
 
     @PostMapping("/patient-test/submit")
@@ -11,6 +11,7 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -36,11 +37,12 @@ public class TestController {
 	@ApiResponses(value = {
 		@ApiResponse(responseCode = "200", description = "Test encontrado",
 			content = @Content(schema = @Schema(implementation = TestDtos.TestDetailResponse.class))),
+		@ApiResponse(responseCode = "304", description = "El cliente ya tiene esta versión (If-None-Match)"),
 		@ApiResponse(responseCode = "404", description = "Test no encontrado")
 	})
-	public ResponseEntity<TestDtos.TestDetailResponse> get(@PathVariable Long id) {
-		return testService.getTestDetail(id)
-				.map(ResponseEntity::ok)
+	public ResponseEntity<byte[]> get(@PathVariable Long id, WebRequest request) {
+		return testService.getTestDetailJson(id)
+				.map(json -> json.toResponse(request))
 				.orElse(ResponseEntity.notFound().build());
 	}
 }
@@ -18,6 +18,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.security.Principal;
 import java.util.Map;
@@ -75,7 +76,7 @@ public class TestResultController {
 		@ApiResponse(responseCode = "403", description = "No autorizado - solo el psicólogo asignado puede exportar"),
 		@ApiResponse(responseCode = "500", description = "Error al generar el archivo")
 	})
-    public ResponseEntity<byte[]> exportUserTestResults(Principal principal, @PathVariable Long userId, @PathVariable Long testId) {
+    public ResponseEntity<StreamingResponseBody> exportUserTestResults(Principal principal, @PathVariable Long userId, @PathVariable Long testId) {
         try {
             UserEntity requester = userRepository.findByEmail(principal.getName()).orElseThrow();
             return testResultExportService.exportUserTestResults(requester, userId, testId);
@@ -93,7 +94,7 @@ public class TestResultController {
 		@ApiResponse(responseCode = "403", description = "No autorizado - solo el psicólogo asignado puede exportar"),
 		@ApiResponse(responseCode = "500", description = "Error al generar el archivo")
 	})
-    public ResponseEntity<byte[]> exportUserAllResults(Principal principal, @PathVariable Long userId) {
+    public ResponseEntity<StreamingResponseBody> exportUserAllResults(Principal principal, @PathVariable Long userId) {
         try {
             UserEntity requester = userRepository.findByEmail(principal.getName()).orElseThrow();
             return testResultExportService.exportUserAllResults(requester, userId);
@@ -118,7 +119,7 @@ public class TestResultController {
 		@ApiResponse(responseCode = "200", description = "Archivo Excel generado exitosamente"),
 		@ApiResponse(responseCode = "500", description = "Error al generar el archivo")
 	})
-    public ResponseEntity<byte[]> exportMyResults(Principal principal) {
+    public ResponseEntity<StreamingResponseBody> exportMyResults(Principal principal) {
         try {
             return testResultExportService.exportMyResults(principal.getName());
         } catch (Exception e) {
@@ -132,7 +133,7 @@ public class TestResultController {
 		@ApiResponse(responseCode = "200", description = "Archivo Excel generado exitosamente"),
 		@ApiResponse(responseCode = "500", description = "Error al generar el archivo")
 	})
-    public ResponseEntity<byte[]> exportTestResults(Principal principal, @PathVariable Long testId) {
+    public ResponseEntity<StreamingResponseBody> exportTestResults(Principal principal, @PathVariable Long testId) {
         try {
             return testResultExportService.exportMyTestResults(principal.getName(), testId);
         } catch (Exception e) {
@@ -0,0 +1,54 @@
+package com.alvaro.psicoapp.controller;
+
+import com.alvaro.psicoapp.service.AvatarThumbnailService;
+import com.alvaro.psicoapp.service.FileDeliveryService;
+import com.alvaro.psicoapp.service.UploadStorageService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+/**
+ * Public avatar URLs (/uploads/avatars/...) as stored in users.avatar_url, served from
+ * whichever blob store is configured, and their thumbnails (/uploads/avatars/thumbs/{size}/...). Task files and clinic documents go through
+ * {@link FileController}, which checks ownership.
+ */
+@RestController
+public class UploadsController {
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+
+    private final FileDeliveryService fileDeliveryService;
+    private final AvatarThumbnailService avatarThumbnailService;
+
+    public UploadsController(FileDeliveryService fileDeliveryService, AvatarThumbnailService avatarThumbnailService) {
+        this.fileDeliveryService = fileDeliveryService;
+        this.avatarThumbnailService = avatarThumbnailService;
+    }
+
+    @GetMapping("/uploads/avatars/{filename}")
+    public void getAvatar(@PathVariable String filename, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        fileDeliveryService.serve(UploadStorageService.AVATARS, filename, request, response);
+    }
+
+    @GetMapping("/uploads/avatars/thumbs/{size}/{filename}")
+    public void getAvatarThumbnail(@PathVariable int size, @PathVariable String filename,
+                                   HttpServletRequest request, HttpServletResponse response) throws IOException {
+        AvatarThumbnailService.Thumbnail thumbnail = avatarThumbnailService.get(filename, size);
+        if (thumbnail == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        response.setHeader("Cache-Control", IMMUTABLE);
+        response.setHeader("ETag", thumbnail.etag());
+        if (thumbnail.etag().equals(request.getHeader("If-None-Match"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(thumbnail.contentType());
+        response.setContentLength(thumbnail.bytes().length);
+        response.getOutputStream().write(thumbnail.bytes());
+    }
+}
@@ -3,6 +3,7 @@ package com.alvaro.psicoapp.controller;
 import com.alvaro.psicoapp.dto.UserProfileDtos;
 import com.alvaro.psicoapp.service.ClinicService;
 import com.alvaro.psicoapp.service.CurrentUserService;
+import com.alvaro.psicoapp.service.GdprExportService;
 import com.alvaro.psicoapp.service.PatientClinicPortalService;
 import com.alvaro.psicoapp.service.UserProfileService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -15,6 +16,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.security.Principal;
 import java.util.List;
@@ -28,14 +30,16 @@ public class UserProfileController {
     private final UserProfileService userProfileService;
     private final PatientClinicPortalService patientClinicPortalService;
     private final ClinicService clinicService;
+    private final GdprExportService gdprExportService;
 
     public UserProfileController(CurrentUserService currentUserService, UserProfileService userProfileService,
                                   PatientClinicPortalService patientClinicPortalService,
-                                  ClinicService clinicService) {
+                                  ClinicService clinicService, GdprExportService gdprExportService) {
         this.currentUserService = currentUserService;
         this.userProfileService = userProfileService;
         this.patientClinicPortalService = patientClinicPortalService;
         this.clinicService = clinicService;
+        this.gdprExportService = gdprExportService;
     }
 
     @GetMapping
@@ -95,11 +99,11 @@ public class UserProfileController {
     }
 
     @GetMapping("/export-data")
-    @Transactional(readOnly = true)
-    @Operation(summary = "Exportar mis datos (RGPD)", description = "Exporta todos los datos del usuario en formato JSON conforme al RGPD Art. 20")
+    @Operation(summary = "Exportar mis datos (RGPD)", description = "Exporta todos los datos del usuario conforme al RGPD Art. 20, como JSON o como ZIP con un fichero por categoría (format=zip)")
     @ApiResponse(responseCode = "200", description = "Datos exportados exitosamente")
-    public ResponseEntity<Map<String, Object>> exportMyData(Principal principal) {
-        return ResponseEntity.ok(userProfileService.exportUserData(currentUserService.getCurrentUser(principal)));
+    public ResponseEntity<StreamingResponseBody> exportMyData(Principal principal,
+                                                              @RequestParam(defaultValue = "json") String format) {
+        return gdprExportService.export(currentUserService.getCurrentUser(principal), GdprExportService.parseFormat(format));
     }
 
     @DeleteMapping("/delete-account")
@@ -0,0 +1,70 @@
+package com.alvaro.psicoapp.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Checkpoint of a long-running background job, keyed by job name (e.g. "rescore:12").
+ * {@code cursor} is the last id fully processed, so a cancelled or crashed job resumes after it.
+ */
+@Entity
+@Table(name = "batch_jobs")
+public class BatchJobEntity {
+    public static final String RUNNING = "RUNNING";
+    /** Still running, asked to stop; the node running it sees this at its next checkpoint */
+    public static final String CANCELLING = "CANCELLING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String CANCELLED = "CANCELLED";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    @Column(name = "job_key", length = 100)
+    private String jobKey;
+
+    @Column(nullable = false, length = 20)
+    private String status;
+
+    @Column(name = "cursor_id", nullable = false)
+    private Long cursorId = 0L;
+
+    @Column(nullable = false)
+    private Long processed = 0L;
+
+    @Column(nullable = false)
+    private Long failed = 0L;
+
+    private Long total;
+
+    @Column(length = 1000)
+    private String message;
+
+    @Column(name = "started_at", nullable = false)
+    private Instant startedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @Column(name = "finished_at")
+    private Instant finishedAt;
+
+    public String getJobKey() { return jobKey; }
+    public void setJobKey(String jobKey) { this.jobKey = jobKey; }
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    public Long getCursorId() { return cursorId; }
+    public void setCursorId(Long cursorId) { this.cursorId = cursorId; }
+    public Long getProcessed() { return processed; }
+    public void setProcessed(Long processed) { this.processed = processed; }
+    public Long getFailed() { return failed; }
+    public void setFailed(Long failed) { this.failed = failed; }
+    public Long getTotal() { return total; }
+    public void setTotal(Long total) { this.total = total; }
+    public String getMessage() { return message; }
+    public void setMessage(String message) { this.message = message; }
+    public Instant getStartedAt() { return startedAt; }
+    public void setStartedAt(Instant startedAt) { this.startedAt = startedAt; }
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(Instant finishedAt) { this.finishedAt = finishedAt; }
+}
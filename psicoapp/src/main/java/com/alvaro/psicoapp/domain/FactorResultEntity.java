@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "factor_results")
+@Table(name = "factor_results", uniqueConstraints = {
+    @UniqueConstraint(name = "ux_factor_results_user_test_factor", columnNames = {"user_id", "test_id", "factor_id"})
+})
 public class FactorResultEntity {
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,55 @@
+package com.alvaro.psicoapp.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Persisted population distribution of one subfactor or factor (see ScoreHistogram).
+ */
+@Entity
+@Table(name = "score_norms", uniqueConstraints = {
+    @UniqueConstraint(name = "ux_score_norms_scale", columnNames = {"scale_type", "scale_id"})
+}, indexes = {
+    @Index(name = "idx_score_norms_test", columnList = "test_id")
+})
+public class ScoreNormEntity {
+    public static final String SUBFACTOR = "SUBFACTOR";
+    public static final String FACTOR = "FACTOR";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "test_id", nullable = false)
+    private Long testId;
+
+    @Column(name = "scale_type", nullable = false, length = 10)
+    private String scaleType;
+
+    @Column(name = "scale_id", nullable = false)
+    private Long scaleId;
+
+    @Column(name = "sample_size", nullable = false)
+    private Long sampleSize = 0L;
+
+    @Column(nullable = false)
+    private byte[] bins;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public Long getTestId() { return testId; }
+    public void setTestId(Long testId) { this.testId = testId; }
+    public String getScaleType() { return scaleType; }
+    public void setScaleType(String scaleType) { this.scaleType = scaleType; }
+    public Long getScaleId() { return scaleId; }
+    public void setScaleId(Long scaleId) { this.scaleId = scaleId; }
+    public Long getSampleSize() { return sampleSize; }
+    public void setSampleSize(Long sampleSize) { this.sampleSize = sampleSize; }
+    public byte[] getBins() { return bins; }
+    public void setBins(byte[] bins) { this.bins = bins; }
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -4,7 +4,9 @@ import jakarta.persistence.*;
 import java.time.Instant;
 
 @Entity
-@Table(name = "test_results")
+@Table(name = "test_results", uniqueConstraints = {
+    @UniqueConstraint(name = "ux_test_results_user_test_subfactor", columnNames = {"user_id", "test_id", "subfactor_id"})
+})
 public class TestResultEntity {
 	@Id
 	@GeneratedValue(strategy = GenerationType.IDENTITY)
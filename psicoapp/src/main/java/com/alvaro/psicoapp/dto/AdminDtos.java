@@ -162,4 +162,40 @@ public class AdminDtos {
     public static class RejectPsychologistRequest {
         public String reason;
     }
+
+    /**
+     * Progress of a bulk re-scoring job. cursorUserId is the checkpoint: every user up to it is done.
+     * status is RUNNING, CANCELLING, COMPLETED, CANCELLED, FAILED or INTERRUPTED (crashed while running).
+     */
+    public record RescoreStatus(Long testId, String status, long processed, long failed, Long total,
+                                Long cursorUserId, double usersPerSecond, Instant startedAt, Instant updatedAt,
+                                Instant finishedAt, String message) {}
+
+    /**
+     * Progress of the PII encryption / key rotation migration. processed counts users checked
+     * (rewritten or already current), failed those skipped because they changed mid-run;
+     * cursorUserId is the checkpoint. etaSeconds is null until the run has a rate.
+     */
+    public record PiiMigrationStatus(String status, int keyVersion, long processed, long failed, Long total,
+                                     Long cursorUserId, double usersPerSecond, Long etaSeconds, Instant startedAt,
+                                     Instant updatedAt, Instant finishedAt, String message) {}
+
+    /**
+     * Population distribution of one scale. Quantiles are percentages of the max score;
+     * histogram has 20 buckets of 5% each. normed is false while the sample is too small
+     * for population percentiles to be reported.
+     */
+    public record ScaleNormDto(String scaleType, Long scaleId, String code, String name, long sampleSize,
+                               boolean normed, double p10, double p25, double p50, double p75, double p90,
+                               long[] histogram) {}
+
+    /**
+     * A @Scheduled job and its last run. lane is critical, periodic or bulk; nextRunAt is when
+     * the scheduler is due to start it (null for fixed-rate/delay jobs before their first run);
+     * lastOutcome is success or failure, lastManual whether that run came from the admin API.
+     * cluster is SINGLE, EVERY_NODE or PARTITIONED (ClusterJob); the run fields are this node's.
+     */
+    public record ScheduledJobStatus(String name, String lane, String schedule, String cluster, boolean running,
+                                     Instant nextRunAt, Instant lastStartedAt, Instant lastFinishedAt,
+                                     Long lastDurationMs, String lastOutcome, String lastError, boolean lastManual) {}
 }
@@ -1,13 +1,16 @@
 package com.alvaro.psicoapp.dto;
 
 import java.util.List;
+import java.util.Map;
 
 public class TestImportDtos {
 
 	public record ParseResult(
 		String detectedTitle,
 		int questionCount,
-		List<ParsedQuestion> questions
+		List<ParsedQuestion> questions,
+		/** Duración de cada fase en ms */
+		Map<String, Long> timingsMs
 	) {}
 
 	public record ParsedQuestion(
@@ -31,10 +34,22 @@ public class TestImportDtos {
 		public List<ParsedQuestion> questions;
 	}
 
+	/** En modo dryRun nada se persiste y testId es null */
 	public record ImportResponse(
 		Long testId,
 		String code,
 		int questionsCreated,
-		int answersCreated
+		int answersCreated,
+		boolean dryRun,
+		/** Duración de cada fase en ms */
+		Map<String, Long> timingsMs
+	) {}
+
+	/** Resultado de un test dentro de una importación múltiple: result o error */
+	public record BatchImportResult(
+		String code,
+		int status,
+		ImportResponse result,
+		String error
 	) {}
 }
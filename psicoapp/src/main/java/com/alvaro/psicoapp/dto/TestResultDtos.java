@@ -5,10 +5,11 @@ import java.util.List;
 public final class TestResultDtos {
     private TestResultDtos() {}
 
+    // populationPercentile: position among everyone who took the scale (0-100), null until enough results exist
     public record SubfactorResultDto(String code, String name, double score, double maxScore, double percentage,
-                                    String minLabel, String maxLabel, String cutoffs) {}
+                                    String minLabel, String maxLabel, String cutoffs, Double populationPercentile) {}
     public record FactorResultDto(String code, String name, double score, double maxScore, double percentage,
-                                 String minLabel, String maxLabel) {}
+                                 String minLabel, String maxLabel, Double populationPercentile) {}
     public record TestResultItemDto(Long testId, String testTitle, List<SubfactorResultDto> subfactors, List<FactorResultDto> factors) {}
     public record MyResultsResponse(List<TestResultItemDto> results) {}
 
@@ -16,10 +17,10 @@ public final class TestResultDtos {
 
     public record SubfactorResultDetailDto(Long subfactorId, String subfactorCode, String subfactorName,
                                           double score, double maxScore, double percentage,
-                                          String minLabel, String maxLabel, String cutoffs) {}
+                                          String minLabel, String maxLabel, String cutoffs, Double populationPercentile) {}
     public record FactorResultDetailDto(Long factorId, String factorCode, String factorName,
                                        double score, double maxScore, double percentage,
-                                       String minLabel, String maxLabel) {}
+                                       String minLabel, String maxLabel, Double populationPercentile) {}
     public record UserTestResultsResponse(Long userId, String userEmail, Long testId, String testTitle,
                                          List<SubfactorResultDetailDto> subfactors, List<FactorResultDetailDto> factors) {}
 }
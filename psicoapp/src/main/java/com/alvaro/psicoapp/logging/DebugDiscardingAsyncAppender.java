@@ -0,0 +1,18 @@
+package com.alvaro.psicoapp.logging;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * Async appender that, once the queue passes the discarding threshold, drops only DEBUG and
+ * TRACE events. The stock AsyncAppender also drops INFO, which would lose AUDIT lines;
+ * INFO and above wait for room instead (neverBlock=false).
+ */
+public class DebugDiscardingAsyncAppender extends AsyncAppender {
+
+    @Override
+    protected boolean isDiscardable(ILoggingEvent event) {
+        return event.getLevel().toInt() <= Level.DEBUG_INT;
+    }
+}
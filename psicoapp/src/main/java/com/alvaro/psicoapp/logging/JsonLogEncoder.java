@@ -0,0 +1,130 @@
+package com.alvaro.psicoapp.logging;
+
+import ch.qos.logback.classic.pattern.TargetLengthBasedClassNameAbbreviator;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import ch.qos.logback.core.encoder.EncoderBase;
+import ch.qos.logback.core.util.CachingDateFormatter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.Map;
+
+/**
+ * One JSON object per line: timestamp, level, logger, thread, message, MDC entries and
+ * exception. Writes straight into a reused per-thread buffer instead of going through a
+ * pattern layout, escapes as it copies, and redacts email addresses from message and
+ * exception text (see {@link PiiRedactor}) unless {@code redact} is turned off.
+ *
+ * The per-thread buffers pay off because, in logback-spring.xml, encoding runs on each async
+ * appender's single worker thread, a platform thread that keeps its buffers for the app's
+ * lifetime. Attached directly to a synchronous appender, the encoder would run on the request
+ * threads instead, and on virtual threads every request would allocate two fresh buffers (a few
+ * hundred bytes each, dropped with the thread): no worse than not caching, but no gain either.
+ */
+public class JsonLogEncoder extends EncoderBase<ILoggingEvent> {
+
+    private static final byte[] EMPTY = new byte[0];
+    private static final int MAX_RETAINED_BUFFER = 16 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(512));
+    private final ThreadLocal<StringBuilder> redactBuffers = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private final TargetLengthBasedClassNameAbbreviator abbreviator = new TargetLengthBasedClassNameAbbreviator(36);
+    private CachingDateFormatter dateFormatter;
+    private boolean redact = true;
+
+    public void setRedact(boolean redact) {
+        this.redact = redact;
+    }
+
+    @Override
+    public void start() {
+        dateFormatter = new CachingDateFormatter("yyyy-MM-dd'T'HH:mm:ss.SSSZ", ZoneId.systemDefault());
+        super.start();
+    }
+
+    @Override
+    public byte[] headerBytes() {
+        return EMPTY;
+    }
+
+    @Override
+    public byte[] footerBytes() {
+        return EMPTY;
+    }
+
+    @Override
+    public byte[] encode(ILoggingEvent event) {
+        StringBuilder sb = buffers.get();
+        sb.setLength(0);
+
+        sb.append("{\"timestamp\":\"").append(dateFormatter.format(event.getTimeStamp()));
+        sb.append("\",\"level\":\"").append(event.getLevel().levelStr);
+        sb.append("\",\"logger\":\"");
+        escape(abbreviator.abbreviate(event.getLoggerName()), sb);
+        sb.append("\",\"thread\":\"");
+        escape(event.getThreadName(), sb);
+        sb.append("\",\"message\":\"");
+        escapeRedacted(event.getFormattedMessage(), sb);
+        sb.append('"');
+
+        Map<String, String> mdc = event.getMDCPropertyMap();
+        if (mdc != null) {
+            for (Map.Entry<String, String> entry : mdc.entrySet()) {
+                sb.append(",\"");
+                escape(entry.getKey(), sb);
+                sb.append("\":\"");
+                escapeRedacted(entry.getValue(), sb);
+                sb.append('"');
+            }
+        }
+
+        IThrowableProxy throwable = event.getThrowableProxy();
+        if (throwable != null) {
+            sb.append(",\"exception\":\"");
+            escapeRedacted(ThrowableProxyUtil.asString(throwable), sb);
+            sb.append('"');
+        }
+        sb.append("}\n");
+
+        byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+        // Don't let one huge stack trace pin a large buffer on the appender thread forever
+        if (sb.capacity() > MAX_RETAINED_BUFFER) buffers.remove();
+        return bytes;
+    }
+
+    private void escapeRedacted(String value, StringBuilder sb) {
+        if (value == null) return;
+        if (!redact || value.indexOf('@') < 0) {
+            escape(value, sb);
+            return;
+        }
+        StringBuilder redacted = redactBuffers.get();
+        redacted.setLength(0);
+        PiiRedactor.appendRedacted(value, redacted);
+        escape(redacted, sb);
+    }
+
+    static void escape(CharSequence value, StringBuilder sb) {
+        if (value == null) return;
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+    }
+}
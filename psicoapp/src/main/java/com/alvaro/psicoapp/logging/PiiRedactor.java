@@ -0,0 +1,95 @@
+package com.alvaro.psicoapp.logging;
+
+/**
+ * RGPD-9: Redacts email addresses from log text.
+ *
+ * Hand-written scanner equivalent to the old logback pattern
+ * {@code [a-zA-Z0-9._%+\-]+@[a-zA-Z0-9.\-]+\.[a-zA-Z]{2,}} so redaction costs one
+ * {@code indexOf('@')} for the common message without any '@', and a single pass with
+ * table lookups otherwise. No regex engine, no allocation when nothing matches.
+ */
+public final class PiiRedactor {
+
+    public static final String EMAIL_REPLACEMENT = "[REDACTED_EMAIL]";
+
+    private static final boolean[] LOCAL_CHARS = new boolean[128];
+    private static final boolean[] DOMAIN_CHARS = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            LOCAL_CHARS[c] = DOMAIN_CHARS[c] = true;
+            LOCAL_CHARS[Character.toUpperCase(c)] = DOMAIN_CHARS[Character.toUpperCase(c)] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) LOCAL_CHARS[c] = DOMAIN_CHARS[c] = true;
+        for (char c : "._%+-".toCharArray()) LOCAL_CHARS[c] = true;
+        for (char c : ".-".toCharArray()) DOMAIN_CHARS[c] = true;
+    }
+
+    private PiiRedactor() {}
+
+    /**
+     * @return {@code text} itself when it contains no email address
+     */
+    public static String redact(String text) {
+        if (text == null || text.indexOf('@') < 0) return text;
+        StringBuilder out = new StringBuilder(text.length());
+        return appendRedacted(text, out) ? out.toString() : text;
+    }
+
+    /**
+     * Appends {@code text} to {@code out} with every email address replaced.
+     *
+     * @return true if anything was redacted
+     */
+    public static boolean appendRedacted(String text, StringBuilder out) {
+        int copied = 0;
+        int at = text.indexOf('@');
+        boolean redacted = false;
+        while (at >= 0) {
+            int start = at;
+            while (start > copied && isLocal(text.charAt(start - 1))) start--;
+            int end = start < at ? emailEnd(text, at) : -1;
+            if (end < 0) {
+                at = text.indexOf('@', at + 1);
+                continue;
+            }
+            out.append(text, copied, start).append(EMAIL_REPLACEMENT);
+            copied = end;
+            redacted = true;
+            at = text.indexOf('@', end);
+        }
+        out.append(text, copied, text.length());
+        return redacted;
+    }
+
+    /**
+     * Mirrors the greedy regex: take the whole run of domain characters after '@', then
+     * back off to the last '.' that is followed by at least two letters.
+     *
+     * @return index just past the email, or -1 if the domain part doesn't match
+     */
+    private static int emailEnd(String text, int at) {
+        int domainStart = at + 1;
+        int domainEnd = domainStart;
+        while (domainEnd < text.length() && isDomain(text.charAt(domainEnd))) domainEnd++;
+        for (int dot = domainEnd - 1; dot > domainStart; dot--) {
+            if (text.charAt(dot) != '.') continue;
+            int tldEnd = dot + 1;
+            while (tldEnd < domainEnd && isLetter(text.charAt(tldEnd))) tldEnd++;
+            if (tldEnd - dot - 1 >= 2) return tldEnd;
+        }
+        return -1;
+    }
+
+    private static boolean isLocal(char c) {
+        return c < 128 && LOCAL_CHARS[c];
+    }
+
+    private static boolean isDomain(char c) {
+        return c < 128 && DOMAIN_CHARS[c];
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
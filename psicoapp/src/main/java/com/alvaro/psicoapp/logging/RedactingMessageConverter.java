@@ -0,0 +1,17 @@
+package com.alvaro.psicoapp.logging;
+
+import ch.qos.logback.classic.pattern.ClassicConverter;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+
+/**
+ * {@code %redactedMsg}: the formatted message with email addresses removed. Replaces
+ * {@code %replace(%msg){regex}}, which recompiles nothing but still runs the regex engine
+ * over every message.
+ */
+public class RedactingMessageConverter extends ClassicConverter {
+
+    @Override
+    public String convert(ILoggingEvent event) {
+        return PiiRedactor.redact(event.getFormattedMessage());
+    }
+}
@@ -0,0 +1,99 @@
+package com.alvaro.psicoapp.monitoring;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Wraps the connection pool so every statement executed through it, by Hibernate or by
+ * JdbcTemplate, is counted and timed into the current {@link SqlStats} scope. A batch counts
+ * as one statement, since it is one round trip.
+ *
+ * Connections and statements are JDK proxies over the pool's own objects; unwrap() reaches
+ * the pool (Hikari metrics keep working) and the driver's objects as before. With no scope
+ * open on the thread, calls go straight through without timing.
+ *
+ * close() closes the pool, so the container's inferred destroy method still shuts it down.
+ */
+public class InstrumentedDataSource extends DelegatingDataSource implements AutoCloseable {
+
+    public InstrumentedDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (getTargetDataSource() instanceof AutoCloseable pool) pool.close();
+    }
+
+    private static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object proxy, Object target, Method method, Object[] args) throws Throwable {
+        // Identity of the proxy, not of the object behind it
+        if (method.getName().equals("equals") && method.getParameterCount() == 1) return proxy == args[0];
+        if (method.getName().equals("hashCode") && method.getParameterCount() == 0) return System.identityHashCode(proxy);
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private record ConnectionHandler(Connection target) implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = InstrumentedDataSource.invoke(proxy, target, method, args);
+            String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+            return switch (method.getName()) {
+                case "prepareStatement" -> statement(PreparedStatement.class, (Statement) result, sql);
+                case "prepareCall" -> statement(CallableStatement.class, (Statement) result, sql);
+                case "createStatement" -> statement(Statement.class, (Statement) result, null);
+                default -> result;
+            };
+        }
+
+        private static Object statement(Class<?> type, Statement statement, String sql) {
+            return Proxy.newProxyInstance(InstrumentedDataSource.class.getClassLoader(),
+                    new Class<?>[]{type}, new StatementHandler(statement, sql));
+        }
+    }
+
+    /** sql is known for prepared statements; plain statements pass it to execute*(sql) */
+    private record StatementHandler(Statement target, String sql) implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().startsWith("execute") || !SqlStats.active()) {
+                return InstrumentedDataSource.invoke(proxy, target, method, args);
+            }
+            long start = System.nanoTime();
+            try {
+                return InstrumentedDataSource.invoke(proxy, target, method, args);
+            } finally {
+                String text = sql != null ? sql : args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+                SqlStats.record(text, System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.alvaro.psicoapp.monitoring;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Opens a {@link SqlStats} scope around every @Scheduled method run; the job tag is
+ * SimpleClassName.method.
+ */
+@Aspect
+@Component
+public class ScheduledSqlAspect {
+    private final SqlMetrics sqlMetrics;
+
+    public ScheduledSqlAspect(SqlMetrics sqlMetrics) {
+        this.sqlMetrics = sqlMetrics;
+    }
+
+    @Around("@annotation(org.springframework.scheduling.annotation.Scheduled)")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        String job = joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName();
+        long start = System.nanoTime();
+        SqlStats.Scope scope = SqlStats.begin();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            scope.close();
+            sqlMetrics.jobFinished(job, System.nanoTime() - start, scope.snapshot());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.alvaro.psicoapp.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the SQL totals of finished requests and scheduled jobs to Micrometer and logs the
+ * slow or chatty ones.
+ *
+ * Meters (actuator /metrics): http.server.requests.sql.statements and .sql.time, tagged with
+ * method and uri (the mapped pattern, as http.server.requests does); scheduled.jobs.sql.statements
+ * and .sql.time tagged with job.
+ */
+@Component
+public class SqlMetrics {
+    private static final Logger logger = LoggerFactory.getLogger(SqlMetrics.class);
+    private static final int MAX_LOGGED_SQL = 200;
+
+    private final MeterRegistry registry;
+    private final long slowRequestMs;
+    private final long slowJobMs;
+    private final int statementWarnThreshold;
+
+    public SqlMetrics(MeterRegistry registry,
+                      @Value("${app.sql.slow-request-ms:1000}") long slowRequestMs,
+                      @Value("${app.sql.slow-job-ms:30000}") long slowJobMs,
+                      @Value("${app.sql.statement-warn-threshold:50}") int statementWarnThreshold) {
+        this.registry = registry;
+        this.slowRequestMs = slowRequestMs;
+        this.slowJobMs = slowJobMs;
+        this.statementWarnThreshold = statementWarnThreshold;
+    }
+
+    public void requestFinished(String method, String uri, int status, long elapsedNanos, SqlStats.Snapshot sql) {
+        DistributionSummary.builder("http.server.requests.sql.statements")
+                .description("SQL statements per HTTP request").baseUnit("statements")
+                .tags("method", method, "uri", uri)
+                .register(registry).record(sql.statements());
+        Timer.builder("http.server.requests.sql.time")
+                .description("Time spent in SQL per HTTP request")
+                .tags("method", method, "uri", uri)
+                .register(registry).record(sql.nanos(), TimeUnit.NANOSECONDS);
+
+        long elapsedMs = elapsedNanos / 1_000_000;
+        if (elapsedMs >= slowRequestMs || sql.statements() >= statementWarnThreshold) {
+            logger.warn("Slow request {} {} -> {}: {} ms, {} SQL statements in {} ms{}",
+                    method, uri, status, elapsedMs, sql.statements(), sql.millis(), mostRepeated(sql));
+        }
+    }
+
+    public void jobFinished(String job, long elapsedNanos, SqlStats.Snapshot sql) {
+        DistributionSummary.builder("scheduled.jobs.sql.statements")
+                .description("SQL statements per scheduled job run").baseUnit("statements")
+                .tags("job", job)
+                .register(registry).record(sql.statements());
+        Timer.builder("scheduled.jobs.sql.time")
+                .description("Time spent in SQL per scheduled job run")
+                .tags("job", job)
+                .register(registry).record(sql.nanos(), TimeUnit.NANOSECONDS);
+
+        long elapsedMs = elapsedNanos / 1_000_000;
+        if (elapsedMs >= slowJobMs) {
+            logger.warn("Slow scheduled job {}: {} ms, {} SQL statements in {} ms{}",
+                    job, elapsedMs, sql.statements(), sql.millis(), mostRepeated(sql));
+        }
+    }
+
+    /** The statement run most often, when it repeats: a likely N+1 */
+    static String mostRepeated(SqlStats.Snapshot sql) {
+        if (sql.mostRepeatedCount() < 2) return "";
+        String text = sql.mostRepeatedSql().replaceAll("\\s+", " ");
+        if (text.length() > MAX_LOGGED_SQL) text = text.substring(0, MAX_LOGGED_SQL) + "...";
+        return "; most repeated (" + sql.mostRepeatedCount() + "x): " + text;
+    }
+}
@@ -0,0 +1,43 @@
+package com.alvaro.psicoapp.monitoring;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+/**
+ * Opens a {@link SqlStats} scope around each request, ahead of the security chain so the
+ * statements of authentication (user lookups, token checks) count too. Work a handler hands
+ * off to another thread (streamed exports) isn't included.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class SqlRequestFilter extends OncePerRequestFilter {
+    private final SqlMetrics sqlMetrics;
+
+    public SqlRequestFilter(SqlMetrics sqlMetrics) {
+        this.sqlMetrics = sqlMetrics;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        SqlStats.Scope scope = SqlStats.begin();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            scope.close();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            sqlMetrics.requestFinished(request.getMethod(), pattern != null ? pattern.toString() : "UNKNOWN",
+                    response.getStatus(), System.nanoTime() - start, scope.snapshot());
+        }
+    }
+}
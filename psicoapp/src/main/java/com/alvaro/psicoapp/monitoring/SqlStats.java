@@ -0,0 +1,94 @@
+package com.alvaro.psicoapp.monitoring;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-thread count and time of the SQL statements run inside a unit of work (an HTTP request,
+ * a scheduled job, a test). {@link InstrumentedDataSource} records into the innermost open
+ * scope; closing a nested scope adds its totals to the enclosing one, so a test measuring a
+ * MockMvc call sees the statements of the request scope opened inside it.
+ *
+ * Statements are also counted per SQL text: the same statement run dozens of times in one
+ * request is the usual signature of an N+1.
+ */
+public final class SqlStats {
+    /** Distinct SQL texts tracked per scope; anything past this is counted but not itemised */
+    private static final int MAX_DISTINCT_SQL = 256;
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    public record Snapshot(int statements, long nanos, String mostRepeatedSql, int mostRepeatedCount) {
+        public long millis() {
+            return nanos / 1_000_000;
+        }
+    }
+
+    private SqlStats() {}
+
+    /** Opens a scope on this thread; close it in a finally block (or try-with-resources) */
+    public static Scope begin() {
+        Scope scope = new Scope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    static boolean active() {
+        return CURRENT.get() != null;
+    }
+
+    static void record(String sql, long nanos) {
+        Scope scope = CURRENT.get();
+        if (scope != null) scope.add(sql, 1, nanos);
+    }
+
+    public static final class Scope implements AutoCloseable {
+        private final Scope parent;
+        private final Map<String, Integer> bySql = new HashMap<>();
+        private int statements;
+        private long nanos;
+        private boolean closed;
+
+        private Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        private void add(String sql, int count, long time) {
+            statements += count;
+            nanos += time;
+            countSql(sql, count);
+        }
+
+        private void countSql(String sql, int count) {
+            if (sql != null && (bySql.size() < MAX_DISTINCT_SQL || bySql.containsKey(sql))) {
+                bySql.merge(sql, count, Integer::sum);
+            }
+        }
+
+        public Snapshot snapshot() {
+            String worst = null;
+            int worstCount = 0;
+            for (Map.Entry<String, Integer> entry : bySql.entrySet()) {
+                if (entry.getValue() > worstCount) {
+                    worst = entry.getKey();
+                    worstCount = entry.getValue();
+                }
+            }
+            return new Snapshot(statements, nanos, worst, worstCount);
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            if (parent == null) {
+                CURRENT.remove();
+                return;
+            }
+            CURRENT.set(parent);
+            parent.statements += statements;
+            parent.nanos += nanos;
+            bySql.forEach(parent::countSql);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.alvaro.psicoapp.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Reports virtual threads that block while pinned to their carrier (inside synchronized, or a
+ * native frame) for longer than app.threads.pinning-threshold-ms. On Java 21 a pinned virtual
+ * thread holds one of the few carrier threads, so a handful of these under load stalls every
+ * request.
+ *
+ * Listens to JFR's jdk.VirtualThreadPinned event in-process. Each pinning site (first
+ * application frame of the stack) gets a jvm.threads.virtual.pinned timer tagged with it and
+ * one WARN with the application frames the first time it is seen.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+@ConditionalOnProperty(name = "app.threads.pinning-diagnostics", havingValue = "true", matchIfMissing = true)
+public class VirtualThreadPinningMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final String APP_PACKAGE = "com.alvaro.psicoapp.";
+    private static final int LOGGED_FRAMES = 8;
+
+    private final MeterRegistry registry;
+    private final long thresholdMs;
+    private final Set<String> reportedSites = ConcurrentHashMap.newKeySet();
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(MeterRegistry registry,
+                                       @Value("${app.threads.pinning-threshold-ms:20}") long thresholdMs) {
+        this.registry = registry;
+        this.thresholdMs = thresholdMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        stream = new RecordingStream();
+        stream.enable(EVENT).withThreshold(Duration.ofMillis(thresholdMs)).withStackTrace();
+        stream.onEvent(EVENT, this::pinned);
+        stream.startAsync();
+        logger.info("Reporting virtual threads pinned for more than {} ms", thresholdMs);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) stream.close();
+    }
+
+    private void pinned(RecordedEvent event) {
+        List<RecordedFrame> frames = event.getStackTrace() != null
+                ? event.getStackTrace().getFrames() : List.of();
+        String site = site(frames);
+        Timer.builder("jvm.threads.virtual.pinned")
+                .description("Virtual threads blocked while pinned to their carrier")
+                .tag("site", site)
+                .register(registry)
+                .record(event.getDuration());
+        if (reportedSites.add(site)) {
+            logger.warn("Virtual thread pinned for {} ms at {}:\n  {}", event.getDuration().toMillis(), site,
+                    frames.stream().filter(VirtualThreadPinningMonitor::isApplicationFrame).limit(LOGGED_FRAMES)
+                            .map(VirtualThreadPinningMonitor::describe).collect(Collectors.joining("\n  ")));
+        }
+    }
+
+    /** First application frame, or the top frame when the pinning is entirely in libraries */
+    private static String site(List<RecordedFrame> frames) {
+        return frames.stream().filter(VirtualThreadPinningMonitor::isApplicationFrame).findFirst()
+                .or(() -> frames.stream().findFirst())
+                .map(VirtualThreadPinningMonitor::describe)
+                .orElse("unknown");
+    }
+
+    private static boolean isApplicationFrame(RecordedFrame frame) {
+        return frame.isJavaFrame() && frame.getMethod().getType().getName().startsWith(APP_PACKAGE);
+    }
+
+    private static String describe(RecordedFrame frame) {
+        String type = frame.getMethod().getType().getName();
+        return type.substring(type.lastIndexOf('.') + 1) + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
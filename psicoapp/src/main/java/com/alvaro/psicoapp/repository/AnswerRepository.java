@@ -3,8 +3,14 @@ package com.alvaro.psicoapp.repository;
 import com.alvaro.psicoapp.domain.AnswerEntity;
 import com.alvaro.psicoapp.domain.QuestionEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import java.util.List;
 
 public interface AnswerRepository extends JpaRepository<AnswerEntity, Long> {
 	List<AnswerEntity> findByQuestionOrderByPositionAsc(QuestionEntity question);
+
+	/** Rows of {questionId, max answer value} for every question of the test that has answers */
+	@Query("SELECT a.question.id, MAX(COALESCE(a.value, 0)) FROM AnswerEntity a WHERE a.question.test.id = :testId GROUP BY a.question.id")
+	List<Object[]> findMaxValueByTestId(@Param("testId") Long testId);
 }
@@ -86,6 +86,13 @@ public interface AppointmentRepository extends JpaRepository<AppointmentEntity,
 
     List<AppointmentEntity> findByRecurrenceGroupId(String recurrenceGroupId);
 
+    /** [id, startTime, endTime] of every non-cancelled appointment overlapping the window, without loading entities. */
+    @Query("SELECT a.id, a.startTime, a.endTime FROM AppointmentEntity a WHERE a.psychologist.id = :psychologistId " +
+           "AND a.startTime < :to AND a.endTime > :from AND a.status <> 'CANCELLED'")
+    List<Object[]> findActiveIntervals(@Param("psychologistId") Long psychologistId,
+                                       @Param("from") Instant from,
+                                       @Param("to") Instant to);
+
     @Query("SELECT a FROM AppointmentEntity a WHERE a.psychologist.id = :psychologistId AND a.user.id = :userId " +
            "AND a.user IS NOT NULL AND (a.status = 'CONFIRMED' OR a.status = 'BOOKED' OR a.status = 'CANCELLED') " +
            "ORDER BY a.startTime DESC")
@@ -119,4 +126,9 @@ public interface AppointmentRepository extends JpaRepository<AppointmentEntity,
     @Modifying
     @Query("UPDATE AppointmentEntity a SET a.stripeSessionId = null WHERE a.stripeSessionId IS NOT NULL AND a.paymentStatus = 'PAID' AND a.createdAt < :cutoff")
     int clearOldStripeSessionIds(@Param("cutoff") Instant cutoff);
+
+    /** GDPR export page: {id, startTime, endTime, status, paymentStatus} */
+    @Query("SELECT a.id, a.startTime, a.endTime, a.status, a.paymentStatus FROM AppointmentEntity a " +
+           "WHERE a.user.id = :userId AND a.id > :afterId ORDER BY a.id")
+    List<Object[]> findExportPage(@Param("userId") Long userId, @Param("afterId") Long afterId, Pageable pageable);
 }
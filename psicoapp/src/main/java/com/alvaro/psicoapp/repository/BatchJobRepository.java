@@ -0,0 +1,19 @@
+package com.alvaro.psicoapp.repository;
+
+import com.alvaro.psicoapp.domain.BatchJobEntity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface BatchJobRepository extends JpaRepository<BatchJobEntity, String> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM BatchJobEntity j WHERE j.jobKey = :jobKey")
+    Optional<BatchJobEntity> findByIdForUpdate(@Param("jobKey") String jobKey);
+}
@@ -1,8 +1,11 @@
 package com.alvaro.psicoapp.repository;
 
 import com.alvaro.psicoapp.domain.ChatMessageEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -16,4 +19,9 @@ public interface ChatMessageRepository extends JpaRepository<ChatMessageEntity,
 
     @EntityGraph(attributePaths = {"psychologist", "user"})
     List<ChatMessageEntity> findByUser_IdOrderByCreatedAtAsc(Long userId);
+
+    /** GDPR export page: {id, psychologistId, sender, createdAt, content, attachmentPath} */
+    @Query("SELECT m.id, m.psychologist.id, m.sender, m.createdAt, m.content, m.attachmentPath FROM ChatMessageEntity m " +
+           "WHERE m.user.id = :userId AND m.id > :afterId ORDER BY m.id")
+    List<Object[]> findExportPage(@Param("userId") Long userId, @Param("afterId") Long afterId, Pageable pageable);
 }
@@ -1,11 +1,12 @@
 package com.alvaro.psicoapp.repository;
 
 import com.alvaro.psicoapp.domain.DailyMoodEntryEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import org.springframework.data.domain.Pageable;
-
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
@@ -17,4 +18,9 @@ public interface DailyMoodEntryRepository extends JpaRepository<DailyMoodEntryEn
     List<DailyMoodEntryEntity> findByUser_IdOrderByEntryDateDesc(Long userId, Pageable pageable);
     List<DailyMoodEntryEntity> findByUser_IdAndEntryDateBetween(Long userId, LocalDate start, LocalDate end);
     long deleteByUser_Id(Long userId);
+
+    /** GDPR export page: {id, entryDate, moodRating, emotions, activities, companions, location, notes} */
+    @Query("SELECT m.id, m.entryDate, m.moodRating, m.emotions, m.activities, m.companions, m.location, m.notes " +
+           "FROM DailyMoodEntryEntity m WHERE m.user.id = :userId AND m.id > :afterId ORDER BY m.id")
+    List<Object[]> findExportPage(@Param("userId") Long userId, @Param("afterId") Long afterId, Pageable pageable);
 }
@@ -1,7 +1,10 @@
 package com.alvaro.psicoapp.repository;
 
 import com.alvaro.psicoapp.domain.EvaluationTestResultEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
@@ -15,4 +18,9 @@ public interface EvaluationTestResultRepository extends JpaRepository<Evaluation
     List<EvaluationTestResultEntity> findByUser_IdAndCompletedAtBetween(Long userId, Instant start, Instant end);
     Optional<EvaluationTestResultEntity> findByUser_IdAndTest_IdAndSessionId(Long userId, Long testId, String sessionId);
     long deleteByUser_Id(Long userId);
+
+    /** GDPR export page: {id, testTitle, score, level, completedAt} */
+    @Query("SELECT r.id, t.title, r.score, r.level, r.completedAt FROM EvaluationTestResultEntity r LEFT JOIN r.test t " +
+           "WHERE r.user.id = :userId AND r.id > :afterId ORDER BY r.id")
+    List<Object[]> findExportPage(@Param("userId") Long userId, @Param("afterId") Long afterId, Pageable pageable);
 }
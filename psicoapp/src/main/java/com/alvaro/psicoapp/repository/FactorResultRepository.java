@@ -5,6 +5,8 @@ import com.alvaro.psicoapp.domain.UserEntity;
 import com.alvaro.psicoapp.domain.TestEntity;
 import com.alvaro.psicoapp.domain.FactorEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import java.util.List;
 
 public interface FactorResultRepository extends JpaRepository<FactorResultEntity, Long> {
@@ -13,4 +15,9 @@ public interface FactorResultRepository extends JpaRepository<FactorResultEntity
 	List<FactorResultEntity> findByTest(TestEntity test);
 	List<FactorResultEntity> findByFactor(FactorEntity factor);
     long deleteByUser_Id(Long userId);
+
+	/** Rows of {factorName, factorCode, score, maxScore, percentage} for one user and test */
+	@Query("SELECT f.name, f.code, r.score, r.maxScore, r.percentage FROM FactorResultEntity r JOIN r.factor f " +
+	       "WHERE r.user.id = :userId AND r.test.id = :testId ORDER BY f.id")
+	List<Object[]> findExportRows(@Param("userId") Long userId, @Param("testId") Long testId);
 }
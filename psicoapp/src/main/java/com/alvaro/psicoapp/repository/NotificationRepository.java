@@ -1,6 +1,7 @@
 package com.alvaro.psicoapp.repository;
 
 import com.alvaro.psicoapp.domain.NotificationEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -25,4 +26,9 @@ public interface NotificationRepository extends JpaRepository<NotificationEntity
     @Modifying
     @Query("DELETE FROM NotificationEntity n WHERE n.createdAt < :cutoff")
     int deleteByCreatedAtBefore(@Param("cutoff") Instant cutoff);
+
+    /** GDPR export page: {id, type, title, message, read, createdAt} */
+    @Query("SELECT n.id, n.type, n.title, n.message, n.read, n.createdAt FROM NotificationEntity n " +
+           "WHERE n.user.id = :userId AND n.id > :afterId ORDER BY n.id")
+    List<Object[]> findExportPage(@Param("userId") Long userId, @Param("afterId") Long afterId, Pageable pageable);
 }
@@ -4,9 +4,20 @@ import com.alvaro.psicoapp.domain.QuestionEntity;
 import com.alvaro.psicoapp.domain.SubfactorEntity;
 import com.alvaro.psicoapp.domain.TestEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import java.util.List;
 
 public interface QuestionRepository extends JpaRepository<QuestionEntity, Long> {
 	List<QuestionEntity> findByTestOrderByPositionAsc(TestEntity test);
 	List<QuestionEntity> findByTestAndSubfactor(TestEntity test, SubfactorEntity subfactor);
+
+	/**
+	 * Whole question tree of a test in one query: rows of {question (subfactor and factor fetched),
+	 * answer or null for questions without options}, by question and answer position.
+	 */
+	@Query("SELECT q, a FROM QuestionEntity q LEFT JOIN FETCH q.subfactor sf LEFT JOIN FETCH sf.factor " +
+	       "LEFT JOIN AnswerEntity a ON a.question = q " +
+	       "WHERE q.test.id = :testId ORDER BY q.position, q.id, a.position, a.id")
+	List<Object[]> findDefinitionRows(@Param("testId") Long testId);
 }
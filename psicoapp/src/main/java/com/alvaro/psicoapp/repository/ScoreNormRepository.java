@@ -0,0 +1,15 @@
+package com.alvaro.psicoapp.repository;
+
+import com.alvaro.psicoapp.domain.ScoreNormEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ScoreNormRepository extends JpaRepository<ScoreNormEntity, Long> {
+    Optional<ScoreNormEntity> findByScaleTypeAndScaleId(String scaleType, Long scaleId);
+
+    List<ScoreNormEntity> findByTestId(Long testId);
+}
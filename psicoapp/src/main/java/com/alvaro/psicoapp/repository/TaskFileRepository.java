@@ -14,4 +14,6 @@ public interface TaskFileRepository extends JpaRepository<TaskFileEntity, Long>
     long deleteByTask_User_Id(Long userId);
     long deleteByTask_Psychologist_Id(Long psychologistId);
     boolean existsByFilePath(String filePath);
+    boolean existsByFilePathAndTask_Psychologist_Id(String filePath, Long psychologistId);
+    boolean existsByFilePathAndTask_User_Id(String filePath, Long userId);
 }
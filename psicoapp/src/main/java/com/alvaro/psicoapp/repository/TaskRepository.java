@@ -1,7 +1,10 @@
 package com.alvaro.psicoapp.repository;
 
 import com.alvaro.psicoapp.domain.TaskEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -13,4 +16,9 @@ public interface TaskRepository extends JpaRepository<TaskEntity, Long> {
     List<TaskEntity> findByUser_IdAndPsychologist_IdOrderByCreatedAtDesc(Long userId, Long psychologistId);
     long deleteByUser_Id(Long userId);
     long deleteByPsychologist_Id(Long psychologistId);
+
+    /** GDPR export page: {id, title, description, completedAt, createdAt} */
+    @Query("SELECT t.id, t.title, t.description, t.completedAt, t.createdAt FROM TaskEntity t " +
+           "WHERE t.user.id = :userId AND t.id > :afterId ORDER BY t.id")
+    List<Object[]> findExportPage(@Param("userId") Long userId, @Param("afterId") Long afterId, Pageable pageable);
 }
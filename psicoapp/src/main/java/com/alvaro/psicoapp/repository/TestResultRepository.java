@@ -4,7 +4,10 @@ import com.alvaro.psicoapp.domain.TestResultEntity;
 import com.alvaro.psicoapp.domain.UserEntity;
 import com.alvaro.psicoapp.domain.TestEntity;
 import com.alvaro.psicoapp.domain.SubfactorEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import java.util.List;
 
 public interface TestResultRepository extends JpaRepository<TestResultEntity, Long> {
@@ -13,4 +16,18 @@ public interface TestResultRepository extends JpaRepository<TestResultEntity, Lo
 	List<TestResultEntity> findByTest(TestEntity test);
 	List<TestResultEntity> findBySubfactor(SubfactorEntity subfactor);
     long deleteByUser_Id(Long userId);
+
+	/**
+	 * Keyset page of a user's subfactor results for tests in [fromTestId, toTestId], ordered by
+	 * (test, subfactor) as the unique index: rows of {testId, testTitle, subfactorId, subfactorName,
+	 * subfactorCode, score, maxScore, percentage}. Start with afterTestId = fromTestId, afterSubfactorId = 0.
+	 */
+	@Query("SELECT t.id, t.title, sf.id, sf.name, sf.code, r.score, r.maxScore, r.percentage " +
+	       "FROM TestResultEntity r JOIN r.test t JOIN r.subfactor sf " +
+	       "WHERE r.user.id = :userId AND t.id BETWEEN :fromTestId AND :toTestId " +
+	       "AND (t.id > :afterTestId OR (t.id = :afterTestId AND sf.id > :afterSubfactorId)) " +
+	       "ORDER BY t.id, sf.id")
+	List<Object[]> findExportPage(@Param("userId") Long userId, @Param("fromTestId") Long fromTestId,
+								  @Param("toTestId") Long toTestId, @Param("afterTestId") Long afterTestId,
+								  @Param("afterSubfactorId") Long afterSubfactorId, Pageable page);
 }
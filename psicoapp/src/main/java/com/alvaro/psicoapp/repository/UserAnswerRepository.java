@@ -4,6 +4,7 @@ import com.alvaro.psicoapp.domain.UserAnswerEntity;
 import com.alvaro.psicoapp.domain.UserEntity;
 import com.alvaro.psicoapp.domain.QuestionEntity;
 import com.alvaro.psicoapp.domain.TemporarySessionEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -20,6 +21,29 @@ public interface UserAnswerRepository extends JpaRepository<UserAnswerEntity, Lo
     @Query("SELECT ua FROM UserAnswerEntity ua WHERE ua.question.id IN :questionIds")
     List<UserAnswerEntity> findByQuestionIdIn(@Param("questionIds") Collection<Long> questionIds);
 
+    /** Rows of {questionId, answer value, numericValue} for one user's answers to one test, oldest first */
+    @Query("SELECT ua.question.id, a.value, ua.numericValue FROM UserAnswerEntity ua LEFT JOIN ua.answer a " +
+           "WHERE ua.user.id = :userId AND ua.question.test.id = :testId ORDER BY ua.id")
+    List<Object[]> findScoringRows(@Param("userId") Long userId, @Param("testId") Long testId);
+
+    /** Rows of {questionId, answer value, numericValue, userId} for several users, grouped by user, oldest first */
+    @Query("SELECT ua.question.id, a.value, ua.numericValue, ua.user.id FROM UserAnswerEntity ua LEFT JOIN ua.answer a " +
+           "WHERE ua.user.id IN :userIds AND ua.question.test.id = :testId ORDER BY ua.user.id, ua.id")
+    List<Object[]> findScoringRowsForUsers(@Param("userIds") Collection<Long> userIds, @Param("testId") Long testId);
+
+    /** Keyset page of the users who answered a test, by ascending id */
+    @Query("SELECT DISTINCT ua.user.id FROM UserAnswerEntity ua " +
+           "WHERE ua.question.test.id = :testId AND ua.user.id > :afterUserId ORDER BY ua.user.id")
+    List<Long> findAnsweringUserIdsAfter(@Param("testId") Long testId, @Param("afterUserId") Long afterUserId, Pageable page);
+
+    @Query("SELECT COUNT(DISTINCT ua.user.id) FROM UserAnswerEntity ua WHERE ua.question.test.id = :testId")
+    long countAnsweringUsers(@Param("testId") Long testId);
+
     @Query("SELECT ua FROM UserAnswerEntity ua WHERE ua.user.id IN :userIds")
     List<UserAnswerEntity> findByUserIdIn(@Param("userIds") Collection<Long> userIds);
+
+    /** GDPR export page: {id, questionText, answerText, numericValue, textValue} */
+    @Query("SELECT ua.id, q.text, a.text, ua.numericValue, ua.textValue FROM UserAnswerEntity ua " +
+           "LEFT JOIN ua.question q LEFT JOIN ua.answer a WHERE ua.user.id = :userId AND ua.id > :afterId ORDER BY ua.id")
+    List<Object[]> findExportPage(@Param("userId") Long userId, @Param("afterId") Long afterId, Pageable pageable);
 }
@@ -1,5 +1,6 @@
 package com.alvaro.psicoapp.repository;
 
+import com.alvaro.psicoapp.config.PiiDeterministicConverter;
 import com.alvaro.psicoapp.domain.UserEntity;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -7,12 +8,26 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.Optional;
 import java.util.List;
 
 public interface UserRepository extends JpaRepository<UserEntity, Long> {
-	Optional<UserEntity> findByEmail(String email);
-	boolean existsByEmail(String email);
+	/**
+	 * Matches the email in every form it may be stored as during a PII key rotation
+	 * (plaintext, or deterministic ciphertext under any configured key version).
+	 */
+	default Optional<UserEntity> findByEmail(String email) {
+		return findFirstByEmailInOrderByIdAsc(PiiDeterministicConverter.lookupValues(email));
+	}
+
+	/** Unique check over every stored form of the email; see {@link #findByEmail} */
+	default boolean existsByEmail(String email) {
+		return existsByEmailIn(PiiDeterministicConverter.lookupValues(email));
+	}
+
+	Optional<UserEntity> findFirstByEmailInOrderByIdAsc(Collection<String> emails);
+	boolean existsByEmailIn(Collection<String> emails);
     List<UserEntity> findByRole(String role);
     List<UserEntity> findByRoleAndCreatedAtBefore(String role, Instant cutoff);
 	Optional<UserEntity> findByVerificationToken(String token);
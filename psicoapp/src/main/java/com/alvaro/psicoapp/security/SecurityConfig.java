@@ -92,8 +92,10 @@ public class SecurityConfig {
 				.requestMatchers("/api/flow/**").authenticated()
 				.requestMatchers("/api/profile/**").authenticated()
 				.requestMatchers("/api/tasks/**").authenticated()
+				// Avatars are public: the clinic's public page shows them and <img> sends no token
 				.requestMatchers("/uploads/avatars/**").permitAll()
-				.requestMatchers("/uploads/**").authenticated()
+				// Task files and clinic documents only through /api/files, which checks ownership
+				.requestMatchers("/uploads/**").denyAll()
 				.requestMatchers("/api/files/**").authenticated()
 				.requestMatchers("/api/assigned-tests/**").authenticated()
 				.requestMatchers("/api/calendar/**").authenticated()
@@ -0,0 +1,127 @@
+package com.alvaro.psicoapp.security.filter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps how many requests run at once when Tomcat serves them on virtual threads
+ * (spring.threads.virtual.enabled). On platform threads Tomcat's 200-thread pool was the cap;
+ * on virtual threads every accepted connection runs, so a burst would pile up on Hikari's
+ * connections and fail there after connection-timeout, holding memory and sockets meanwhile.
+ *
+ * Permits are the Hikari pool size times app.threads.requests-per-connection (open-in-view is
+ * off, so a request holds a connection for only part of its time). Requests beyond that wait in
+ * a fair queue for up to app.threads.permit-timeout-ms, then get a 503 with Retry-After. Runs
+ * ahead of the security chain, whose token checks use the DB too. WebSocket/SockJS traffic and
+ * health checks bypass it. Async requests (StreamingResponseBody exports) keep their permit
+ * until the response completes, since they keep reading from the DB after the request thread
+ * has returned.
+ *
+ * Meters: http.server.requests.permits.available / .waiting, http.server.requests.shed.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+
+    private final Semaphore permits;
+    private final long permitTimeoutMs;
+    private final Counter shed;
+
+    public ConcurrencyLimitFilter(MeterRegistry registry,
+                                  @Value("${spring.datasource.hikari.maximum-pool-size:20}") int poolSize,
+                                  @Value("${app.threads.requests-per-connection:2}") int requestsPerConnection,
+                                  @Value("${app.threads.permit-timeout-ms:10000}") long permitTimeoutMs) {
+        int limit = Math.max(1, poolSize * requestsPerConnection);
+        this.permits = new Semaphore(limit, true);
+        this.permitTimeoutMs = permitTimeoutMs;
+        Gauge.builder("http.server.requests.permits.available", permits, Semaphore::availablePermits)
+                .description("Request permits free under the virtual-thread concurrency limit").register(registry);
+        Gauge.builder("http.server.requests.permits.waiting", permits, Semaphore::getQueueLength)
+                .description("Requests waiting for a permit").register(registry);
+        this.shed = Counter.builder("http.server.requests.shed")
+                .description("Requests rejected with 503 after waiting for a permit").register(registry);
+        logger.info("Virtual threads enabled: at most {} concurrent requests", limit);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        return path.startsWith("/ws") || path.startsWith("/actuator/health");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(permitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            shed.increment();
+            logger.warn("Request {} {} rejected: no permit within {} ms ({} waiting)",
+                    request.getMethod(), request.getRequestURI(), permitTimeoutMs, permits.getQueueLength());
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "5");
+            response.setContentType("application/json;charset=UTF-8");
+            response.getWriter().write("{\"error\":\"Servicio saturado. Por favor intenta de nuevo en unos segundos.\"}");
+            return;
+        }
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new PermitRelease());
+                async = true;
+            }
+        } finally {
+            if (!async) permits.release();
+        }
+    }
+
+    /** Releases an async request's permit once; onComplete also follows a timeout or error */
+    private final class PermitRelease implements AsyncListener {
+        @Override
+        public void onComplete(AsyncEvent event) {
+            permits.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // startAsync again during an async dispatch drops the listeners: stay registered
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
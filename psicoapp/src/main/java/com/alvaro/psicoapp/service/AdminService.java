@@ -4,6 +4,7 @@ import com.alvaro.psicoapp.domain.*;
 import com.alvaro.psicoapp.domain.RoleConstants;
 import com.alvaro.psicoapp.dto.AdminDtos;
 import com.alvaro.psicoapp.repository.*;
+import com.alvaro.psicoapp.util.FormulaEvaluator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.annotation.CacheEvict;
@@ -39,6 +40,7 @@ public class AdminService {
     private final TaskFileRepository taskFileRepository;
     private final NotificationService notificationService;
     private final EmailService emailService;
+    private final ScoringModelCache scoringModelCache;
 
     public AdminService(TestRepository testRepository, QuestionRepository questionRepository,
                         AnswerRepository answerRepository, UserRepository userRepository,
@@ -47,7 +49,8 @@ public class AdminService {
                         EvaluationTestRepository evaluationTestRepository, AppointmentRepository appointmentRepository,
                         PsychologistProfileRepository psychologistProfileRepository,
                         TaskFileRepository taskFileRepository,
-                        NotificationService notificationService, EmailService emailService) {
+                        NotificationService notificationService, EmailService emailService,
+                        ScoringModelCache scoringModelCache) {
         this.testRepository = testRepository;
         this.questionRepository = questionRepository;
         this.answerRepository = answerRepository;
@@ -62,6 +65,7 @@ public class AdminService {
         this.psychologistProfileRepository = psychologistProfileRepository;
         this.notificationService = notificationService;
         this.emailService = emailService;
+        this.scoringModelCache = scoringModelCache;
     }
 
     @Transactional(readOnly = true)
@@ -79,7 +83,8 @@ public class AdminService {
     @Caching(evict = {
         @CacheEvict(value = "testsByCategory", allEntries = true),
         @CacheEvict(value = "testsByTopic", allEntries = true),
-        @CacheEvict(value = "adminStats", allEntries = true)
+        @CacheEvict(value = "adminStats", allEntries = true),
+        @CacheEvict(value = "testDefinitions", allEntries = true)
     })
     @Transactional
     public TestEntity createTest(AdminDtos.TestCreate req) {
@@ -96,7 +101,8 @@ public class AdminService {
     @Caching(evict = {
         @CacheEvict(value = "testsByCategory", allEntries = true),
         @CacheEvict(value = "testsByTopic", allEntries = true),
-        @CacheEvict(value = "adminStats", allEntries = true)
+        @CacheEvict(value = "adminStats", allEntries = true),
+        @CacheEvict(value = "testDefinitions", allEntries = true)
     })
     @Transactional
     public Optional<TestEntity> updateTest(Long id, AdminDtos.TestUpdate req) {
@@ -107,6 +113,8 @@ public class AdminService {
             if (req.active != null) test.setActive(req.active);
             if (req.category != null) test.setCategory(req.category);
             if (req.topic != null) test.setTopic(req.topic);
+            // The category decides linear vs gaussian percentages
+            scoringModelCache.invalidate(id);
             return testRepository.save(test);
         });
     }
@@ -114,12 +122,14 @@ public class AdminService {
     @Caching(evict = {
         @CacheEvict(value = "testsByCategory", allEntries = true),
         @CacheEvict(value = "testsByTopic", allEntries = true),
-        @CacheEvict(value = "adminStats", allEntries = true)
+        @CacheEvict(value = "adminStats", allEntries = true),
+        @CacheEvict(value = "testDefinitions", allEntries = true)
     })
     @Transactional
     public boolean deleteTest(Long id) {
         if (testRepository.existsById(id)) {
             testRepository.deleteById(id);
+            scoringModelCache.invalidate(id);
             return true;
         }
         return false;
@@ -168,6 +178,7 @@ public class AdminService {
         return Optional.of(resp);
     }
 
+    @CacheEvict(value = "testDefinitions", allEntries = true)
     @Transactional
     public AdminDtos.FactorCreateResponse createFactor(AdminDtos.FactorCreate req) {
         TestEntity test = testRepository.findById(req.testId).orElseThrow();
@@ -181,7 +192,9 @@ public class AdminService {
         if (req.maxLabel != null) f.setMaxLabel(req.maxLabel);
         if (req.formula != null) f.setFormula(req.formula);
         if (req.calculated != null) f.setCalculated(req.calculated);
+        validateFormulas(test, f);
         FactorEntity saved = factorRepository.save(f);
+        scoringModelCache.invalidate(test.getId());
         return new AdminDtos.FactorCreateResponse(
                 saved.getId(), saved.getCode(), saved.getName(),
                 saved.getTest().getId(), saved.getPosition(),
@@ -190,6 +203,27 @@ public class AdminService {
         );
     }
 
+    /**
+     * Rejects a factor whose formula would close a dependency cycle (e.g. IG = INV + IV, INV = IG).
+     */
+    private void validateFormulas(TestEntity test, FactorEntity newFactor) {
+        if (newFactor.getFormula() == null || newFactor.getFormula().isBlank()) return;
+        List<FactorEntity> factors = new ArrayList<>(factorRepository.findByTestOrderByPositionAsc(test));
+        factors.add(newFactor);
+        List<String> subfactorCodes = subfactorRepository.findByTestOrderByPositionAsc(test).stream()
+                .map(SubfactorEntity::getCode).collect(Collectors.toList());
+        try {
+            FormulaEvaluator.compile(subfactorCodes,
+                    factors.stream().map(FactorEntity::getCode).collect(Collectors.toList()),
+                    factors.stream().map(FactorEntity::getFormula).collect(Collectors.toList()),
+                    new int[factors.size()][],
+                    true);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @CacheEvict(value = "testDefinitions", allEntries = true)
     @Transactional
     public Map<String, Object> createSubfactor(AdminDtos.SubfactorCreate req) {
         TestEntity test = testRepository.findById(req.testId).orElseThrow();
@@ -205,6 +239,7 @@ public class AdminService {
         if (req.minLabel != null) sf.setMinLabel(req.minLabel);
         if (req.maxLabel != null) sf.setMaxLabel(req.maxLabel);
         SubfactorEntity saved = subfactorRepository.save(sf);
+        scoringModelCache.invalidate(test.getId());
         Map<String, Object> result = new HashMap<>();
         result.put("id", saved.getId());
         result.put("code", saved.getCode());
@@ -217,6 +252,7 @@ public class AdminService {
         return result;
     }
 
+    @CacheEvict(value = "testDefinitions", allEntries = true)
     @Transactional
     public AdminDtos.InitDefaultStructureResponse initDefaultStructure(Long testId) {
         TestEntity test = testRepository.findById(testId).orElseThrow();
@@ -249,6 +285,7 @@ public class AdminService {
         saveSubfactor(test, f5, "O", "Aprehensión", "Autocrítica, auto-duda y tendencia a la culpabilidad.", 2, "Seguro de sí", "Aprensivo");
         saveSubfactor(test, f5, "L", "Vigilancia", "Cautela, expectativa de segundas intenciones.", 3, "Confiado", "Vigilante");
         saveSubfactor(test, f5, "Q4", "Tensión", "Activación interna, impaciencia e irritabilidad ante contratiempos.", 4, "Relajado", "Tenso");
+        scoringModelCache.invalidate(testId);
 
         return new AdminDtos.InitDefaultStructureResponse(true, "Estructura por defecto inicializada correctamente");
     }
@@ -261,6 +298,7 @@ public class AdminService {
                 .collect(Collectors.toList());
     }
 
+    @CacheEvict(value = "testDefinitions", allEntries = true)
     @Transactional
     public AdminDtos.QuestionCreateResponse createQuestion(AdminDtos.QuestionCreate req) {
         TestEntity t = testRepository.findById(req.testId).orElseThrow();
@@ -283,11 +321,13 @@ public class AdminService {
                 answerRepository.save(a);
             }
         }
+        scoringModelCache.invalidate(t.getId());
         return new AdminDtos.QuestionCreateResponse(
                 savedQuestion.getId(), savedQuestion.getText(), savedQuestion.getType(), savedQuestion.getPosition()
         );
     }
 
+    @CacheEvict(value = "testDefinitions", allEntries = true)
     @Transactional
     public Optional<QuestionEntity> updateQuestion(Long id, AdminDtos.QuestionUpdate req) {
         return questionRepository.findById(id).map(question -> {
@@ -299,10 +339,12 @@ public class AdminService {
             } else if (req.subfactorId == null && req.text == null && req.type == null && req.position == null) {
                 question.setSubfactor(null);
             }
+            scoringModelCache.invalidate(question.getTest().getId());
             return questionRepository.save(question);
         });
     }
 
+    @CacheEvict(value = "testDefinitions", allEntries = true)
     @Transactional
     public boolean setQuestionSubfactor(Long id, AdminDtos.SetSubfactorReq req) {
         return questionRepository.findById(id).map(question -> {
@@ -312,17 +354,19 @@ public class AdminService {
                 subfactorRepository.findById(req.subfactorId).ifPresent(question::setSubfactor);
             }
             questionRepository.save(question);
+            scoringModelCache.invalidate(question.getTest().getId());
             return true;
         }).orElse(false);
     }
 
+    @CacheEvict(value = "testDefinitions", allEntries = true)
     @Transactional
     public boolean deleteQuestion(Long id) {
-        if (questionRepository.existsById(id)) {
-            questionRepository.deleteById(id);
+        return questionRepository.findById(id).map(question -> {
+            questionRepository.delete(question);
+            scoringModelCache.invalidate(question.getTest().getId());
             return true;
-        }
-        return false;
+        }).orElse(false);
     }
 
     @Transactional(readOnly = true)
@@ -333,6 +377,7 @@ public class AdminService {
                 .collect(Collectors.toList());
     }
 
+    @CacheEvict(value = "testDefinitions", allEntries = true)
     @Transactional
     public AnswerEntity createAnswer(AdminDtos.AnswerCreate req) {
         QuestionEntity q = questionRepository.findById(req.questionId).orElseThrow();
@@ -341,26 +386,30 @@ public class AdminService {
         a.setText(req.text);
         a.setValue(req.value);
         a.setPosition(req.position);
+        scoringModelCache.invalidate(q.getTest().getId());
         return answerRepository.save(a);
     }
 
+    @CacheEvict(value = "testDefinitions", allEntries = true)
     @Transactional
     public Optional<AnswerEntity> updateAnswer(Long id, AdminDtos.AnswerUpdate req) {
         return answerRepository.findById(id).map(answer -> {
             if (req.text != null) answer.setText(req.text);
             if (req.value != null) answer.setValue(req.value);
             if (req.position != null) answer.setPosition(req.position);
+            scoringModelCache.invalidate(answer.getQuestion().getTest().getId());
             return answerRepository.save(answer);
         });
     }
 
+    @CacheEvict(value = "testDefinitions", allEntries = true)
     @Transactional
     public boolean deleteAnswer(Long id) {
-        if (answerRepository.existsById(id)) {
-            answerRepository.deleteById(id);
+        return answerRepository.findById(id).map(answer -> {
+            answerRepository.delete(answer);
+            scoringModelCache.invalidate(answer.getQuestion().getTest().getId());
             return true;
-        }
-        return false;
+        }).orElse(false);
     }
 
     @Transactional(readOnly = true)
@@ -690,7 +739,10 @@ public class AdminService {
 
         int deletedCount = 0;
         for (File diskFile : diskFiles) {
-            if (diskFile.isFile() && !knownFilenames.contains(diskFile.getName())) {
+            // Precompressed variants (name.gz, name.br) belong to their original file
+            String name = diskFile.getName();
+            String original = name.endsWith(".gz") || name.endsWith(".br") ? name.substring(0, name.length() - 3) : name;
+            if (diskFile.isFile() && !knownFilenames.contains(name) && !knownFilenames.contains(original)) {
                 if (diskFile.delete()) {
                     deletedCount++;
                     logger.info("Deleted orphaned task file: {}", diskFile.getName());
@@ -1,5 +1,6 @@
 package com.alvaro.psicoapp.service;
 
+import com.alvaro.psicoapp.config.SchedulingConfig;
 import com.alvaro.psicoapp.domain.AppointmentEntity;
 import com.alvaro.psicoapp.domain.AppointmentStatusEnum;
 import com.alvaro.psicoapp.domain.PaymentStatusEnum;
@@ -22,18 +23,23 @@ public class AppointmentSchedulerService {
     private final AppointmentRepository appointmentRepository;
     private final EmailService emailService;
     private final NotificationService notificationService;
+    private final JobLeaseService jobLeases;
 
     public AppointmentSchedulerService(AppointmentRepository appointmentRepository,
                                        EmailService emailService,
-                                       NotificationService notificationService) {
+                                       NotificationService notificationService,
+                                       JobLeaseService jobLeases) {
         this.appointmentRepository = appointmentRepository;
         this.emailService = emailService;
         this.notificationService = notificationService;
+        this.jobLeases = jobLeases;
     }
 
-    @Scheduled(fixedRate = 900000) // Every 15 minutes
+    @Scheduled(fixedRate = 900000, scheduler = SchedulingConfig.CRITICAL) // Every 15 minutes
     @Transactional
     public void expireUnpaidAppointments() {
+        // Nothing commits if another node has taken over the job's lease meanwhile
+        jobLeases.fence();
         logger.info("Iniciando verificación de pagos expirados...");
 
         Instant now = Instant.now();
@@ -92,7 +98,7 @@ public class AppointmentSchedulerService {
         logger.info("Proceso completado. {} citas liberadas por pago expirado", expiredCount);
     }
 
-    @Scheduled(cron = "0 0 * * * ?")
+    @Scheduled(cron = "0 0 * * * ?", scheduler = SchedulingConfig.CRITICAL)
     @Transactional(readOnly = true)
     public void sendAppointmentReminders() {
         logger.info("Iniciando envío de recordatorios de citas...");
@@ -151,7 +157,7 @@ public class AppointmentSchedulerService {
         logger.info("Proceso de recordatorios completado. {} recordatorios enviados", remindersSent);
     }
 
-    @Scheduled(cron = "0 0 * * * ?")
+    @Scheduled(cron = "0 0 * * * ?", scheduler = SchedulingConfig.CRITICAL)
     @Transactional(readOnly = true)
     public void sendPaymentReminders() {
         logger.info("Iniciando envío de recordatorios de pago...");
@@ -4,21 +4,49 @@ import com.alvaro.psicoapp.domain.AuditLogEntity;
 import com.alvaro.psicoapp.repository.AuditLogRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Set;
 
 @Service
 public class AuditService {
     private static final Logger auditLogger = LoggerFactory.getLogger("AUDIT");
 
-    private final AuditLogRepository auditLogRepository;
+    /**
+     * ASYNC: queued for the background {@link AuditWriter}; written only if the caller's
+     * transaction commits. SYNC: saved inside the caller's transaction, for actions whose
+     * audit row must be durable before the request returns.
+     */
+    public enum Durability { ASYNC, SYNC }
+
+    // GDPR actions: listed in app.audit.sync-actions (application.yml), proof of erasure,
+    // consent and export must commit with the action itself
+    public static final String ACCOUNT_ERASURE = "ACCOUNT_ERASURE";
+    public static final String CONSENT_SIGN = "CONSENT_SIGN";
+    public static final String HEALTH_CONSENT_WITHDRAWAL = "HEALTH_CONSENT_WITHDRAWAL";
+    public static final String DATA_EXPORT = "DATA_EXPORT";
+    public static final String DATA_EXPORT_FAILED = "DATA_EXPORT_FAILED";
 
-    public AuditService(AuditLogRepository auditLogRepository) {
+    private final AuditLogRepository auditLogRepository;
+    private final AuditWriter auditWriter;
+    private final Durability defaultDurability;
+    private final Set<String> syncActions;
+
+    public AuditService(AuditLogRepository auditLogRepository,
+                        AuditWriter auditWriter,
+                        @Value("${app.audit.mode:ASYNC}") Durability defaultDurability,
+                        @Value("${app.audit.sync-actions}") Set<String> syncActions) {
         this.auditLogRepository = auditLogRepository;
+        this.auditWriter = auditWriter;
+        this.defaultDurability = defaultDurability;
+        this.syncActions = syncActions;
     }
 
     // --- Persistent audit log methods ---
@@ -26,6 +54,21 @@ public class AuditService {
     public void persistAudit(String action, String entityType, Long entityId,
                              Long performedById, String performedByRole,
                              String performedByName, Long targetUserId, String details) {
+        Durability durability = syncActions.contains(action) ? Durability.SYNC : defaultDurability;
+        persistAudit(action, entityType, entityId, performedById, performedByRole,
+                performedByName, targetUserId, details, durability);
+    }
+
+    public void persistAudit(String action, String entityType, Long entityId,
+                             Long performedById, String performedByRole,
+                             String performedByName, Long targetUserId, String details,
+                             Durability durability) {
+        if (durability == Durability.ASYNC) {
+            AuditWriter.Event event = new AuditWriter.Event(action, entityType, entityId, performedById,
+                    performedByRole, performedByName, targetUserId, details, Instant.now());
+            submitAfterCommit(event);
+            return;
+        }
         try {
             AuditLogEntity log = new AuditLogEntity();
             log.setAction(action);
@@ -43,6 +86,20 @@ public class AuditService {
         }
     }
 
+    private void submitAfterCommit(AuditWriter.Event event) {
+        // Same semantics as the inline save: a rolled back action leaves no audit row
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            auditWriter.submit(event);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                auditWriter.submit(event);
+            }
+        });
+    }
+
     public Page<AuditLogEntity> getAuditLogs(Instant from, Instant to, Pageable pageable) {
         return auditLogRepository.findByCreatedAtBetweenOrderByCreatedAtDesc(from, to, pageable);
     }
@@ -0,0 +1,359 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.util.BoundedRingBuffer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Background writer for the persistent audit log.
+ *
+ * Events go into a bounded lock-free ring buffer and a single writer thread flushes them to
+ * audit_logs with JDBC batch inserts once {@code batch-size} events are queued or
+ * {@code flush-interval-ms} has passed. When the ring is full the overflow policy applies:
+ * BLOCK waits up to {@code block-timeout-ms} for room, SPILL (and BLOCK after its timeout)
+ * appends the event to a local JSON-lines file. Batches the DB rejects for availability
+ * reasons are spilled too. Spill files are replayed on startup and whenever the writer is idle.
+ * On shutdown the buffer is drained and flushed before the DataSource goes away.
+ *
+ * Callers that need the row to commit or roll back with their own transaction (legally
+ * critical actions) bypass this writer; see {@link AuditService.Durability#SYNC}.
+ */
+@Component
+public class AuditWriter implements SmartLifecycle {
+    private static final Logger logger = LoggerFactory.getLogger(AuditWriter.class);
+    private static final Logger auditLogger = LoggerFactory.getLogger("AUDIT");
+    private static final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private static final String SPILL_PREFIX = "audit-spill-";
+    private static final String SPILL_SUFFIX = ".jsonl";
+    private static final long REPLAY_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long SHUTDOWN_TIMEOUT_MS = 10_000;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO audit_logs (action, entity_type, entity_id, performed_by_id, performed_by_role, "
+                    + "performed_by_name, target_user_id, details, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    public enum OverflowPolicy { BLOCK, SPILL }
+
+    public record Event(String action, String entityType, Long entityId,
+                        Long performedById, String performedByRole, String performedByName,
+                        Long targetUserId, String details, Instant createdAt) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BoundedRingBuffer<Event> buffer;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+    private final Path spillDir;
+
+    // A lock rather than a monitor: request threads spill when the ring is full, and file I/O
+    // under synchronized would pin their virtual threads
+    private final ReentrantLock spillLock = new ReentrantLock();
+    private BufferedWriter spillWriter;
+    private final AtomicLong spilledSinceReplay = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean running;
+    private volatile Thread writerThread;
+
+    public AuditWriter(JdbcTemplate jdbcTemplate,
+                       @Value("${app.audit.buffer-size:8192}") int bufferSize,
+                       @Value("${app.audit.batch-size:200}") int batchSize,
+                       @Value("${app.audit.flush-interval-ms:500}") long flushIntervalMs,
+                       @Value("${app.audit.overflow:SPILL}") OverflowPolicy overflowPolicy,
+                       @Value("${app.audit.block-timeout-ms:100}") long blockTimeoutMs,
+                       @Value("${app.audit.spill-dir:${java.io.tmpdir}/psicoapp-audit}") String spillDir) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.buffer = new BoundedRingBuffer<>(bufferSize);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, flushIntervalMs));
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, blockTimeoutMs));
+        this.spillDir = Path.of(spillDir);
+    }
+
+    /**
+     * Queues an event for the background writer. Never throws: if the event can't be queued
+     * or spilled it is written to the AUDIT log so it is not lost silently.
+     */
+    public void submit(Event event) {
+        if (running && buffer.offer(event)) {
+            if (buffer.size() >= batchSize) LockSupport.unpark(writerThread);
+            return;
+        }
+        if (running && overflowPolicy == OverflowPolicy.BLOCK && offerWithTimeout(event)) {
+            return;
+        }
+        // Ring full (or writer stopped): keep the event on disk until the DB catches up
+        spill(List.of(event));
+    }
+
+    private boolean offerWithTimeout(Event event) {
+        long deadline = System.nanoTime() + blockTimeoutNanos;
+        while (System.nanoTime() < deadline) {
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(this, TimeUnit.MICROSECONDS.toNanos(50));
+            if (buffer.offer(event)) return true;
+        }
+        return false;
+    }
+
+    // --- Lifecycle ---
+
+    @Override
+    public void start() {
+        running = true;
+        Thread thread = new Thread(this::runWriter, "audit-writer");
+        thread.setDaemon(true);
+        writerThread = thread;
+        thread.start();
+        logger.info("Audit writer started: buffer={}, batchSize={}, overflow={}, spillDir={}",
+                buffer.capacity(), batchSize, overflowPolicy, spillDir);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) return;
+        running = false;
+        Thread thread = writerThread;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(SHUTDOWN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            logger.warn("Audit writer did not finish within {} ms; spilling {} queued events", SHUTDOWN_TIMEOUT_MS, buffer.size());
+            List<Event> rest = new ArrayList<>();
+            buffer.drainTo(rest, Integer.MAX_VALUE);
+            spill(rest);
+        }
+        closeSpillWriter();
+        logger.info("Audit writer stopped: {} written, {} dropped", written.get(), dropped.get());
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Starts before and stops after the embedded web server, so requests still in flight
+     * during a graceful shutdown are queued and flushed rather than spilled.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    // --- Writer thread ---
+
+    private void runWriter() {
+        replaySpillFiles();
+        List<Event> batch = new ArrayList<>(batchSize);
+        long lastFlush = System.nanoTime();
+        long lastReplay = lastFlush;
+
+        while (running || !buffer.isEmpty() || !batch.isEmpty()) {
+            try {
+                buffer.drainTo(batch, batchSize - batch.size());
+                long now = System.nanoTime();
+                boolean due = now - lastFlush >= flushIntervalNanos || !running;
+                if (batch.size() >= batchSize || (!batch.isEmpty() && due)) {
+                    write(batch);
+                    batch.clear();
+                    lastFlush = now;
+                    continue;
+                }
+                if (batch.isEmpty() && spilledSinceReplay.get() > 0 && now - lastReplay >= REPLAY_INTERVAL_NANOS) {
+                    lastReplay = now;
+                    replaySpillFiles();
+                }
+                if (running) {
+                    long wait = batch.isEmpty() ? flushIntervalNanos : flushIntervalNanos - (now - lastFlush);
+                    LockSupport.parkNanos(this, Math.max(wait, 1));
+                }
+            } catch (RuntimeException e) {
+                // Keep the thread alive whatever happens; the batch goes to disk
+                logger.error("Audit writer loop failed", e);
+                spill(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes a batch, spilling it to disk if the DB is unavailable.
+     */
+    private void write(List<Event> batch) {
+        if (!persist(batch)) spill(batch);
+    }
+
+    /**
+     * @return false if the DB could not be reached and nothing was written
+     */
+    private boolean persist(List<Event> batch) {
+        try {
+            insert(batch);
+            written.addAndGet(batch.size());
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // One bad row fails the whole batch: retry row by row and drop only the offenders
+            for (Event event : batch) {
+                try {
+                    insert(List.of(event));
+                    written.incrementAndGet();
+                } catch (DataIntegrityViolationException rowError) {
+                    dropped.incrementAndGet();
+                    auditLogger.error("Failed to persist audit log: action={}, entityType={}, entityId={}",
+                            event.action(), event.entityType(), event.entityId(), rowError);
+                }
+            }
+            return true;
+        } catch (RuntimeException e) {
+            logger.warn("Audit batch of {} events could not be written: {}", batch.size(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void insert(List<Event> events) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, events, batchSize, (ps, e) -> {
+            ps.setString(1, e.action());
+            ps.setString(2, e.entityType());
+            ps.setObject(3, e.entityId(), Types.BIGINT);
+            ps.setObject(4, e.performedById(), Types.BIGINT);
+            ps.setString(5, e.performedByRole());
+            ps.setString(6, e.performedByName());
+            ps.setObject(7, e.targetUserId(), Types.BIGINT);
+            ps.setString(8, e.details());
+            ps.setTimestamp(9, Timestamp.from(e.createdAt()));
+        });
+    }
+
+    // --- Spill files ---
+
+    private void spill(List<Event> events) {
+        if (events.isEmpty()) return;
+        spillLock.lock();
+        try {
+            if (spillWriter == null) {
+                Files.createDirectories(spillDir);
+                Path file = spillDir.resolve(SPILL_PREFIX + System.currentTimeMillis() + SPILL_SUFFIX);
+                spillWriter = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            for (Event event : events) {
+                spillWriter.write(objectMapper.writeValueAsString(event));
+                spillWriter.newLine();
+            }
+            spillWriter.flush();
+            spilledSinceReplay.addAndGet(events.size());
+        } catch (IOException e) {
+            // Last resort: the AUDIT log appender keeps a trace of what could not be stored
+            for (Event event : events) {
+                dropped.incrementAndGet();
+                auditLogger.error("AUDIT_DROPPED|action={}|entityType={}|entityId={}|performedById={}|targetUserId={}|details={}|timestamp={}",
+                        event.action(), event.entityType(), event.entityId(), event.performedById(),
+                        event.targetUserId(), event.details(), event.createdAt());
+            }
+            logger.error("Could not spill {} audit events to {}", events.size(), spillDir, e);
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    private void closeSpillWriter() {
+        spillLock.lock();
+        try {
+            if (spillWriter == null) return;
+            try {
+                spillWriter.close();
+            } catch (IOException e) {
+                logger.warn("Could not close audit spill file", e);
+            }
+            spillWriter = null;
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * Loads spilled events back into the DB, oldest file first. A file is deleted once fully
+     * written; if the DB fails midway the unwritten tail is kept in a new file.
+     */
+    private void replaySpillFiles() {
+        if (!Files.isDirectory(spillDir)) return;
+        // Rotate so new spills go to a fresh file while the closed ones are replayed
+        closeSpillWriter();
+        spilledSinceReplay.set(0);
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(spillDir, SPILL_PREFIX + "*" + SPILL_SUFFIX)) {
+            stream.forEach(files::add);
+        } catch (IOException e) {
+            logger.error("Could not list audit spill files in {}", spillDir, e);
+            return;
+        }
+        files.sort(null);
+
+        for (Path file : files) {
+            try {
+                List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+                int done = 0;
+                while (done < lines.size()) {
+                    int end = Math.min(done + batchSize, lines.size());
+                    List<Event> batch = new ArrayList<>(end - done);
+                    for (String line : lines.subList(done, end)) {
+                        if (!line.isBlank()) batch.add(parse(line));
+                    }
+                    if (!persist(batch)) break;
+                    done = end;
+                }
+                if (done < lines.size()) {
+                    // DB still down: keep the unwritten tail for the next attempt
+                    spill(lines.subList(done, lines.size()).stream()
+                            .filter(line -> !line.isBlank())
+                            .map(this::parse)
+                            .toList());
+                }
+                Files.delete(file);
+                logger.info("Replayed {} spilled audit events from {}", done, file.getFileName());
+                if (done < lines.size()) return;
+            } catch (IOException | RuntimeException e) {
+                logger.error("Could not replay audit spill file {}", file, e);
+            }
+        }
+    }
+
+    private Event parse(String line) {
+        try {
+            return objectMapper.readValue(line, Event.class);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
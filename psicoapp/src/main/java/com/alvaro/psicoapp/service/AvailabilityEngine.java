@@ -0,0 +1,268 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.config.AppTimezone;
+import com.alvaro.psicoapp.domain.AppointmentEntity;
+import com.alvaro.psicoapp.domain.AppointmentStatusEnum;
+import com.alvaro.psicoapp.domain.UserEntity;
+import com.alvaro.psicoapp.domain.WeeklyScheduleEntity;
+import com.alvaro.psicoapp.repository.AppointmentRepository;
+import com.alvaro.psicoapp.repository.PsychAbsenceRepository;
+import com.alvaro.psicoapp.repository.UserRepository;
+import com.alvaro.psicoapp.repository.WeeklyScheduleRepository;
+import com.alvaro.psicoapp.util.IntervalIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Rule-based availability: free slots are computed on the fly from the psychologist's
+ * weekly schedule minus non-cancelled appointments and absences, instead of being
+ * pre-materialised as FREE rows. A row is only written when a patient books a slot.
+ * The slots offered are the ones WeeklyScheduleService.generateSlots would create: same
+ * two-week window (from tomorrow once it's past midday), same blocks and conflicts.
+ *
+ * Off by default (app.availability.virtual-slots). Only the booking views (CalendarService
+ * availability, the public clinic booking page) list virtual slots. Readers of stored FREE
+ * rows such as the psychologist's own slot list, the clinic agenda and
+ * WaitingListService.scheduleFromWaitingList don't, so the weekly generator keeps
+ * materialising rows while the flag is on; a stored row blocks the virtual slot at the same
+ * hour, so nothing is offered twice. Generator and materialisation take the same
+ * per-psychologist lock.
+ *
+ * Virtual slots carry a negative id that encodes psychologist and start minute, so the
+ * existing booking endpoints keep taking a single appointment id:
+ *   id = -((psychologistId << 31) | epochMinute)
+ */
+@Service
+public class AvailabilityEngine {
+    private static final Logger logger = LoggerFactory.getLogger(AvailabilityEngine.class);
+    private static final int MINUTE_BITS = 31;
+    private static final long MINUTE_MASK = (1L << MINUTE_BITS) - 1;
+    // Namespace for pg_advisory_xact_lock(int, int) so slot locks don't collide with other advisory locks
+    private static final int SLOT_LOCK_NAMESPACE = 0x534C4F54; // "SLOT"
+
+    private final WeeklyScheduleRepository weeklyScheduleRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final PsychAbsenceRepository psychAbsenceRepository;
+    private final UserRepository userRepository;
+    private final WeeklyScheduleService weeklyScheduleService;
+    private final AvailabilityIndex availabilityIndex;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+
+    public AvailabilityEngine(WeeklyScheduleRepository weeklyScheduleRepository,
+                              AppointmentRepository appointmentRepository,
+                              PsychAbsenceRepository psychAbsenceRepository,
+                              UserRepository userRepository,
+                              WeeklyScheduleService weeklyScheduleService,
+                              AvailabilityIndex availabilityIndex,
+                              JdbcTemplate jdbcTemplate,
+                              @Value("${app.availability.virtual-slots:false}") boolean enabled) {
+        this.weeklyScheduleRepository = weeklyScheduleRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.psychAbsenceRepository = psychAbsenceRepository;
+        this.userRepository = userRepository;
+        this.weeklyScheduleService = weeklyScheduleService;
+        this.availabilityIndex = availabilityIndex;
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+    }
+
+    /**
+     * When true, the booking views also offer free hours computed from the weekly rules.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public static boolean isVirtualId(Long appointmentId) {
+        return appointmentId != null && appointmentId < 0;
+    }
+
+    public static long psychologistIdOf(long virtualId) {
+        return (-virtualId) >>> MINUTE_BITS;
+    }
+
+    static long virtualId(long psychologistId, Instant start) {
+        return -((psychologistId << MINUTE_BITS) | (start.getEpochSecond() / 60));
+    }
+
+    static Instant startOf(long virtualId) {
+        return Instant.ofEpochSecond(((-virtualId) & MINUTE_MASK) * 60);
+    }
+
+    /**
+     * Free one-hour slots starting in [from, to] that no appointment or absence blocks, as
+     * transient FREE appointments with virtual ids. Never returns slots in the past.
+     */
+    @Transactional(readOnly = true)
+    public List<AppointmentEntity> getVirtualSlots(UserEntity psychologist, Instant from, Instant to) {
+        if (!enabled) return List.of();
+        List<WeeklyScheduleEntity> rules = weeklyScheduleRepository.findByPsychologist_IdAndEnabledTrue(psychologist.getId());
+        if (rules.isEmpty()) return List.of();
+
+        ZonedDateTime now = ZonedDateTime.now(AppTimezone.APP_ZONE);
+        Instant[] horizon = WeeklyScheduleService.horizon(now, WeeklyScheduleService.WEEKS_AHEAD);
+        Instant effectiveFrom = latest(from, now.toInstant(), horizon[0]);
+        // expandRules takes starts in [from, to]; the horizon's end is exclusive
+        Instant lastStart = horizon[1].minusMillis(1);
+        Instant effectiveTo = to.isAfter(lastStart) ? lastStart : to;
+        if (effectiveFrom.isAfter(effectiveTo)) return List.of();
+
+        List<Instant[]> candidates = expandRules(rules, effectiveFrom, effectiveTo);
+        if (candidates.isEmpty()) return List.of();
+
+        boolean[] conflicts = availabilityIndex.findConflicts(psychologist.getId(), candidates);
+        BigDecimal price = sessionPrice(psychologist.getId());
+
+        // As the generator does: in rule order, a free candidate is dropped if it overlaps one already kept
+        IntervalIndex<Boolean> kept = new IntervalIndex<>();
+        List<AppointmentEntity> slots = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            Instant start = candidates.get(i)[0];
+            Instant end = candidates.get(i)[1];
+            if (conflicts[i] || kept.overlaps(start, end)) continue;
+            kept.add(start, end, Boolean.TRUE);
+            slots.add(toFreeSlot(psychologist, start, end, price));
+        }
+        slots.sort(Comparator.comparing(AppointmentEntity::getStartTime));
+        return slots;
+    }
+
+    /**
+     * Turns a virtual slot into a persisted FREE appointment so the regular booking flow can
+     * lock and update it. Must run inside the caller's booking transaction.
+     *
+     * @throws IllegalArgumentException if the slot is no longer offered or is already taken
+     */
+    @Transactional
+    public AppointmentEntity materialize(long virtualId) {
+        long psychologistId = psychologistIdOf(virtualId);
+        Instant start = startOf(virtualId);
+
+        // Serialise materialisation per psychologist: two patients booking the same hour must end
+        // up on the same row, not on two FREE rows
+        lockSlots(jdbcTemplate, psychologistId);
+
+        UserEntity psychologist = userRepository.findById(psychologistId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Cita no encontrada"));
+        Instant[] horizon = WeeklyScheduleService.horizon(ZonedDateTime.now(AppTimezone.APP_ZONE), WeeklyScheduleService.WEEKS_AHEAD);
+        if (start.isBefore(Instant.now()) || start.isBefore(horizon[0]) || !start.isBefore(horizon[1])) {
+            throw new IllegalArgumentException("Esta cita ya no está disponible");
+        }
+
+        List<WeeklyScheduleEntity> rules = weeklyScheduleRepository.findByPsychologist_IdAndEnabledTrue(psychologistId);
+        Instant[] slot = expandRules(rules, start, start).stream()
+                .filter(s -> s[0].equals(start))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Esta cita ya no está disponible"));
+        Instant end = slot[1];
+
+        // Someone may have materialised this hour already (e.g. another pending request)
+        for (AppointmentEntity existing : appointmentRepository
+                .findByPsychologist_IdAndStartTimeBetweenOrderByStartTimeAsc(psychologistId, start, start)) {
+            if (end.equals(existing.getEndTime())
+                    && (AppointmentStatusEnum.FREE == existing.getStatus() || AppointmentStatusEnum.REQUESTED == existing.getStatus())) {
+                return existing;
+            }
+        }
+
+        // Authoritative checks against the DB, not the index, since we hold the lock
+        if (!appointmentRepository.findActiveIntervals(psychologistId, start, end).isEmpty()
+                || !psychAbsenceRepository.findOverlapping(psychologistId, start, end).isEmpty()) {
+            throw new IllegalArgumentException("Esta cita ya no está disponible");
+        }
+
+        AppointmentEntity appointment = toFreeSlot(psychologist, start, end, sessionPrice(psychologistId));
+        appointment.setId(null);
+        AppointmentEntity saved = appointmentRepository.save(appointment);
+        availabilityIndex.appointmentSaved(saved);
+        logger.info("Materialised virtual slot {} for psychologist {} as appointment {}", start, psychologistId, saved.getId());
+        return saved;
+    }
+
+    /**
+     * Transaction-scoped lock on the psychologist's FREE rows, held by materialize and by
+     * WeeklyScheduleService.generateSlots so neither inserts a row the other is inserting.
+     */
+    static void lockSlots(JdbcTemplate jdbcTemplate, long psychologistId) {
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(?, ?)", rs -> null,
+                SLOT_LOCK_NAMESPACE, (int) psychologistId);
+    }
+
+    /**
+     * Expands the weekly rules into one-hour slots whose start lies in [from, to], day by day
+     * in rule order. Mirrors the block walking of WeeklyScheduleService.generateSlots.
+     */
+    private List<Instant[]> expandRules(List<WeeklyScheduleEntity> rules, Instant from, Instant to) {
+        List<Instant[]> slots = new ArrayList<>();
+        LocalDate firstDate = from.atZone(AppTimezone.APP_ZONE).toLocalDate();
+        LocalDate lastDate = to.atZone(AppTimezone.APP_ZONE).toLocalDate();
+
+        for (LocalDate date = firstDate; !date.isAfter(lastDate); date = date.plusDays(1)) {
+            // Java DayOfWeek: MONDAY=1...SUNDAY=7 → convert to 0=Monday...6=Sunday
+            int dayOfWeek = date.getDayOfWeek().getValue() - 1;
+            for (WeeklyScheduleEntity rule : rules) {
+                if (!rule.getDayOfWeek().equals(dayOfWeek)) continue;
+                addBlock(slots, date, rule.getStartTime1(), rule.getEndTime1(), from, to);
+                if (rule.getStartTime2() != null && rule.getEndTime2() != null) {
+                    addBlock(slots, date, rule.getStartTime2(), rule.getEndTime2(), from, to);
+                }
+            }
+        }
+        return slots;
+    }
+
+    private static Instant latest(Instant a, Instant b, Instant c) {
+        Instant max = a.isAfter(b) ? a : b;
+        return max.isAfter(c) ? max : c;
+    }
+
+    private void addBlock(List<Instant[]> out, LocalDate date, String startTime, String endTime, Instant from, Instant to) {
+        LocalTime blockEnd = LocalTime.parse(endTime);
+        LocalTime slotStart = LocalTime.parse(startTime);
+        while (slotStart.plusHours(1).compareTo(blockEnd) <= 0) {
+            LocalTime slotEnd = slotStart.plusHours(1);
+            Instant start = ZonedDateTime.of(date, slotStart, AppTimezone.APP_ZONE).toInstant();
+            if (!start.isBefore(from) && !start.isAfter(to)) {
+                out.add(new Instant[]{start, ZonedDateTime.of(date, slotEnd, AppTimezone.APP_ZONE).toInstant()});
+            }
+            slotStart = slotEnd;
+        }
+    }
+
+    private BigDecimal sessionPrice(Long psychologistId) {
+        BigDecimal price = weeklyScheduleService.getSessionPrice(psychologistId);
+        return price != null && price.compareTo(BigDecimal.ZERO) > 0 ? price : BigDecimal.ZERO;
+    }
+
+    private AppointmentEntity toFreeSlot(UserEntity psychologist, Instant start, Instant end, BigDecimal price) {
+        AppointmentEntity slot = new AppointmentEntity();
+        slot.setId(virtualId(psychologist.getId(), start));
+        slot.setPsychologist(psychologist);
+        slot.setStartTime(start);
+        slot.setEndTime(end);
+        slot.setStatus(AppointmentStatusEnum.FREE);
+        slot.setPrice(price);
+        // Tax: default exempt (sanitary service)
+        slot.setTaxExempt(true);
+        slot.setTaxRate(BigDecimal.ZERO);
+        slot.setTaxAmount(BigDecimal.ZERO);
+        slot.setTotalAmount(price);
+        return slot;
+    }
+}
@@ -0,0 +1,346 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.domain.AppointmentEntity;
+import com.alvaro.psicoapp.domain.AppointmentStatusEnum;
+import com.alvaro.psicoapp.domain.PsychAbsenceEntity;
+import com.alvaro.psicoapp.repository.AppointmentRepository;
+import com.alvaro.psicoapp.repository.PsychAbsenceRepository;
+import com.alvaro.psicoapp.util.IntervalIndex;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * In-memory availability index: each psychologist's non-cancelled appointments and absences
+ * inside a horizon window, held as interval indexes so collision checks don't hit the DB.
+ *
+ * Windows are loaded on first use (one query for appointments, one for absences) and kept
+ * coherent by the write hooks called from CalendarService, ClinicService and
+ * WeeklyScheduleService. Hooks are applied after commit, so a rolled back write never
+ * reaches the index. Each hook also bumps the psychologist's version; a load that was running
+ * while a hook ran may have read the DB before that commit, so it is used for the check at
+ * hand but not cached. Entries also expire after a short TTL, which bounds staleness for
+ * writes made by other replicas or by code paths without hooks (e.g. data retention).
+ * Checks outside the loaded window fall back to the original range queries.
+ *
+ * That staleness is fine for listing free time but not for deciding whether a write may go
+ * ahead, so transactions that create or move slots, appointments and absences use the
+ * {@code ...ForWrite} variants, which read the database inside the caller's transaction.
+ */
+@Component
+public class AvailabilityIndex {
+    private static final Logger logger = LoggerFactory.getLogger(AvailabilityIndex.class);
+    private static final Duration LOOKBACK = Duration.ofDays(1);
+
+    private final AppointmentRepository appointmentRepository;
+    private final PsychAbsenceRepository psychAbsenceRepository;
+    private final Duration horizon;
+    private final Cache<Long, PsychWindow> windows;
+    // Bumped by every write hook; one entry per psychologist written to since startup
+    private final ConcurrentHashMap<Long, Long> versions = new ConcurrentHashMap<>();
+
+    public AvailabilityIndex(AppointmentRepository appointmentRepository,
+                             PsychAbsenceRepository psychAbsenceRepository,
+                             @Value("${app.availability.horizon-days:120}") int horizonDays,
+                             @Value("${app.availability.ttl-minutes:5}") int ttlMinutes) {
+        this.appointmentRepository = appointmentRepository;
+        this.psychAbsenceRepository = psychAbsenceRepository;
+        this.horizon = Duration.ofDays(horizonDays);
+        this.windows = Caffeine.newBuilder()
+                .maximumSize(5_000)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+    }
+
+    // --- Collision checks ---
+
+    /**
+     * True if a non-cancelled appointment overlaps [start, end).
+     *
+     * @param excludeAppointmentId appointment being edited, ignored in the check; may be null
+     */
+    public boolean hasAppointmentOverlap(Long psychologistId, Instant start, Instant end, Long excludeAppointmentId) {
+        PsychWindow window = window(psychologistId, start, end);
+        if (window == null) {
+            return hasAppointmentOverlapForWrite(psychologistId, start, end, excludeAppointmentId);
+        }
+        return window.readLocked(() -> window.appointments.overlaps(start.toEpochMilli(), end.toEpochMilli(),
+                excludeAppointmentId == null ? null : excludeAppointmentId::equals));
+    }
+
+    public boolean hasAbsenceOverlap(Long psychologistId, Instant start, Instant end) {
+        PsychWindow window = window(psychologistId, start, end);
+        if (window == null) {
+            return hasAbsenceOverlapForWrite(psychologistId, start, end);
+        }
+        return window.readLocked(() -> window.absences.overlaps(start, end));
+    }
+
+    /**
+     * Same as {@link #hasAppointmentOverlap} but always queries the database, so it sees every
+     * committed write (and the caller's own flushed ones) regardless of the cached window.
+     */
+    public boolean hasAppointmentOverlapForWrite(Long psychologistId, Instant start, Instant end, Long excludeAppointmentId) {
+        return appointmentRepository.findActiveIntervals(psychologistId, start, end).stream()
+                .anyMatch(row -> excludeAppointmentId == null || !excludeAppointmentId.equals(row[0]));
+    }
+
+    /**
+     * Same as {@link #hasAbsenceOverlap} but always queries the database.
+     */
+    public boolean hasAbsenceOverlapForWrite(Long psychologistId, Instant start, Instant end) {
+        return !psychAbsenceRepository.findOverlapping(psychologistId, start, end).isEmpty();
+    }
+
+    /**
+     * Batch check for a whole series (e.g. a recurrence): loads the window once for the full
+     * extent of the series and answers every interval from memory.
+     *
+     * @param intervals list of {start, end}
+     * @return conflicts[i] is true when intervals[i] overlaps an appointment or an absence
+     */
+    public boolean[] findConflicts(Long psychologistId, List<Instant[]> intervals) {
+        return conflicts(psychologistId, intervals, true, false);
+    }
+
+    /**
+     * Same as {@link #findConflicts} but only absences count as conflicts.
+     */
+    public boolean[] findAbsenceConflicts(Long psychologistId, List<Instant[]> intervals) {
+        return conflicts(psychologistId, intervals, false, false);
+    }
+
+    /**
+     * Same as {@link #findConflicts} but reads the database: one query for appointments and one
+     * for absences over the extent of the series, neither of them cached.
+     */
+    public boolean[] findConflictsForWrite(Long psychologistId, List<Instant[]> intervals) {
+        return conflicts(psychologistId, intervals, true, true);
+    }
+
+    /**
+     * Same as {@link #findAbsenceConflicts} but reads the database.
+     */
+    public boolean[] findAbsenceConflictsForWrite(Long psychologistId, List<Instant[]> intervals) {
+        return conflicts(psychologistId, intervals, false, true);
+    }
+
+    private boolean[] conflicts(Long psychologistId, List<Instant[]> intervals, boolean checkAppointments, boolean fromDatabase) {
+        boolean[] conflicts = new boolean[intervals.size()];
+        if (intervals.isEmpty()) return conflicts;
+
+        Instant from = intervals.get(0)[0];
+        Instant to = intervals.get(0)[1];
+        for (Instant[] interval : intervals) {
+            if (interval[0].isBefore(from)) from = interval[0];
+            if (interval[1].isAfter(to)) to = interval[1];
+        }
+
+        PsychWindow window = fromDatabase ? load(psychologistId, from, to) : window(psychologistId, from, to);
+        for (int i = 0; i < conflicts.length; i++) {
+            Instant start = intervals.get(i)[0];
+            Instant end = intervals.get(i)[1];
+            if (window == null) {
+                conflicts[i] = (checkAppointments && hasAppointmentOverlap(psychologistId, start, end, null))
+                        || hasAbsenceOverlap(psychologistId, start, end);
+            } else {
+                conflicts[i] = window.readLocked(() ->
+                        (checkAppointments && window.appointments.overlaps(start, end)) || window.absences.overlaps(start, end));
+            }
+        }
+        return conflicts;
+    }
+
+    // --- Write hooks ---
+
+    public void appointmentSaved(AppointmentEntity appointment) {
+        Long psychId = appointment.getPsychologist().getId();
+        Long id = appointment.getId();
+        Instant start = appointment.getStartTime();
+        Instant end = appointment.getEndTime();
+        boolean active = AppointmentStatusEnum.CANCELLED != appointment.getStatus();
+        afterCommit(psychId, window -> {
+            window.removeAppointment(id);
+            if (active) window.addAppointment(id, start, end);
+        });
+    }
+
+    public void appointmentDeleted(AppointmentEntity appointment) {
+        Long id = appointment.getId();
+        afterCommit(appointment.getPsychologist().getId(), window -> window.removeAppointment(id));
+    }
+
+    public void absenceSaved(PsychAbsenceEntity absence) {
+        Long id = absence.getId();
+        Instant start = absence.getStartTime();
+        Instant end = absence.getEndTime();
+        afterCommit(absence.getPsychologist().getId(), window -> {
+            window.absences.removeIf(id::equals);
+            window.absences.add(start, end, id);
+        });
+    }
+
+    public void absenceDeleted(PsychAbsenceEntity absence) {
+        Long id = absence.getId();
+        afterCommit(absence.getPsychologist().getId(), window -> window.absences.removeIf(id::equals));
+    }
+
+    /**
+     * Drops the psychologist's window after commit; used by bulk writes that bypass JPA.
+     */
+    public void invalidate(Long psychologistId) {
+        runAfterCommit(() -> {
+            bump(psychologistId);
+            windows.invalidate(psychologistId);
+        });
+    }
+
+    // --- Internals ---
+
+    /**
+     * Returns a window covering [start, end), loading or widening it if needed.
+     * Returns null for ranges too far from now to be worth indexing.
+     */
+    private PsychWindow window(Long psychologistId, Instant start, Instant end) {
+        Instant now = Instant.now();
+        Instant defaultFrom = now.minus(LOOKBACK);
+        Instant defaultTo = now.plus(horizon);
+        if (start.isBefore(defaultFrom)) return null;
+
+        PsychWindow window = windows.getIfPresent(psychologistId);
+        if (window != null && window.covers(start, end)) return window;
+
+        Instant to = end.isAfter(defaultTo) ? end : defaultTo;
+        long version = versions.getOrDefault(psychologistId, 0L);
+        PsychWindow loaded = load(psychologistId, defaultFrom, to);
+        // Cached only if no write committed meanwhile; compute serialises this with bump()
+        versions.compute(psychologistId, (id, current) -> {
+            if ((current != null ? current : 0L) == version) windows.put(psychologistId, loaded);
+            return current;
+        });
+        return loaded;
+    }
+
+    private void bump(Long psychologistId) {
+        versions.merge(psychologistId, 1L, Long::sum);
+    }
+
+    private PsychWindow load(Long psychologistId, Instant from, Instant to) {
+        PsychWindow window = new PsychWindow(from, to);
+        for (Object[] row : appointmentRepository.findActiveIntervals(psychologistId, from, to)) {
+            window.addAppointment((Long) row[0], (Instant) row[1], (Instant) row[2]);
+        }
+        for (PsychAbsenceEntity absence : psychAbsenceRepository.findOverlapping(psychologistId, from, to)) {
+            window.absences.add(absence.getStartTime(), absence.getEndTime(), absence.getId());
+        }
+        logger.debug("Availability window loaded for psychologist {}: {} appointments, {} absences",
+                psychologistId, window.appointments.size(), window.absences.size());
+        return window;
+    }
+
+    private void afterCommit(Long psychologistId, Consumer<PsychWindow> update) {
+        Runnable apply = () -> {
+            bump(psychologistId);
+            PsychWindow window = windows.getIfPresent(psychologistId);
+            if (window == null) {
+                // Nothing cached, or a load is in flight and may have missed this write
+                windows.invalidate(psychologistId);
+                return;
+            }
+            window.writeLocked(() -> update.accept(window));
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply.run();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                // A window loaded inside the rolled back transaction may contain its flushed rows
+                if (status == STATUS_ROLLED_BACK) {
+                    bump(psychologistId);
+                    windows.invalidate(psychologistId);
+                }
+            }
+        });
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static final class PsychWindow {
+        private final Instant from;
+        private final Instant to;
+        private final IntervalIndex<Long> appointments = new IntervalIndex<>();
+        private final IntervalIndex<Long> absences = new IntervalIndex<>();
+        private final Map<Long, Instant> appointmentStarts = new HashMap<>();
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        PsychWindow(Instant from, Instant to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        boolean covers(Instant start, Instant end) {
+            return !start.isBefore(from) && !end.isAfter(to);
+        }
+
+        void addAppointment(Long id, Instant start, Instant end) {
+            appointments.add(start, end, id);
+            appointmentStarts.put(id, start);
+        }
+
+        void removeAppointment(Long id) {
+            Instant start = appointmentStarts.remove(id);
+            if (start != null) appointments.remove(start, id::equals);
+        }
+
+        boolean readLocked(BooleanSupplier check) {
+            lock.readLock().lock();
+            try {
+                return check.getAsBoolean();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        void writeLocked(Runnable update) {
+            lock.writeLock().lock();
+            try {
+                update.run();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.alvaro.psicoapp.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+
+/**
+ * Square avatar thumbnails (48, 128 and 256 px) for lists and headers, which otherwise
+ * download the full uploaded photo for a 40 px circle.
+ *
+ * Thumbnails are rendered off the request path once an avatar upload commits, from a single
+ * decode of the original, and stored next to it in their own namespace as
+ * &lt;avatar base&gt;-&lt;size&gt;.jpg (or .png when the original has transparency). Avatar keys
+ * are content hashes, so a thumbnail never changes and is served as immutable. Reads go
+ * through an in-memory cache bounded by total bytes; a thumbnail that isn't stored yet
+ * (legacy avatar, generation still running) is rendered on the first request.
+ */
+@Service
+public class AvatarThumbnailService {
+    private static final Logger logger = LoggerFactory.getLogger(AvatarThumbnailService.class);
+    private static final Pattern AVATAR_KEY = Pattern.compile("[A-Za-z0-9_-]+(\\.[A-Za-z0-9]{1,10})?");
+    /** Larger originals are rejected before decoding, whatever their file size */
+    private static final long MAX_SOURCE_PIXELS = 50_000_000L;
+    private static final float JPEG_QUALITY = 0.85f;
+
+    public static final String THUMBNAILS = "avatar-thumbs";
+    public static final List<Integer> SIZES = List.of(48, 128, 256);
+
+    public record Thumbnail(byte[] bytes, String contentType, String etag) {}
+
+    private record ThumbKey(String avatarKey, int size) {}
+
+    private final BlobStore blobStore;
+    private final Path stagingDir;
+    private final Cache<ThumbKey, Thumbnail> cache;
+    private final ExecutorService workers;
+
+    public AvatarThumbnailService(BlobStore blobStore,
+                                  @Value("${app.storage.staging-dir:uploads/.staging}") String stagingDir,
+                                  @Value("${app.avatars.thumbnail-cache-mb:32}") int cacheMb,
+                                  @Value("${app.avatars.thumbnail-threads:2}") int threads) {
+        this.blobStore = blobStore;
+        this.stagingDir = Paths.get(stagingDir).toAbsolutePath();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(cacheMb * 1024L * 1024L)
+                .weigher((ThumbKey key, Thumbnail thumbnail) -> thumbnail.bytes().length)
+                .build();
+        this.workers = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("avatar-thumb-", 0).daemon().factory());
+    }
+
+    /**
+     * Public path of the thumbnail closest to (not smaller than) the given size. External
+     * avatars (OAuth providers) and blank values are returned unchanged.
+     */
+    public static String thumbnailUrl(String avatarUrl, int size) {
+        if (avatarUrl == null || !avatarUrl.startsWith("/uploads/avatars/")) return avatarUrl;
+        int thumbSize = SIZES.stream().filter(s -> s >= size).findFirst().orElse(SIZES.get(SIZES.size() - 1));
+        return "/uploads/avatars/thumbs/" + thumbSize + "/" + UploadStorageService.keyOf(avatarUrl);
+    }
+
+    /** Renders and stores every size of an avatar in the background */
+    public void generateAsync(String avatarKey) {
+        if (!AVATAR_KEY.matcher(avatarKey).matches()) return;
+        workers.submit(() -> {
+            try {
+                generate(avatarKey);
+            } catch (Exception e) {
+                logger.warn("No se pudieron generar las miniaturas de {}", avatarKey, e);
+            }
+        });
+    }
+
+    /**
+     * @return the thumbnail, or null if the size isn't offered or the avatar doesn't exist
+     */
+    public Thumbnail get(String avatarKey, int size) {
+        if (!SIZES.contains(size) || !AVATAR_KEY.matcher(avatarKey).matches()) return null;
+        ThumbKey key = new ThumbKey(avatarKey, size);
+        Thumbnail cached = cache.getIfPresent(key);
+        if (cached != null) return cached;
+        // Not cache.get(key, loader): the loader would read the blob store inside the cache's
+        // compute, pinning a virtual thread; concurrent misses just read the same bytes twice
+        Thumbnail loaded = load(key);
+        if (loaded != null) cache.put(key, loaded);
+        return loaded;
+    }
+
+    /** Removes the thumbnails of a deleted avatar */
+    public void delete(String avatarKey) {
+        for (int size : SIZES) {
+            cache.invalidate(new ThumbKey(avatarKey, size));
+            for (String ext : List.of(".jpg", ".png")) {
+                try {
+                    blobStore.delete(THUMBNAILS, thumbKey(avatarKey, size, ext));
+                } catch (IOException e) {
+                    logger.warn("No se pudo borrar la miniatura {}-{}", avatarKey, size, e);
+                }
+            }
+        }
+    }
+
+    private void generate(String avatarKey) throws IOException {
+        BufferedImage source = readSource(avatarKey, SIZES.get(SIZES.size() - 1));
+        if (source == null) return;
+        for (int size : SIZES) {
+            String ext = extension(source);
+            if (blobStore.exists(THUMBNAILS, thumbKey(avatarKey, size, ext))) continue;
+            store(avatarKey, size, render(source, size));
+        }
+    }
+
+    private Thumbnail load(ThumbKey key) {
+        try {
+            for (String ext : List.of(".jpg", ".png")) {
+                try (InputStream in = blobStore.open(THUMBNAILS, thumbKey(key.avatarKey(), key.size(), ext))) {
+                    if (in != null) return thumbnail(key, ext, in.readAllBytes());
+                }
+            }
+            BufferedImage source = readSource(key.avatarKey(), key.size());
+            if (source == null) return null;
+            return store(key.avatarKey(), key.size(), render(source, key.size()));
+        } catch (IOException e) {
+            logger.warn("No se pudo obtener la miniatura {}-{}", key.avatarKey(), key.size(), e);
+            return null;
+        }
+    }
+
+    private Thumbnail store(String avatarKey, int size, Rendered rendered) throws IOException {
+        String key = thumbKey(avatarKey, size, rendered.extension());
+        Files.createDirectories(stagingDir);
+        Path staged = Files.createTempFile(stagingDir, "thumb-", ".tmp");
+        try {
+            Files.write(staged, rendered.bytes());
+            blobStore.put(THUMBNAILS, key, staged, sha256(rendered.bytes()), contentType(rendered.extension()));
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+        return thumbnail(new ThumbKey(avatarKey, size), rendered.extension(), rendered.bytes());
+    }
+
+    /**
+     * Decodes the original, subsampling while reading so a large photo is never held in memory
+     * at full resolution when only a small thumbnail is needed.
+     *
+     * @return null if the avatar doesn't exist or isn't a readable image
+     */
+    private BufferedImage readSource(String avatarKey, int largestSize) throws IOException {
+        try (InputStream in = blobStore.open(UploadStorageService.AVATARS, avatarKey)) {
+            if (in == null) return null;
+            try (ImageInputStream stream = ImageIO.createImageInputStream(in)) {
+                Iterator<ImageReader> readers = stream != null ? ImageIO.getImageReaders(stream) : null;
+                if (readers == null || !readers.hasNext()) return null;
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(stream, true, true);
+                    int width = reader.getWidth(0);
+                    int height = reader.getHeight(0);
+                    if ((long) width * height > MAX_SOURCE_PIXELS) {
+                        logger.warn("Avatar {} demasiado grande para miniaturas ({}x{})", avatarKey, width, height);
+                        return null;
+                    }
+                    ImageReadParam param = reader.getDefaultReadParam();
+                    // Keep at least twice the target resolution for a clean final downscale
+                    int step = Math.max(1, Math.min(width, height) / (largestSize * 2));
+                    param.setSourceSubsampling(step, step, 0, 0);
+                    return reader.read(0, param);
+                } finally {
+                    reader.dispose();
+                }
+            }
+        }
+    }
+
+    record Rendered(byte[] bytes, String extension) {}
+
+    /** Centre crop to a square, then halve progressively before the last bicubic step */
+    static Rendered render(BufferedImage source, int size) throws IOException {
+        boolean alpha = source.getColorModel().hasAlpha();
+        int side = Math.min(source.getWidth(), source.getHeight());
+        BufferedImage current = source.getSubimage((source.getWidth() - side) / 2, (source.getHeight() - side) / 2, side, side);
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        while (current.getWidth() / 2 >= size) {
+            current = scale(current, current.getWidth() / 2, type);
+        }
+        current = scale(current, size, type);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (alpha) {
+            ImageIO.write(current, "png", out);
+            return new Rendered(out.toByteArray(), ".png");
+        }
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(current, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return new Rendered(out.toByteArray(), ".jpg");
+    }
+
+    private static BufferedImage scale(BufferedImage image, int side, int type) {
+        BufferedImage scaled = new BufferedImage(side, side, type);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, side, side, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private static String extension(BufferedImage source) {
+        return source.getColorModel().hasAlpha() ? ".png" : ".jpg";
+    }
+
+    private static String thumbKey(String avatarKey, int size, String ext) {
+        int dot = avatarKey.lastIndexOf('.');
+        String base = dot < 0 ? avatarKey : avatarKey.substring(0, dot);
+        return base + "-" + size + ext;
+    }
+
+    private static Thumbnail thumbnail(ThumbKey key, String ext, byte[] bytes) {
+        return new Thumbnail(bytes, contentType(ext), "\"" + thumbKey(key.avatarKey(), key.size(), ext) + "\"");
+    }
+
+    private static String contentType(String ext) {
+        return ".png".equals(ext) ? "image/png" : "image/jpeg";
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+    }
+}
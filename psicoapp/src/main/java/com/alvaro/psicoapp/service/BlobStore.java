@@ -0,0 +1,44 @@
+package com.alvaro.psicoapp.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Where upload blobs live. Objects are addressed by a namespace (tasks, clinic-docs, avatars)
+ * and a key; {@link UploadStorageService} names them by content and counts references, so
+ * implementations only move bytes.
+ */
+public interface BlobStore {
+
+    boolean exists(String namespace, String key) throws IOException;
+
+    /**
+     * @return the object's content, or null if it doesn't exist
+     */
+    InputStream open(String namespace, String key) throws IOException;
+
+    /**
+     * Stores the staged file as namespace/key. The staged file is consumed (moved or deleted).
+     *
+     * @param sha256 hex digest of the content, already computed while staging
+     */
+    void put(String namespace, String key, Path staged, String sha256, String contentType) throws IOException;
+
+    void delete(String namespace, String key) throws IOException;
+
+    /**
+     * @return the file on local disk, or null if this store isn't on local disk
+     */
+    Path localPath(String namespace, String key);
+
+    /**
+     * Short-lived URL that reads namespace/key directly, for stores without a local path.
+     *
+     * @return the URL, or empty if this store can't hand out direct links
+     */
+    Optional<URI> presignedGet(String namespace, String key, Duration ttl);
+}
@@ -53,6 +53,8 @@ public class CalendarService {
     private final EmailService emailService;
     private final NotificationService notificationService;
     private final AuditService auditService;
+    private final AvailabilityIndex availabilityIndex;
+    private final AvailabilityEngine availabilityEngine;
 
     public CalendarService(AppointmentRepository appointmentRepository,
                            AppointmentRequestRepository appointmentRequestRepository,
@@ -62,7 +64,9 @@ public class CalendarService {
                            PsychAbsenceRepository psychAbsenceRepository,
                            EmailService emailService,
                            NotificationService notificationService,
-                           AuditService auditService) {
+                           AuditService auditService,
+                           AvailabilityIndex availabilityIndex,
+                           AvailabilityEngine availabilityEngine) {
         this.appointmentRepository = appointmentRepository;
         this.appointmentRequestRepository = appointmentRequestRepository;
         this.appointmentRatingRepository = appointmentRatingRepository;
@@ -72,6 +76,8 @@ public class CalendarService {
         this.emailService = emailService;
         this.notificationService = notificationService;
         this.auditService = auditService;
+        this.availabilityIndex = availabilityIndex;
+        this.availabilityEngine = availabilityEngine;
     }
 
     @Transactional
@@ -91,17 +97,23 @@ public class CalendarService {
             count = Math.min(req.recurrenceCount, 52);
         }
 
+        List<Instant[]> series = new ArrayList<>(count);
         for (int i = 0; i < count; i++) {
-            Instant start = offsetTime(req.start, req.recurrenceRule, i);
-            Instant end = offsetTime(req.end, req.recurrenceRule, i);
+            series.add(new Instant[]{offsetTime(req.start, req.recurrenceRule, i), offsetTime(req.end, req.recurrenceRule, i)});
+        }
+        // Whole series checked in one pass against the database, inside this transaction
+        boolean[] conflicts = availabilityIndex.findConflictsForWrite(psychologist.getId(), series);
+
+        for (int i = 0; i < count; i++) {
+            Instant start = series.get(i)[0];
+            Instant end = series.get(i)[1];
 
             if (i > 0) {
+                if (conflicts[i]) continue; // Skip slots that overlap an appointment or an absence
                 try {
                     validateSlotTimes(start, end);
-                    validateNoOverlap(psychologist.getId(), start, end, null);
-                    validateNoAbsenceOverlap(psychologist.getId(), start, end);
                 } catch (IllegalArgumentException e) {
-                    continue; // Skip slots that overlap or are in the past
+                    continue; // Skip slots in the past
                 }
             }
 
@@ -118,7 +130,9 @@ public class CalendarService {
             if (req.notes != null && !req.notes.isBlank()) a.setNotes(req.notes);
             if (req.paymentMethod != null && !req.paymentMethod.isBlank()) a.setPaymentMethod(req.paymentMethod);
             calculateTax(a);
-            created.add(appointmentRepository.save(a));
+            AppointmentEntity saved = appointmentRepository.save(a);
+            availabilityIndex.appointmentSaved(saved);
+            created.add(saved);
         }
 
         if (!created.isEmpty()) {
@@ -154,6 +168,7 @@ public class CalendarService {
             }
             if (AppointmentStatusEnum.FREE == slot.getStatus()) {
                 appointmentRepository.delete(slot);
+                availabilityIndex.appointmentDeleted(slot);
                 deleted++;
             } else {
                 skipped++;
@@ -183,6 +198,7 @@ public class CalendarService {
                         "Horario eliminado", "El horario que solicitaste con " + psychologist.getName() + " ya no está disponible.", appointmentId);
                 });
         appointmentRepository.delete(appointment);
+        availabilityIndex.appointmentDeleted(appointment);
         auditService.logCalendarAction("APPOINTMENT_CANCELLED", appointmentId, psychologist.getId(), null);
         auditService.persistAudit("DELETE_SLOT", "APPOINTMENT", appointmentId,
                 psychologist.getId(), psychologist.getRole(), psychologist.getName(),
@@ -223,6 +239,7 @@ public class CalendarService {
         }
 
         var saved = appointmentRepository.save(appointment);
+        availabilityIndex.appointmentSaved(saved);
         auditService.logCalendarAction("APPOINTMENT_UPDATED", appointmentId, psychologist.getId(), null);
         auditService.persistAudit("EDIT_SLOT", "APPOINTMENT", appointmentId,
                 psychologist.getId(), psychologist.getRole(), psychologist.getName(),
@@ -244,12 +261,19 @@ public class CalendarService {
         if (rel.isEmpty()) return List.of();
 
         Instant now = Instant.now();
+        var psychologist = rel.get().getPsychologist();
         var slots = appointmentRepository.findByPsychologist_IdAndStartTimeBetweenOrderByStartTimeAsc(
-                        rel.get().getPsychologist().getId(), from, to)
+                        psychologist.getId(), from, to)
                 .stream()
                 .filter(s -> isTodayOrFuture(s.getStartTime(), now))
                 .filter(s -> isVisibleToUser(s, user))
                 .collect(Collectors.toList());
+        // Free hours from the weekly schedule that no stored appointment occupies
+        var virtualSlots = availabilityEngine.getVirtualSlots(psychologist, from, to);
+        if (!virtualSlots.isEmpty()) {
+            slots.addAll(virtualSlots);
+            slots.sort(Comparator.comparing(AppointmentEntity::getStartTime));
+        }
         return slots;
     }
 
@@ -276,6 +300,9 @@ public class CalendarService {
 
     @Transactional
     public void bookAppointment(UserEntity user, Long appointmentId) {
+        if (AvailabilityEngine.isVirtualId(appointmentId)) {
+            appointmentId = availabilityEngine.materialize(appointmentId).getId();
+        }
         var appt = appointmentRepository.findByIdForUpdate(appointmentId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Cita no encontrada"));
 
@@ -390,6 +417,7 @@ public class CalendarService {
                 });
         appointment.setStatus(AppointmentStatusEnum.CANCELLED);
         appointmentRepository.save(appointment);
+        availabilityIndex.appointmentSaved(appointment);
         auditService.logCalendarAction("APPOINTMENT_CANCELLED", appointmentId, psychologist.getId(),
                 appointment.getUser() != null ? appointment.getUser().getId() : null);
         auditService.persistAudit("CANCEL_APPOINTMENT", "APPOINTMENT", appointmentId,
@@ -435,6 +463,7 @@ public class CalendarService {
         appointment.setStartTime(req.newStartTime);
         appointment.setEndTime(req.newEndTime);
         appointmentRepository.save(appointment);
+        availabilityIndex.appointmentSaved(appointment);
 
         auditService.logCalendarAction("APPOINTMENT_RESCHEDULED", appointmentId, user.getId(),
                 isPatient ? appointment.getPsychologist().getId() : (appointment.getUser() != null ? appointment.getUser().getId() : null));
@@ -495,6 +524,7 @@ public class CalendarService {
         appointment.setPaymentStatus(PaymentStatusEnum.PENDING);
 
         var saved = appointmentRepository.save(appointment);
+        availabilityIndex.appointmentSaved(saved);
         auditService.logCalendarAction("APPOINTMENT_CREATED", saved.getId(), psychologist.getId(), user.getId());
         auditService.persistAudit("CREATE_APPOINTMENT", "APPOINTMENT", saved.getId(),
                 psychologist.getId(), psychologist.getRole(), psychologist.getName(),
@@ -550,6 +580,7 @@ public class CalendarService {
 
         appointment.setConfirmedAt(Instant.now());
         var saved = appointmentRepository.save(appointment);
+        availabilityIndex.appointmentSaved(saved);
         auditService.logCalendarAction("INTERNAL_SLOT_CREATED", saved.getId(), psychologist.getId(),
                 req.userId != null ? req.userId : psychologist.getId());
 
@@ -700,8 +731,9 @@ public class CalendarService {
         requirePsychologist(psychologist);
         if (!end.isAfter(start)) throw new IllegalArgumentException("La fecha de fin debe ser posterior a la de inicio");
 
-        var overlapping = psychAbsenceRepository.findOverlapping(psychologist.getId(), start, end);
-        if (!overlapping.isEmpty()) throw new IllegalArgumentException("Ya existe una ausencia en ese periodo");
+        if (availabilityIndex.hasAbsenceOverlapForWrite(psychologist.getId(), start, end)) {
+            throw new IllegalArgumentException("Ya existe una ausencia en ese periodo");
+        }
 
         PsychAbsenceEntity absence = new PsychAbsenceEntity();
         absence.setPsychologist(psychologist);
@@ -709,6 +741,7 @@ public class CalendarService {
         absence.setEndTime(end);
         absence.setReason(reason);
         var saved = psychAbsenceRepository.save(absence);
+        availabilityIndex.absenceSaved(saved);
         auditService.persistAudit("CREATE_ABSENCE", "ABSENCE", saved.getId(),
                 psychologist.getId(), psychologist.getRole(), psychologist.getName(),
                 null, "{\"reason\":\"" + (reason != null ? reason.replace("\"", "'") : "") + "\"}");
@@ -722,6 +755,7 @@ public class CalendarService {
             if (AppointmentStatusEnum.FREE == slot.getStatus()) {
                 // Cancel overlapping FREE slots
                 appointmentRepository.delete(slot);
+                availabilityIndex.appointmentDeleted(slot);
             } else if ((AppointmentStatusEnum.BOOKED == slot.getStatus()
                         || AppointmentStatusEnum.CONFIRMED == slot.getStatus())
                        && slot.getUser() != null) {
@@ -763,14 +797,14 @@ public class CalendarService {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "No tienes permiso para eliminar esta ausencia");
         }
         psychAbsenceRepository.delete(absence);
+        availabilityIndex.absenceDeleted(absence);
         auditService.persistAudit("DELETE_ABSENCE", "ABSENCE", absenceId,
                 psychologist.getId(), psychologist.getRole(), psychologist.getName(),
                 null, null);
     }
 
     private void validateNoAbsenceOverlap(Long psychologistId, Instant start, Instant end) {
-        var absences = psychAbsenceRepository.findOverlapping(psychologistId, start, end);
-        if (!absences.isEmpty()) {
+        if (availabilityIndex.hasAbsenceOverlapForWrite(psychologistId, start, end)) {
             throw new IllegalArgumentException("No se pueden crear citas durante un periodo de ausencia");
         }
     }
@@ -812,13 +846,9 @@ public class CalendarService {
     }
 
     private void validateNoOverlap(Long psychologistId, Instant start, Instant end, Long excludeAppointmentId) {
-        var existing = appointmentRepository.findByPsychologist_IdAndStartTimeBetweenOrderByStartTimeAsc(
-                psychologistId, start.minusSeconds(1), end.plusSeconds(1));
-        boolean overlap = existing.stream()
-                .filter(apt -> excludeAppointmentId == null || !apt.getId().equals(excludeAppointmentId))
-                .anyMatch(apt -> AppointmentStatusEnum.CANCELLED != apt.getStatus()
-                        && start.isBefore(apt.getEndTime()) && end.isAfter(apt.getStartTime()));
-        if (overlap) throw new IllegalArgumentException("Ya existe una cita en este horario");
+        if (availabilityIndex.hasAppointmentOverlapForWrite(psychologistId, start, end, excludeAppointmentId)) {
+            throw new IllegalArgumentException("Ya existe una cita en este horario");
+        }
     }
 
     private void validatePrice(BigDecimal price) {
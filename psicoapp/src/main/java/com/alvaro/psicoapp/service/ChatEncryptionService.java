@@ -18,8 +18,13 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.security.spec.KeySpec;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 @Service
 public class ChatEncryptionService {
@@ -32,7 +37,7 @@ public class ChatEncryptionService {
     private static final int PBKDF2_ITERATIONS = 100_000;
     private static final int SALT_LENGTH = 32;
 
-    private final ConcurrentHashMap<String, SecretKey> keyCache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<SecretKey>> keyCache = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, SecretKey> legacyKeyCache = new ConcurrentHashMap<>();
     private final SecureRandom secureRandom = new SecureRandom();
     private final ChatConversationRepository conversationRepository;
@@ -45,7 +50,7 @@ public class ChatEncryptionService {
     public SecretKey getOrCreateKey(Long psychologistId, Long userId) {
         String keyId = psychologistId + ":" + userId;
 
-        return keyCache.computeIfAbsent(keyId, k -> {
+        return cachedKey(keyId, () -> {
             try {
                 ChatConversationEntity conv = conversationRepository
                     .findByPsychologistIdAndUserId(psychologistId, userId)
@@ -72,6 +77,36 @@ public class ChatEncryptionService {
         });
     }
 
+    /**
+     * Derives a conversation key once per keyId. The derivation (a lookup or insert of the salt
+     * plus 100k PBKDF2 rounds) must not run inside computeIfAbsent: that holds the map bin's
+     * monitor, which pins a virtual thread for the whole derivation. Concurrent callers for the
+     * same key wait on the first caller's future instead; a failed derivation is retried next time.
+     */
+    private SecretKey cachedKey(String keyId, Supplier<SecretKey> derive) {
+        CompletableFuture<SecretKey> cached = keyCache.get(keyId);
+        if (cached == null) {
+            CompletableFuture<SecretKey> derivation = new CompletableFuture<>();
+            cached = keyCache.putIfAbsent(keyId, derivation);
+            if (cached == null) {
+                try {
+                    SecretKey key = derive.get();
+                    derivation.complete(key);
+                    return key;
+                } catch (RuntimeException e) {
+                    keyCache.remove(keyId, derivation);
+                    derivation.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+        try {
+            return cached.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
     private SecretKey getLegacyKey(Long psychologistId, Long userId) {
         String keyId = psychologistId + ":" + userId;
         return legacyKeyCache.computeIfAbsent(keyId, k -> {
@@ -137,21 +172,60 @@ public class ChatEncryptionService {
         }
     }
 
+    /**
+     * Decrypts a page of one conversation's messages with a single Cipher and one key lookup.
+     * Messages that can't be decrypted with either key come back as null and are logged once.
+     */
+    @Transactional
+    public List<String> decryptAll(List<String> encryptedMessages, Long psychologistId, Long userId) {
+        Cipher cipher;
+        try {
+            cipher = Cipher.getInstance(TRANSFORMATION);
+        } catch (Exception e) {
+            throw new RuntimeException("Error descifrando mensajes", e);
+        }
+        SecretKey key = getOrCreateKey(psychologistId, userId);
+        SecretKey legacyKey = null;
+        List<String> plaintexts = new ArrayList<>(encryptedMessages.size());
+        int failures = 0;
+        for (String message : encryptedMessages) {
+            if (message == null || message.isEmpty()) {
+                plaintexts.add(message);
+                continue;
+            }
+            String plaintext;
+            try {
+                plaintext = decryptWithKey(cipher, message, key);
+            } catch (Exception e) {
+                try {
+                    if (legacyKey == null) legacyKey = getLegacyKey(psychologistId, userId);
+                    plaintext = decryptWithKey(cipher, message, legacyKey);
+                } catch (Exception e2) {
+                    plaintext = null;
+                    failures++;
+                }
+            }
+            plaintexts.add(plaintext);
+        }
+        if (failures > 0) {
+            logger.warn("SECURITY: Chat decryption failure psychologistId={} userId={} messages={} — possible unauthorized access attempt",
+                    psychologistId, userId, failures);
+        }
+        return plaintexts;
+    }
+
     private String decryptWithKey(String encryptedMessage, SecretKey key) throws Exception {
-        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        return decryptWithKey(Cipher.getInstance(TRANSFORMATION), encryptedMessage, key);
+    }
 
+    private String decryptWithKey(Cipher cipher, String encryptedMessage, SecretKey key) throws Exception {
         byte[] encryptedBytes = Base64.getDecoder().decode(encryptedMessage);
 
-        ByteBuffer byteBuffer = ByteBuffer.wrap(encryptedBytes);
-        byte[] iv = new byte[GCM_IV_LENGTH];
-        byteBuffer.get(iv);
-        byte[] ciphertext = new byte[byteBuffer.remaining()];
-        byteBuffer.get(ciphertext);
-
-        GCMParameterSpec parameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv);
+        // IV prefix and ciphertext are read in place, without copying either out
+        GCMParameterSpec parameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH * 8, encryptedBytes, 0, GCM_IV_LENGTH);
         cipher.init(Cipher.DECRYPT_MODE, key, parameterSpec);
 
-        byte[] plaintext = cipher.doFinal(ciphertext);
+        byte[] plaintext = cipher.doFinal(encryptedBytes, GCM_IV_LENGTH, encryptedBytes.length - GCM_IV_LENGTH);
         return new String(plaintext, StandardCharsets.UTF_8);
     }
 
@@ -212,7 +286,7 @@ public class ChatEncryptionService {
     SecretKey getOrCreateClinicKey(Long companyId, Long patientId) {
         String keyId = "clinic:" + companyId + ":" + patientId;
 
-        return keyCache.computeIfAbsent(keyId, k -> {
+        return cachedKey(keyId, () -> {
             try {
                 // Reuse chat_conversations table with a negative companyId to avoid collisions
                 // with psychologist-user conversations (psychologist IDs are always positive user IDs)
@@ -45,6 +45,8 @@ public class ClinicService {
     private final EmailService emailService;
     private final StripeService stripeService;
     private final AuditService auditService;
+    private final AvailabilityIndex availabilityIndex;
+    private final UploadStorageService uploadStorageService;
 
     @Value("${app.base.url:http://localhost:5173}")
     private String baseUrl;
@@ -62,7 +64,9 @@ public class ClinicService {
                          PsychAbsenceRepository psychAbsenceRepository,
                          EmailService emailService,
                          StripeService stripeService,
-                         AuditService auditService) {
+                         AuditService auditService,
+                         AvailabilityIndex availabilityIndex,
+                         UploadStorageService uploadStorageService) {
         this.companyRepository = companyRepository;
         this.userRepository = userRepository;
         this.appointmentRepository = appointmentRepository;
@@ -77,6 +81,8 @@ public class ClinicService {
         this.emailService = emailService;
         this.stripeService = stripeService;
         this.auditService = auditService;
+        this.availabilityIndex = availabilityIndex;
+        this.uploadStorageService = uploadStorageService;
     }
 
     // --- DTOs ---
@@ -177,7 +183,7 @@ public class ClinicService {
                     .map(ClinicRoomEntity::getName).orElse(null);
         }
         return new ClinicAppointmentDto(
-                a.getId(), psych.getId(), psych.getName(), psych.getAvatarUrl(),
+                a.getId(), psych.getId(), psych.getName(), AvatarThumbnailService.thumbnailUrl(psych.getAvatarUrl(), 48),
                 patientId, patientName,
                 a.getStartTime() != null ? a.getStartTime().toString() : null,
                 a.getEndTime() != null ? a.getEndTime().toString() : null,
@@ -274,7 +280,8 @@ public class ClinicService {
         var company = getCompany(email);
         return userRepository.findByCompanyId(company.getId()).stream()
                 .filter(u -> RoleConstants.PSYCHOLOGIST.equals(u.getRole()))
-                .map(u -> new ClinicPsychologistDto(u.getId(), u.getName(), u.getEmail(), u.getAvatarUrl()))
+                .map(u -> new ClinicPsychologistDto(u.getId(), u.getName(), u.getEmail(),
+                        AvatarThumbnailService.thumbnailUrl(u.getAvatarUrl(), 48)))
                 .collect(Collectors.toList());
     }
 
@@ -350,9 +357,18 @@ public class ClinicService {
 
         List<ClinicAppointmentDto> created = new ArrayList<>();
 
+        List<Instant[]> series = new ArrayList<>(count);
         for (int i = 0; i < count; i++) {
-            Instant start = offsetTime(baseStart, req.recurrenceRule(), i);
-            Instant end = offsetTime(baseEnd, req.recurrenceRule(), i);
+            series.add(new Instant[]{offsetTime(baseStart, req.recurrenceRule(), i), offsetTime(baseEnd, req.recurrenceRule(), i)});
+        }
+        // Absence overlaps for the recurring part are resolved in one pass against the database
+        boolean[] absenceConflicts = count > 1
+                ? availabilityIndex.findAbsenceConflictsForWrite(psych.getId(), series.subList(1, count))
+                : new boolean[0];
+
+        for (int i = 0; i < count; i++) {
+            Instant start = series.get(i)[0];
+            Instant end = series.get(i)[1];
 
             // Check double-booking
             if (appointmentRepository.existsActiveAppointment(psych.getId(), start)) {
@@ -361,10 +377,7 @@ public class ClinicService {
             }
 
             // Check absence overlap for recurring appointments
-            if (i > 0) {
-                var absences = psychAbsenceRepository.findOverlapping(psych.getId(), start, end);
-                if (!absences.isEmpty()) continue; // Skip slots overlapping absences
-            }
+            if (i > 0 && absenceConflicts[i - 1]) continue; // Skip slots overlapping absences
 
             AppointmentEntity appt = new AppointmentEntity();
             appt.setPsychologist(psych);
@@ -393,6 +406,7 @@ public class ClinicService {
             calculateTax(appt);
             appt.setConfirmedAt(Instant.now());
             appointmentRepository.save(appt);
+            availabilityIndex.appointmentSaved(appt);
 
             created.add(toAppointmentDto(appt, psych));
         }
@@ -456,6 +470,7 @@ public class ClinicService {
             calculateTax(appt);
         }
         appointmentRepository.save(appt);
+        availabilityIndex.appointmentSaved(appt);
 
         auditService.persistAudit("UPDATE_APPOINTMENT", "APPOINTMENT", appointmentId,
                 appt.getPsychologist().getId(), RoleConstants.PSYCHOLOGIST, appt.getPsychologist().getName(),
@@ -473,6 +488,7 @@ public class ClinicService {
         assertPsychBelongsToCompany(appt.getPsychologist(), company.getId());
         appt.setStatus(AppointmentStatusEnum.CANCELLED);
         appointmentRepository.save(appt);
+        availabilityIndex.appointmentSaved(appt);
 
         auditService.persistAudit("CANCEL_APPOINTMENT", "APPOINTMENT", appointmentId,
                 appt.getPsychologist().getId(), RoleConstants.PSYCHOLOGIST, appt.getPsychologist().getName(),
@@ -890,26 +906,18 @@ public class ClinicService {
         var company = getCompany(email);
         assertPatientBelongsToCompany(patientId, company.getId());
         validateUploadedFile(file);
-        try {
-            java.io.File dir = new java.io.File("uploads/clinic-docs");
-            if (!dir.exists()) dir.mkdirs();
-            String orig = file.getOriginalFilename();
-            String ext = (orig != null && orig.contains(".")) ? orig.substring(orig.lastIndexOf('.')) : "";
-            String stored = UUID.randomUUID() + ext;
-            file.transferTo(new java.io.File(dir, stored));
-            ClinicPatientDocumentEntity doc = new ClinicPatientDocumentEntity();
-            doc.setCompanyId(company.getId());
-            doc.setPatientId(patientId);
-            doc.setFileName("clinic-docs/" + stored);
-            doc.setOriginalName(orig != null ? orig : stored);
-            doc.setFileSize(file.getSize());
-            doc.setUploadedByEmail(email);
-            clinicPatientDocumentRepository.save(doc);
-            return new DocumentDto(doc.getId(), doc.getOriginalName(), doc.getFileName(),
-                    doc.getFileSize(), doc.getUploadedAt().toString());
-        } catch (Exception ex) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error al subir el archivo");
-        }
+        String orig = file.getOriginalFilename();
+        UploadStorageService.StoredFile stored = uploadStorageService.store(UploadStorageService.CLINIC_DOCS, file);
+        ClinicPatientDocumentEntity doc = new ClinicPatientDocumentEntity();
+        doc.setCompanyId(company.getId());
+        doc.setPatientId(patientId);
+        doc.setFileName(UploadStorageService.CLINIC_DOCS + "/" + stored.key());
+        doc.setOriginalName(orig != null ? orig : stored.key());
+        doc.setFileSize(stored.size());
+        doc.setUploadedByEmail(email);
+        clinicPatientDocumentRepository.save(doc);
+        return new DocumentDto(doc.getId(), doc.getOriginalName(), doc.getFileName(),
+                doc.getFileSize(), doc.getUploadedAt().toString());
     }
 
     @Transactional
@@ -919,7 +927,7 @@ public class ClinicService {
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Documento no encontrado"));
         if (!company.getId().equals(doc.getCompanyId()))
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "No autorizado");
-        try { new java.io.File("uploads/" + doc.getFileName()).delete(); } catch (Exception ignored) {}
+        uploadStorageService.release(UploadStorageService.CLINIC_DOCS, UploadStorageService.keyOf(doc.getFileName()));
         clinicPatientDocumentRepository.delete(doc);
     }
 
@@ -1041,7 +1049,7 @@ public class ClinicService {
     // -------------------------------------------------------------------------
     private ClinicAdminDto toAdminDto(ClinicAdminEntity a) {
         UserEntity u = a.getUser();
-        return new ClinicAdminDto(a.getId(), u.getId(), u.getName(), u.getEmail(), u.getAvatarUrl(),
+        return new ClinicAdminDto(a.getId(), u.getId(), u.getName(), u.getEmail(), AvatarThumbnailService.thumbnailUrl(u.getAvatarUrl(), 48),
                 a.getRole(), a.getStatus(), a.getInvitedByEmail(),
                 a.getInvitedAt() != null ? a.getInvitedAt().toString() : null,
                 a.getAcceptedAt() != null ? a.getAcceptedAt().toString() : null);
@@ -0,0 +1,27 @@
+package com.alvaro.psicoapp.service;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * How a @Scheduled job runs when several instances are deployed (see JobLeaseService). Jobs
+ * without it are {@link Mode#SINGLE}.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ClusterJob {
+    Mode value();
+
+    enum Mode {
+        /** On one node at a time, under the lease named after the job */
+        SINGLE,
+        /** On every node: the job works on that node's own memory (caches, buffers) */
+        EVERY_NODE,
+        /** On every node, each one taking ID ranges through JobLeaseService.forEachPartition */
+        PARTITIONED
+    }
+}
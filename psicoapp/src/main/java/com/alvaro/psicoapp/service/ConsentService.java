@@ -175,6 +175,8 @@ public class ConsentService {
         consent.setStatus(ConsentRequestStatus.SIGNED);
         ConsentRequestEntity saved = consentRequestRepository.save(consent);
         auditService.logSelfDataAccess(user.getId(), "CONSENT_SIGN", "UPDATE");
+        auditService.persistAudit(AuditService.CONSENT_SIGN, "CONSENT", saved.getId(),
+                user.getId(), user.getRole(), user.getName(), user.getId(), null);
         return toDto(saved, true);
     }
 
@@ -3,261 +3,200 @@ package com.alvaro.psicoapp.service;
 import com.alvaro.psicoapp.domain.*;
 import com.alvaro.psicoapp.repository.*;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
 import java.util.List;
-
+import java.util.Set;
+
+/**
+ * Excel exports written straight to an output stream. Sheets are SXSSF: only the last
+ * {@link #ROW_WINDOW} rows stay in heap, older ones are flushed to compressed temp files, and
+ * results are read in keyset pages, so memory stays flat whatever the size of the history.
+ *
+ * Methods don't need an open transaction: every query returns scalar rows.
+ */
 @Service
 public class ExcelExportService {
+	private static final int ROW_WINDOW = 100;
+	private static final int PAGE_SIZE = 500;
+	private static final String[] HEADERS = {"Código", "Puntuación", "Puntuación Máxima", "Porcentaje (%)"};
+	// SXSSF can't autosize flushed rows: fixed widths (1/256 of a character)
+	private static final int[] COLUMN_WIDTHS = {40 * 256, 14 * 256, 14 * 256, 20 * 256, 16 * 256};
+
 	private final TestResultRepository testResultRepository;
 	private final FactorResultRepository factorResultRepository;
-	private final UserRepository userRepository;
 	private final TestRepository testRepository;
 
 	public ExcelExportService(
 			TestResultRepository testResultRepository,
 			FactorResultRepository factorResultRepository,
-			UserRepository userRepository,
 			TestRepository testRepository) {
 		this.testResultRepository = testResultRepository;
 		this.factorResultRepository = factorResultRepository;
-		this.userRepository = userRepository;
 		this.testRepository = testRepository;
 	}
 
-	public byte[] exportUserResults(Long userId) throws IOException {
-		UserEntity user = userRepository.findById(userId).orElseThrow();
-
-		Workbook workbook = new XSSFWorkbook();
-		CreationHelper createHelper = workbook.getCreationHelper();
-
-		CellStyle headerStyle = workbook.createCellStyle();
-		Font headerFont = workbook.createFont();
-		headerFont.setBold(true);
-		headerFont.setFontHeightInPoints((short) 12);
-		headerStyle.setFont(headerFont);
-		headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
-		headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-
-		CellStyle dataStyle = workbook.createCellStyle();
-		dataStyle.setDataFormat(createHelper.createDataFormat().getFormat("#,##0.00"));
-
-		List<TestResultEntity> allResults = testResultRepository.findByUser(user);
-		List<FactorResultEntity> allFactorResults = factorResultRepository.findByUser(user);
-
-		java.util.Map<Long, List<TestResultEntity>> resultsByTest = allResults.stream()
-				.collect(java.util.stream.Collectors.groupingBy(r -> r.getTest().getId()));
+	/** One sheet per test with subfactor results */
+	public void writeUserResults(Long userId, OutputStream out) throws IOException {
+		try (Export export = new Export()) {
+			SXSSFSheet sheet = null;
+			Long currentTestId = null;
+			int[] rowNum = {0};
+			Long afterTestId = 0L;
+			Long afterSubfactorId = 0L;
+			while (true) {
+				List<Object[]> page = testResultRepository.findExportPage(userId, 0L, Long.MAX_VALUE,
+						afterTestId, afterSubfactorId, PageRequest.of(0, PAGE_SIZE));
+				for (Object[] row : page) {
+					Long testId = (Long) row[0];
+					if (!testId.equals(currentTestId)) {
+						if (currentTestId != null) export.writeFactors(sheet, rowNum, userId, currentTestId);
+						currentTestId = testId;
+						sheet = export.startSheet((String) row[1]);
+						rowNum[0] = export.writeTitle(sheet, (String) row[1]);
+						export.writeHeader(sheet, rowNum[0]++, "Subfactor");
+					}
+					export.writeRow(sheet, rowNum[0]++, row, 3);
+				}
+				if (page.size() < PAGE_SIZE) break;
+				Object[] last = page.get(page.size() - 1);
+				afterTestId = (Long) last[0];
+				afterSubfactorId = (Long) last[2];
+			}
+			if (currentTestId != null) export.writeFactors(sheet, rowNum, userId, currentTestId);
+			export.write(out);
+		}
+	}
 
-		int sheetIndex = 0;
-		for (java.util.Map.Entry<Long, List<TestResultEntity>> entry : resultsByTest.entrySet()) {
-			Long testId = entry.getKey();
-			TestEntity test = testRepository.findById(testId).orElseThrow();
-			List<TestResultEntity> testResults = entry.getValue();
+	/** A single sheet, even if the user has no results for the test */
+	public void writeTestResults(Long userId, Long testId, OutputStream out) throws IOException {
+		TestEntity test = testRepository.findById(testId).orElseThrow();
+		try (Export export = new Export()) {
+			SXSSFSheet sheet = export.startSheet(test.getTitle());
+			int[] rowNum = {export.writeTitle(sheet, test.getTitle())};
+			Long afterSubfactorId = 0L;
+			boolean any = false;
+			while (true) {
+				List<Object[]> page = testResultRepository.findExportPage(userId, testId, testId,
+						testId, afterSubfactorId, PageRequest.of(0, PAGE_SIZE));
+				if (!any && !page.isEmpty()) {
+					export.writeHeader(sheet, rowNum[0]++, "Subfactor");
+					any = true;
+				}
+				for (Object[] row : page) {
+					export.writeRow(sheet, rowNum[0]++, row, 3);
+				}
+				if (page.size() < PAGE_SIZE) break;
+				afterSubfactorId = (Long) page.get(page.size() - 1)[2];
+			}
+			export.writeFactors(sheet, rowNum, userId, testId);
+			export.write(out);
+		}
+	}
 
-			Sheet sheet = workbook.createSheet(test.getTitle());
-			sheetIndex++;
+	/** Workbook, shared styles and sheet names of one export */
+	private final class Export implements AutoCloseable {
+		private final SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+		private final CellStyle titleStyle;
+		private final CellStyle headerStyle;
+		private final CellStyle dataStyle;
+		private final Set<String> sheetNames = new HashSet<>();
 
-			int rowNum = 0;
+		Export() {
+			workbook.setCompressTempFiles(true);
 
-			Row titleRow = sheet.createRow(rowNum++);
-			Cell titleCell = titleRow.createCell(0);
-			titleCell.setCellValue("Resultados del Test: " + test.getTitle());
-			CellStyle titleStyle = workbook.createCellStyle();
+			titleStyle = workbook.createCellStyle();
 			Font titleFont = workbook.createFont();
 			titleFont.setBold(true);
 			titleFont.setFontHeightInPoints((short) 14);
 			titleStyle.setFont(titleFont);
-			titleCell.setCellStyle(titleStyle);
-
-			rowNum++;
-
-			Row headerRow = sheet.createRow(rowNum++);
-			headerRow.createCell(0).setCellValue("Subfactor");
-			headerRow.createCell(1).setCellValue("Código");
-			headerRow.createCell(2).setCellValue("Puntuación");
-			headerRow.createCell(3).setCellValue("Puntuación Máxima");
-			headerRow.createCell(4).setCellValue("Porcentaje (%)");
-
-			for (int i = 0; i < 5; i++) {
-				headerRow.getCell(i).setCellStyle(headerStyle);
-			}
-
-			for (TestResultEntity result : testResults) {
-				Row row = sheet.createRow(rowNum++);
-				row.createCell(0).setCellValue(result.getSubfactor().getName());
-				row.createCell(1).setCellValue(result.getSubfactor().getCode());
-
-				Cell scoreCell = row.createCell(2);
-				scoreCell.setCellValue(result.getScore());
-				scoreCell.setCellStyle(dataStyle);
-
-				Cell maxScoreCell = row.createCell(3);
-				maxScoreCell.setCellValue(result.getMaxScore());
-				maxScoreCell.setCellStyle(dataStyle);
-
-				Cell percentageCell = row.createCell(4);
-				percentageCell.setCellValue(result.getPercentage());
-				percentageCell.setCellStyle(dataStyle);
-			}
-
-			rowNum++;
-
-			List<FactorResultEntity> testFactorResults = allFactorResults.stream()
-					.filter(r -> r.getTest().getId().equals(testId))
-					.toList();
-
-			if (!testFactorResults.isEmpty()) {
-				Row factorHeaderRow = sheet.createRow(rowNum++);
-				factorHeaderRow.createCell(0).setCellValue("Factor General");
-				factorHeaderRow.createCell(1).setCellValue("Código");
-				factorHeaderRow.createCell(2).setCellValue("Puntuación");
-				factorHeaderRow.createCell(3).setCellValue("Puntuación Máxima");
-				factorHeaderRow.createCell(4).setCellValue("Porcentaje (%)");
-
-				for (int i = 0; i < 5; i++) {
-					factorHeaderRow.getCell(i).setCellStyle(headerStyle);
-				}
 
-				for (FactorResultEntity result : testFactorResults) {
-					Row row = sheet.createRow(rowNum++);
-					row.createCell(0).setCellValue(result.getFactor().getName());
-					row.createCell(1).setCellValue(result.getFactor().getCode());
+			headerStyle = workbook.createCellStyle();
+			Font headerFont = workbook.createFont();
+			headerFont.setBold(true);
+			headerFont.setFontHeightInPoints((short) 12);
+			headerStyle.setFont(headerFont);
+			headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
+			headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
 
-					Cell scoreCell = row.createCell(2);
-					scoreCell.setCellValue(result.getScore());
-					scoreCell.setCellStyle(dataStyle);
-
-					Cell maxScoreCell = row.createCell(3);
-					maxScoreCell.setCellValue(result.getMaxScore());
-					maxScoreCell.setCellStyle(dataStyle);
+			dataStyle = workbook.createCellStyle();
+			dataStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("#,##0.00"));
+		}
 
-					Cell percentageCell = row.createCell(4);
-					percentageCell.setCellValue(result.getPercentage());
-					percentageCell.setCellStyle(dataStyle);
-				}
+		// Sheet names are limited to 31 chars without []:*?/\ and must be unique
+		SXSSFSheet startSheet(String title) {
+			String base = WorkbookUtil.createSafeSheetName(title == null || title.isBlank() ? "Test" : title);
+			String name = base;
+			for (int i = 2; !sheetNames.add(name.toLowerCase()); i++) {
+				String suffix = " (" + i + ")";
+				name = base.substring(0, Math.min(base.length(), 31 - suffix.length())) + suffix;
 			}
-
-			for (int i = 0; i < 5; i++) {
-				sheet.autoSizeColumn(i);
+			SXSSFSheet sheet = workbook.createSheet(name);
+			for (int i = 0; i < COLUMN_WIDTHS.length; i++) {
+				sheet.setColumnWidth(i, COLUMN_WIDTHS[i]);
 			}
+			return sheet;
 		}
 
-		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-		workbook.write(outputStream);
-		workbook.close();
-
-		return outputStream.toByteArray();
-	}
-
-	public byte[] exportTestResults(Long userId, Long testId) throws IOException {
-		UserEntity user = userRepository.findById(userId).orElseThrow();
-		TestEntity test = testRepository.findById(testId).orElseThrow();
-
-		Workbook workbook = new XSSFWorkbook();
-		CreationHelper createHelper = workbook.getCreationHelper();
-
-		CellStyle headerStyle = workbook.createCellStyle();
-		Font headerFont = workbook.createFont();
-		headerFont.setBold(true);
-		headerFont.setFontHeightInPoints((short) 12);
-		headerStyle.setFont(headerFont);
-		headerStyle.setFillForegroundColor(IndexedColors.GREY_25_PERCENT.getIndex());
-		headerStyle.setFillPattern(FillPatternType.SOLID_FOREGROUND);
-
-		CellStyle dataStyle = workbook.createCellStyle();
-		dataStyle.setDataFormat(createHelper.createDataFormat().getFormat("#,##0.00"));
-
-		Sheet sheet = workbook.createSheet(test.getTitle());
-		int rowNum = 0;
-
-		Row titleRow = sheet.createRow(rowNum++);
-		Cell titleCell = titleRow.createCell(0);
-		titleCell.setCellValue("Resultados del Test: " + test.getTitle());
-		CellStyle titleStyle = workbook.createCellStyle();
-		Font titleFont = workbook.createFont();
-		titleFont.setBold(true);
-		titleFont.setFontHeightInPoints((short) 14);
-		titleStyle.setFont(titleFont);
-		titleCell.setCellStyle(titleStyle);
-
-		rowNum++;
-
-		List<TestResultEntity> subfactorResults = testResultRepository.findByUserAndTest(user, test);
-		if (!subfactorResults.isEmpty()) {
-			Row headerRow = sheet.createRow(rowNum++);
-			headerRow.createCell(0).setCellValue("Subfactor");
-			headerRow.createCell(1).setCellValue("Código");
-			headerRow.createCell(2).setCellValue("Puntuación");
-			headerRow.createCell(3).setCellValue("Puntuación Máxima");
-			headerRow.createCell(4).setCellValue("Porcentaje (%)");
+		/** @return next free row */
+		int writeTitle(Sheet sheet, String title) {
+			Cell titleCell = sheet.createRow(0).createCell(0);
+			titleCell.setCellValue("Resultados del Test: " + title);
+			titleCell.setCellStyle(titleStyle);
+			return 2;
+		}
 
-			for (int i = 0; i < 5; i++) {
-				headerRow.getCell(i).setCellStyle(headerStyle);
+		void writeHeader(Sheet sheet, int rowNum, String firstColumn) {
+			Row headerRow = sheet.createRow(rowNum);
+			headerRow.createCell(0).setCellValue(firstColumn);
+			for (int i = 0; i < HEADERS.length; i++) {
+				headerRow.createCell(i + 1).setCellValue(HEADERS[i]);
 			}
-
-			for (TestResultEntity result : subfactorResults) {
-				Row row = sheet.createRow(rowNum++);
-				row.createCell(0).setCellValue(result.getSubfactor().getName());
-				row.createCell(1).setCellValue(result.getSubfactor().getCode());
-
-				Cell scoreCell = row.createCell(2);
-				scoreCell.setCellValue(result.getScore());
-				scoreCell.setCellStyle(dataStyle);
-
-				Cell maxScoreCell = row.createCell(3);
-				maxScoreCell.setCellValue(result.getMaxScore());
-				maxScoreCell.setCellStyle(dataStyle);
-
-				Cell percentageCell = row.createCell(4);
-				percentageCell.setCellValue(result.getPercentage());
-				percentageCell.setCellStyle(dataStyle);
+			for (int i = 0; i <= HEADERS.length; i++) {
+				headerRow.getCell(i).setCellStyle(headerStyle);
 			}
-
-			rowNum++;
 		}
 
-		List<FactorResultEntity> factorResults = factorResultRepository.findByUserAndTest(user, test);
-		if (!factorResults.isEmpty()) {
-			Row factorHeaderRow = sheet.createRow(rowNum++);
-			factorHeaderRow.createCell(0).setCellValue("Factor General");
-			factorHeaderRow.createCell(1).setCellValue("Código");
-			factorHeaderRow.createCell(2).setCellValue("Puntuación");
-			factorHeaderRow.createCell(3).setCellValue("Puntuación Máxima");
-			factorHeaderRow.createCell(4).setCellValue("Porcentaje (%)");
-
-			for (int i = 0; i < 5; i++) {
-				factorHeaderRow.getCell(i).setCellStyle(headerStyle);
+		/** Writes {name, code, score, maxScore, percentage} starting at {@code values[from]} */
+		void writeRow(Sheet sheet, int rowNum, Object[] values, int from) {
+			Row row = sheet.createRow(rowNum);
+			row.createCell(0).setCellValue((String) values[from]);
+			row.createCell(1).setCellValue((String) values[from + 1]);
+			for (int i = 2; i < 5; i++) {
+				Cell cell = row.createCell(i);
+				Double value = (Double) values[from + i];
+				if (value != null) cell.setCellValue(value);
+				cell.setCellStyle(dataStyle);
 			}
+		}
 
-			for (FactorResultEntity result : factorResults) {
-				Row row = sheet.createRow(rowNum++);
-				row.createCell(0).setCellValue(result.getFactor().getName());
-				row.createCell(1).setCellValue(result.getFactor().getCode());
-
-				Cell scoreCell = row.createCell(2);
-				scoreCell.setCellValue(result.getScore());
-				scoreCell.setCellStyle(dataStyle);
-
-				Cell maxScoreCell = row.createCell(3);
-				maxScoreCell.setCellValue(result.getMaxScore());
-				maxScoreCell.setCellStyle(dataStyle);
-
-				Cell percentageCell = row.createCell(4);
-				percentageCell.setCellValue(result.getPercentage());
-				percentageCell.setCellStyle(dataStyle);
+		void writeFactors(Sheet sheet, int[] rowNum, Long userId, Long testId) {
+			List<Object[]> factors = factorResultRepository.findExportRows(userId, testId);
+			if (factors.isEmpty()) return;
+			rowNum[0]++;
+			writeHeader(sheet, rowNum[0]++, "Factor General");
+			for (Object[] factor : factors) {
+				writeRow(sheet, rowNum[0]++, factor, 0);
 			}
 		}
 
-		for (int i = 0; i < 5; i++) {
-			sheet.autoSizeColumn(i);
+		void write(OutputStream out) throws IOException {
+			workbook.write(out);
 		}
 
-		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-		workbook.write(outputStream);
-		workbook.close();
-
-		return outputStream.toByteArray();
+		@Override
+		public void close() throws IOException {
+			try {
+				workbook.dispose();
+			} finally {
+				workbook.close();
+			}
+		}
 	}
 }
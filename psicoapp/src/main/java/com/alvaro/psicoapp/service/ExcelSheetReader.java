@@ -0,0 +1,172 @@
+package com.alvaro.psicoapp.service;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Reads the first sheet of a spreadsheet row by row, keeping only the first
+ * {@link #MAX_COLUMNS} cells of each row. .xlsx files are parsed with SAX straight from the
+ * sheet XML, so memory doesn't grow with the file; legacy .xls files (binary, small in
+ * practice) go through the HSSF user model.
+ *
+ * Cells keep their POI type (a numeric cell and the text "3" are different to the import
+ * heuristics); formula cells carry their cached result.
+ */
+public final class ExcelSheetReader {
+	public static final int MAX_COLUMNS = 5;
+
+	public enum CellKind { STRING, NUMERIC, BOOLEAN, FORMULA }
+
+	/** text is set for STRING, BOOLEAN and string FORMULA results; number for NUMERIC and numeric FORMULA results */
+	public record SheetCell(CellKind kind, String text, Double number) {}
+
+	/** A row present in the sheet; missing cells are null */
+	public record SheetRow(int index, SheetCell[] cells) {
+		public SheetCell cell(int column) {
+			return column < cells.length ? cells[column] : null;
+		}
+	}
+
+	private ExcelSheetReader() {}
+
+	public static void readXlsx(File file, Consumer<SheetRow> rows) throws Exception {
+		try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+			XSSFReader reader = new XSSFReader(pkg);
+			ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+			Iterator<InputStream> sheets = reader.getSheetsData();
+			if (!sheets.hasNext()) return;
+			try (InputStream sheet = sheets.next()) {
+				XMLReader parser = XMLHelper.newXMLReader();
+				parser.setContentHandler(new SheetHandler(strings, rows));
+				parser.parse(new InputSource(sheet));
+			}
+		}
+	}
+
+	public static void readXls(InputStream in, Consumer<SheetRow> rows) throws IOException {
+		try (HSSFWorkbook workbook = new HSSFWorkbook(in)) {
+			Sheet sheet = workbook.getSheetAt(0);
+			for (Row row : sheet) {
+				SheetCell[] cells = new SheetCell[MAX_COLUMNS];
+				for (int col = 0; col < Math.min(MAX_COLUMNS, Math.max(0, row.getLastCellNum())); col++) {
+					cells[col] = toSheetCell(row.getCell(col));
+				}
+				rows.accept(new SheetRow(row.getRowNum(), cells));
+			}
+		}
+	}
+
+	private static SheetCell toSheetCell(Cell cell) {
+		if (cell == null) return null;
+		return switch (cell.getCellType()) {
+			case STRING -> new SheetCell(CellKind.STRING, cell.getStringCellValue(), null);
+			case NUMERIC -> new SheetCell(CellKind.NUMERIC, null, cell.getNumericCellValue());
+			case BOOLEAN -> new SheetCell(CellKind.BOOLEAN, String.valueOf(cell.getBooleanCellValue()), null);
+			case FORMULA -> switch (cell.getCachedFormulaResultType()) {
+				case STRING -> new SheetCell(CellKind.FORMULA, cell.getStringCellValue(), null);
+				case NUMERIC -> new SheetCell(CellKind.FORMULA, null, cell.getNumericCellValue());
+				default -> new SheetCell(CellKind.FORMULA, null, null);
+			};
+			default -> null;
+		};
+	}
+
+	/** SAX handler over sheetN.xml: &lt;row r&gt;&lt;c r t&gt;&lt;f/&gt;&lt;v/&gt;|&lt;is&gt;&lt;t/&gt;&lt;/is&gt;&lt;/c&gt;&lt;/row&gt; */
+	private static final class SheetHandler extends DefaultHandler {
+		private final ReadOnlySharedStringsTable strings;
+		private final Consumer<SheetRow> rows;
+		private final StringBuilder value = new StringBuilder();
+		private int rowIndex = -1;
+		private SheetCell[] cells;
+		private int column;
+		private String type;
+		private boolean formula;
+		private boolean hasValue;
+		private boolean capturing;
+
+		SheetHandler(ReadOnlySharedStringsTable strings, Consumer<SheetRow> rows) {
+			this.strings = strings;
+			this.rows = rows;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) {
+			switch (localName) {
+				case "row" -> {
+					String r = attributes.getValue("r");
+					rowIndex = r != null ? Integer.parseInt(r) - 1 : rowIndex + 1;
+					cells = new SheetCell[MAX_COLUMNS];
+					column = -1;
+				}
+				case "c" -> {
+					String r = attributes.getValue("r");
+					column = r != null ? new CellReference(r).getCol() : column + 1;
+					type = attributes.getValue("t");
+					formula = false;
+					hasValue = false;
+					value.setLength(0);
+				}
+				case "f" -> formula = true;
+				case "v", "t" -> {
+					capturing = true;
+					hasValue = true;
+				}
+				default -> {}
+			}
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			if (capturing) value.append(ch, start, length);
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) {
+			switch (localName) {
+				case "v", "t" -> capturing = false;
+				case "c" -> {
+					if (column < MAX_COLUMNS && hasValue) cells[column] = cell();
+				}
+				case "row" -> rows.accept(new SheetRow(rowIndex, cells));
+				default -> {}
+			}
+		}
+
+		private SheetCell cell() {
+			String raw = value.toString();
+			if (type == null || type.equals("n")) {
+				if (raw.isEmpty()) return null;
+				return new SheetCell(formula ? CellKind.FORMULA : CellKind.NUMERIC, null, Double.parseDouble(raw));
+			}
+			return switch (type) {
+				case "s" -> new SheetCell(CellKind.STRING, strings.getItemAt(Integer.parseInt(raw)).getString(), null);
+				case "inlineStr" -> new SheetCell(CellKind.STRING, raw, null);
+				case "str" -> new SheetCell(CellKind.FORMULA, raw, null);
+				case "b" -> formula
+						? new SheetCell(CellKind.FORMULA, null, null)
+						: new SheetCell(CellKind.BOOLEAN, String.valueOf("1".equals(raw)), null);
+				// Error cells read as blank; error formula results as a formula without a value
+				default -> formula ? new SheetCell(CellKind.FORMULA, null, null) : null;
+			};
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.domain.RoleConstants;
+import com.alvaro.psicoapp.domain.UserEntity;
+import com.alvaro.psicoapp.repository.ClinicPatientDocumentRepository;
+import com.alvaro.psicoapp.repository.TaskFileRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Authorisation of file downloads. Each check is a single indexed lookup of the stored path
+ * joined to its owner (task file → task → psychologist / patient, clinic document → company),
+ * instead of loading the caller's files and scanning them. Avatars are not checked: they are
+ * public, served by UploadsController.
+ *
+ * Granted paths are remembered per caller for a short TTL, so a page showing several
+ * attachments or re-fetching the same file doesn't repeat the lookup. Denials aren't cached:
+ * a file uploaded a moment ago is readable straight away. A revoked grant can outlive the
+ * revocation by at most the TTL; deleted files 404 anyway since they're gone from disk.
+ */
+@Service
+public class FileAccessService {
+
+    private enum SubjectKind { USER, COMPANY }
+
+    private record Subject(SubjectKind kind, Long id) {}
+
+    private final TaskFileRepository taskFileRepository;
+    private final ClinicPatientDocumentRepository clinicPatientDocumentRepository;
+    private final Cache<Subject, Set<String>> grants;
+
+    public FileAccessService(TaskFileRepository taskFileRepository,
+                             ClinicPatientDocumentRepository clinicPatientDocumentRepository,
+                             @Value("${app.files.acl-ttl-seconds:60}") int ttlSeconds) {
+        this.taskFileRepository = taskFileRepository;
+        this.clinicPatientDocumentRepository = clinicPatientDocumentRepository;
+        this.grants = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    /**
+     * Admins read any existing task file, psychologists the files of their tasks and patients
+     * the files of tasks assigned to them.
+     *
+     * @param filePath stored path, e.g. /uploads/tasks/uuid.pdf
+     */
+    public void checkTaskFile(UserEntity user, String filePath) {
+        if (RoleConstants.ADMIN.equals(user.getRole())) {
+            if (!taskFileRepository.existsByFilePath(filePath)) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Archivo no encontrado");
+            }
+            return;
+        }
+        boolean psychologist = RoleConstants.PSYCHOLOGIST.equals(user.getRole());
+        check(new Subject(SubjectKind.USER, user.getId()), filePath, psychologist
+                ? () -> taskFileRepository.existsByFilePathAndTask_Psychologist_Id(filePath, user.getId())
+                : () -> taskFileRepository.existsByFilePathAndTask_User_Id(filePath, user.getId()),
+                "No tienes acceso a este archivo");
+    }
+
+    /**
+     * @param fileName stored name, e.g. clinic-docs/uuid.pdf
+     */
+    public void checkClinicDoc(Long companyId, String fileName) {
+        check(new Subject(SubjectKind.COMPANY, companyId), fileName,
+                () -> clinicPatientDocumentRepository.existsByCompanyIdAndFileName(companyId, fileName),
+                "No tienes acceso a este documento");
+    }
+
+    private void check(Subject subject, String path, BooleanSupplier lookup, String deniedMessage) {
+        if (grants(subject).contains(path)) return;
+        if (!lookup.getAsBoolean()) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, deniedMessage);
+        }
+        grants(subject).add(path);
+    }
+
+    private Set<String> grants(Subject subject) {
+        return grants.get(subject, k -> ConcurrentHashMap.newKeySet());
+    }
+}
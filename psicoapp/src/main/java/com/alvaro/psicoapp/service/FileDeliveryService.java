@@ -0,0 +1,336 @@
+package com.alvaro.psicoapp.service;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves uploaded files straight from disk. The body is handed to Tomcat's sendfile when the
+ * connector supports it (the kernel copies the file to the socket) and otherwise copied with
+ * FileChannel.transferTo, so it never passes through a heap buffer.
+ *
+ * Responses carry a strong ETag and Last-Modified built from the file's size and mtime.
+ * Conditional requests (If-None-Match / If-Modified-Since) get a 304 and single byte ranges
+ * (with If-Range) a 206. Content-addressed names (a SHA-256 hex digest) are immutable and
+ * cached for a year; other names are revalidated on each use.
+ *
+ * Text types are served from a gzip variant next to the file ({@code name.gz}), written the
+ * first time a client accepting gzip asks for it; a {@code name.br} variant is used if one
+ * has been put there. Code deleting an upload must delete {@link #variantsOf its variants} too.
+ */
+@Service
+public class FileDeliveryService {
+    private static final Logger logger = LoggerFactory.getLogger(FileDeliveryService.class);
+
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("[0-9a-f]{64}(\\.[A-Za-z0-9]+)?");
+    private static final String[][] ENCODINGS = {{"br", ".br"}, {"gzip", ".gz"}};
+    private static final long MIN_COMPRESS_SIZE = 1024;
+    private static final String IMMUTABLE = "private, max-age=31536000, immutable";
+    private static final String REVALIDATE = "private, no-cache";
+    private static final Duration PRESIGN_TTL = Duration.ofMinutes(5);
+
+    // Tomcat request attributes for sendfile; the end offset is exclusive
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private record Representation(Path path, long size, long lastModified, String encoding) {}
+
+    private final BlobStore blobStore;
+
+    public FileDeliveryService(BlobStore blobStore) {
+        this.blobStore = blobStore;
+    }
+
+    /** uploads/ under the working directory, or psicoapp/uploads when started from the repo root */
+    public static Path resolveUploadsRoot() {
+        Path uploadsPath = Paths.get("uploads").toAbsolutePath();
+        if (!Files.exists(uploadsPath)) {
+            Path altPath = Paths.get("psicoapp", "uploads").toAbsolutePath();
+            if (Files.exists(altPath)) {
+                uploadsPath = altPath;
+            }
+        }
+        return uploadsPath;
+    }
+
+    /** The precompressed variants a file may have on disk, whether or not they exist */
+    public static List<Path> variantsOf(Path file) {
+        List<Path> variants = new ArrayList<>(ENCODINGS.length);
+        for (String[] encoding : ENCODINGS) {
+            variants.add(file.resolveSibling(file.getFileName() + encoding[1]));
+        }
+        return variants;
+    }
+
+    /**
+     * Writes the blob {@code <directory>/<filename>} to the response, honouring conditional and
+     * range headers, or redirects to a presigned URL when the store isn't on local disk.
+     * Callers check access first.
+     */
+    public void serve(String directory, String filename, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Sanitize filename to prevent path traversal
+        if (filename.contains("..") || filename.contains("/") || filename.contains("\\")) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Nombre de archivo no válido");
+        }
+        Path file = blobStore.localPath(directory, filename);
+        if (file == null) {
+            // Remote store: the bucket handles ranges and validators itself
+            URI url = blobStore.presignedGet(directory, filename, PRESIGN_TTL)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Almacenamiento sin acceso directo"));
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-store");
+            response.sendRedirect(url.toString());
+            return;
+        }
+        BasicFileAttributes attributes = attributes(file);
+        if (attributes == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Archivo no encontrado");
+        }
+
+        String contentType = contentType(filename);
+        Representation representation = new Representation(file, attributes.size(),
+                attributes.lastModifiedTime().toMillis() / 1000 * 1000, null);
+        if (isCompressible(contentType)) {
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            representation = encoded(representation, request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        }
+        String etag = etag(representation);
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, representation.lastModified());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CONTENT_ADDRESSED.matcher(filename).matches() ? IMMUTABLE : REVALIDATE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (notModified(request, etag, representation.lastModified())) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType(contentType);
+        if (representation.encoding() != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, representation.encoding());
+        }
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.inline().filename(filename, StandardCharsets.UTF_8).build().toString());
+
+        long size = representation.size();
+        long start = 0;
+        long end = size - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && ifRangeMatches(request, etag, representation.lastModified())) {
+            long[] bounds = parseRange(range, size);
+            if (bounds != null && bounds.length == 0) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            if (bounds != null) {
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count == 0) return;
+        transfer(representation.path(), start, count, request, response);
+    }
+
+    private static void transfer(Path path, long start, long count, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) break;
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    /** Picks a precompressed variant the client accepts, writing the gzip one if missing */
+    private Representation encoded(Representation identity, String acceptEncoding) {
+        if (acceptEncoding == null || identity.size() < MIN_COMPRESS_SIZE) return identity;
+        String accepted = acceptEncoding.toLowerCase(Locale.ROOT);
+        List<Path> variants = variantsOf(identity.path());
+        for (int i = 0; i < ENCODINGS.length; i++) {
+            String encoding = ENCODINGS[i][0];
+            if (!accepts(accepted, encoding)) continue;
+            Path variant = variants.get(i);
+            BasicFileAttributes attributes = attributes(variant);
+            boolean stale = attributes == null || attributes.lastModifiedTime().toMillis() < identity.lastModified();
+            if (stale && encoding.equals("gzip")) {
+                attributes = gzip(identity.path(), variant);
+            } else if (stale) {
+                continue;
+            }
+            if (attributes != null && attributes.size() < identity.size()) {
+                return new Representation(variant, attributes.size(), identity.lastModified(), encoding);
+            }
+        }
+        return identity;
+    }
+
+    private static boolean accepts(String acceptEncoding, String encoding) {
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            if (!tokens[0].trim().equals(encoding)) continue;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=") && param.substring(2).trim().matches("0(\\.0*)?")) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /** Writes a temp file and moves it into place, so readers never see a partial variant */
+    private static BasicFileAttributes gzip(Path source, Path target) {
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(target.getParent(), ".gz-", ".tmp");
+            try (InputStream in = Files.newInputStream(source);
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp), 64 * 1024)) {
+                in.transferTo(out);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return attributes(target);
+        } catch (IOException e) {
+            logger.warn("No se pudo comprimir {}", source.getFileName(), e);
+            if (tmp != null) {
+                try { Files.deleteIfExists(tmp); } catch (IOException ignored) {}
+            }
+            return null;
+        }
+    }
+
+    private static BasicFileAttributes attributes(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            return attributes.isRegularFile() ? attributes : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String etag(Representation representation) {
+        String tag = Long.toHexString(representation.size()) + "-" + Long.toHexString(representation.lastModified());
+        return "\"" + tag + (representation.encoding() != null ? "-" + representation.encoding() : "") + "\"";
+    }
+
+    private static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) tag = tag.substring(2);
+                if (tag.equals("*") || tag.equals(etag)) return true;
+            }
+            return false;
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+    }
+
+    /** If-Range holds a strong ETag or a date; a range is only served if it still matches */
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) return true;
+        if (ifRange.startsWith("\"")) return ifRange.equals(etag);
+        if (ifRange.startsWith("W/")) return false;
+        long date = dateHeader(request, HttpHeaders.IF_RANGE);
+        return date >= 0 && date == lastModified;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parses a single byte range. Multiple ranges are answered with the whole file, which
+     * RFC 9110 allows.
+     *
+     * @return {start, end} inclusive, null to serve the whole file, an empty array if unsatisfiable
+     */
+    static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) return null;
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return null;
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                if (last.isEmpty()) return null;
+                long suffix = Long.parseLong(last);
+                if (suffix == 0 || size == 0) return new long[0];
+                return new long[]{Math.max(0, size - suffix), size - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start >= size) return new long[0];
+            if (end < start) return null;
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isCompressible(String contentType) {
+        return contentType.startsWith("text/") || contentType.startsWith("application/json");
+    }
+
+    static String contentType(String filename) {
+        String lower = filename.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".pdf")) return "application/pdf";
+        if (lower.endsWith(".png")) return "image/png";
+        if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) return "image/jpeg";
+        if (lower.endsWith(".gif")) return "image/gif";
+        if (lower.endsWith(".webp")) return "image/webp";
+        if (lower.endsWith(".doc")) return "application/msword";
+        if (lower.endsWith(".docx")) return "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+        if (lower.endsWith(".xls")) return "application/vnd.ms-excel";
+        if (lower.endsWith(".xlsx")) return "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+        if (lower.endsWith(".txt")) return "text/plain;charset=UTF-8";
+        if (lower.endsWith(".csv")) return "text/csv;charset=UTF-8";
+        if (lower.endsWith(".json")) return "application/json";
+        return "application/octet-stream";
+    }
+}
@@ -0,0 +1,252 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.domain.UserEntity;
+import com.alvaro.psicoapp.repository.*;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * RGPD Art. 20 self export, streamed to the response. Each data category is read in keyset
+ * pages of scalar rows (one short read per page, no managed entities) and written through a
+ * JsonGenerator as soon as it's read, so at most one page is held in memory whatever the size
+ * of the history. Chat pages are decrypted in bulk, one key lookup and Cipher per conversation.
+ *
+ * The output is either one JSON document with a field per category or a ZIP with one JSON
+ * file per category.
+ */
+@Service
+public class GdprExportService {
+
+    public enum Format { JSON, ZIP }
+
+    @FunctionalInterface
+    private interface PageQuery {
+        List<Object[]> page(Long userId, Long afterId, Pageable pageable);
+    }
+
+    @FunctionalInterface
+    private interface PageWriter {
+        void write(JsonGenerator g, Long userId, List<Object[]> rows) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface Section {
+        void write(JsonGenerator g) throws IOException;
+    }
+
+    /** A category whose rows start with the entity id, used as the keyset cursor */
+    private record Category(String name, PageQuery query, PageWriter writer) {}
+
+    private final ChatEncryptionService chatEncryptionService;
+    private final AuditService auditService;
+    private final ObjectMapper objectMapper;
+    private final int pageSize;
+    private final List<Category> categories;
+
+    public GdprExportService(DailyMoodEntryRepository dailyMoodEntryRepository,
+                             AppointmentRepository appointmentRepository,
+                             TaskRepository taskRepository,
+                             EvaluationTestResultRepository evaluationTestResultRepository,
+                             UserAnswerRepository userAnswerRepository,
+                             NotificationRepository notificationRepository,
+                             ChatMessageRepository chatMessageRepository,
+                             ChatEncryptionService chatEncryptionService,
+                             AuditService auditService,
+                             ObjectMapper objectMapper,
+                             @Value("${app.gdpr.export-page-size:500}") int pageSize) {
+        this.chatEncryptionService = chatEncryptionService;
+        this.auditService = auditService;
+        this.objectMapper = objectMapper;
+        this.pageSize = pageSize;
+        this.categories = List.of(
+                new Category("moodEntries", dailyMoodEntryRepository::findExportPage, rows(
+                        "date", "moodRating", "emotions", "activities", "companions", "location", "notes")),
+                new Category("appointments", appointmentRepository::findExportPage, rows(
+                        "startTime", "endTime", "status", "paymentStatus")),
+                new Category("tasks", taskRepository::findExportPage, this::writeTasks),
+                new Category("evaluationResults", evaluationTestResultRepository::findExportPage, rows(
+                        "testName", "score", "level", "completedAt")),
+                new Category("testAnswers", userAnswerRepository::findExportPage, rows(
+                        "question", "answer", "numericValue", "textValue")),
+                new Category("notifications", notificationRepository::findExportPage, rows(
+                        "type", "title", "message", "read", "createdAt")),
+                new Category("chatMessages", chatMessageRepository::findExportPage, this::writeChatMessages));
+    }
+
+    /**
+     * Captures the profile now; the categories are read while the body is written, after the
+     * request thread returns. The export is audited once, when the body has been written, or
+     * as failed if writing it throws (a query error or the client going away).
+     */
+    public ResponseEntity<StreamingResponseBody> export(UserEntity user, Format format) {
+        Map<String, Object> profile = profile(user);
+        Long userId = user.getId();
+        String role = user.getRole();
+        String name = user.getName();
+
+        HttpHeaders headers = new HttpHeaders();
+        if (format == Format.ZIP) {
+            headers.setContentType(MediaType.parseMediaType("application/zip"));
+            headers.setContentDisposition(ContentDisposition.attachment()
+                    .filename("mis-datos-" + LocalDate.now() + ".zip").build());
+        } else {
+            headers.setContentType(MediaType.APPLICATION_JSON);
+        }
+        return ResponseEntity.ok().headers(headers).body(out -> {
+            try {
+                write(userId, profile, format, out);
+            } catch (IOException | RuntimeException e) {
+                auditService.persistAudit(AuditService.DATA_EXPORT_FAILED, "USER", userId, userId, role, name, userId,
+                        "{\"format\":\"" + format.name() + "\",\"error\":\"" + e.getClass().getSimpleName() + "\"}");
+                throw e;
+            }
+            auditService.persistAudit(AuditService.DATA_EXPORT, "USER", userId, userId, role, name, userId,
+                    "{\"format\":\"" + format.name() + "\"}");
+        });
+    }
+
+    public static Format parseFormat(String format) {
+        try {
+            return Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Formato de exportación no soportado: " + format);
+        }
+    }
+
+    void write(Long userId, Map<String, Object> profile, Format format, OutputStream out) throws IOException {
+        Map<String, Section> sections = new LinkedHashMap<>();
+        sections.put("profile", g -> g.writeObject(profile));
+        for (Category category : categories) {
+            sections.put(category.name(), g -> writeCategory(g, userId, category));
+        }
+
+        if (format == Format.ZIP) {
+            ZipOutputStream zip = new ZipOutputStream(out);
+            for (Map.Entry<String, Section> section : sections.entrySet()) {
+                zip.putNextEntry(new ZipEntry(section.getKey() + ".json"));
+                try (JsonGenerator g = generator(zip)) {
+                    section.getValue().write(g);
+                }
+                zip.closeEntry();
+            }
+            zip.finish();
+        } else {
+            try (JsonGenerator g = generator(out)) {
+                g.writeStartObject();
+                for (Map.Entry<String, Section> section : sections.entrySet()) {
+                    g.writeFieldName(section.getKey());
+                    section.getValue().write(g);
+                }
+                g.writeEndObject();
+            }
+        }
+        out.flush();
+    }
+
+    private JsonGenerator generator(OutputStream out) throws IOException {
+        JsonGenerator g = objectMapper.createGenerator(out);
+        // The ZIP / servlet stream outlives each generator
+        g.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return g;
+    }
+
+    private void writeCategory(JsonGenerator g, Long userId, Category category) throws IOException {
+        g.writeStartArray();
+        Long afterId = 0L;
+        while (true) {
+            List<Object[]> page = category.query().page(userId, afterId, PageRequest.of(0, pageSize));
+            if (!page.isEmpty()) {
+                category.writer().write(g, userId, page);
+                g.flush();
+            }
+            if (page.size() < pageSize) break;
+            afterId = (Long) page.get(page.size() - 1)[0];
+        }
+        g.writeEndArray();
+    }
+
+    /** Writes each row as an object of the given fields, skipping the leading id */
+    private static PageWriter rows(String... fields) {
+        return (g, userId, rows) -> {
+            for (Object[] row : rows) {
+                g.writeStartObject();
+                for (int i = 0; i < fields.length; i++) {
+                    g.writeObjectField(fields[i], row[i + 1]);
+                }
+                g.writeEndObject();
+            }
+        };
+    }
+
+    // {id, title, description, completedAt, createdAt}
+    private void writeTasks(JsonGenerator g, Long userId, List<Object[]> rows) throws IOException {
+        for (Object[] row : rows) {
+            g.writeStartObject();
+            g.writeObjectField("title", row[1]);
+            g.writeObjectField("description", row[2]);
+            g.writeBooleanField("completed", row[3] != null);
+            g.writeObjectField("completedAt", row[3]);
+            g.writeObjectField("createdAt", row[4]);
+            g.writeEndObject();
+        }
+    }
+
+    // {id, psychologistId, sender, createdAt, content, attachmentPath}
+    private void writeChatMessages(JsonGenerator g, Long userId, List<Object[]> rows) throws IOException {
+        Map<Long, List<Integer>> byConversation = new HashMap<>();
+        for (int i = 0; i < rows.size(); i++) {
+            byConversation.computeIfAbsent((Long) rows.get(i)[1], k -> new ArrayList<>()).add(i);
+        }
+        String[] contents = new String[rows.size()];
+        for (Map.Entry<Long, List<Integer>> conversation : byConversation.entrySet()) {
+            List<String> encrypted = new ArrayList<>(conversation.getValue().size());
+            for (int i : conversation.getValue()) encrypted.add((String) rows.get(i)[4]);
+            List<String> decrypted = chatEncryptionService.decryptAll(encrypted, conversation.getKey(), userId);
+            for (int j = 0; j < decrypted.size(); j++) {
+                String content = decrypted.get(j);
+                contents[conversation.getValue().get(j)] = content == null && encrypted.get(j) != null ? "[encrypted]" : content;
+            }
+        }
+        for (int i = 0; i < rows.size(); i++) {
+            Object[] row = rows.get(i);
+            g.writeStartObject();
+            g.writeObjectField("sender", row[2]);
+            g.writeObjectField("createdAt", row[3]);
+            g.writeStringField("content", contents[i]);
+            g.writeBooleanField("hasAttachment", row[5] != null);
+            g.writeEndObject();
+        }
+    }
+
+    private static Map<String, Object> profile(UserEntity user) {
+        Map<String, Object> profile = new LinkedHashMap<>();
+        profile.put("name", user.getName());
+        profile.put("email", user.getEmail());
+        profile.put("gender", user.getGender());
+        profile.put("age", user.getAge());
+        profile.put("birthDate", user.getBirthDate());
+        profile.put("role", user.getRole());
+        profile.put("createdAt", user.getCreatedAt());
+        profile.put("gdprConsentAt", user.getGdprConsentAt());
+        profile.put("gdprConsentVersion", user.getGdprConsentVersion());
+        return profile;
+    }
+}
@@ -18,38 +18,27 @@ public class InitialTestService {
     private final AnswerRepository answerRepository;
     private final UserAnswerRepository userAnswerRepository;
     private final TemporarySessionService sessionService;
+    private final TestDefinitionCache testDefinitionCache;
 
     public InitialTestService(TestRepository testRepository, QuestionRepository questionRepository,
                               AnswerRepository answerRepository, UserAnswerRepository userAnswerRepository,
-                              TemporarySessionService sessionService) {
+                              TemporarySessionService sessionService, TestDefinitionCache testDefinitionCache) {
         this.testRepository = testRepository;
         this.questionRepository = questionRepository;
         this.answerRepository = answerRepository;
         this.userAnswerRepository = userAnswerRepository;
         this.sessionService = sessionService;
+        this.testDefinitionCache = testDefinitionCache;
     }
 
-    @Transactional(readOnly = true)
-    public InitialTestDtos.InitialTestResponse getInitialTest(String sessionId) {
+    /** Pre-serialised initial test with its ETag, for conditional GETs */
+    public TestDefinitionCache.Json getInitialTest(String sessionId) {
         if (sessionService.getSession(sessionId).isEmpty()) {
             throw new IllegalArgumentException("Sesión no válida");
         }
-        TestEntity test = testRepository.findByCode(INITIAL_TEST_CODE)
-                .orElseThrow(() -> new IllegalArgumentException("Test inicial no configurado"));
-        List<QuestionEntity> questions = questionRepository.findByTestOrderByPositionAsc(test);
-        List<InitialTestDtos.QuestionDto> questionsData = questions.stream().map(q -> {
-            InitialTestDtos.SubfactorDto sf = null;
-            if (q.getSubfactor() != null) {
-                InitialTestDtos.FactorDto f = q.getSubfactor().getFactor() != null
-                        ? new InitialTestDtos.FactorDto(q.getSubfactor().getFactor().getId(), q.getSubfactor().getFactor().getCode(), q.getSubfactor().getFactor().getName())
-                        : null;
-                sf = new InitialTestDtos.SubfactorDto(q.getSubfactor().getId(), q.getSubfactor().getCode(), q.getSubfactor().getName(), f);
-            }
-            List<AnswerEntity> answers = answerRepository.findByQuestionOrderByPositionAsc(q);
-            var answersData = answers.stream().map(a -> new InitialTestDtos.AnswerDto(a.getId(), a.getText(), a.getValue(), a.getPosition())).collect(Collectors.toList());
-            return new InitialTestDtos.QuestionDto(q.getId(), q.getText(), q.getType(), q.getPosition(), sf, answersData);
-        }).collect(Collectors.toList());
-        return new InitialTestDtos.InitialTestResponse(test.getId(), test.getCode(), test.getTitle(), test.getDescription(), questionsData);
+        TestDefinitionCache.TestDefinition definition = testDefinitionCache.byCode(INITIAL_TEST_CODE);
+        if (definition == null) throw new IllegalArgumentException("Test inicial no configurado");
+        return definition.json(TestDefinitionCache.View.INITIAL);
     }
 
     @Transactional(readOnly = true)
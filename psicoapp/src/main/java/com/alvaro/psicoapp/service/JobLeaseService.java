@@ -0,0 +1,404 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.config.SchedulingConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Coordinates the @Scheduled jobs of several replicas through leases in the job_leases table,
+ * so each job runs on one node at a time (ClusterJob chooses per job).
+ *
+ * A lease is a row owned by one node until expires_at. Taking it increments fencing_token; the
+ * owner renews its leases every lease-ttl/3, and the leases of a node that dies expire after
+ * lease-ttl. Times are the database's now(), so node clocks don't matter.
+ *
+ * A cron job's lease is taken for one occurrence (its due time, the same on every node) and
+ * records it as last_run when released; it can't be taken again for that occurrence or an
+ * earlier one, however late a replica's cron fires. Fixed-rate and fixed-delay jobs have no
+ * shared occurrence: their lease only keeps two nodes from running them at once.
+ *
+ * Writes that must not land once the lease has moved on call {@link #fence()} in their
+ * transaction: it checks the token and share-locks the row, so no node can take the lease over
+ * until that transaction ends.
+ *
+ * A partitioned run splits its IDs into ranges, recorded once per run as job@run#i rows by the
+ * first node to get there. Every node claims ranges until all are completed, taking over the
+ * ranges of nodes that stopped heartbeating; range work must therefore be idempotent.
+ *
+ * With app.scheduling.cluster.enabled=false (a single instance) every lease is granted without
+ * touching the table.
+ */
+@Service
+public class JobLeaseService {
+    private static final Logger logger = LoggerFactory.getLogger(JobLeaseService.class);
+    private static final ThreadLocal<Run> CURRENT = new ThreadLocal<>();
+
+    private static final String HELD_SQL =
+            "SELECT expires_at > now() OR (last_run >= CAST(? AS TIMESTAMPTZ)) IS TRUE FROM job_leases WHERE lease_key = ?";
+    private static final String ACQUIRE_SQL =
+            "INSERT INTO job_leases (lease_key, owner, fencing_token, acquired_at, heartbeat_at, expires_at) "
+            + "VALUES (?, ?, 1, now(), now(), now() + make_interval(secs => ?)) "
+            + "ON CONFLICT (lease_key) DO UPDATE SET owner = EXCLUDED.owner, "
+            + "fencing_token = job_leases.fencing_token + 1, acquired_at = now(), heartbeat_at = now(), "
+            + "expires_at = EXCLUDED.expires_at "
+            + "WHERE job_leases.expires_at <= now() AND (job_leases.last_run < CAST(? AS TIMESTAMPTZ)) IS NOT FALSE "
+            + "RETURNING fencing_token";
+    // Skips a row share-locked by a fenced transaction instead of waiting for it to commit
+    private static final String HEARTBEAT_SQL =
+            "UPDATE job_leases SET heartbeat_at = now(), expires_at = now() + make_interval(secs => ?) "
+            + "WHERE lease_key = (SELECT lease_key FROM job_leases WHERE lease_key = ? AND owner = ? "
+            + "AND fencing_token = ? FOR NO KEY UPDATE SKIP LOCKED)";
+    private static final String OWNED_SQL =
+            "SELECT count(*) FROM job_leases WHERE lease_key = ? AND owner = ? AND fencing_token = ?";
+    private static final String RELEASE_SQL =
+            "UPDATE job_leases SET expires_at = now(), last_run = GREATEST(last_run, CAST(? AS TIMESTAMPTZ)) "
+            + "WHERE lease_key = ? AND owner = ? AND fencing_token = ?";
+    private static final String FENCE_SQL =
+            "SELECT fencing_token FROM job_leases WHERE lease_key = ? AND owner = ? AND expires_at > now() FOR SHARE";
+    private static final String PLAN_SQL =
+            "INSERT INTO job_leases (lease_key, range_from, range_to, expires_at) VALUES (?, ?, ?, now()) "
+            + "ON CONFLICT (lease_key) DO NOTHING";
+    private static final String PARTITIONS_SQL =
+            "SELECT lease_key, range_from, range_to FROM job_leases WHERE lease_key LIKE ? ORDER BY lease_key";
+    private static final String CLAIM_SQL =
+            "UPDATE job_leases SET owner = ?, fencing_token = fencing_token + 1, acquired_at = now(), "
+            + "heartbeat_at = now(), expires_at = now() + make_interval(secs => ?) "
+            + "WHERE lease_key = ? AND completed_at IS NULL AND expires_at <= now() RETURNING fencing_token";
+    private static final String COMPLETE_SQL =
+            "UPDATE job_leases SET completed_at = now(), expires_at = now() "
+            + "WHERE lease_key = ? AND owner = ? AND fencing_token = ?";
+    private static final String PENDING_SQL =
+            "SELECT count(*) FROM job_leases WHERE lease_key LIKE ? AND completed_at IS NULL";
+
+    /** A lease this node holds; token is 0 when the cluster mode is off */
+    public static final class Lease {
+        private final String key;
+        private final long token;
+        private volatile boolean lost;
+
+        Lease(String key, long token) {
+            this.key = key;
+            this.token = token;
+        }
+
+        public String key() {
+            return key;
+        }
+
+        public long token() {
+            return token;
+        }
+
+        /** False once a heartbeat or fence found the lease taken over */
+        public boolean isHeld() {
+            return !lost;
+        }
+    }
+
+    /**
+     * One ID range of a partitioned run: fromId inclusive, toId exclusive. The first and last
+     * ranges are open-ended, so IDs created after the run was planned still fall in one.
+     */
+    public record Partition(int index, int count, long fromId, long toId, Lease lease) {
+        public boolean contains(long id) {
+            return id >= fromId && id < toId;
+        }
+
+        public boolean isHeld() {
+            return lease == null || lease.isHeld();
+        }
+    }
+
+    private record Run(String job, String runId, Lease lease) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    private final String nodeId;
+    private final Duration leaseTtl;
+    private final int partitions;
+    private final Map<String, Lease> held = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService heartbeats;
+
+    public JobLeaseService(JdbcTemplate jdbcTemplate, MeterRegistry registry,
+                           @Value("${app.scheduling.cluster.enabled:false}") boolean enabled,
+                           @Value("${app.scheduling.cluster.node-id:}") String nodeId,
+                           @Value("${app.scheduling.cluster.lease-ttl-ms:60000}") long leaseTtlMs,
+                           @Value("${app.scheduling.cluster.partitions:8}") int partitions) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.registry = registry;
+        this.enabled = enabled;
+        // Suffixed so a restarted container with the same hostname is a different owner
+        this.nodeId = (StringUtils.hasText(nodeId) ? nodeId : hostname()) + "-" + UUID.randomUUID().toString().substring(0, 8);
+        this.leaseTtl = Duration.ofMillis(leaseTtlMs);
+        this.partitions = Math.max(1, partitions);
+        if (enabled) {
+            this.heartbeats = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "job-lease-heartbeat");
+                t.setDaemon(true);
+                return t;
+            });
+            long interval = Math.max(1, leaseTtlMs / 3);
+            heartbeats.scheduleWithFixedDelay(this::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+            logger.info("Scheduled jobs coordinated through job_leases as {} (lease {} ms)", this.nodeId, leaseTtlMs);
+        } else {
+            this.heartbeats = null;
+        }
+    }
+
+    /** Lets the other nodes take over this node's leases right away */
+    @PreDestroy
+    public void shutdown() {
+        if (heartbeats == null) return;
+        heartbeats.shutdownNow();
+        for (Lease lease : held.values()) {
+            try {
+                jdbcTemplate.update("UPDATE job_leases SET expires_at = now() WHERE lease_key = ? AND owner = ? AND fencing_token = ?",
+                        lease.key, nodeId, lease.token);
+            } catch (DataAccessException e) {
+                logger.warn("Could not hand over lease {} on shutdown", lease.key, e);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Takes the lease if no node holds it and, given the occurrence runAt, no node has completed
+     * that occurrence or a later one; runAt is null for runs that aren't an occurrence (manual
+     * runs, fixed-rate jobs). Doesn't wait on a held lease, so the replicas that lose the race
+     * return at once.
+     */
+    public Optional<Lease> tryAcquire(String key, Instant runAt) {
+        if (!enabled) return Optional.of(new Lease(key, 0));
+        OffsetDateTime occurrence = runAt != null ? runAt.atOffset(ZoneOffset.UTC) : null;
+        List<Boolean> taken = jdbcTemplate.queryForList(HELD_SQL, Boolean.class, occurrence, key);
+        if (!taken.isEmpty() && Boolean.TRUE.equals(taken.get(0))) return Optional.empty();
+        List<Long> token = jdbcTemplate.queryForList(ACQUIRE_SQL, Long.class, key, nodeId, seconds(leaseTtl), occurrence);
+        if (token.isEmpty()) return Optional.empty();
+        Lease lease = new Lease(key, token.get(0));
+        held.put(key, lease);
+        return Optional.of(lease);
+    }
+
+    /** Whether another node holds the lease right now */
+    public boolean isHeldElsewhere(String key) {
+        if (!enabled) return false;
+        List<String> owner = jdbcTemplate.queryForList(
+                "SELECT owner FROM job_leases WHERE lease_key = ? AND expires_at > now()", String.class, key);
+        return !owner.isEmpty() && !nodeId.equals(owner.get(0));
+    }
+
+    /** Gives the lease back, recording runAt (if any) as the last occurrence run */
+    public void release(Lease lease, Instant runAt) {
+        if (!enabled || lease == null) return;
+        held.remove(lease.key, lease);
+        try {
+            jdbcTemplate.update(RELEASE_SQL, runAt != null ? runAt.atOffset(ZoneOffset.UTC) : null,
+                    lease.key, nodeId, lease.token);
+        } catch (DataAccessException e) {
+            logger.warn("Could not release lease {}; it expires on its own", lease.key, e);
+        }
+    }
+
+    /** Runs a job with its lease as the current one, for {@link #fence()} and {@link #forEachPartition} */
+    public Object runAs(String job, String runId, Lease lease, ScheduledJobService.Invocation invocation) throws Throwable {
+        Run previous = CURRENT.get();
+        CURRENT.set(new Run(job, runId, lease));
+        try {
+            return invocation.proceed();
+        } finally {
+            if (previous == null) CURRENT.remove();
+            else CURRENT.set(previous);
+        }
+    }
+
+    /** {@link #fence(Lease)} with the lease of the job or partition running on this thread, if any */
+    public void fence() {
+        Run run = CURRENT.get();
+        if (run != null) fence(run.lease());
+    }
+
+    /**
+     * Fails with IllegalStateException if the lease has been taken over. Inside a transaction the
+     * lease row stays share-locked until it ends, so the check holds until commit.
+     */
+    public void fence(Lease lease) {
+        if (!enabled || lease == null || lease.token == 0) return;
+        List<Long> token = jdbcTemplate.queryForList(FENCE_SQL, Long.class, lease.key, nodeId);
+        if (token.isEmpty() || token.get(0) != lease.token) {
+            lost(lease);
+            throw new IllegalStateException("Lease " + lease.key + " (token " + lease.token + ") is no longer held");
+        }
+    }
+
+    /**
+     * Runs work for the ID ranges of [minId, maxId] that this node claims. In a PARTITIONED job
+     * with the cluster mode on, nodes share out app.scheduling.cluster.partitions ranges and this
+     * returns once every range of the run is completed by some node; otherwise this node runs them
+     * all. A range whose work throws is completed anyway (no retry within the run) and the failure
+     * is rethrown at the end.
+     */
+    public void forEachPartition(long minId, long maxId, Consumer<Partition> work) {
+        Run run = CURRENT.get();
+        // A job under a single lease already runs on one node only
+        if (!enabled || run == null || run.lease() != null) {
+            split(minId, maxId, partitions).forEach(work);
+            return;
+        }
+        String prefix = run.job() + "@" + run.runId() + "#";
+        List<Object[]> plan = new ArrayList<>();
+        for (Partition p : split(minId, maxId, partitions)) {
+            plan.add(new Object[]{prefix + p.index(), p.fromId(), p.toId()});
+        }
+        // Same key order on every node, so concurrent planners don't interleave: one plan wins
+        jdbcTemplate.batchUpdate(PLAN_SQL, plan);
+        List<Partition> ranges = jdbcTemplate.query(PARTITIONS_SQL, (rs, i) -> new Partition(
+                Integer.parseInt(rs.getString(1).substring(prefix.length())), 0, rs.getLong(2), rs.getLong(3), null),
+                escapeLike(prefix) + "%");
+        int count = ranges.size();
+        int first = Math.floorMod(nodeId.hashCode(), Math.max(1, count));
+        RuntimeException failure = null;
+        while (!Thread.currentThread().isInterrupted()) {
+            int claimed = 0;
+            for (int i = 0; i < count && !Thread.currentThread().isInterrupted(); i++) {
+                Partition range = ranges.get((first + i) % count);
+                String key = prefix + range.index();
+                List<Long> token = jdbcTemplate.queryForList(CLAIM_SQL, Long.class, nodeId, seconds(leaseTtl), key);
+                if (token.isEmpty()) continue;
+                claimed++;
+                Lease lease = new Lease(key, token.get(0));
+                held.put(key, lease);
+                Partition partition = new Partition(range.index(), count, range.fromId(), range.toId(), lease);
+                Run previous = CURRENT.get();
+                CURRENT.set(new Run(run.job(), run.runId(), lease));
+                try {
+                    work.accept(partition);
+                } catch (RuntimeException e) {
+                    logger.error("Partition {} of {} failed", range.index(), run.job(), e);
+                    failure = e;
+                } finally {
+                    CURRENT.set(previous);
+                    held.remove(key, lease);
+                    if (lease.isHeld()) jdbcTemplate.update(COMPLETE_SQL, key, nodeId, lease.token);
+                }
+            }
+            if (claimed > 0) continue;
+            Long pending = jdbcTemplate.queryForObject(PENDING_SQL, Long.class, escapeLike(prefix) + "%");
+            if (pending == null || pending == 0) break;
+            // Ranges still running elsewhere: wait in case their node dies and they expire
+            try {
+                Thread.sleep(Math.max(1, leaseTtl.toMillis() / 3));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /** Old partition rows of completed runs; job rows are kept, their tokens must keep growing */
+    @Scheduled(cron = "0 50 3 * * *", scheduler = SchedulingConfig.PERIODIC)
+    public void purgePartitions() {
+        if (!enabled) return;
+        int deleted = jdbcTemplate.update(
+                "DELETE FROM job_leases WHERE lease_key LIKE '%#%' AND expires_at < now() - interval '7 days'");
+        if (deleted > 0) logger.info("Purged {} job partition leases", deleted);
+    }
+
+    /**
+     * Splits [minId, maxId] into at most count ranges of near-equal width; the first starts at
+     * Long.MIN_VALUE and the last ends at Long.MAX_VALUE.
+     */
+    static List<Partition> split(long minId, long maxId, int count) {
+        if (maxId < minId) return List.of(new Partition(0, 1, Long.MIN_VALUE, Long.MAX_VALUE, null));
+        long span = maxId - minId + 1;
+        int n = (int) Math.min(count, span);
+        long width = span / n;
+        long remainder = span % n;
+        List<Partition> result = new ArrayList<>(n);
+        long from = minId;
+        for (int i = 0; i < n; i++) {
+            long to = from + width + (i < remainder ? 1 : 0);
+            result.add(new Partition(i, n, i == 0 ? Long.MIN_VALUE : from, i == n - 1 ? Long.MAX_VALUE : to, null));
+            from = to;
+        }
+        return result;
+    }
+
+    void heartbeat() {
+        for (Lease lease : held.values()) {
+            try {
+                if (jdbcTemplate.update(HEARTBEAT_SQL, seconds(leaseTtl), lease.key, nodeId, lease.token) > 0) continue;
+                // Not renewed: either a fenced transaction holds the row (still ours) or it was taken over
+                Long owned = jdbcTemplate.queryForObject(OWNED_SQL, Long.class, lease.key, nodeId, lease.token);
+                if (owned == null || owned == 0) lost(lease);
+            } catch (DataAccessException e) {
+                logger.warn("Could not renew lease {}", lease.key, e);
+            } catch (RuntimeException e) {
+                logger.error("Lease heartbeat failed for {}", lease.key, e);
+            }
+        }
+    }
+
+    private void lost(Lease lease) {
+        if (lease.lost) return;
+        lease.lost = true;
+        held.remove(lease.key, lease);
+        String job = lease.key.contains("@") ? lease.key.substring(0, lease.key.indexOf('@')) : lease.key;
+        Counter.builder("scheduled.jobs.lease.lost")
+                .description("Job leases taken over by another node while this one held them")
+                .tag("job", job)
+                .register(registry).increment();
+        logger.warn("Lease {} (token {}) lost to another node", lease.key, lease.token);
+    }
+
+    private static double seconds(Duration duration) {
+        return duration.toMillis() / 1000.0;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static String hostname() {
+        String env = System.getenv("HOSTNAME");
+        if (StringUtils.hasText(env)) return env;
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return ManagementFactory.getRuntimeMXBean().getName();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.alvaro.psicoapp.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Blobs under uploads/&lt;namespace&gt;/&lt;key&gt;, the layout the app has always used, so legacy
+ * files and content-addressed ones sit side by side.
+ */
+public class LocalBlobStore implements BlobStore {
+    private final Path root;
+
+    public LocalBlobStore(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public boolean exists(String namespace, String key) {
+        return Files.isRegularFile(localPath(namespace, key));
+    }
+
+    @Override
+    public InputStream open(String namespace, String key) throws IOException {
+        try {
+            return Files.newInputStream(localPath(namespace, key));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String namespace, String key, Path staged, String sha256, String contentType) throws IOException {
+        Path target = localPath(namespace, key);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(staged, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Staging dir on another filesystem: copy next to the target, then rename
+            Path tmp = Files.createTempFile(target.getParent(), ".put-", ".tmp");
+            try {
+                Files.copy(staged, tmp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+                Files.deleteIfExists(staged);
+            }
+        }
+    }
+
+    @Override
+    public void delete(String namespace, String key) throws IOException {
+        Path file = localPath(namespace, key);
+        Files.deleteIfExists(file);
+        for (Path variant : FileDeliveryService.variantsOf(file)) {
+            Files.deleteIfExists(variant);
+        }
+    }
+
+    @Override
+    public Path localPath(String namespace, String key) {
+        return root.resolve(namespace).resolve(key);
+    }
+
+    @Override
+    public Optional<URI> presignedGet(String namespace, String key, Duration ttl) {
+        // Served from disk through localPath
+        return Optional.empty();
+    }
+}
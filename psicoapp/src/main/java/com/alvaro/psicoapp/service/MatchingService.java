@@ -23,12 +23,14 @@ public class MatchingService {
     private final UserPsychologistRepository userPsychologistRepository;
     private final PsychologistProfileRepository psychologistProfileRepository;
     private final AppointmentRatingRepository appointmentRatingRepository;
+    private final TestDefinitionCache testDefinitionCache;
 
     public MatchingService(TestRepository testRepository, QuestionRepository questionRepository,
                            AnswerRepository answerRepository, UserAnswerRepository userAnswerRepository,
                            UserRepository userRepository, UserPsychologistRepository userPsychologistRepository,
                            PsychologistProfileRepository psychologistProfileRepository,
-                           AppointmentRatingRepository appointmentRatingRepository) {
+                           AppointmentRatingRepository appointmentRatingRepository,
+                           TestDefinitionCache testDefinitionCache) {
         this.testRepository = testRepository;
         this.questionRepository = questionRepository;
         this.answerRepository = answerRepository;
@@ -37,6 +39,7 @@ public class MatchingService {
         this.userPsychologistRepository = userPsychologistRepository;
         this.psychologistProfileRepository = psychologistProfileRepository;
         this.appointmentRatingRepository = appointmentRatingRepository;
+        this.testDefinitionCache = testDefinitionCache;
     }
 
     private static final String PATIENT_MATCHING_TEST_CODE = "PATIENT_MATCHING";
@@ -683,18 +686,11 @@ public class MatchingService {
         public void setMatchPercentage(int matchPercentage) { this.matchPercentage = matchPercentage; }
     }
 
-    @Transactional(readOnly = true)
-    public MatchingDtos.MatchingTestResponse getMatchingTest(String testCode) {
-        TestEntity test = testRepository.findByCode(testCode)
-                .orElseThrow(() -> new RuntimeException("Test de matching no encontrado."));
-        List<QuestionEntity> questions = questionRepository.findByTestOrderByPositionAsc(test);
-        List<MatchingDtos.QuestionDto> questionsList = questions.stream().map(q -> {
-            List<AnswerEntity> answers = answerRepository.findByQuestionOrderByPositionAsc(q);
-            var answersDto = answers.stream().map(a -> new MatchingDtos.AnswerDto(a.getId(), a.getText(), a.getValue(), a.getPosition()))
-                    .collect(Collectors.toList());
-            return new MatchingDtos.QuestionDto(q.getId(), q.getText(), q.getType(), q.getPosition(), answersDto);
-        }).collect(Collectors.toList());
-        return new MatchingDtos.MatchingTestResponse(test.getId(), test.getCode(), test.getTitle(), test.getDescription(), questionsList);
+    /** Pre-serialised matching test with its ETag, for conditional GETs */
+    public TestDefinitionCache.Json getMatchingTest(String testCode) {
+        TestDefinitionCache.TestDefinition definition = testDefinitionCache.byCode(testCode);
+        if (definition == null) throw new RuntimeException("Test de matching no encontrado.");
+        return definition.json(TestDefinitionCache.View.MATCHING);
     }
 
     @Transactional
@@ -1,5 +1,6 @@
 package com.alvaro.psicoapp.service;
 
+import com.alvaro.psicoapp.config.SchedulingConfig;
 import com.alvaro.psicoapp.security.JwtService;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
@@ -47,7 +48,8 @@ public class OAuthCodeStoreService {
 	/**
 	 * Cleanup expired codes every 60 seconds to prevent memory leaks.
 	 */
-	@Scheduled(fixedRate = 60_000)
+	@Scheduled(fixedRate = 60_000, scheduler = SchedulingConfig.PERIODIC)
+	@ClusterJob(ClusterJob.Mode.EVERY_NODE)
 	public void cleanupExpiredCodes() {
 		Instant cutoff = Instant.now().minusMillis(CODE_TTL_MS);
 		codes.entrySet().removeIf(e -> e.getValue().createdAt.isBefore(cutoff));
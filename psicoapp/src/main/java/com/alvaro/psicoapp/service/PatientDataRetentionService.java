@@ -1,7 +1,5 @@
 package com.alvaro.psicoapp.service;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
@@ -14,6 +12,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.alvaro.psicoapp.config.SchedulingConfig;
 import com.alvaro.psicoapp.domain.RoleConstants;
 import com.alvaro.psicoapp.domain.UserEntity;
 import com.alvaro.psicoapp.repository.AuditLogRepository;
@@ -85,6 +84,8 @@ public class PatientDataRetentionService {
     private final ClinicPatientDocumentRepository clinicPatientDocumentRepository;
     private final ClinicRoomRepository clinicRoomRepository;
     private final TokenBlacklistService tokenBlacklistService;
+    private final UploadStorageService uploadStorageService;
+    private final JobLeaseService jobLeases;
 
     public PatientDataRetentionService(
         UserRepository userRepository,
@@ -118,7 +119,9 @@ public class PatientDataRetentionService {
         ClinicPatientProfileRepository clinicPatientProfileRepository,
         ClinicPatientDocumentRepository clinicPatientDocumentRepository,
         ClinicRoomRepository clinicRoomRepository,
-        TokenBlacklistService tokenBlacklistService
+        TokenBlacklistService tokenBlacklistService,
+        UploadStorageService uploadStorageService,
+        JobLeaseService jobLeases
     ) {
         this.userRepository = userRepository;
         this.userPsychologistRepository = userPsychologistRepository;
@@ -152,9 +155,16 @@ public class PatientDataRetentionService {
         this.clinicPatientDocumentRepository = clinicPatientDocumentRepository;
         this.clinicRoomRepository = clinicRoomRepository;
         this.tokenBlacklistService = tokenBlacklistService;
+        this.uploadStorageService = uploadStorageService;
+        this.jobLeases = jobLeases;
     }
 
-    @Scheduled(cron = "0 30 2 * * *")
+    /**
+     * With several replicas the candidates are split by user ID range and each node erases the
+     * ranges it claims (JobLeaseService.forEachPartition).
+     */
+    @Scheduled(cron = "0 30 2 * * *", scheduler = SchedulingConfig.BULK)
+    @ClusterJob(ClusterJob.Mode.PARTITIONED)
     public void runRetentionJob() {
         Instant cutoff = Instant.now().minus(RETENTION_YEARS, ChronoUnit.YEARS);
         List<UserEntity> candidates = userRepository.findByRoleAndCreatedAtBefore(RoleConstants.USER, cutoff);
@@ -164,22 +174,32 @@ public class PatientDataRetentionService {
         logger.warn("RGPD retention: {} usuarios candidatos para borrado/anonimizacion (cutoff={})",
             candidates.size(), cutoff);
 
-        for (UserEntity u : candidates) {
-            try {
-                eraseOneUserInNewTx(u.getId());
-            } catch (Exception e) {
-                logger.error("RGPD retention: error procesando userId={}", u.getId(), e);
+        long minId = candidates.stream().mapToLong(UserEntity::getId).min().getAsLong();
+        long maxId = candidates.stream().mapToLong(UserEntity::getId).max().getAsLong();
+        jobLeases.forEachPartition(minId, maxId, partition -> {
+            for (UserEntity u : candidates) {
+                if (!partition.contains(u.getId())) continue;
+                if (!partition.isHeld()) {
+                    logger.warn("RGPD retention: particion {} tomada por otro nodo, se detiene", partition.index());
+                    return;
+                }
+                try {
+                    eraseOneUserInNewTx(u.getId());
+                } catch (Exception e) {
+                    logger.error("RGPD retention: error procesando userId={}", u.getId(), e);
+                }
             }
-        }
+        });
     }
 
     /**
      * Daily cleanup: unverified accounts (30 days), old notifications (90 days),
      * anonymized/deleted accounts residual data (30 days).
      */
-    @Scheduled(cron = "0 0 3 * * *")
+    @Scheduled(cron = "0 0 3 * * *", scheduler = SchedulingConfig.BULK)
     @Transactional
     public void enforceRetentionPolicies() {
+        jobLeases.fence();
         deleteUnverifiedAccounts();
         deleteOldNotifications();
         cleanupDeletedAccounts();
@@ -264,6 +284,8 @@ public class PatientDataRetentionService {
 
         String role = user.getRole();
         auditService.logDataDeletion(userId, role, userId, "ACCOUNT_ERASURE");
+        // No name: the row outlives the erasure and must not keep the user's PII
+        auditService.persistAudit(AuditService.ACCOUNT_ERASURE, "USER", userId, userId, role, null, userId, null);
 
         logger.info("RGPD: starting cascade delete for userId={}, role={}", userId, role);
 
@@ -443,7 +465,7 @@ public class PatientDataRetentionService {
     }
 
     // -----------------------------------------------------------------------
-    // Helper: delete task files from disk
+    // Helper: release task files (deleted from storage once unreferenced)
     // -----------------------------------------------------------------------
     private void deleteTaskFilesOnDisk(Long userId, boolean isPatient) {
         try {
@@ -452,54 +474,35 @@ public class PatientDataRetentionService {
                 : taskFileRepository.findByTask_Psychologist_Id(userId);
             for (var f : files) {
                 if (f == null || f.getFilePath() == null || f.getFilePath().isBlank()) continue;
-                try {
-                    Path p = Path.of(f.getFilePath());
-                    if (Files.exists(p)) Files.delete(p);
-                } catch (RuntimeException | java.io.IOException e) {
-                    logger.warn("RGPD retention: no se pudo borrar archivo {}", f.getFilePath(), e);
-                }
+                uploadStorageService.release(UploadStorageService.TASKS, UploadStorageService.keyOf(f.getFilePath()));
             }
         } catch (Exception e) {
-            logger.warn("RGPD retention: error leyendo/borrando ficheros en disco para userId={}", userId, e);
+            logger.warn("RGPD retention: error liberando ficheros para userId={}", userId, e);
         }
     }
 
     // -----------------------------------------------------------------------
-    // Helper: delete clinic document files from disk
+    // Helper: release clinic document files
     // -----------------------------------------------------------------------
     private void deleteClinicDocumentFiles(Long patientId) {
         try {
             var docs = clinicPatientDocumentRepository.findByPatientId(patientId);
             for (var doc : docs) {
                 if (doc == null || doc.getFileName() == null || doc.getFileName().isBlank()) continue;
-                try {
-                    // Documents are stored under uploads/clinic-docs/
-                    Path p = Path.of("uploads", "clinic-docs", doc.getFileName());
-                    if (Files.exists(p)) {
-                        Files.delete(p);
-                        logger.info("RGPD: deleted clinic document file {}", p);
-                    }
-                } catch (RuntimeException | java.io.IOException e) {
-                    logger.warn("RGPD: could not delete clinic document file {}", doc.getFileName(), e);
-                }
+                uploadStorageService.release(UploadStorageService.CLINIC_DOCS, UploadStorageService.keyOf(doc.getFileName()));
             }
         } catch (Exception e) {
-            logger.warn("RGPD: error reading/deleting clinic document files for patientId={}", patientId, e);
+            logger.warn("RGPD: error releasing clinic document files for patientId={}", patientId, e);
         }
     }
 
     private void deleteAvatarFile(String avatarUrl) {
-        if (avatarUrl == null || avatarUrl.isBlank()) return;
+        // avatarUrl is like /uploads/avatars/<key>; OAuth avatars are external URLs
+        if (avatarUrl == null || !avatarUrl.startsWith("/uploads/avatars/")) return;
         try {
-            // avatarUrl is like /uploads/avatars/uuid.jpg -- resolve to disk path
-            String relative = avatarUrl.startsWith("/") ? avatarUrl.substring(1) : avatarUrl;
-            Path p = Path.of(relative);
-            if (Files.exists(p)) {
-                Files.delete(p);
-                logger.info("RGPD: deleted avatar file {}", p);
-            }
+            uploadStorageService.release(UploadStorageService.AVATARS, UploadStorageService.keyOf(avatarUrl));
         } catch (Exception e) {
-            logger.warn("RGPD: could not delete avatar file {}", avatarUrl, e);
+            logger.warn("RGPD: could not release avatar file {}", avatarUrl, e);
         }
     }
 
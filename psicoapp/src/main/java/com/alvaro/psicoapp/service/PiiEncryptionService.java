@@ -1,5 +1,8 @@
 package com.alvaro.psicoapp.service;
 
+import com.alvaro.psicoapp.util.ObjectPool;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,10 +15,17 @@ import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Field-level PII encryption at rest.
@@ -29,6 +39,20 @@ import java.util.Base64;
  *
  * Backwards compatibility: decrypt methods return plaintext as-is when the prefix is missing,
  * so existing unencrypted rows keep working and get encrypted lazily on next save.
+ *
+ * Key rotation: values are written under the current key version (app.pii.key-version) and
+ * tagged "ENC:v&lt;n&gt;:" / "DENC:v&lt;n&gt;:"; version 1 keeps the original untagged format.
+ * Older versions listed in app.pii.previous-keys ("2:passphrase,1:passphrase") stay readable,
+ * so the key can change while the app runs and {@link PiiMigrationRunner} re-encrypts rows in
+ * the background. Until it has, an email may be stored under any of those versions, so
+ * equality lookups match every form of it ({@link #deterministicLookupValues}).
+ *
+ * Every entity load runs these through the JPA converters, so the hot path avoids per-call
+ * setup: initialised Cipher and Mac instances are pooled (neither is thread-safe, and
+ * getInstance walks the provider list; a per-thread cache would be rebuilt for every request
+ * on virtual threads), payloads are decoded in place without copying IV and ciphertext apart,
+ * and deterministic values, a small set read over and over (the logged-in users' emails), are
+ * memoised in both directions.
  */
 @Service
 public class PiiEncryptionService {
@@ -36,28 +60,44 @@ public class PiiEncryptionService {
 
     private static final String ALGORITHM = "AES";
     private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
     private static final int GCM_IV_LENGTH = 12;
     private static final int GCM_TAG_BITS = 128;
 
     private static final String ENC_PREFIX = "ENC:";
     private static final String DENC_PREFIX = "DENC:";
 
-    private final SecretKey encryptionKey;
-    private final SecretKey deterministicKey;
+    private record KeyVersion(int version, SecretKey encryptionKey, SecretKey deterministicKey) {}
+
+    private final KeyVersion current;
+    private final Map<Integer, KeyVersion> keys = new HashMap<>();
     private final SecureRandom secureRandom = new SecureRandom();
+    // Crypto work never blocks, so no more than one per carrier thread is in use at a time
+    private final ObjectPool<Crypto> crypto = new ObjectPool<>(2 * Runtime.getRuntime().availableProcessors(), Crypto::new);
+    /** normalised plaintext → DENC value */
+    private final Cache<String, String> deterministicEncryptions;
+    /** DENC value → plaintext */
+    private final Cache<String, String> deterministicDecryptions;
+    /** plaintext → every value it may be stored as, while older key versions are configured */
+    private final Cache<String, List<String>> deterministicLookups;
 
     public PiiEncryptionService(
-            @Value("${app.pii.encryption-key:dev-pii-key-change-in-production-32chars}") String masterKey) {
-        try {
-            // Derive two independent 256-bit keys from the master passphrase
-            byte[] keyBytes = sha256(masterKey.getBytes(StandardCharsets.UTF_8));
-            this.encryptionKey = new SecretKeySpec(keyBytes, ALGORITHM);
-
-            byte[] detKeyBytes = sha256(("det-" + masterKey).getBytes(StandardCharsets.UTF_8));
-            this.deterministicKey = new SecretKeySpec(detKeyBytes, ALGORITHM);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to initialise PII encryption keys", e);
+            @Value("${app.pii.encryption-key:dev-pii-key-change-in-production-32chars}") String masterKey,
+            @Value("${app.pii.key-version:1}") int keyVersion,
+            @Value("${app.pii.previous-keys:}") String previousKeys,
+            @Value("${app.pii.deterministic-memo-size:10000}") int memoSize) {
+        this.current = deriveKeys(keyVersion, masterKey);
+        keys.put(keyVersion, current);
+        for (String entry : previousKeys.split(",")) {
+            if (entry.isBlank()) continue;
+            int colon = entry.indexOf(':');
+            if (colon < 1) throw new IllegalArgumentException("app.pii.previous-keys entries must be version:passphrase");
+            int version = Integer.parseInt(entry.substring(0, colon).trim());
+            if (version != keyVersion) keys.put(version, deriveKeys(version, entry.substring(colon + 1).trim()));
         }
+        this.deterministicEncryptions = Caffeine.newBuilder().maximumSize(memoSize).build();
+        this.deterministicDecryptions = Caffeine.newBuilder().maximumSize(memoSize).build();
+        this.deterministicLookups = Caffeine.newBuilder().maximumSize(memoSize).build();
     }
 
     // ── Randomized encryption (name, phone, etc.) ───────────────────────
@@ -71,16 +111,7 @@ public class PiiEncryptionService {
         try {
             byte[] iv = new byte[GCM_IV_LENGTH];
             secureRandom.nextBytes(iv);
-
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.ENCRYPT_MODE, encryptionKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
-            byte[] ciphertext = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
-
-            ByteBuffer buf = ByteBuffer.allocate(iv.length + ciphertext.length);
-            buf.put(iv);
-            buf.put(ciphertext);
-
-            return ENC_PREFIX + Base64.getEncoder().encodeToString(buf.array());
+            return seal(ENC_PREFIX, current.version(), current.encryptionKey(), iv, plaintext);
         } catch (Exception e) {
             logger.error("PII randomized encryption failed", e);
             throw new RuntimeException("PII encryption error", e);
@@ -95,22 +126,20 @@ public class PiiEncryptionService {
         if (ciphertext == null || ciphertext.isEmpty()) return ciphertext;
         if (!ciphertext.startsWith(ENC_PREFIX)) return ciphertext; // plaintext — backwards compat
         try {
-            byte[] decoded = Base64.getDecoder().decode(ciphertext.substring(ENC_PREFIX.length()));
-            ByteBuffer buf = ByteBuffer.wrap(decoded);
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            buf.get(iv);
-            byte[] enc = new byte[buf.remaining()];
-            buf.get(enc);
-
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.DECRYPT_MODE, encryptionKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
-            return new String(cipher.doFinal(enc), StandardCharsets.UTF_8);
+            return open(ENC_PREFIX, ciphertext, false);
         } catch (Exception e) {
             logger.error("PII randomized decryption failed, returning raw value", e);
             return ciphertext; // fail-open for safety during migration
         }
     }
 
+    /** {@link #decrypt} over a page of values, in order */
+    public List<String> decryptAll(List<String> ciphertexts) {
+        List<String> out = new ArrayList<>(ciphertexts.size());
+        for (String value : ciphertexts) out.add(decrypt(value));
+        return out;
+    }
+
     // ── Deterministic encryption (email) ────────────────────────────────
 
     /**
@@ -120,25 +149,29 @@ public class PiiEncryptionService {
     public String encryptDeterministic(String plaintext) {
         if (plaintext == null || plaintext.isEmpty()) return plaintext;
         if (plaintext.startsWith(DENC_PREFIX)) return plaintext; // already encrypted
+        // Normalise email-like values to lower-case so lookups are case-insensitive
+        String normalised = plaintext.toLowerCase(Locale.ROOT);
+        String memo = deterministicEncryptions.getIfPresent(normalised);
+        if (memo != null) return memo;
+        Crypto c = crypto.borrow();
         try {
-            // Normalise email-like values to lower-case so lookups are case-insensitive
-            String normalised = plaintext.toLowerCase(java.util.Locale.ROOT);
-
             // Derive a fixed IV from the plaintext using HMAC-SHA256 truncated to 12 bytes
-            byte[] iv = deriveIv(normalised);
-
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.ENCRYPT_MODE, deterministicKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
-            byte[] ciphertext = cipher.doFinal(normalised.getBytes(StandardCharsets.UTF_8));
-
-            ByteBuffer buf = ByteBuffer.allocate(iv.length + ciphertext.length);
-            buf.put(iv);
-            buf.put(ciphertext);
-
-            return DENC_PREFIX + Base64.getEncoder().encodeToString(buf.array());
+            byte[] iv = Arrays.copyOf(c.ivMac(current.deterministicKey()).doFinal(normalised.getBytes(StandardCharsets.UTF_8)), GCM_IV_LENGTH);
+            // GCM refuses to encrypt twice in a row with the same key and IV on one Cipher;
+            // the same IV means the same plaintext, so the previous result is the answer
+            String result = Arrays.equals(iv, c.lastDeterministicIv)
+                    ? c.lastDeterministicResult
+                    : seal(c.cipher, DENC_PREFIX, current.version(), current.deterministicKey(), iv, normalised);
+            c.lastDeterministicIv = iv;
+            c.lastDeterministicResult = result;
+            deterministicEncryptions.put(normalised, result);
+            deterministicDecryptions.put(result, normalised);
+            return result;
         } catch (Exception e) {
             logger.error("PII deterministic encryption failed", e);
             throw new RuntimeException("PII deterministic encryption error", e);
+        } finally {
+            crypto.release(c);
         }
     }
 
@@ -149,34 +182,185 @@ public class PiiEncryptionService {
     public String decryptDeterministic(String ciphertext) {
         if (ciphertext == null || ciphertext.isEmpty()) return ciphertext;
         if (!ciphertext.startsWith(DENC_PREFIX)) return ciphertext; // plaintext — backwards compat
+        String memo = deterministicDecryptions.getIfPresent(ciphertext);
+        if (memo != null) return memo;
         try {
-            byte[] decoded = Base64.getDecoder().decode(ciphertext.substring(DENC_PREFIX.length()));
-            ByteBuffer buf = ByteBuffer.wrap(decoded);
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            buf.get(iv);
-            byte[] enc = new byte[buf.remaining()];
-            buf.get(enc);
-
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
-            cipher.init(Cipher.DECRYPT_MODE, deterministicKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
-            return new String(cipher.doFinal(enc), StandardCharsets.UTF_8);
+            String plaintext = open(DENC_PREFIX, ciphertext, true);
+            deterministicDecryptions.put(ciphertext, plaintext);
+            return plaintext;
         } catch (Exception e) {
             logger.error("PII deterministic decryption failed, returning raw value", e);
             return ciphertext; // fail-open for safety during migration
         }
     }
 
+    /**
+     * Every value a deterministic column may hold for this plaintext: the plaintext itself
+     * (rows not migrated yet) and its ciphertext under each configured key version, current
+     * first. Equality lookups and unique checks match them all with IN (...), so they keep
+     * working while a key rotation is being migrated; once app.pii.previous-keys is emptied
+     * after the migration completes, only the plaintext and current ciphertext remain.
+     */
+    public List<String> deterministicLookupValues(String plaintext) {
+        if (plaintext == null || plaintext.isEmpty() || plaintext.startsWith(DENC_PREFIX)) {
+            return Collections.singletonList(plaintext);
+        }
+        if (keys.size() == 1) return List.of(plaintext, encryptDeterministic(plaintext));
+        List<String> memo = deterministicLookups.getIfPresent(plaintext);
+        if (memo != null) return memo;
+        String normalised = plaintext.toLowerCase(Locale.ROOT);
+        List<String> values = new ArrayList<>(keys.size() + 1);
+        values.add(plaintext);
+        values.add(encryptDeterministic(plaintext));
+        try {
+            for (KeyVersion keyVersion : keys.values()) {
+                if (keyVersion == current) continue;
+                // Rare path (rotation only, then memoised): fresh JCA objects instead of the
+                // per-thread ones, whose Mac is keyed with the current key
+                Mac mac = Mac.getInstance(MAC_ALGORITHM);
+                mac.init(keyVersion.deterministicKey());
+                byte[] iv = Arrays.copyOf(mac.doFinal(normalised.getBytes(StandardCharsets.UTF_8)), GCM_IV_LENGTH);
+                values.add(seal(Cipher.getInstance(TRANSFORMATION), DENC_PREFIX, keyVersion.version(),
+                        keyVersion.deterministicKey(), iv, normalised));
+            }
+        } catch (GeneralSecurityException e) {
+            logger.error("PII deterministic encryption failed", e);
+            throw new RuntimeException("PII deterministic encryption error", e);
+        }
+        List<String> result = List.copyOf(values);
+        deterministicLookups.put(plaintext, result);
+        return result;
+    }
+
+    /** {@link #decryptDeterministic} over a page of values, in order */
+    public List<String> decryptAllDeterministic(List<String> ciphertexts) {
+        List<String> out = new ArrayList<>(ciphertexts.size());
+        for (String value : ciphertexts) out.add(decryptDeterministic(value));
+        return out;
+    }
+
+    // ── Key rotation ────────────────────────────────────────────────────
+
+    public int currentKeyVersion() {
+        return current.version();
+    }
+
+    /**
+     * @return true if the value is plaintext or was encrypted under an older key version
+     */
+    public boolean needsReencryption(String value, boolean deterministic) {
+        if (value == null || value.isEmpty()) return false;
+        String prefix = deterministic ? DENC_PREFIX : ENC_PREFIX;
+        return !value.startsWith(prefix) || keyVersionOf(prefix, value) != current.version();
+    }
+
+    /**
+     * Brings a value up to the current key: plaintext is encrypted, values under an older key
+     * are decrypted and encrypted again. Values that can't be decrypted are returned unchanged.
+     */
+    public String reencrypt(String value, boolean deterministic) {
+        if (!needsReencryption(value, deterministic)) return value;
+        String plaintext = deterministic ? decryptDeterministic(value) : decrypt(value);
+        if (plaintext.startsWith(deterministic ? DENC_PREFIX : ENC_PREFIX)) return value; // undecryptable
+        return deterministic ? encryptDeterministic(plaintext) : encrypt(plaintext);
+    }
+
     // ── Helpers ─────────────────────────────────────────────────────────
 
-    /** HMAC-SHA256, truncated to 12 bytes, used as the deterministic IV. */
-    private byte[] deriveIv(String plaintext) throws Exception {
-        Mac mac = Mac.getInstance("HmacSHA256");
-        mac.init(deterministicKey);
-        byte[] hash = mac.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
-        return Arrays.copyOf(hash, GCM_IV_LENGTH);
+    private static KeyVersion deriveKeys(int version, String masterKey) {
+        try {
+            // Derive two independent 256-bit keys from the master passphrase
+            byte[] keyBytes = sha256(masterKey.getBytes(StandardCharsets.UTF_8));
+            byte[] detKeyBytes = sha256(("det-" + masterKey).getBytes(StandardCharsets.UTF_8));
+            return new KeyVersion(version, new SecretKeySpec(keyBytes, ALGORITHM), new SecretKeySpec(detKeyBytes, ALGORITHM));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to initialise PII encryption keys", e);
+        }
+    }
+
+    /** Version 1 values carry no tag; later ones start with "v&lt;n&gt;:" (Base64 has no ':') */
+    private static int keyVersionOf(String prefix, String value) {
+        int colon = value.indexOf(':', prefix.length());
+        if (colon < 0) return 1;
+        if (value.charAt(prefix.length()) != 'v') return -1;
+        try {
+            return Integer.parseInt(value, prefix.length() + 1, colon, 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String versionTag(int version) {
+        return version == 1 ? "" : "v" + version + ":";
+    }
+
+    /** prefix + version tag + Base64(iv || ciphertext || tag), encrypted straight into the output buffer */
+    private String seal(String prefix, int version, SecretKey key, byte[] iv, String plaintext) throws GeneralSecurityException {
+        Crypto c = crypto.borrow();
+        try {
+            return seal(c.cipher, prefix, version, key, iv, plaintext);
+        } finally {
+            crypto.release(c);
+        }
+    }
+
+    private static String seal(Cipher cipher, String prefix, int version, SecretKey key, byte[] iv, String plaintext) throws GeneralSecurityException {
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, iv));
+        byte[] input = plaintext.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = new byte[GCM_IV_LENGTH + cipher.getOutputSize(input.length)];
+        System.arraycopy(iv, 0, payload, 0, GCM_IV_LENGTH);
+        cipher.doFinal(input, 0, input.length, payload, GCM_IV_LENGTH);
+        // Base64 is ASCII: Latin-1 keeps the String compact without a charset encoder
+        return prefix + versionTag(version) + new String(Base64.getEncoder().encode(payload), StandardCharsets.ISO_8859_1);
+    }
+
+    /** Inverse of {@link #seal}: IV and ciphertext are read in place from the decoded payload */
+    private String open(String prefix, String value, boolean deterministic) throws GeneralSecurityException {
+        int version = keyVersionOf(prefix, value);
+        KeyVersion keyVersion = keys.get(version);
+        if (keyVersion == null) throw new GeneralSecurityException("Unknown PII key version " + version);
+        SecretKey key = deterministic ? keyVersion.deterministicKey() : keyVersion.encryptionKey();
+        int start = prefix.length() + versionTag(version).length();
+        byte[] encoded = value.getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer decoded = Base64.getDecoder().decode(ByteBuffer.wrap(encoded, start, encoded.length - start));
+        byte[] payload = decoded.array();
+        int length = decoded.remaining();
+        Crypto c = crypto.borrow();
+        try {
+            c.cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, payload, decoded.arrayOffset(), GCM_IV_LENGTH));
+            byte[] plaintext = c.cipher.doFinal(payload, decoded.arrayOffset() + GCM_IV_LENGTH, length - GCM_IV_LENGTH);
+            return new String(plaintext, StandardCharsets.UTF_8);
+        } finally {
+            crypto.release(c);
+        }
     }
 
     private static byte[] sha256(byte[] input) throws Exception {
         return MessageDigest.getInstance("SHA-256").digest(input);
     }
+
+    /** Pooled JCA objects; Cipher and Mac are stateful and not thread-safe, so one user at a time */
+    private static final class Crypto {
+        final Cipher cipher;
+        private Mac ivMac;
+        byte[] lastDeterministicIv;
+        String lastDeterministicResult;
+
+        Crypto() {
+            try {
+                this.cipher = Cipher.getInstance(TRANSFORMATION);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /** HMAC-SHA256 keyed once; doFinal resets it for the next IV */
+        Mac ivMac(SecretKey key) throws GeneralSecurityException {
+            if (ivMac == null) {
+                ivMac = Mac.getInstance(MAC_ALGORITHM);
+                ivMac.init(key);
+            }
+            return ivMac;
+        }
+    }
 }
@@ -1,68 +1,267 @@
 package com.alvaro.psicoapp.service;
 
-import com.alvaro.psicoapp.repository.UserRepository;
+import com.alvaro.psicoapp.domain.BatchJobEntity;
+import com.alvaro.psicoapp.dto.AdminDtos;
+import com.alvaro.psicoapp.repository.BatchJobRepository;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * PII encryption migration — must be triggered manually via admin endpoint.
- * Encrypts all plaintext name/email/totpSecret values in the users table.
+ * Encrypts plaintext name/email/totpSecret values in the users table and re-encrypts values
+ * written under an older key version (key rotation), using direct JDBC so it works
+ * regardless of the @Convert state.
+ *
+ * Runs in the background like {@link TestRescoringService}: users are paged by id, each page
+ * is rewritten in its own short transaction with one JDBC batch on a bounded worker pool, and
+ * the checkpoint (last id of the contiguous prefix of finished pages) is kept in batch_jobs,
+ * so a cancelled or crashed run resumes where it stopped. Updates only apply if the row still
+ * holds the values that were read; rows the app changed in between are counted as failed and
+ * picked up by the next run. Nothing is locked beyond the rows of the page being written, so
+ * the app keeps serving while it runs.
  *
  * Steps to activate PII encryption:
- * 1. POST /api/admin/pii/migrate (runs this service)
+ * 1. POST /api/admin/pii/migrate and follow GET /api/admin/pii/migrate until COMPLETED
  * 2. Verify all rows are encrypted: SELECT count(*) FROM users WHERE email NOT LIKE 'DENC:%'
  * 3. Uncomment @Convert annotations in UserEntity
  * 4. Restart backend
+ *
+ * To rotate the key: set the new passphrase and app.pii.key-version, move the old passphrase
+ * to app.pii.previous-keys, deploy, then run the migration with restart=true. Email lookups
+ * match every configured version meanwhile; once it has COMPLETED with nothing skipped, remove
+ * the old passphrase from app.pii.previous-keys.
  */
 @Component
 public class PiiMigrationRunner {
     private static final Logger logger = LoggerFactory.getLogger(PiiMigrationRunner.class);
+    private static final String JOB_KEY = "pii-migration";
 
-    private final UserRepository userRepository;
     private final PiiEncryptionService piiEncryptionService;
     private final JdbcTemplate jdbcTemplate;
+    private final BatchJobRepository batchJobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int threads;
+    private final ExecutorService workers;
+    private volatile Job current;
 
-    public PiiMigrationRunner(UserRepository userRepository,
-                              PiiEncryptionService piiEncryptionService,
-                              JdbcTemplate jdbcTemplate) {
-        this.userRepository = userRepository;
+    public PiiMigrationRunner(PiiEncryptionService piiEncryptionService,
+                              JdbcTemplate jdbcTemplate,
+                              BatchJobRepository batchJobRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.pii.migration.chunk-size:1000}") int chunkSize,
+                              @Value("${app.pii.migration.threads:4}") int threads) {
         this.piiEncryptionService = piiEncryptionService;
         this.jdbcTemplate = jdbcTemplate;
+        this.batchJobRepository = batchJobRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.threads = threads;
+        this.workers = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("pii-migrate-", 0).daemon().factory());
+    }
+
+    /**
+     * Starts the migration, resuming from the last checkpoint unless the previous run
+     * completed or {@code restart} is set.
+     */
+    public synchronized AdminDtos.PiiMigrationStatus start(boolean restart) {
+        if (current != null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Ya hay una migración de PII en curso");
+        }
+        Instant now = Instant.now();
+        BatchJobEntity checkpoint = batchJobRepository.findById(JOB_KEY).orElse(null);
+        if (restart || checkpoint == null || BatchJobEntity.COMPLETED.equals(checkpoint.getStatus())) {
+            checkpoint = new BatchJobEntity();
+            checkpoint.setJobKey(JOB_KEY);
+            checkpoint.setStartedAt(now);
+        }
+        checkpoint.setStatus(BatchJobEntity.RUNNING);
+        checkpoint.setTotal(jdbcTemplate.queryForObject("SELECT count(*) FROM users", Long.class));
+        checkpoint.setMessage(null);
+        checkpoint.setFinishedAt(null);
+        checkpoint.setUpdatedAt(now);
+        checkpoint = batchJobRepository.save(checkpoint);
+
+        Job job = new Job(checkpoint);
+        current = job;
+        logger.info("PII migration to key version {} from user id {} ({} users)",
+                piiEncryptionService.currentKeyVersion(), job.cursor, job.total);
+        Thread.ofPlatform().name("pii-migrate-job").daemon().start(() -> run(job));
+        return status(job);
+    }
+
+    public AdminDtos.PiiMigrationStatus getStatus() {
+        Job job = current;
+        if (job != null) return status(job);
+        BatchJobEntity checkpoint = batchJobRepository.findById(JOB_KEY)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "La migración de PII no se ha ejecutado"));
+        // Still RUNNING in the table but not in this process: the app stopped mid-job
+        String status = BatchJobEntity.RUNNING.equals(checkpoint.getStatus()) ? "INTERRUPTED" : checkpoint.getStatus();
+        return new AdminDtos.PiiMigrationStatus(status, piiEncryptionService.currentKeyVersion(), checkpoint.getProcessed(),
+                checkpoint.getFailed(), checkpoint.getTotal(), checkpoint.getCursorId(), 0.0, null,
+                checkpoint.getStartedAt(), checkpoint.getUpdatedAt(), checkpoint.getFinishedAt(), checkpoint.getMessage());
     }
 
     /**
-     * Encrypts all plaintext PII in the users table using direct JDBC
-     * (bypasses JPA converters so it works regardless of @Convert state).
+     * Stops paging; pages already in flight are finished and checkpointed before the job ends.
      */
-    @Transactional
-    public int migrateAll() {
-        var rows = jdbcTemplate.queryForList(
-            "SELECT id, name, email, totp_secret FROM users WHERE email NOT LIKE 'DENC:%'");
-
-        int migrated = 0;
-        for (var row : rows) {
-            Long id = ((Number) row.get("id")).longValue();
-            String name = (String) row.get("name");
-            String email = (String) row.get("email");
-            String totp = (String) row.get("totp_secret");
-
-            String encName = (name != null && !name.startsWith("ENC:"))
-                    ? piiEncryptionService.encrypt(name) : name;
-            String encEmail = (email != null && !email.startsWith("DENC:"))
-                    ? piiEncryptionService.encryptDeterministic(email) : email;
-            String encTotp = (totp != null && !totp.isEmpty() && !totp.startsWith("ENC:"))
-                    ? piiEncryptionService.encrypt(totp) : totp;
-
-            jdbcTemplate.update(
-                "UPDATE users SET name = ?, email = ?, totp_secret = ? WHERE id = ?",
-                encName, encEmail, encTotp, id);
-            migrated++;
+    public AdminDtos.PiiMigrationStatus cancel() {
+        Job job = current;
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "No hay una migración de PII en curso");
+        }
+        job.cancelRequested = true;
+        return status(job);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        Job job = current;
+        if (job != null) job.cancelRequested = true;
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private void run(Job job) {
+        Deque<Chunk> inFlight = new ArrayDeque<>();
+        String outcome = BatchJobEntity.COMPLETED;
+        String message = null;
+        try {
+            long after = job.cursor;
+            while (!job.cancelRequested) {
+                List<Long> ids = jdbcTemplate.queryForList(
+                        "SELECT id FROM users WHERE id > ? ORDER BY id LIMIT ?", Long.class, after, chunkSize);
+                if (ids.isEmpty()) break;
+                long from = after;
+                long to = ids.get(ids.size() - 1);
+                after = to;
+                inFlight.add(new Chunk(to, ids.size(), workers.submit(() -> migrateChunk(from, to))));
+                if (inFlight.size() >= threads) completeOldest(job, inFlight);
+            }
+            while (!inFlight.isEmpty()) completeOldest(job, inFlight);
+            if (job.cancelRequested) outcome = BatchJobEntity.CANCELLED;
+            else if (job.failed.get() > 0) message = job.failed.get() + " usuarios cambiaron durante la migración; vuelve a lanzarla";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            outcome = BatchJobEntity.CANCELLED;
+        } catch (Exception e) {
+            logger.error("PII migration failed after user id {}", job.cursor, e);
+            outcome = BatchJobEntity.FAILED;
+            message = e instanceof ExecutionException && e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            inFlight.forEach(chunk -> chunk.future.cancel(false));
+        } finally {
+            try {
+                checkpoint(job, outcome, message);
+            } finally {
+                current = null;
+            }
+            logger.info("PII migration {}: {} users checked, {} skipped", outcome.toLowerCase(), job.processed.get(), job.failed.get());
         }
+    }
+
+    // Pages finish out of order; the checkpoint only moves past a page once all earlier ones are done
+    private void completeOldest(Job job, Deque<Chunk> inFlight) throws InterruptedException, ExecutionException {
+        Chunk chunk = inFlight.poll();
+        int skipped = chunk.future.get();
+        job.processed.addAndGet(chunk.size - skipped);
+        job.failed.addAndGet(skipped);
+        job.cursor = chunk.lastUserId;
+        checkpoint(job, BatchJobEntity.RUNNING, null);
+    }
+
+    /**
+     * Rewrites the users with id in (afterId, lastId] that hold plaintext or old-key values.
+     *
+     * @return number of users left as they were because they changed since they were read
+     */
+    private int migrateChunk(long afterId, long lastId) {
+        return transactionTemplate.execute(status -> {
+            List<Object[]> updates = new ArrayList<>();
+            jdbcTemplate.query("SELECT id, name, email, totp_secret FROM users WHERE id > ? AND id <= ? ORDER BY id", rs -> {
+                String name = rs.getString("name");
+                String email = rs.getString("email");
+                String totp = rs.getString("totp_secret");
+                String encName = piiEncryptionService.reencrypt(name, false);
+                String encEmail = piiEncryptionService.reencrypt(email, true);
+                String encTotp = piiEncryptionService.reencrypt(totp, false);
+                if (!Objects.equals(name, encName) || !Objects.equals(email, encEmail) || !Objects.equals(totp, encTotp)) {
+                    updates.add(new Object[]{encName, encEmail, encTotp, rs.getLong("id"), name, email, totp});
+                }
+            }, afterId, lastId);
+            if (updates.isEmpty()) return 0;
+
+            int[] counts = jdbcTemplate.batchUpdate(
+                    "UPDATE users SET name = ?, email = ?, totp_secret = ? WHERE id = ? "
+                            + "AND name IS NOT DISTINCT FROM ? AND email IS NOT DISTINCT FROM ? AND totp_secret IS NOT DISTINCT FROM ?",
+                    updates);
+            int skipped = 0;
+            for (int count : counts) {
+                if (count == 0) skipped++;
+            }
+            return skipped;
+        });
+    }
+
+    private void checkpoint(Job job, String status, String message) {
+        BatchJobEntity checkpoint = batchJobRepository.findById(JOB_KEY).orElseThrow();
+        checkpoint.setStatus(status);
+        checkpoint.setCursorId(job.cursor);
+        checkpoint.setProcessed(job.processed.get());
+        checkpoint.setFailed(job.failed.get());
+        checkpoint.setMessage(message);
+        checkpoint.setUpdatedAt(Instant.now());
+        if (!BatchJobEntity.RUNNING.equals(status)) checkpoint.setFinishedAt(Instant.now());
+        batchJobRepository.save(checkpoint);
+    }
+
+    private AdminDtos.PiiMigrationStatus status(Job job) {
+        long seconds = Math.max(1, Duration.between(job.runStartedAt, Instant.now()).toSeconds());
+        long done = job.processed.get() + job.failed.get();
+        double usersPerSecond = (double) (done - job.doneAtStart) / seconds;
+        Long etaSeconds = job.total != null && usersPerSecond > 0
+                ? (long) Math.ceil(Math.max(0, job.total - done) / usersPerSecond) : null;
+        return new AdminDtos.PiiMigrationStatus(job.cancelRequested ? "CANCELLING" : BatchJobEntity.RUNNING,
+                piiEncryptionService.currentKeyVersion(), job.processed.get(), job.failed.get(), job.total, job.cursor,
+                usersPerSecond, etaSeconds, job.startedAt, Instant.now(), null, null);
+    }
+
+    private record Chunk(long lastUserId, int size, Future<Integer> future) {}
 
-        logger.info("PII migration complete: {} users encrypted", migrated);
-        return migrated;
+    private static final class Job {
+        final Long total;
+        final Instant startedAt;
+        final Instant runStartedAt = Instant.now();
+        final long doneAtStart;
+        final AtomicLong processed;
+        final AtomicLong failed;
+        volatile long cursor;
+        volatile boolean cancelRequested;
+
+        Job(BatchJobEntity checkpoint) {
+            this.total = checkpoint.getTotal();
+            this.startedAt = checkpoint.getStartedAt();
+            this.processed = new AtomicLong(checkpoint.getProcessed());
+            this.failed = new AtomicLong(checkpoint.getFailed());
+            this.doneAtStart = checkpoint.getProcessed() + checkpoint.getFailed();
+            this.cursor = checkpoint.getCursorId();
+        }
     }
 }
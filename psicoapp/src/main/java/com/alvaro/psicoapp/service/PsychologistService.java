@@ -96,7 +96,7 @@ public class PsychologistService {
                     r.getUser().getId(),
                     r.getUser().getName(),
                     r.getUser().getEmail(),
-                    r.getUser().getAvatarUrl() != null ? r.getUser().getAvatarUrl() : "",
+                    r.getUser().getAvatarUrl() != null ? AvatarThumbnailService.thumbnailUrl(r.getUser().getAvatarUrl(), 48) : "",
                     r.getUser().getGender(),
                     r.getUser().getAge(),
                     r.getUser().getBirthDate(),
@@ -11,6 +11,8 @@ import com.alvaro.psicoapp.util.InputSanitizer;
 
 import java.math.BigDecimal;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -25,19 +27,22 @@ public class PublicClinicService {
     private final ClinicServiceRepository clinicServiceRepository;
     private final AppointmentRepository appointmentRepository;
     private final WaitingListRepository waitingListRepository;
+    private final AvailabilityEngine availabilityEngine;
 
     public PublicClinicService(CompanyRepository companyRepository,
                                UserRepository userRepository,
                                PsychologistProfileRepository psychologistProfileRepository,
                                ClinicServiceRepository clinicServiceRepository,
                                AppointmentRepository appointmentRepository,
-                               WaitingListRepository waitingListRepository) {
+                               WaitingListRepository waitingListRepository,
+                               AvailabilityEngine availabilityEngine) {
         this.companyRepository = companyRepository;
         this.userRepository = userRepository;
         this.psychologistProfileRepository = psychologistProfileRepository;
         this.clinicServiceRepository = clinicServiceRepository;
         this.appointmentRepository = appointmentRepository;
         this.waitingListRepository = waitingListRepository;
+        this.availabilityEngine = availabilityEngine;
     }
 
     // --- DTOs ---
@@ -75,7 +80,7 @@ public class PublicClinicService {
                             .orElse(null);
                     if (profile != null && Boolean.TRUE.equals(profile.getApproved())) {
                         return new PublicPsychologistDto(
-                                u.getId(), u.getName(), u.getAvatarUrl(),
+                                u.getId(), u.getName(), AvatarThumbnailService.thumbnailUrl(u.getAvatarUrl(), 256),
                                 profile.getBio(), profile.getSpecializations(),
                                 profile.getLanguages());
                     }
@@ -114,8 +119,13 @@ public class PublicClinicService {
 
         return psychologists.stream()
                 .flatMap(psych -> {
-                    List<AppointmentEntity> slots = appointmentRepository
-                            .findByPsychologist_IdAndStartTimeBetweenOrderByStartTimeAsc(psych.getId(), from, to);
+                    List<AppointmentEntity> slots = new ArrayList<>(appointmentRepository
+                            .findByPsychologist_IdAndStartTimeBetweenOrderByStartTimeAsc(psych.getId(), from, to));
+                    // Free hours from the weekly schedule that no stored appointment occupies
+                    if (from != null && to != null) {
+                        slots.addAll(availabilityEngine.getVirtualSlots(psych, from, to));
+                        slots.sort(Comparator.comparing(AppointmentEntity::getStartTime));
+                    }
                     return slots.stream()
                             .filter(a -> a.getStatus() == AppointmentStatusEnum.FREE)
                             .map(a -> new PublicSlotDto(
@@ -145,7 +155,18 @@ public class PublicClinicService {
 
         // If an appointmentId is provided, try to book that specific slot
         if (req.appointmentId() != null) {
-            AppointmentEntity appointment = appointmentRepository.findById(req.appointmentId())
+            Long appointmentId = req.appointmentId();
+            if (AvailabilityEngine.isVirtualId(appointmentId)) {
+                // Check ownership before writing anything, then turn the virtual slot into a row
+                boolean clinicPsych = userRepository.findById(AvailabilityEngine.psychologistIdOf(appointmentId))
+                        .map(u -> company.getId().equals(u.getCompanyId()))
+                        .orElse(false);
+                if (!clinicPsych) {
+                    throw new ResponseStatusException(HttpStatus.FORBIDDEN, "La cita no pertenece a esta clínica");
+                }
+                appointmentId = availabilityEngine.materialize(appointmentId).getId();
+            }
+            AppointmentEntity appointment = appointmentRepository.findById(appointmentId)
                     .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Cita no encontrada"));
 
             // Verify the appointment belongs to a psychologist of this clinic
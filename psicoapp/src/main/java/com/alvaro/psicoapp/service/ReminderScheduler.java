@@ -1,5 +1,6 @@
 package com.alvaro.psicoapp.service;
 
+import com.alvaro.psicoapp.config.SchedulingConfig;
 import com.alvaro.psicoapp.domain.AppointmentEntity;
 import com.alvaro.psicoapp.domain.AppointmentStatusEnum;
 import com.alvaro.psicoapp.repository.AppointmentRepository;
@@ -37,7 +38,7 @@ public class ReminderScheduler {
         this.userRepository = userRepository;
     }
 
-    @Scheduled(cron = "0 0 * * * *")
+    @Scheduled(cron = "0 0 * * * *", scheduler = SchedulingConfig.CRITICAL)
     public void sendAppointmentReminders() {
         Instant now = Instant.now();
         Instant in24h = now.plus(24, ChronoUnit.HOURS);
@@ -77,7 +78,7 @@ public class ReminderScheduler {
         }
     }
 
-    @Scheduled(cron = "0 0 9 * * *")
+    @Scheduled(cron = "0 0 9 * * *", scheduler = SchedulingConfig.CRITICAL)
     public void sendMoodReminders() {
         LocalDate threeDaysAgo = LocalDate.now().minusDays(3);
 
@@ -0,0 +1,224 @@
+package com.alvaro.psicoapp.service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Blobs in an S3-compatible bucket (AWS, MinIO, R2...) at &lt;bucket&gt;/&lt;namespace&gt;/&lt;key&gt;,
+ * path-style, over plain HTTP with Signature V4. Uploads send the SHA-256 computed while
+ * staging as x-amz-content-sha256, so the store checks integrity without hashing the body
+ * twice. Reads go straight to the bucket through presigned URLs.
+ */
+public class S3BlobStore implements BlobStore {
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final String EMPTY_SHA256 = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+
+    private final URI endpoint;
+    private final String region;
+    private final String bucket;
+    private final String accessKey;
+    private final String secretKey;
+    private final HttpClient http;
+
+    public S3BlobStore(URI endpoint, String region, String bucket, String accessKey, String secretKey) {
+        this.endpoint = endpoint;
+        this.region = region;
+        this.bucket = bucket;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    }
+
+    @Override
+    public boolean exists(String namespace, String key) throws IOException {
+        int status = send("HEAD", namespace, key, EMPTY_SHA256, HttpRequest.BodyPublishers.noBody(), null);
+        if (status == 404) return false;
+        check(status, "HEAD", namespace, key);
+        return true;
+    }
+
+    @Override
+    public InputStream open(String namespace, String key) throws IOException {
+        HttpResponse<InputStream> response = send("GET", namespace, key, EMPTY_SHA256,
+                HttpRequest.BodyPublishers.noBody(), null, HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() == 404) {
+            response.body().close();
+            return null;
+        }
+        if (response.statusCode() / 100 != 2) {
+            response.body().close();
+            check(response.statusCode(), "GET", namespace, key);
+        }
+        return response.body();
+    }
+
+    @Override
+    public void put(String namespace, String key, Path staged, String sha256, String contentType) throws IOException {
+        try {
+            int status = send("PUT", namespace, key, sha256, HttpRequest.BodyPublishers.ofFile(staged), contentType);
+            check(status, "PUT", namespace, key);
+        } finally {
+            Files.deleteIfExists(staged);
+        }
+    }
+
+    @Override
+    public void delete(String namespace, String key) throws IOException {
+        int status = send("DELETE", namespace, key, EMPTY_SHA256, HttpRequest.BodyPublishers.noBody(), null);
+        if (status != 404) check(status, "DELETE", namespace, key);
+    }
+
+    @Override
+    public Path localPath(String namespace, String key) {
+        return null;
+    }
+
+    @Override
+    public Optional<URI> presignedGet(String namespace, String key, Duration ttl) {
+        String path = path(namespace, key);
+        return Optional.of(URI.create(base() + path + "?" + presignQuery(host(), path, ZonedDateTime.now(ZoneOffset.UTC), ttl)));
+    }
+
+    /** Query string of a presigned GET, signature last; takes the clock so it can be checked against AWS's examples */
+    String presignQuery(String host, String path, ZonedDateTime now, Duration ttl) {
+        String amzDate = AMZ_DATE.format(now);
+        String scope = scope(amzDate);
+        Map<String, String> query = new TreeMap<>();
+        query.put("X-Amz-Algorithm", "AWS4-HMAC-SHA256");
+        query.put("X-Amz-Credential", accessKey + "/" + scope);
+        query.put("X-Amz-Date", amzDate);
+        query.put("X-Amz-Expires", String.valueOf(ttl.toSeconds()));
+        query.put("X-Amz-SignedHeaders", "host");
+        String canonicalQuery = canonicalQuery(query);
+        String canonicalRequest = "GET\n" + path + "\n" + canonicalQuery + "\nhost:" + host + "\n\nhost\nUNSIGNED-PAYLOAD";
+        return canonicalQuery + "&X-Amz-Signature=" + sign(amzDate, scope, canonicalRequest);
+    }
+
+    /**
+     * Authorization header for a request without query string that signs every header given
+     * (lowercase names, host included) and the payload hash.
+     */
+    String authorization(String method, String path, Map<String, String> headers, String payloadSha256, ZonedDateTime now) {
+        String amzDate = AMZ_DATE.format(now);
+        String scope = scope(amzDate);
+        StringBuilder canonicalRequest = new StringBuilder(method).append('\n').append(path).append("\n\n");
+        Map<String, String> sorted = new TreeMap<>(headers);
+        sorted.forEach((name, value) -> canonicalRequest.append(name).append(':').append(value.strip()).append('\n'));
+        String signedHeaders = String.join(";", sorted.keySet());
+        canonicalRequest.append('\n').append(signedHeaders).append('\n').append(payloadSha256);
+        return "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope
+                + ", SignedHeaders=" + signedHeaders + ", Signature=" + sign(amzDate, scope, canonicalRequest.toString());
+    }
+
+    private int send(String method, String namespace, String key, String payloadSha256,
+                     HttpRequest.BodyPublisher body, String contentType) throws IOException {
+        return send(method, namespace, key, payloadSha256, body, contentType, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private <T> HttpResponse<T> send(String method, String namespace, String key, String payloadSha256,
+                                     HttpRequest.BodyPublisher body, String contentType,
+                                     HttpResponse.BodyHandler<T> handler) throws IOException {
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        String amzDate = AMZ_DATE.format(now);
+        String path = path(namespace, key);
+        String authorization = authorization(method, path,
+                Map.of("host", host(), "x-amz-content-sha256", payloadSha256, "x-amz-date", amzDate), payloadSha256, now);
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(base() + path))
+                .timeout(Duration.ofMinutes(2))
+                .header("x-amz-content-sha256", payloadSha256)
+                .header("x-amz-date", amzDate)
+                .header("Authorization", authorization)
+                .method(method, body);
+        if (contentType != null) request.header("Content-Type", contentType);
+        try {
+            return http.send(request.build(), handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted calling object storage", e);
+        }
+    }
+
+    private static void check(int status, String method, String namespace, String key) throws IOException {
+        if (status / 100 != 2) {
+            throw new IOException("Object storage " + method + " " + namespace + "/" + key + " failed with HTTP " + status);
+        }
+    }
+
+    private String scope(String amzDate) {
+        return amzDate.substring(0, 8) + "/" + region + "/s3/aws4_request";
+    }
+
+    private String sign(String amzDate, String scope, String canonicalRequest) {
+        try {
+            String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n"
+                    + HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(canonicalRequest.getBytes(StandardCharsets.UTF_8)));
+            byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), amzDate.substring(0, 8));
+            signingKey = hmac(signingKey, region);
+            signingKey = hmac(signingKey, "s3");
+            signingKey = hmac(signingKey, "aws4_request");
+            return HexFormat.of().formatHex(hmac(signingKey, stringToSign));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No se pudo firmar la petición", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String path(String namespace, String key) {
+        return "/" + encode(bucket) + "/" + encode(namespace) + "/" + encode(key);
+    }
+
+    private String base() {
+        String s = endpoint.toString();
+        return s.endsWith("/") ? s.substring(0, s.length() - 1) : s;
+    }
+
+    /** Host header as the HTTP client will send it: the port only when it isn't the scheme's default */
+    private String host() {
+        int port = endpoint.getPort();
+        boolean defaultPort = port == -1 || (port == 80 && "http".equals(endpoint.getScheme()))
+                || (port == 443 && "https".equals(endpoint.getScheme()));
+        return defaultPort ? endpoint.getHost() : endpoint.getHost() + ":" + port;
+    }
+
+    private static String canonicalQuery(Map<String, String> sortedParams) {
+        StringBuilder query = new StringBuilder();
+        for (Map.Entry<String, String> param : sortedParams.entrySet()) {
+            if (!query.isEmpty()) query.append('&');
+            query.append(encode(param.getKey())).append('=').append(encode(param.getValue()));
+        }
+        return query.toString();
+    }
+
+    /** RFC 3986 encoding as SigV4 expects: unreserved characters kept, everything else %XX */
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8)
+                .replace("+", "%20").replace("*", "%2A").replace("%7E", "~");
+    }
+}
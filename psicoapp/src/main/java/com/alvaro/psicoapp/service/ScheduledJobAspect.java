@@ -0,0 +1,29 @@
+package com.alvaro.psicoapp.service;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Routes every @Scheduled method run through {@link ScheduledJobService#execute}. Outermost,
+ * so a skipped run opens no transaction and no SQL scope.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ScheduledJobAspect {
+    private final ScheduledJobService scheduledJobService;
+
+    public ScheduledJobAspect(ScheduledJobService scheduledJobService) {
+        this.scheduledJobService = scheduledJobService;
+    }
+
+    @Around("@annotation(org.springframework.scheduling.annotation.Scheduled)")
+    public Object guard(ProceedingJoinPoint joinPoint) throws Throwable {
+        String job = joinPoint.getSignature().getDeclaringType().getSimpleName() + "." + joinPoint.getSignature().getName();
+        return scheduledJobService.execute(job, joinPoint::proceed);
+    }
+}
@@ -0,0 +1,289 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.config.SchedulingConfig;
+import com.alvaro.psicoapp.dto.AdminDtos;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Registry and run guard of the @Scheduled jobs. Every run, scheduled or manual, goes through
+ * {@link #execute} (via ScheduledJobAspect), which:
+ *
+ * - skips the run if the same job is still running (a manual run overlapping the scheduled
+ *   one, or a fixed-rate job on a scheduler that doesn't serialize runs)
+ * - records scheduled.jobs.duration (tags job, lane, outcome), scheduled.jobs.lag (how late a
+ *   scheduled run started, i.e. how long it queued behind its lane) and scheduled.jobs.skipped
+ * - keeps the last run's outcome for GET /api/admin/jobs
+ * - with several replicas, takes the job's lease first (JobLeaseService), so a SINGLE job runs
+ *   on one node at a time and a cron occurrence once; PARTITIONED and EVERY_NODE jobs run
+ *   everywhere (see ClusterJob)
+ *
+ * Jobs are named SimpleClassName.method, as in the SQL metrics of ScheduledSqlAspect.
+ */
+@Service
+public class ScheduledJobService implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(ScheduledJobService.class);
+    private static final String APP_PACKAGE = "com.alvaro.psicoapp.";
+    private static final ThreadLocal<Boolean> MANUAL = new ThreadLocal<>();
+
+    /** The job method itself, as the aspect proceeds into it */
+    @FunctionalInterface
+    public interface Invocation {
+        Object proceed() throws Throwable;
+    }
+
+    private static final class Job {
+        final String name;
+        final String scheduler;
+        final String lane;
+        final String schedule;
+        final Object bean;
+        final Method method;
+        final Cadence cadence;
+        final ClusterJob.Mode mode;
+        final AtomicBoolean running = new AtomicBoolean();
+        volatile Instant expectedStart;
+        volatile Instant lastStartedAt;
+        volatile Instant lastFinishedAt;
+        volatile Long lastDurationMs;
+        volatile String lastOutcome;
+        volatile String lastError;
+        volatile boolean lastManual;
+
+        Job(String name, String scheduler, String schedule, Object bean, Method method, Cadence cadence,
+            ClusterJob.Mode mode) {
+            this.name = name;
+            this.scheduler = scheduler;
+            this.lane = SchedulingConfig.laneOf(scheduler);
+            this.schedule = schedule;
+            this.bean = bean;
+            this.method = method;
+            this.cadence = cadence;
+            this.mode = mode;
+        }
+    }
+
+    /** When the scheduler will next start a job, to measure how late it actually started */
+    private record Cadence(CronExpression cron, ZoneId zone, Duration fixedRate, Duration fixedDelay) {
+        Instant next(Instant expected, Instant started, Instant finished) {
+            if (cron != null) {
+                ZonedDateTime next = cron.next(finished.atZone(zone));
+                return next != null ? next.toInstant() : null;
+            }
+            if (fixedRate != null) return (expected != null ? expected : started).plus(fixedRate);
+            return finished.plus(fixedDelay);
+        }
+    }
+
+    private final ApplicationContext applicationContext;
+    private final Environment env;
+    private final MeterRegistry registry;
+    private final JobLeaseService jobLeases;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public ScheduledJobService(ApplicationContext applicationContext, Environment env, MeterRegistry registry,
+                               JobLeaseService jobLeases) {
+        this.applicationContext = applicationContext;
+        this.env = env;
+        this.registry = registry;
+        this.jobLeases = jobLeases;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (String beanName : applicationContext.getBeanNamesForType(Object.class, false, false)) {
+            Class<?> type = applicationContext.getType(beanName);
+            if (type == null || !type.getName().startsWith(APP_PACKAGE)) continue;
+            Object bean = applicationContext.getBean(beanName);
+            Class<?> targetClass = AopUtils.getTargetClass(bean);
+            MethodIntrospector.selectMethods(targetClass, (MethodIntrospector.MetadataLookup<Scheduled>) method ->
+                            AnnotatedElementUtils.findMergedAnnotation(method, Scheduled.class))
+                    .forEach((method, scheduled) -> register(bean, method, scheduled));
+        }
+        logger.info("{} scheduled jobs registered: {}", jobs.size(), new TreeSet<>(jobs.keySet()));
+    }
+
+    private void register(Object bean, Method method, Scheduled scheduled) {
+        String name = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        TimeUnit unit = scheduled.timeUnit();
+        Cadence cadence;
+        String schedule;
+        if (StringUtils.hasText(scheduled.cron())) {
+            String cron = env.resolvePlaceholders(scheduled.cron());
+            ZoneId zone = StringUtils.hasText(scheduled.zone()) ? ZoneId.of(scheduled.zone()) : ZoneId.systemDefault();
+            cadence = new Cadence(CronExpression.parse(cron), zone, null, null);
+            schedule = "cron " + cron;
+        } else if (scheduled.fixedRate() >= 0 || StringUtils.hasText(scheduled.fixedRateString())) {
+            Duration rate = duration(scheduled.fixedRate(), scheduled.fixedRateString(), unit);
+            cadence = new Cadence(null, null, rate, null);
+            schedule = "every " + rate.toSeconds() + "s";
+        } else {
+            Duration delay = duration(scheduled.fixedDelay(), scheduled.fixedDelayString(), unit);
+            cadence = new Cadence(null, null, null, delay);
+            schedule = delay.toSeconds() + "s after the previous run";
+        }
+        ClusterJob cluster = AnnotatedElementUtils.findMergedAnnotation(method, ClusterJob.class);
+        Job job = new Job(name, scheduled.scheduler(), schedule, bean, method, cadence,
+                cluster != null ? cluster.value() : ClusterJob.Mode.SINGLE);
+        if (cadence.cron() != null) job.expectedStart = cadence.next(null, Instant.now(), Instant.now());
+        jobs.put(name, job);
+    }
+
+    private Duration duration(long value, String text, TimeUnit unit) {
+        long amount = value >= 0 ? value : Long.parseLong(env.resolvePlaceholders(text).trim());
+        return Duration.of(amount, unit.toChronoUnit());
+    }
+
+    /**
+     * Runs one execution of a job under its overlap guard and records it. Returns null without
+     * running when the job is already running here, or a SINGLE job's lease is held by another
+     * node. Failures are logged and rethrown.
+     */
+    public Object execute(String jobName, Invocation invocation) throws Throwable {
+        Job job = jobs.get(jobName);
+        if (job == null) return invocation.proceed();
+        if (!job.running.compareAndSet(false, true)) {
+            skipped(job, "running");
+            logger.warn("Scheduled job {} skipped: previous run still in progress (started {})", job.name, job.lastStartedAt);
+            return null;
+        }
+        boolean manual = Boolean.TRUE.equals(MANUAL.get());
+        Instant started = Instant.now();
+        // The cron occurrence this run is for: due at the same time on every node
+        Instant occurrence = !manual && job.cadence.cron() != null ? job.expectedStart : null;
+        JobLeaseService.Lease lease = null;
+        if (job.mode == ClusterJob.Mode.SINGLE) {
+            try {
+                lease = jobLeases.tryAcquire(job.name, occurrence).orElse(null);
+                if (lease == null) logger.debug("Scheduled job {} skipped: another node has it or ran it", job.name);
+            } catch (DataAccessException e) {
+                // Without the lease we can't tell whether another node is running it
+                logger.error("Scheduled job {} skipped: could not take its lease", job.name, e);
+            }
+            if (lease == null) {
+                skipped(job, "lease");
+                if (!manual) job.expectedStart = job.cadence.next(job.expectedStart, started, Instant.now());
+                job.running.set(false);
+                return null;
+            }
+        }
+        // Shared by the nodes running the same occurrence of a PARTITIONED job
+        String runId = manual || job.expectedStart == null ? "manual-" + started.toEpochMilli() : job.expectedStart.toString();
+        if (!manual && job.expectedStart != null) {
+            Duration lag = Duration.between(job.expectedStart, started);
+            Timer.builder("scheduled.jobs.lag")
+                    .description("Delay between a job's due time and its actual start")
+                    .tags("job", job.name, "lane", job.lane)
+                    .register(registry).record(lag.isNegative() ? Duration.ZERO : lag);
+        }
+        job.lastStartedAt = started;
+        job.lastManual = manual;
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            return jobLeases.runAs(job.name, runId, lease, invocation);
+        } catch (Throwable e) {
+            outcome = "failure";
+            job.lastError = e.toString();
+            logger.error("Scheduled job {} failed", job.name, e);
+            throw e;
+        } finally {
+            long elapsedNanos = System.nanoTime() - start;
+            Instant finished = Instant.now();
+            Timer.builder("scheduled.jobs.duration")
+                    .description("Duration of scheduled job runs")
+                    .tags("job", job.name, "lane", job.lane, "outcome", outcome)
+                    .register(registry).record(elapsedNanos, TimeUnit.NANOSECONDS);
+            job.lastDurationMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            job.lastFinishedAt = finished;
+            job.lastOutcome = outcome;
+            if ("success".equals(outcome)) job.lastError = null;
+            if (!manual) job.expectedStart = job.cadence.next(job.expectedStart, started, finished);
+            jobLeases.release(lease, occurrence);
+            job.running.set(false);
+        }
+    }
+
+    private void skipped(Job job, String reason) {
+        Counter.builder("scheduled.jobs.skipped")
+                .description("Runs skipped because the job was still running here or held by another node")
+                .tags("job", job.name, "lane", job.lane, "reason", reason)
+                .register(registry).increment();
+    }
+
+    public List<AdminDtos.ScheduledJobStatus> list() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparing((Job j) -> j.lane).thenComparing(j -> j.name))
+                .map(this::status)
+                .toList();
+    }
+
+    /**
+     * Runs a job now on its own lane, outside its schedule; the scheduled runs are unaffected.
+     * 409 if it is running already, here or (SINGLE jobs) on another node.
+     */
+    public AdminDtos.ScheduledJobStatus trigger(String jobName) {
+        Job job = jobs.get(jobName);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Tarea programada no encontrada");
+        }
+        if (job.running.get()) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "La tarea ya se está ejecutando");
+        }
+        if (job.mode == ClusterJob.Mode.SINGLE && jobLeases.isHeldElsewhere(job.name)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    "La tarea se está ejecutando en otro nodo");
+        }
+        TaskScheduler lane = applicationContext.getBean(
+                job.scheduler.isEmpty() ? SchedulingConfig.PERIODIC : job.scheduler, TaskScheduler.class);
+        Method invocable = AopUtils.selectInvocableMethod(job.method, job.bean.getClass());
+        ReflectionUtils.makeAccessible(invocable);
+        lane.schedule(() -> {
+            MANUAL.set(true);
+            try {
+                // Through the bean's proxy, so transactions and the run guard apply as when scheduled
+                ReflectionUtils.invokeMethod(invocable, job.bean);
+            } catch (RuntimeException e) {
+                // Already logged and counted by execute
+            } finally {
+                MANUAL.remove();
+            }
+        }, Instant.now());
+        logger.info("Scheduled job {} triggered manually", job.name);
+        return status(job);
+    }
+
+    private AdminDtos.ScheduledJobStatus status(Job job) {
+        return new AdminDtos.ScheduledJobStatus(job.name, job.lane, job.schedule, job.mode.name(), job.running.get(),
+                job.expectedStart, job.lastStartedAt, job.lastFinishedAt, job.lastDurationMs, job.lastOutcome,
+                job.lastError, job.lastManual);
+    }
+}
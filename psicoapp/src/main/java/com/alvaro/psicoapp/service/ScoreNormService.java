@@ -0,0 +1,367 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.config.SchedulingConfig;
+import com.alvaro.psicoapp.domain.FactorEntity;
+import com.alvaro.psicoapp.domain.ScoreNormEntity;
+import com.alvaro.psicoapp.domain.SubfactorEntity;
+import com.alvaro.psicoapp.domain.TestEntity;
+import com.alvaro.psicoapp.dto.AdminDtos;
+import com.alvaro.psicoapp.repository.FactorRepository;
+import com.alvaro.psicoapp.repository.ScoreNormRepository;
+import com.alvaro.psicoapp.repository.SubfactorRepository;
+import com.alvaro.psicoapp.repository.TestRepository;
+import com.alvaro.psicoapp.util.ScoreHistogram;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Population norms: one {@link ScoreHistogram} per subfactor and factor, kept up to date as
+ * results are saved and used to place a score within the real population instead of the
+ * synthetic gaussian of {@link com.alvaro.psicoapp.util.FormulaEvaluator#gaussianPercentile}.
+ *
+ * Histograms live in memory; each node keeps the per-bin changes it has made since its last
+ * flush and adds them to the stored counts (row locked, merged, written back) every flush
+ * interval, so nodes never overwrite each other's results. The other nodes' flushed changes
+ * are picked up by a periodic reload. The result tables stay the source of truth: results
+ * removed outside scoring (user deletion, test deletion) and changes not yet flushed when a
+ * process dies are corrected by the nightly rebuild, which recomputes every histogram from
+ * test_results / factor_results.
+ */
+@Service
+public class ScoreNormService {
+    private static final Logger logger = LoggerFactory.getLogger(ScoreNormService.class);
+
+    // Rebuild only: replaces the stored histogram
+    private static final String REPLACE_SQL =
+            "INSERT INTO score_norms (test_id, scale_type, scale_id, sample_size, bins, updated_at) VALUES (?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (scale_type, scale_id) DO UPDATE SET test_id = EXCLUDED.test_id, " +
+            "sample_size = EXCLUDED.sample_size, bins = EXCLUDED.bins, updated_at = EXCLUDED.updated_at";
+    private static final String CREATE_EMPTY_SQL =
+            "INSERT INTO score_norms (test_id, scale_type, scale_id, sample_size, bins, updated_at) VALUES (?, ?, ?, 0, ?, ?) " +
+            "ON CONFLICT (scale_type, scale_id) DO NOTHING";
+    private static final String LOCK_SQL =
+            "SELECT bins FROM score_norms WHERE scale_type = ? AND scale_id = ? FOR UPDATE";
+    private static final String UPDATE_SQL =
+            "UPDATE score_norms SET test_id = ?, sample_size = ?, bins = ?, updated_at = ? WHERE scale_type = ? AND scale_id = ?";
+
+    /** One result value of a scale; scaleType is ScoreNormEntity.SUBFACTOR or FACTOR */
+    public record Change(String scaleType, Long scaleId, double score, double maxScore) {}
+
+    private record Key(String scaleType, Long scaleId) {}
+
+    // Flushes lock rows in this order on every node, so two flushes can't deadlock
+    private static final Comparator<Key> LOCK_ORDER = Comparator.comparing(Key::scaleType).thenComparing(Key::scaleId);
+
+    private static final class Norm {
+        volatile Long testId;
+        // Stored counts as last read or written, plus this node's pending changes
+        final ScoreHistogram histogram;
+        // Signed per-bin changes made here and not yet flushed; null when there are none
+        private long[] pending;
+
+        Norm(Long testId, ScoreHistogram histogram) {
+            this.testId = testId;
+            this.histogram = histogram;
+        }
+
+        synchronized void record(Change change, boolean add) {
+            if (add) {
+                histogram.add(change.score(), change.maxScore());
+            } else if (!histogram.remove(change.score(), change.maxScore())) {
+                return;
+            }
+            if (pending == null) pending = new long[ScoreHistogram.BINS];
+            pending[ScoreHistogram.bin(change.score(), change.maxScore())] += add ? 1 : -1;
+        }
+
+        synchronized long[] takePending() {
+            long[] taken = pending;
+            pending = null;
+            return taken;
+        }
+
+        /** Puts back changes whose flush failed, ahead of any made since */
+        synchronized void restorePending(long[] delta) {
+            if (pending == null) {
+                pending = delta;
+                return;
+            }
+            for (int b = 0; b < ScoreHistogram.BINS; b++) pending[b] += delta[b];
+        }
+
+        /** Sets the counts to the stored ones plus whatever is still pending here */
+        synchronized void reset(long[] stored) {
+            long[] counts = stored.clone();
+            if (pending != null) {
+                for (int b = 0; b < ScoreHistogram.BINS; b++) counts[b] += pending[b];
+            }
+            histogram.setCounts(counts);
+        }
+    }
+
+    private final ScoreNormRepository scoreNormRepository;
+    private final TestRepository testRepository;
+    private final SubfactorRepository subfactorRepository;
+    private final FactorRepository factorRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long minSample;
+    private final Map<Key, Norm> norms = new ConcurrentHashMap<>();
+    // Serialises flush, reload and rebuild: a reload must not see a delta that is half written.
+    // A lock rather than a monitor, since they hold it across DB I/O
+    private final ReentrantLock storeLock = new ReentrantLock();
+
+    public ScoreNormService(ScoreNormRepository scoreNormRepository,
+                            TestRepository testRepository,
+                            SubfactorRepository subfactorRepository,
+                            FactorRepository factorRepository,
+                            JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.norms.min-sample:30}") long minSample) {
+        this.scoreNormRepository = scoreNormRepository;
+        this.testRepository = testRepository;
+        this.subfactorRepository = subfactorRepository;
+        this.factorRepository = factorRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.minSample = minSample;
+    }
+
+    /**
+     * Applies replaced and new result values once the caller's transaction commits, so a
+     * rolled-back submission never reaches the histograms.
+     */
+    public void recordAfterCommit(Long testId, List<Change> removed, List<Change> added) {
+        if (removed.isEmpty() && added.isEmpty()) return;
+        Runnable apply = () -> {
+            for (Change change : removed) norm(change, testId).record(change, false);
+            for (Change change : added) norm(change, testId).record(change, true);
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    /**
+     * Percentile (0-100) of a score among everyone who took the scale, or null while fewer
+     * than app.norms.min-sample results exist.
+     */
+    public Double percentile(String scaleType, Long scaleId, double score, double maxScore) {
+        if (maxScore <= 0) return null;
+        Norm norm = normOf(new Key(scaleType, scaleId));
+        if (norm.histogram.total() < minSample) return null;
+        return norm.histogram.percentile(score, maxScore);
+    }
+
+    /**
+     * Adds this node's pending changes to the stored histograms. Each row is locked, merged
+     * and written back in one transaction, so concurrent flushes from other nodes add up
+     * instead of the last writer winning.
+     */
+    @Scheduled(fixedDelayString = "${app.norms.flush-interval-ms:30000}", scheduler = SchedulingConfig.PERIODIC)
+    @ClusterJob(ClusterJob.Mode.EVERY_NODE)
+    public void flush() {
+        storeLock.lock();
+        try {
+            Map<Key, long[]> deltas = new TreeMap<>(LOCK_ORDER);
+            norms.forEach((key, norm) -> {
+                if (norm.testId == null) return;
+                long[] delta = norm.takePending();
+                if (delta != null) deltas.put(key, delta);
+            });
+            if (deltas.isEmpty()) return;
+            try {
+                Map<Key, long[]> stored = transactionTemplate.execute(status -> merge(deltas));
+                stored.forEach((key, counts) -> norms.get(key).reset(counts));
+            } catch (RuntimeException e) {
+                deltas.forEach((key, delta) -> norms.get(key).restorePending(delta));
+                logger.error("Could not persist {} score norms, retrying on next flush", deltas.size(), e);
+            }
+        } finally {
+            storeLock.unlock();
+        }
+    }
+
+    /**
+     * @return the stored counts after the merge, per scale
+     */
+    private Map<Key, long[]> merge(Map<Key, long[]> deltas) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> created = new ArrayList<>(deltas.size());
+        deltas.keySet().forEach(key -> created.add(new Object[]{norms.get(key).testId, key.scaleType(), key.scaleId(), new byte[0], now}));
+        // Rows must exist to be locked
+        jdbcTemplate.batchUpdate(CREATE_EMPTY_SQL, created);
+
+        Map<Key, long[]> stored = new HashMap<>();
+        List<Object[]> updates = new ArrayList<>(deltas.size());
+        deltas.forEach((key, delta) -> {
+            byte[] bins = jdbcTemplate.queryForObject(LOCK_SQL, byte[].class, key.scaleType(), key.scaleId());
+            ScoreHistogram merged = ScoreHistogram.fromBytes(bins);
+            merged.addCounts(delta);
+            updates.add(new Object[]{norms.get(key).testId, merged.total(), merged.toBytes(), now, key.scaleType(), key.scaleId()});
+            stored.put(key, merged.counts());
+        });
+        jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        return stored;
+    }
+
+    /**
+     * Re-reads the stored histograms of the scales held here, picking up what other nodes
+     * have flushed; pending local changes are kept on top.
+     */
+    @Scheduled(fixedDelayString = "${app.norms.reload-interval-ms:300000}",
+            initialDelayString = "${app.norms.reload-interval-ms:300000}", scheduler = SchedulingConfig.PERIODIC)
+    @ClusterJob(ClusterJob.Mode.EVERY_NODE)
+    public void reload() {
+        if (norms.isEmpty()) return;
+        storeLock.lock();
+        try {
+            Map<Key, Norm> stored = new HashMap<>();
+            jdbcTemplate.query("SELECT scale_type, scale_id, test_id, bins FROM score_norms", rs -> {
+                stored.put(new Key(rs.getString(1), rs.getLong(2)), new Norm(rs.getLong(3), ScoreHistogram.fromBytes(rs.getBytes(4))));
+            });
+            norms.forEach((key, norm) -> {
+                Norm row = stored.get(key);
+                if (row != null) norm.testId = row.testId;
+                norm.reset(row != null ? row.histogram.counts() : new long[ScoreHistogram.BINS]);
+            });
+        } finally {
+            storeLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    @Scheduled(cron = "${app.norms.rebuild-cron:0 15 4 * * *}", scheduler = SchedulingConfig.BULK)
+    public void rebuildAll() {
+        List<Long> testIds = jdbcTemplate.queryForList(
+                "SELECT test_id FROM test_results UNION SELECT test_id FROM factor_results", Long.class);
+        for (Long testId : testIds) {
+            try {
+                rebuild(testId);
+            } catch (RuntimeException e) {
+                logger.error("Rebuilding score norms of test {} failed", testId, e);
+            }
+        }
+    }
+
+    /**
+     * Recomputes every histogram of a test from the result tables and stores them. Changes
+     * recorded here while the scan runs stay pending and are flushed on top of the rebuilt
+     * counts; one committed just before the scan but recorded after it (or still unflushed
+     * on another node) is counted twice until the next rebuild.
+     *
+     * @return number of results read
+     */
+    public long rebuild(Long testId) {
+        storeLock.lock();
+        try {
+            // Flushed first, so the stored counts replaced below hold nothing of ours that the scan may miss
+            flush();
+            Map<Key, ScoreHistogram> rebuilt = new HashMap<>();
+            long[] results = {0};
+            jdbcTemplate.query("SELECT subfactor_id, score, max_score FROM test_results WHERE test_id = ?", rs -> {
+                rebuilt.computeIfAbsent(new Key(ScoreNormEntity.SUBFACTOR, rs.getLong(1)), k -> new ScoreHistogram())
+                        .add(rs.getDouble(2), rs.getDouble(3));
+                results[0]++;
+            }, testId);
+            jdbcTemplate.query("SELECT factor_id, score, max_score FROM factor_results WHERE test_id = ?", rs -> {
+                rebuilt.computeIfAbsent(new Key(ScoreNormEntity.FACTOR, rs.getLong(1)), k -> new ScoreHistogram())
+                        .add(rs.getDouble(2), rs.getDouble(3));
+                results[0]++;
+            }, testId);
+
+            // Scales of the test that no longer have any result are emptied
+            for (ScoreNormEntity existing : scoreNormRepository.findByTestId(testId)) {
+                rebuilt.putIfAbsent(new Key(existing.getScaleType(), existing.getScaleId()), new ScoreHistogram());
+            }
+            Timestamp now = Timestamp.from(Instant.now());
+            List<Object[]> rows = new ArrayList<>(rebuilt.size());
+            rebuilt.forEach((key, histogram) -> rows.add(new Object[]{
+                    testId, key.scaleType(), key.scaleId(), histogram.total(), histogram.toBytes(), now}));
+            jdbcTemplate.batchUpdate(REPLACE_SQL, rows);
+            rebuilt.forEach((key, histogram) -> {
+                Norm norm = norms.computeIfAbsent(key, k -> new Norm(testId, new ScoreHistogram()));
+                norm.testId = testId;
+                norm.reset(histogram.counts());
+            });
+            logger.info("Score norms of test {} rebuilt from {} results ({} scales)", testId, results[0], rebuilt.size());
+            return results[0];
+        } finally {
+            storeLock.unlock();
+        }
+    }
+
+    public List<AdminDtos.ScaleNormDto> describe(Long testId) {
+        TestEntity test = testRepository.findById(testId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Test no encontrado"));
+        List<AdminDtos.ScaleNormDto> scales = new ArrayList<>();
+        for (SubfactorEntity sf : subfactorRepository.findByTestOrderByPositionAsc(test)) {
+            scales.add(describe(ScoreNormEntity.SUBFACTOR, sf.getId(), sf.getCode(), sf.getName()));
+        }
+        for (FactorEntity f : factorRepository.findByTestOrderByPositionAsc(test)) {
+            scales.add(describe(ScoreNormEntity.FACTOR, f.getId(), f.getCode(), f.getName()));
+        }
+        return scales;
+    }
+
+    private AdminDtos.ScaleNormDto describe(String scaleType, Long scaleId, String code, String name) {
+        ScoreHistogram histogram = normOf(new Key(scaleType, scaleId)).histogram;
+        return new AdminDtos.ScaleNormDto(scaleType, scaleId, code, name, histogram.total(),
+                histogram.total() >= minSample,
+                histogram.quantile(0.10) * 100, histogram.quantile(0.25) * 100, histogram.quantile(0.50) * 100,
+                histogram.quantile(0.75) * 100, histogram.quantile(0.90) * 100,
+                histogram.buckets(20));
+    }
+
+    private Norm norm(Change change, Long testId) {
+        Norm norm = normOf(new Key(change.scaleType(), change.scaleId()));
+        if (norm.testId == null) norm.testId = testId;
+        return norm;
+    }
+
+    /**
+     * Loaded outside computeIfAbsent: the read would hold the map bin's monitor and pin a
+     * virtual thread. Two first uses may both read; the first stored wins.
+     */
+    private Norm normOf(Key key) {
+        Norm norm = norms.get(key);
+        if (norm != null) return norm;
+        Norm loaded = load(key);
+        norm = norms.putIfAbsent(key, loaded);
+        return norm != null ? norm : loaded;
+    }
+
+    private Norm load(Key key) {
+        return scoreNormRepository.findByScaleTypeAndScaleId(key.scaleType(), key.scaleId())
+                .map(entity -> new Norm(entity.getTestId(), ScoreHistogram.fromBytes(entity.getBins())))
+                .orElseGet(() -> new Norm(null, new ScoreHistogram()));
+    }
+}
@@ -0,0 +1,166 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.domain.FactorEntity;
+import com.alvaro.psicoapp.domain.QuestionEntity;
+import com.alvaro.psicoapp.domain.SubfactorEntity;
+import com.alvaro.psicoapp.domain.TestEntity;
+import com.alvaro.psicoapp.util.FormulaEvaluator;
+
+import java.util.*;
+
+/**
+ * Immutable, precompiled scoring structure of one test: which subfactor each question feeds,
+ * its max score and inverse flag, and the factor formulas compiled into a dependency-ordered
+ * plan ({@link FormulaEvaluator#compile}). Built once per test by {@link ScoringModelCache};
+ * scoring a submission is then a pure in-memory pass over arrays.
+ */
+public final class ScoringModel {
+
+	/**
+	 * Score table of one submission, laid out as in {@link FormulaEvaluator.CompiledFormulas}:
+	 * subfactors first, then factors. A max of 0 means "no result" (nothing is stored).
+	 */
+	public record Scores(double[] score, double[] max, int subfactorCount) {
+		public double subfactorScore(int i) { return score[i]; }
+		public double subfactorMax(int i) { return max[i]; }
+		public double factorScore(int i) { return score[subfactorCount + i]; }
+		public double factorMax(int i) { return max[subfactorCount + i]; }
+	}
+
+	private final Long testId;
+	private final boolean gaussian;
+
+	private final Map<Long, Integer> questionIndex;
+	private final int[] questionSubfactor;   // subfactor index, or -1 if the question is not scored
+	private final double[] questionMax;
+	private final boolean[] questionInverse;
+	private final double[] subfactorMaxTotal; // sum of question max scores, answered or not
+
+	private final Long[] subfactorIds;
+	private final Long[] factorIds;
+	private final FormulaEvaluator.CompiledFormulas formulas;
+
+	private ScoringModel(Long testId, boolean gaussian, Map<Long, Integer> questionIndex, int[] questionSubfactor,
+						 double[] questionMax, boolean[] questionInverse, double[] subfactorMaxTotal,
+						 Long[] subfactorIds, Long[] factorIds, FormulaEvaluator.CompiledFormulas formulas) {
+		this.testId = testId;
+		this.gaussian = gaussian;
+		this.questionIndex = questionIndex;
+		this.questionSubfactor = questionSubfactor;
+		this.questionMax = questionMax;
+		this.questionInverse = questionInverse;
+		this.subfactorMaxTotal = subfactorMaxTotal;
+		this.subfactorIds = subfactorIds;
+		this.factorIds = factorIds;
+		this.formulas = formulas;
+	}
+
+	/**
+	 * @param questions     all questions of the test
+	 * @param maxByQuestion question id → highest answer value (missing means 0)
+	 * @param subfactors    subfactors of the test, in position order
+	 * @param factors       factors of the test, in position order
+	 */
+	public static ScoringModel compile(TestEntity test, List<QuestionEntity> questions, Map<Long, Double> maxByQuestion,
+									   List<SubfactorEntity> subfactors, List<FactorEntity> factors) {
+		Map<Long, Integer> subfactorIndexById = new HashMap<>();
+		Long[] subfactorIds = new Long[subfactors.size()];
+		for (int i = 0; i < subfactors.size(); i++) {
+			SubfactorEntity sf = subfactors.get(i);
+			subfactorIds[i] = sf.getId();
+			subfactorIndexById.put(sf.getId(), i);
+		}
+
+		Map<Long, Integer> questionIndex = new HashMap<>();
+		int[] questionSubfactor = new int[questions.size()];
+		double[] questionMax = new double[questions.size()];
+		boolean[] questionInverse = new boolean[questions.size()];
+		double[] subfactorMaxTotal = new double[subfactors.size()];
+		for (int q = 0; q < questions.size(); q++) {
+			QuestionEntity question = questions.get(q);
+			questionIndex.put(question.getId(), q);
+			Integer sfIndex = question.getSubfactor() != null ? subfactorIndexById.get(question.getSubfactor().getId()) : null;
+			questionSubfactor[q] = sfIndex != null ? sfIndex : -1;
+			questionMax[q] = maxByQuestion.getOrDefault(question.getId(), 0.0);
+			questionInverse[q] = Boolean.TRUE.equals(question.getInverse());
+			if (sfIndex != null) subfactorMaxTotal[sfIndex] += questionMax[q];
+		}
+
+		List<String> subfactorCodes = new ArrayList<>(subfactors.size());
+		for (SubfactorEntity sf : subfactors) subfactorCodes.add(sf.getCode());
+		List<String> factorCodes = new ArrayList<>(factors.size());
+		List<String> formulas = new ArrayList<>(factors.size());
+		Long[] factorIds = new Long[factors.size()];
+		int[][] children = new int[factors.size()][];
+		for (int f = 0; f < factors.size(); f++) {
+			FactorEntity factor = factors.get(f);
+			factorIds[f] = factor.getId();
+			factorCodes.add(factor.getCode());
+			formulas.add(factor.getFormula());
+			List<Integer> childIndexes = new ArrayList<>();
+			for (int s = 0; s < subfactors.size(); s++) {
+				SubfactorEntity sf = subfactors.get(s);
+				if (sf.getFactor() != null && factor.getId().equals(sf.getFactor().getId())) childIndexes.add(s);
+			}
+			children[f] = childIndexes.stream().mapToInt(Integer::intValue).toArray();
+		}
+		// Non-strict: a cycle saved before validation existed must not break scoring
+		FormulaEvaluator.CompiledFormulas compiled = FormulaEvaluator.compile(subfactorCodes, factorCodes, formulas, children, false);
+
+		return new ScoringModel(test.getId(), "tca".equalsIgnoreCase(test.getCategory()), Map.copyOf(questionIndex),
+				questionSubfactor, questionMax, questionInverse, subfactorMaxTotal,
+				subfactorIds, factorIds, compiled);
+	}
+
+	/**
+	 * Scores one submission.
+	 *
+	 * @param answers rows of {questionId, answer value (Number or null), numericValue (Number or null)};
+	 *                only the first row per question counts
+	 */
+	public Scores score(List<Object[]> answers) {
+		double[] score = new double[formulas.tableSize()];
+		boolean[] seen = new boolean[questionSubfactor.length];
+
+		for (Object[] row : answers) {
+			Integer q = questionIndex.get((Long) row[0]);
+			if (q == null || seen[q]) continue;
+			seen[q] = true;
+			int sf = questionSubfactor[q];
+			if (sf < 0) continue;
+
+			double value = 0.0;
+			if (row[1] != null) {
+				value = ((Number) row[1]).doubleValue();
+			} else if (row[2] != null) {
+				value = ((Number) row[2]).doubleValue();
+			}
+			// Items inversos: invertir la puntuación
+			if (questionInverse[q] && questionMax[q] > 0) {
+				value = questionMax[q] - value;
+			}
+			score[sf] += value;
+		}
+		double[] max = Arrays.copyOf(subfactorMaxTotal, formulas.tableSize());
+
+		formulas.evaluate(score, max);
+		return new Scores(score, max, subfactorIds.length);
+	}
+
+	/** True if the factor formulas contain a dependency cycle (evaluated in position order). */
+	public boolean hasFormulaCycle() {
+		return formulas.isCyclic();
+	}
+
+	public double percentage(double score, double max) {
+		return gaussian
+				? FormulaEvaluator.gaussianPercentile(score, max)
+				: (score / max) * 100.0;
+	}
+
+	public Long getTestId() { return testId; }
+	public Long subfactorId(int index) { return subfactorIds[index]; }
+	public Long factorId(int index) { return factorIds[index]; }
+	public int subfactorCount() { return subfactorIds.length; }
+	public int factorCount() { return factorIds.length; }
+}
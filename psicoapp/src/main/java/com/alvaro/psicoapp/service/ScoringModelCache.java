@@ -0,0 +1,91 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.domain.TestEntity;
+import com.alvaro.psicoapp.repository.AnswerRepository;
+import com.alvaro.psicoapp.repository.FactorRepository;
+import com.alvaro.psicoapp.repository.QuestionRepository;
+import com.alvaro.psicoapp.repository.SubfactorRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiled {@link ScoringModel} per test. Loaded with four queries on first use (questions,
+ * max answer values, subfactors, factors) and dropped by AdminService whenever the test's
+ * structure changes. Invalidation runs after commit so a concurrent submission can't cache
+ * the pre-edit structure again.
+ */
+@Component
+public class ScoringModelCache {
+	private static final Logger logger = LoggerFactory.getLogger(ScoringModelCache.class);
+
+	private final QuestionRepository questionRepository;
+	private final AnswerRepository answerRepository;
+	private final SubfactorRepository subfactorRepository;
+	private final FactorRepository factorRepository;
+	private final Cache<Long, ScoringModel> models = Caffeine.newBuilder()
+			.maximumSize(200)
+			.build();
+
+	public ScoringModelCache(QuestionRepository questionRepository, AnswerRepository answerRepository,
+							 SubfactorRepository subfactorRepository, FactorRepository factorRepository) {
+		this.questionRepository = questionRepository;
+		this.answerRepository = answerRepository;
+		this.subfactorRepository = subfactorRepository;
+		this.factorRepository = factorRepository;
+	}
+
+	/**
+	 * Must be called inside a transaction (lazy associations are read while compiling).
+	 */
+	public ScoringModel get(TestEntity test) {
+		return models.get(test.getId(), id -> compile(test));
+	}
+
+	public void invalidate(Long testId) {
+		if (testId == null) return;
+		afterCommit(() -> models.invalidate(testId));
+	}
+
+	public void invalidateAll() {
+		afterCommit(models::invalidateAll);
+	}
+
+	private ScoringModel compile(TestEntity test) {
+		Map<Long, Double> maxByQuestion = new HashMap<>();
+		for (Object[] row : answerRepository.findMaxValueByTestId(test.getId())) {
+			maxByQuestion.put((Long) row[0], row[1] != null ? ((Number) row[1]).doubleValue() : 0.0);
+		}
+		ScoringModel model = ScoringModel.compile(test,
+				questionRepository.findByTestOrderByPositionAsc(test),
+				maxByQuestion,
+				subfactorRepository.findByTestOrderByPositionAsc(test),
+				factorRepository.findByTestOrderByPositionAsc(test));
+		if (model.hasFormulaCycle()) {
+			logger.warn("Test {} has circular factor formulas; factors in the cycle are evaluated in position order", test.getId());
+		}
+		logger.debug("Scoring model compiled for test {}: {} subfactors, {} factors",
+				test.getId(), model.subfactorCount(), model.factorCount());
+		return model;
+	}
+
+	private void afterCommit(Runnable action) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					action.run();
+				}
+			});
+		} else {
+			action.run();
+		}
+	}
+}
@@ -7,26 +7,18 @@ import com.alvaro.psicoapp.domain.TaskCommentEntity;
 import com.alvaro.psicoapp.domain.UserEntity;
 import com.alvaro.psicoapp.dto.TaskDtos;
 import com.alvaro.psicoapp.repository.*;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 public class TaskService {
-    private static final Logger logger = LoggerFactory.getLogger(TaskService.class);
     private static final Set<String> ALLOWED_FILE_EXTENSIONS = Set.of(
             "pdf", "doc", "docx", "jpg", "jpeg", "png"
     );
@@ -58,17 +50,19 @@ public class TaskService {
     private final UserRepository userRepository;
     private final UserPsychologistRepository userPsychologistRepository;
     private final NotificationService notificationService;
+    private final UploadStorageService uploadStorageService;
 
     public TaskService(TaskRepository taskRepository, TaskFileRepository taskFileRepository,
                        TaskCommentRepository taskCommentRepository, UserRepository userRepository,
                        UserPsychologistRepository userPsychologistRepository,
-                       NotificationService notificationService) {
+                       NotificationService notificationService, UploadStorageService uploadStorageService) {
         this.taskRepository = taskRepository;
         this.taskFileRepository = taskFileRepository;
         this.taskCommentRepository = taskCommentRepository;
         this.userRepository = userRepository;
         this.userPsychologistRepository = userPsychologistRepository;
         this.notificationService = notificationService;
+        this.uploadStorageService = uploadStorageService;
     }
 
     @Transactional(readOnly = true)
@@ -125,40 +119,15 @@ public class TaskService {
         TaskEntity task = taskRepository.findById(taskId).orElseThrow();
         requireTaskAccess(actor, task);
         validateUploadedFile(file);
-        File uploadsDir = new File("uploads");
-        if (!uploadsDir.exists() && !uploadsDir.mkdirs()) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "No se pudo crear el directorio uploads");
-        }
-        File dir = new File(uploadsDir, "tasks");
-        if (!dir.exists() && !dir.mkdirs()) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "No se pudo crear el directorio uploads/tasks");
-        }
-        if (!dir.canWrite()) {
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "No se tienen permisos de escritura");
-        }
         String originalFilename = file.getOriginalFilename();
-        String ext = StringUtils.getFilenameExtension(originalFilename);
-        String name = UUID.randomUUID() + (ext != null ? ("." + ext) : "");
-        File dest = new File(dir, name);
-        File absoluteDest = dest.getAbsoluteFile();
-        try {
-            File parentDir = absoluteDest.getParentFile();
-            if (parentDir != null && !parentDir.exists()) parentDir.mkdirs();
-            Files.copy(file.getInputStream(), absoluteDest.toPath(), StandardCopyOption.REPLACE_EXISTING);
-            if (!absoluteDest.exists() || !absoluteDest.canRead()) {
-                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "El archivo no se guardó correctamente");
-            }
-        } catch (IOException e) {
-            logger.error("Error al escribir archivo", e);
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error al escribir el archivo: " + e.getMessage());
-        }
+        UploadStorageService.StoredFile stored = uploadStorageService.store(UploadStorageService.TASKS, file);
         TaskFileEntity tf = new TaskFileEntity();
         tf.setTask(task);
         tf.setUploader(actor);
-        tf.setFilePath("/uploads/tasks/" + name);
+        tf.setFilePath("/uploads/tasks/" + stored.key());
         tf.setOriginalName(originalFilename != null ? originalFilename : "archivo");
         tf.setContentType(file.getContentType());
-        tf.setFileSize(file.getSize());
+        tf.setFileSize(stored.size());
         tf.setUploadedAt(Instant.now());
         TaskFileEntity saved = taskFileRepository.save(tf);
         return new TaskDtos.UploadFileResponse(saved.getId(), saved.getFilePath(), saved.getOriginalName());
@@ -228,16 +197,10 @@ public class TaskService {
         if (!task.getPsychologist().getId().equals(user.getId())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "No tienes acceso a esta tarea");
         }
-        // Delete physical files
+        // Drop this task's references; blobs other tasks still use are kept
         List<TaskFileEntity> files = taskFileRepository.findByTask_Id(taskId);
         for (TaskFileEntity file : files) {
-            try {
-                java.nio.file.Path filePath = java.nio.file.Path.of(file.getFilePath().startsWith("/")
-                        ? file.getFilePath().substring(1) : file.getFilePath());
-                java.nio.file.Files.deleteIfExists(filePath);
-            } catch (Exception e) {
-                logger.warn("No se pudo eliminar archivo: {}", file.getFilePath(), e);
-            }
+            uploadStorageService.release(UploadStorageService.TASKS, UploadStorageService.keyOf(file.getFilePath()));
         }
         // Delete DB records (comments, files, then task)
         taskCommentRepository.deleteAll(taskCommentRepository.findByTask_IdOrderByCreatedAtAsc(taskId));
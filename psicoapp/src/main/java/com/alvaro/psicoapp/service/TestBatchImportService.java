@@ -0,0 +1,81 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.dto.TestImportDtos.BatchImportResult;
+import com.alvaro.psicoapp.dto.TestImportDtos.ImportRequest;
+import com.alvaro.psicoapp.dto.TestImportDtos.ImportResponse;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Imports several tests at once on a bounded pool. Each test is imported by
+ * {@link TestImportService#importTest} in its own transaction, so one invalid test doesn't
+ * roll back the others; the result lists each test's outcome in request order.
+ */
+@Service
+public class TestBatchImportService {
+    private static final Logger logger = LoggerFactory.getLogger(TestBatchImportService.class);
+    private static final int MAX_TESTS = 50;
+
+    private final TestImportService testImportService;
+    private final ExecutorService workers;
+
+    public TestBatchImportService(TestImportService testImportService,
+                                  @Value("${app.test-import.threads:4}") int threads) {
+        this.testImportService = testImportService;
+        this.workers = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("test-import-", 0).daemon().factory());
+    }
+
+    public List<BatchImportResult> importTests(List<ImportRequest> requests, boolean dryRun) {
+        if (requests == null || requests.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No hay tests que importar");
+        }
+        if (requests.size() > MAX_TESTS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Se pueden importar como máximo " + MAX_TESTS + " tests a la vez");
+        }
+
+        List<Future<ImportResponse>> futures = new ArrayList<>(requests.size());
+        for (ImportRequest req : requests) {
+            futures.add(workers.submit(() -> testImportService.importTest(req, dryRun)));
+        }
+
+        List<BatchImportResult> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            String code = requests.get(i).code;
+            try {
+                results.add(new BatchImportResult(code, HttpStatus.OK.value(), futures.get(i).get(), null));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Importación interrumpida");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof ResponseStatusException rse) {
+                    results.add(new BatchImportResult(code, rse.getStatusCode().value(), null, rse.getReason()));
+                } else {
+                    logger.error("Importing test {} failed", code, e.getCause());
+                    results.add(new BatchImportResult(code, HttpStatus.INTERNAL_SERVER_ERROR.value(), null,
+                            "Error al importar el test"));
+                }
+            }
+        }
+        return results;
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
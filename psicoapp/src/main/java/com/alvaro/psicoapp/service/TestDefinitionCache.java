@@ -0,0 +1,164 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.domain.AnswerEntity;
+import com.alvaro.psicoapp.domain.QuestionEntity;
+import com.alvaro.psicoapp.domain.TestEntity;
+import com.alvaro.psicoapp.dto.InitialTestDtos;
+import com.alvaro.psicoapp.dto.MatchingDtos;
+import com.alvaro.psicoapp.dto.TestDtos;
+import com.alvaro.psicoapp.repository.QuestionRepository;
+import com.alvaro.psicoapp.repository.TestRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.context.request.WebRequest;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable questionnaire snapshots for the anonymous / high-traffic test endpoints (test
+ * detail, initial test, matching tests). A test's question tree is loaded with one query,
+ * mapped to the DTOs and serialised once per view, so a request is a cache hit plus a byte
+ * copy, or a 304 when the client already has the same ETag.
+ *
+ * Entries live in the "testDefinitions" cache and are evicted by the same @CacheEvict points
+ * in AdminService and TestImportService that evict the test lists. Those evictions are local,
+ * so on other replicas an edit shows once the entry expires (15 minutes, like the test lists).
+ */
+@Component
+public class TestDefinitionCache {
+
+    public enum View { DETAIL, INITIAL, MATCHING }
+
+    /** Serialised response body with its strong ETag */
+    public record Json(byte[] body, String etag) {
+        public ResponseEntity<byte[]> toResponse(WebRequest request) {
+            if (request.checkNotModified(etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .body(body);
+        }
+    }
+
+    public record TestDefinition(TestDtos.TestDetailResponse detail, Map<View, Json> json) {
+        public Json json(View view) {
+            return json.get(view);
+        }
+    }
+
+    private final TestRepository testRepository;
+    private final QuestionRepository questionRepository;
+    private final ObjectMapper objectMapper;
+
+    public TestDefinitionCache(TestRepository testRepository, QuestionRepository questionRepository, ObjectMapper objectMapper) {
+        this.testRepository = testRepository;
+        this.questionRepository = questionRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @return null if the test doesn't exist
+     */
+    @Cacheable(value = "testDefinitions", key = "'id:' + #testId", unless = "#result == null")
+    @Transactional(readOnly = true)
+    public TestDefinition byId(Long testId) {
+        return testRepository.findById(testId).map(this::load).orElse(null);
+    }
+
+    /**
+     * @return null if the test doesn't exist
+     */
+    @Cacheable(value = "testDefinitions", key = "'code:' + #code", unless = "#result == null")
+    @Transactional(readOnly = true)
+    public TestDefinition byCode(String code) {
+        return testRepository.findByCode(code).map(this::load).orElse(null);
+    }
+
+    private TestDefinition load(TestEntity test) {
+        List<TestDtos.QuestionDto> questions = new ArrayList<>();
+        QuestionEntity current = null;
+        List<TestDtos.AnswerDto> answers = null;
+        for (Object[] row : questionRepository.findDefinitionRows(test.getId())) {
+            QuestionEntity q = (QuestionEntity) row[0];
+            if (current == null || !current.getId().equals(q.getId())) {
+                if (current != null) questions.add(question(current, answers));
+                current = q;
+                answers = new ArrayList<>();
+            }
+            AnswerEntity a = (AnswerEntity) row[1];
+            if (a != null) answers.add(new TestDtos.AnswerDto(a.getId(), a.getText(), a.getValue(), a.getPosition()));
+        }
+        if (current != null) questions.add(question(current, answers));
+
+        TestDtos.TestDetailResponse detail = new TestDtos.TestDetailResponse(test.getId(), test.getCode(), test.getTitle(),
+                test.getDescription(), test.getActive(), List.copyOf(questions));
+        Map<View, Json> json = new EnumMap<>(View.class);
+        json.put(View.DETAIL, serialize(detail));
+        json.put(View.INITIAL, serialize(toInitial(detail)));
+        json.put(View.MATCHING, serialize(toMatching(detail)));
+        return new TestDefinition(detail, Map.copyOf(json));
+    }
+
+    private static TestDtos.QuestionDto question(QuestionEntity q, List<TestDtos.AnswerDto> answers) {
+        TestDtos.SubfactorDto sf = null;
+        if (q.getSubfactor() != null) {
+            TestDtos.FactorDto f = q.getSubfactor().getFactor() != null
+                    ? new TestDtos.FactorDto(q.getSubfactor().getFactor().getId(), q.getSubfactor().getFactor().getCode(), q.getSubfactor().getFactor().getName())
+                    : null;
+            sf = new TestDtos.SubfactorDto(q.getSubfactor().getId(), q.getSubfactor().getCode(), q.getSubfactor().getName(), f);
+        }
+        return new TestDtos.QuestionDto(q.getId(), q.getText(), q.getType(), q.getPosition(), sf, List.copyOf(answers));
+    }
+
+    public static InitialTestDtos.InitialTestResponse toInitial(TestDtos.TestDetailResponse detail) {
+        List<InitialTestDtos.QuestionDto> questions = detail.questions().stream().map(q -> {
+            InitialTestDtos.SubfactorDto sf = null;
+            if (q.subfactor() != null) {
+                InitialTestDtos.FactorDto f = q.subfactor().factor() != null
+                        ? new InitialTestDtos.FactorDto(q.subfactor().factor().id(), q.subfactor().factor().code(), q.subfactor().factor().name())
+                        : null;
+                sf = new InitialTestDtos.SubfactorDto(q.subfactor().id(), q.subfactor().code(), q.subfactor().name(), f);
+            }
+            var answers = q.answers().stream()
+                    .map(a -> new InitialTestDtos.AnswerDto(a.id(), a.text(), a.value(), a.position())).toList();
+            return new InitialTestDtos.QuestionDto(q.id(), q.text(), q.type(), q.position(), sf, answers);
+        }).toList();
+        return new InitialTestDtos.InitialTestResponse(detail.id(), detail.code(), detail.title(), detail.description(), questions);
+    }
+
+    public static MatchingDtos.MatchingTestResponse toMatching(TestDtos.TestDetailResponse detail) {
+        List<MatchingDtos.QuestionDto> questions = detail.questions().stream().map(q -> {
+            var answers = q.answers().stream()
+                    .map(a -> new MatchingDtos.AnswerDto(a.id(), a.text(), a.value(), a.position())).toList();
+            return new MatchingDtos.QuestionDto(q.id(), q.text(), q.type(), q.position(), answers);
+        }).toList();
+        return new MatchingDtos.MatchingTestResponse(detail.id(), detail.code(), detail.title(), detail.description(), questions);
+    }
+
+    private Json serialize(Object body) {
+        try {
+            byte[] bytes = objectMapper.writeValueAsBytes(body);
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            String etag = "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(digest).substring(0, 27) + "\"";
+            return new Json(bytes, etag);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No se pudo serializar el test", e);
+        }
+    }
+}
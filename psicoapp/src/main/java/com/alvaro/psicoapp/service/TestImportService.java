@@ -4,42 +4,66 @@ import com.alvaro.psicoapp.domain.*;
 import com.alvaro.psicoapp.dto.TestImportDtos;
 import com.alvaro.psicoapp.dto.TestImportDtos.*;
 import com.alvaro.psicoapp.repository.*;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import com.alvaro.psicoapp.service.ExcelSheetReader.CellKind;
+import com.alvaro.psicoapp.service.ExcelSheetReader.SheetCell;
+import com.alvaro.psicoapp.service.ExcelSheetReader.SheetRow;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Caching;
 import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+/**
+ * Imports a test from an Excel file in two steps: {@link #parseExcel} streams the first sheet
+ * into a preview of questions and answers, and {@link #importTest} validates the (possibly
+ * edited) preview in one pass and persists the whole tree in one transaction, with the
+ * questions and answers written as JDBC batches. Both report how long each phase took.
+ *
+ * Imports of different tests can run concurrently; two imports of the same code can't.
+ */
 @Service
 public class TestImportService {
 	private static final Logger logger = LoggerFactory.getLogger(TestImportService.class);
 
+	private static final int MAX_TEXT_LENGTH = 500;
+	private static final int MAX_REPORTED_ERRORS = 20;
+	private static final String NEXT_QUESTION_IDS_SQL =
+			"SELECT nextval(pg_get_serial_sequence('questions', 'id')) FROM generate_series(1, ?)";
+	private static final String INSERT_QUESTION_SQL =
+			"INSERT INTO questions (id, test_id, text, type, position, inverse) VALUES (?, ?, ?, 'SINGLE', ?, false)";
+	private static final String INSERT_ANSWER_SQL =
+			"INSERT INTO answers (question_id, text, value, position, is_correct) VALUES (?, ?, ?, ?, false)";
+
 	private final TestRepository testRepository;
-	private final QuestionRepository questionRepository;
-	private final AnswerRepository answerRepository;
 	private final FactorRepository factorRepository;
 	private final SubfactorRepository subfactorRepository;
+	private final JdbcTemplate jdbcTemplate;
+	// Codes being imported right now, released when the importing transaction completes
+	private final Set<String> codesInFlight = ConcurrentHashMap.newKeySet();
 
-	public TestImportService(TestRepository testRepository, QuestionRepository questionRepository,
-							 AnswerRepository answerRepository, FactorRepository factorRepository,
-							 SubfactorRepository subfactorRepository) {
+	public TestImportService(TestRepository testRepository, FactorRepository factorRepository,
+							 SubfactorRepository subfactorRepository, JdbcTemplate jdbcTemplate) {
 		this.testRepository = testRepository;
-		this.questionRepository = questionRepository;
-		this.answerRepository = answerRepository;
 		this.factorRepository = factorRepository;
 		this.subfactorRepository = subfactorRepository;
+		this.jdbcTemplate = jdbcTemplate;
 	}
 
 	public ParseResult parseExcel(MultipartFile file) {
@@ -52,19 +76,24 @@ public class TestImportService {
 			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Solo se aceptan archivos .xlsx o .xls");
 		}
 
-		try (InputStream is = file.getInputStream()) {
-			Workbook workbook = filename.endsWith(".xlsx") ? new XSSFWorkbook(is) : new HSSFWorkbook(is);
-			Sheet sheet = workbook.getSheetAt(0);
-
-			// Detectar formato: Delphos (pregunta en col D) o genérico (pregunta en col A)
-			int format = detectFormat(sheet);
-			logger.info("Formato Excel detectado: {}", format == 1 ? "Delphos" : "Genérico");
-
-			String detectedTitle = format == 1 ? extractTitleDelphos(sheet) : extractTitleGeneric(sheet);
-			List<ParsedQuestion> questions = format == 1 ? extractQuestionsDelphos(sheet) : extractQuestionsGeneric(sheet);
-
-			workbook.close();
-			return new ParseResult(detectedTitle, questions.size(), questions);
+		long start = System.nanoTime();
+		SheetParser parser = new SheetParser();
+		try {
+			if (filename.endsWith(".xlsx")) {
+				// The OOXML package is opened from disk so only the entry being parsed is read
+				Path tmp = Files.createTempFile("test-import-", ".xlsx");
+				try {
+					file.transferTo(tmp);
+					ExcelSheetReader.readXlsx(tmp.toFile(), parser);
+				} finally {
+					Files.deleteIfExists(tmp);
+				}
+			} else {
+				try (InputStream is = file.getInputStream()) {
+					ExcelSheetReader.readXls(is, parser);
+				}
+			}
+			parser.finish();
 		} catch (ResponseStatusException e) {
 			throw e;
 		} catch (Exception e) {
@@ -72,30 +101,39 @@ public class TestImportService {
 			throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
 					"Error al parsear el archivo Excel: " + e.getMessage());
 		}
+
+		List<ParsedQuestion> questions = parser.questions;
+		Map<String, Long> timings = Map.of("parse", elapsedMillis(start));
+		logger.info("Excel {} parseado ({}): {} preguntas en {} ms", filename,
+				parser.format == 1 ? "Delphos" : "Genérico", questions.size(), timings.get("parse"));
+		return new ParseResult(parser.title, questions.size(), questions, timings);
 	}
 
 	@Caching(evict = {
-		@CacheEvict(value = "testsByCategory", allEntries = true),
-		@CacheEvict(value = "testsByTopic", allEntries = true),
-		@CacheEvict(value = "adminStats", allEntries = true)
+		@CacheEvict(value = "testsByCategory", allEntries = true, condition = "!#dryRun"),
+		@CacheEvict(value = "testsByTopic", allEntries = true, condition = "!#dryRun"),
+		@CacheEvict(value = "adminStats", allEntries = true, condition = "!#dryRun"),
+		@CacheEvict(value = "testDefinitions", allEntries = true, condition = "!#dryRun")
 	})
 	@Transactional
-	public ImportResponse importTest(TestImportDtos.ImportRequest req) {
-		if (req.code == null || req.code.isBlank()) {
-			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El código del test es obligatorio");
-		}
-		if (req.title == null || req.title.isBlank()) {
-			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El título del test es obligatorio");
-		}
-		if (req.questions == null || req.questions.isEmpty()) {
-			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El test debe tener al menos una pregunta");
-		}
+	public ImportResponse importTest(TestImportDtos.ImportRequest req, boolean dryRun) {
+		Map<String, Long> timings = new LinkedHashMap<>();
+		long start = System.nanoTime();
+
+		int totalAnswers = validate(req);
+		timings.put("validate", elapsedMillis(start));
 
+		reserveCode(req.code);
 		if (testRepository.findByCode(req.code).isPresent()) {
 			throw new ResponseStatusException(HttpStatus.CONFLICT,
 					"Ya existe un test con el código '" + req.code + "'");
 		}
+		if (dryRun) {
+			timings.put("total", elapsedMillis(start));
+			return new ImportResponse(null, req.code, req.questions.size(), totalAnswers, true, timings);
+		}
 
+		long phase = System.nanoTime();
 		TestEntity test = new TestEntity();
 		test.setCode(req.code);
 		test.setTitle(req.title);
@@ -110,30 +148,209 @@ public class TestImportService {
 			case "ansiedad" -> initAnsiedadStructure(test);
 			default -> {} // generic: no predefined structure
 		}
-
-		int totalAnswers = 0;
-		for (ParsedQuestion pq : req.questions) {
-			QuestionEntity question = new QuestionEntity();
-			question.setTest(test);
-			question.setText(pq.text());
-			question.setType("SINGLE");
-			question.setPosition(pq.position());
-			question = questionRepository.save(question);
-
+		timings.put("structure", elapsedMillis(phase));
+
+		phase = System.nanoTime();
+		List<Long> questionIds = jdbcTemplate.queryForList(NEXT_QUESTION_IDS_SQL, Long.class, req.questions.size());
+		Long testId = test.getId();
+		List<Object[]> questionRows = new ArrayList<>(req.questions.size());
+		List<Object[]> answerRows = new ArrayList<>(totalAnswers);
+		for (int i = 0; i < req.questions.size(); i++) {
+			ParsedQuestion pq = req.questions.get(i);
+			Long questionId = questionIds.get(i);
+			questionRows.add(new Object[]{questionId, testId, pq.text(), pq.position()});
 			if (pq.answers() != null) {
 				for (ParsedAnswer pa : pq.answers()) {
-					AnswerEntity answer = new AnswerEntity();
-					answer.setQuestion(question);
-					answer.setText(pa.text());
-					answer.setValue(pa.value());
-					answer.setPosition(pa.position());
-					answerRepository.save(answer);
-					totalAnswers++;
+					answerRows.add(new Object[]{questionId, pa.text(), pa.value(), pa.position()});
 				}
 			}
 		}
+		jdbcTemplate.batchUpdate(INSERT_QUESTION_SQL, questionRows);
+		timings.put("questions", elapsedMillis(phase));
+
+		phase = System.nanoTime();
+		jdbcTemplate.batchUpdate(INSERT_ANSWER_SQL, answerRows);
+		timings.put("answers", elapsedMillis(phase));
+		timings.put("total", elapsedMillis(start));
 
-		return new ImportResponse(test.getId(), test.getCode(), req.questions.size(), totalAnswers);
+		logger.info("Test {} importado: {} preguntas, {} respuestas, fases {}", req.code,
+				req.questions.size(), totalAnswers, timings);
+		return new ImportResponse(testId, test.getCode(), req.questions.size(), totalAnswers, false, timings);
+	}
+
+	/**
+	 * Checks the whole request in one pass and reports every problem found (up to
+	 * {@value #MAX_REPORTED_ERRORS}) instead of stopping at the first one.
+	 *
+	 * @return number of answers
+	 */
+	private int validate(TestImportDtos.ImportRequest req) {
+		if (req.code == null || req.code.isBlank()) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El código del test es obligatorio");
+		}
+		if (req.title == null || req.title.isBlank()) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El título del test es obligatorio");
+		}
+		if (req.questions == null || req.questions.isEmpty()) {
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El test debe tener al menos una pregunta");
+		}
+
+		List<String> errors = new ArrayList<>();
+		int answers = 0;
+		for (int i = 0; i < req.questions.size(); i++) {
+			ParsedQuestion pq = req.questions.get(i);
+			if (pq == null || pq.text() == null || pq.text().isBlank()) {
+				errors.add("Pregunta " + (i + 1) + ": el texto es obligatorio");
+				continue;
+			}
+			if (pq.text().length() > MAX_TEXT_LENGTH) {
+				errors.add("Pregunta " + pq.position() + ": el texto supera " + MAX_TEXT_LENGTH + " caracteres");
+			}
+			if (pq.answers() == null) continue;
+			for (ParsedAnswer pa : pq.answers()) {
+				answers++;
+				if (pa == null || pa.text() == null || pa.text().isBlank()) {
+					errors.add("Pregunta " + pq.position() + ": hay una respuesta sin texto");
+				} else if (pa.text().length() > MAX_TEXT_LENGTH) {
+					errors.add("Pregunta " + pq.position() + ": la respuesta " + pa.position()
+							+ " supera " + MAX_TEXT_LENGTH + " caracteres");
+				}
+			}
+		}
+		if (!errors.isEmpty()) {
+			String shown = String.join("; ", errors.subList(0, Math.min(errors.size(), MAX_REPORTED_ERRORS)));
+			throw new ResponseStatusException(HttpStatus.BAD_REQUEST, errors.size() > MAX_REPORTED_ERRORS
+					? shown + " (y " + (errors.size() - MAX_REPORTED_ERRORS) + " errores más)"
+					: shown);
+		}
+		return answers;
+	}
+
+	/**
+	 * Stops a concurrent import of the same code from getting past the existence check before
+	 * this one commits; the reservation is dropped when the transaction completes.
+	 */
+	private void reserveCode(String code) {
+		if (!codesInFlight.add(code)) {
+			throw new ResponseStatusException(HttpStatus.CONFLICT,
+					"Ya se está importando un test con el código '" + code + "'");
+		}
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					codesInFlight.remove(code);
+				}
+			});
+		} else {
+			codesInFlight.remove(code);
+		}
+	}
+
+	private static long elapsedMillis(long startNanos) {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+	}
+
+	// ===================== STREAMING PARSER =====================
+
+	/**
+	 * Turns the sheet's rows into questions as they arrive. The first rows (up to row 10) are
+	 * buffered to detect the format and the title, then replayed; after that each row is
+	 * handled once and dropped.
+	 */
+	private final class SheetParser implements Consumer<SheetRow> {
+		private static final int DETECTION_ROWS = 11;
+
+		private final List<SheetRow> head = new ArrayList<>();
+		private final List<ParsedQuestion> questions = new ArrayList<>();
+		private int format;
+		private String title;
+
+		// Question being collected
+		private Integer questionNum;
+		private String questionText;
+		private List<ParsedAnswer> answers;
+		private int answerPos;
+		private int questionPosition;
+
+		@Override
+		public void accept(SheetRow row) {
+			if (format == 0) {
+				if (row.index() < DETECTION_ROWS) {
+					head.add(row);
+					return;
+				}
+				detect();
+			}
+			collect(row);
+		}
+
+		void finish() {
+			if (format == 0) detect();
+			endQuestion();
+		}
+
+		private void detect() {
+			format = detectFormat(head);
+			title = format == 1 ? extractTitleDelphos(head) : extractTitleGeneric(head);
+			for (SheetRow row : head) collect(row);
+			head.clear();
+		}
+
+		private void collect(SheetRow row) {
+			if (format == 1) collectDelphos(row);
+			else collectGeneric(row);
+		}
+
+		// Question: col D = "N - texto"; answers: col B = puntos, col D = texto
+		// (col C = "X" si seleccionada, pero solo necesitamos texto + valor para importar)
+		private void collectDelphos(SheetRow row) {
+			String colD = getCellStringValue(row.cell(3));
+			if (colD == null || colD.isBlank()) return;
+
+			Matcher m = QUESTION_PATTERN.matcher(colD.trim());
+			if (m.find()) {
+				endQuestion();
+				String text = m.group(2).trim();
+				// Quitar ':' final si existe
+				if (text.endsWith(":")) {
+					text = text.substring(0, text.length() - 1).trim();
+				}
+				startQuestion(Integer.parseInt(m.group(1)), text);
+			} else if (answers != null) {
+				Integer value = getCellNumericValue(row.cell(1));
+				answers.add(new ParsedAnswer(colD.trim(), value != null ? value : 0, ++answerPos));
+			}
+		}
+
+		private void collectGeneric(SheetRow row) {
+			String firstCell = getCellStringValue(row.cell(0));
+			if (firstCell != null && !firstCell.isBlank()) {
+				String text = extractQuestionTextGeneric(firstCell, row);
+				if (text != null) {
+					endQuestion();
+					startQuestion(++questionPosition, text);
+					return;
+				}
+			}
+			if (answers != null) {
+				ParsedAnswer answer = extractAnswerGeneric(row, ++answerPos);
+				if (answer != null) answers.add(answer);
+			}
+		}
+
+		private void startQuestion(int num, String text) {
+			questionNum = num;
+			questionText = text;
+			answers = new ArrayList<>();
+			answerPos = 0;
+		}
+
+		private void endQuestion() {
+			if (answers == null) return;
+			questions.add(new ParsedQuestion(questionNum, questionText, answers));
+			answers = null;
+		}
 	}
 
 	// ===================== FORMAT DETECTION =====================
@@ -143,14 +360,11 @@ public class TestImportService {
 	 * Formato 1 (Delphos): Cabecera "Correcta,Puntos,Respuesta,Pregunta/respuestas" y preguntas en col D
 	 * Formato 2 (Genérico): Preguntas en col A con patrón "N - texto"
 	 */
-	private int detectFormat(Sheet sheet) {
-		for (int i = 0; i <= Math.min(10, sheet.getLastRowNum()); i++) {
-			Row row = sheet.getRow(i);
-			if (row == null) continue;
-
+	private int detectFormat(List<SheetRow> head) {
+		for (SheetRow row : head) {
 			// Buscar cabecera Delphos: "Correcta" en col A o "Pregunta/respuestas" en col D
-			String colA = getCellStringValue(row.getCell(0));
-			String colD = getCellStringValue(row.getCell(3));
+			String colA = getCellStringValue(row.cell(0));
+			String colD = getCellStringValue(row.cell(3));
 
 			if (colA != null && colA.trim().equalsIgnoreCase("Correcta")) return 1;
 			if (colD != null && colD.trim().toLowerCase().contains("pregunta")) return 1;
@@ -171,19 +385,18 @@ public class TestImportService {
 	//   Pregunta: col D = "N - texto pregunta"
 	//   Respuesta: col B = puntos, col C = "X" si seleccionada, col D = texto respuesta
 
-	private String extractTitleDelphos(Sheet sheet) {
+	private String extractTitleDelphos(List<SheetRow> head) {
 		// Título puede estar en fila 0 o fila 1 (si fila 0 está vacía)
-		for (int i = 0; i <= Math.min(3, sheet.getLastRowNum()); i++) {
-			Row row = sheet.getRow(i);
-			if (row == null) continue;
-			String val = getCellStringValue(row.getCell(0));
+		for (SheetRow row : head) {
+			if (row.index() > 3) break;
+			String val = getCellStringValue(row.cell(0));
 			if (val != null && !val.isBlank() && !val.trim().equalsIgnoreCase("Correcta")) {
 				return val.replaceAll("^\\uFEFF", "").trim();
 			}
 			// También buscar en col 0 si está vacía, pero col podría estar en otra posición
 			// Algunos Excels ponen el título centrado que cae en otra columna
 			for (int col = 0; col <= 3; col++) {
-				val = getCellStringValue(row.getCell(col));
+				val = getCellStringValue(row.cell(col));
 				if (val != null && !val.isBlank() && val.length() > 3
 						&& !val.trim().equalsIgnoreCase("Correcta")
 						&& !val.trim().equalsIgnoreCase("Puntos")
@@ -196,62 +409,6 @@ public class TestImportService {
 		return "Test importado";
 	}
 
-	private List<ParsedQuestion> extractQuestionsDelphos(Sheet sheet) {
-		List<ParsedQuestion> questions = new ArrayList<>();
-		int currentRow = 0;
-
-		while (currentRow <= sheet.getLastRowNum()) {
-			Row row = sheet.getRow(currentRow);
-			if (row == null) { currentRow++; continue; }
-
-			// Buscar pregunta en col D (índice 3)
-			String colD = getCellStringValue(row.getCell(3));
-			if (colD == null || colD.isBlank()) { currentRow++; continue; }
-
-			Matcher m = QUESTION_PATTERN.matcher(colD.trim());
-			if (!m.find()) { currentRow++; continue; }
-
-			int questionNum = Integer.parseInt(m.group(1));
-			String questionText = m.group(2).trim();
-			// Quitar ':' final si existe
-			if (questionText.endsWith(":")) {
-				questionText = questionText.substring(0, questionText.length() - 1).trim();
-			}
-
-			// Recoger respuestas en filas siguientes
-			List<ParsedAnswer> answers = new ArrayList<>();
-			int answerPos = 0;
-			int nextRow = currentRow + 1;
-
-			while (nextRow <= sheet.getLastRowNum()) {
-				Row answerRow = sheet.getRow(nextRow);
-				if (answerRow == null) { nextRow++; continue; }
-
-				String answerColD = getCellStringValue(answerRow.getCell(3));
-
-				// Si col D tiene otra pregunta (N - texto), parar
-				if (answerColD != null && !answerColD.isBlank() && QUESTION_PATTERN.matcher(answerColD.trim()).find()) {
-					break;
-				}
-
-				// Extraer respuesta: col B = puntos, col D = texto
-				// (col C = "X" si seleccionada, pero solo necesitamos texto + valor para importar)
-				if (answerColD != null && !answerColD.isBlank()) {
-					Integer value = getCellNumericValue(answerRow.getCell(1));
-					answerPos++;
-					answers.add(new ParsedAnswer(answerColD.trim(), value != null ? value : 0, answerPos));
-				}
-
-				nextRow++;
-			}
-
-			questions.add(new ParsedQuestion(questionNum, questionText, answers));
-			currentRow = nextRow;
-		}
-
-		return questions;
-	}
-
 	// ===================== GENERIC FORMAT =====================
 	// Preguntas en col A: "N - texto" o "N. texto" o número en col A + texto en col B
 	// Respuestas: filas siguientes con texto + valor numérico
@@ -259,12 +416,10 @@ public class TestImportService {
 	private static final Pattern QUESTION_PATTERN =
 			Pattern.compile("^\\s*(\\d{1,3})\\s*[\\-\\.\\)\\:]\\s*(.+)$", Pattern.DOTALL);
 
-	private String extractTitleGeneric(Sheet sheet) {
-		for (int i = 0; i <= Math.min(5, sheet.getLastRowNum()); i++) {
-			Row row = sheet.getRow(i);
-			if (row == null) continue;
-
-			String cellValue = getCellStringValue(row.getCell(0));
+	private String extractTitleGeneric(List<SheetRow> head) {
+		for (SheetRow row : head) {
+			if (row.index() > 5) break;
+			String cellValue = getCellStringValue(row.cell(0));
 			if (cellValue != null && !cellValue.isBlank() && !QUESTION_PATTERN.matcher(cellValue).find() && !isAnswerRow(row)) {
 				return cellValue.trim();
 			}
@@ -272,66 +427,17 @@ public class TestImportService {
 		return "Test importado";
 	}
 
-	private List<ParsedQuestion> extractQuestionsGeneric(Sheet sheet) {
-		List<ParsedQuestion> questions = new ArrayList<>();
-		int questionPosition = 0;
-		int currentRow = 0;
-
-		while (currentRow <= sheet.getLastRowNum()) {
-			Row row = sheet.getRow(currentRow);
-			if (row == null) { currentRow++; continue; }
-
-			String firstCell = getCellStringValue(row.getCell(0));
-			if (firstCell == null || firstCell.isBlank()) { currentRow++; continue; }
-
-			String questionText = extractQuestionTextGeneric(firstCell, row);
-			if (questionText != null) {
-				questionPosition++;
-
-				List<ParsedAnswer> answers = new ArrayList<>();
-				int answerPos = 0;
-				int nextRow = currentRow + 1;
-
-				while (nextRow <= sheet.getLastRowNum()) {
-					Row answerRow = sheet.getRow(nextRow);
-					if (answerRow == null) { nextRow++; continue; }
-
-					String answerFirstCell = getCellStringValue(answerRow.getCell(0));
-					if (answerFirstCell != null && !answerFirstCell.isBlank()) {
-						if (extractQuestionTextGeneric(answerFirstCell, answerRow) != null) {
-							break;
-						}
-					}
-
-					ParsedAnswer answer = extractAnswerGeneric(answerRow, ++answerPos);
-					if (answer != null) {
-						answers.add(answer);
-					}
-					nextRow++;
-				}
-
-				questions.add(new ParsedQuestion(questionPosition, questionText, answers));
-				currentRow = nextRow;
-			} else {
-				currentRow++;
-			}
-		}
-
-		return questions;
-	}
-
-	private String extractQuestionTextGeneric(String firstCell, Row row) {
+	private String extractQuestionTextGeneric(String firstCell, SheetRow row) {
 		Matcher m = QUESTION_PATTERN.matcher(firstCell);
 		if (m.find()) {
 			return m.group(2).trim();
 		}
 
-		Cell cell0 = row.getCell(0);
-		if (cell0 != null && cell0.getCellType() == CellType.NUMERIC) {
-			double numVal = cell0.getNumericCellValue();
+		SheetCell cell0 = row.cell(0);
+		if (cell0 != null && cell0.kind() == CellKind.NUMERIC) {
+			double numVal = cell0.number();
 			if (numVal == Math.floor(numVal) && numVal >= 1 && numVal <= 999) {
-				Cell cell1 = row.getCell(1);
-				String text = getCellStringValue(cell1);
+				String text = getCellStringValue(row.cell(1));
 				if (text != null && !text.isBlank() && text.length() > 5) {
 					return text.trim();
 				}
@@ -341,20 +447,20 @@ public class TestImportService {
 		return null;
 	}
 
-	private ParsedAnswer extractAnswerGeneric(Row row, int position) {
+	private ParsedAnswer extractAnswerGeneric(SheetRow row, int position) {
 		String text = null;
 		Integer value = null;
 
-		for (int col = 0; col < Math.min(5, row.getLastCellNum()); col++) {
-			Cell cell = row.getCell(col);
+		for (int col = 0; col < ExcelSheetReader.MAX_COLUMNS; col++) {
+			SheetCell cell = row.cell(col);
 			if (cell == null) continue;
 
-			if (cell.getCellType() == CellType.NUMERIC) {
+			if (cell.kind() == CellKind.NUMERIC) {
 				if (value == null) {
-					value = (int) cell.getNumericCellValue();
+					value = cell.number().intValue();
 				}
-			} else if (cell.getCellType() == CellType.STRING) {
-				String cellText = cell.getStringCellValue().trim();
+			} else if (cell.kind() == CellKind.STRING) {
+				String cellText = cell.text().trim();
 				if (!cellText.isBlank() && text == null) {
 					text = cellText;
 				}
@@ -367,35 +473,28 @@ public class TestImportService {
 		return null;
 	}
 
-	private boolean isAnswerRow(Row row) {
+	private boolean isAnswerRow(SheetRow row) {
 		return extractAnswerGeneric(row, 1) != null;
 	}
 
 	// ===================== UTILITIES =====================
 
-	private String getCellStringValue(Cell cell) {
+	private String getCellStringValue(SheetCell cell) {
 		if (cell == null) return null;
-		return switch (cell.getCellType()) {
-			case STRING -> cell.getStringCellValue();
-			case NUMERIC -> String.valueOf((int) cell.getNumericCellValue());
-			case BOOLEAN -> String.valueOf(cell.getBooleanCellValue());
-			case FORMULA -> {
-				try { yield cell.getStringCellValue(); }
-				catch (Exception e) {
-					try { yield String.valueOf((int) cell.getNumericCellValue()); }
-					catch (Exception e2) { yield null; }
-				}
-			}
-			default -> null;
+		return switch (cell.kind()) {
+			case STRING, BOOLEAN -> cell.text();
+			case NUMERIC -> String.valueOf(cell.number().intValue());
+			case FORMULA -> cell.text() != null ? cell.text()
+					: cell.number() != null ? String.valueOf(cell.number().intValue()) : null;
 		};
 	}
 
-	private Integer getCellNumericValue(Cell cell) {
+	private Integer getCellNumericValue(SheetCell cell) {
 		if (cell == null) return null;
-		return switch (cell.getCellType()) {
-			case NUMERIC -> (int) cell.getNumericCellValue();
+		return switch (cell.kind()) {
+			case NUMERIC -> cell.number().intValue();
 			case STRING -> {
-				try { yield Integer.parseInt(cell.getStringCellValue().trim()); }
+				try { yield Integer.parseInt(cell.text().trim()); }
 				catch (NumberFormatException e) { yield null; }
 			}
 			default -> null;
@@ -0,0 +1,340 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.config.SchedulingConfig;
+import com.alvaro.psicoapp.domain.BatchJobEntity;
+import com.alvaro.psicoapp.domain.TestEntity;
+import com.alvaro.psicoapp.dto.AdminDtos;
+import com.alvaro.psicoapp.repository.BatchJobRepository;
+import com.alvaro.psicoapp.repository.TestRepository;
+import com.alvaro.psicoapp.repository.UserAnswerRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Re-scores every user who answered a test, after an admin changed its questions, answer
+ * values or formulas. Users are paged by id (keyset), each page is scored and written in one
+ * transaction on a bounded worker pool, and the job's checkpoint (last user id of the
+ * contiguous prefix of finished pages) is persisted in batch_jobs after every page.
+ *
+ * Scoring is idempotent (results are upserts), so a page replayed after a crash or a cancel
+ * just rewrites the same rows. At most {@code threads} pages are in flight per job, which also
+ * bounds the DB connections it takes from the pool.
+ *
+ * The batch_jobs row is the job's state for every node behind the load balancer: start claims
+ * it under a row lock, the node running the job keeps it fresh with its checkpoints and a
+ * heartbeat, and status or cancel requests that land on another node read or flag the row.
+ * A RUNNING row that hasn't been updated for {@code staleAfterMs} belongs to a node that died
+ * and can be resumed.
+ */
+@Service
+public class TestRescoringService {
+    private static final Logger logger = LoggerFactory.getLogger(TestRescoringService.class);
+    private static final String KEY_PREFIX = "rescore:";
+
+    private final TestRepository testRepository;
+    private final UserAnswerRepository userAnswerRepository;
+    private final BatchJobRepository batchJobRepository;
+    private final TestResultService testResultService;
+    private final ScoringModelCache scoringModelCache;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int threads;
+    private final long staleAfterMs;
+    private final ExecutorService workers;
+    private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+
+    public TestRescoringService(TestRepository testRepository,
+                                UserAnswerRepository userAnswerRepository,
+                                BatchJobRepository batchJobRepository,
+                                TestResultService testResultService,
+                                ScoringModelCache scoringModelCache,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${app.rescore.chunk-size:500}") int chunkSize,
+                                @Value("${app.rescore.threads:4}") int threads,
+                                @Value("${app.rescore.stale-after-ms:120000}") long staleAfterMs) {
+        this.testRepository = testRepository;
+        this.userAnswerRepository = userAnswerRepository;
+        this.batchJobRepository = batchJobRepository;
+        this.testResultService = testResultService;
+        this.scoringModelCache = scoringModelCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.threads = threads;
+        this.staleAfterMs = staleAfterMs;
+        this.workers = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("rescore-", 0).daemon().factory());
+    }
+
+    /**
+     * Starts re-scoring a test, resuming from the last checkpoint unless the previous run
+     * completed or {@code restart} is set.
+     */
+    public AdminDtos.RescoreStatus start(Long testId, boolean restart) {
+        if (!testRepository.existsById(testId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Test no encontrado");
+        }
+        long total = userAnswerRepository.countAnsweringUsers(testId);
+        BatchJobEntity checkpoint;
+        try {
+            checkpoint = transactionTemplate.execute(s -> claim(testId, restart, total));
+        } catch (DataIntegrityViolationException e) {
+            // Another node inserted the first row for this test at the same time
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Ya hay un recálculo en curso para este test");
+        }
+
+        Job job = new Job(testId, checkpoint);
+        jobs.put(testId, job);
+        logger.info("Re-scoring test {} from user id {} ({} users answered)", testId, job.cursor, job.total);
+        Thread.ofPlatform().name("rescore-job-" + testId).daemon().start(() -> run(job));
+        return status(job);
+    }
+
+    public AdminDtos.RescoreStatus getStatus(Long testId) {
+        Job job = jobs.get(testId);
+        if (job != null) return status(job);
+        BatchJobEntity checkpoint = batchJobRepository.findById(KEY_PREFIX + testId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No hay recálculos para este test"));
+        return status(testId, checkpoint);
+    }
+
+    /**
+     * Stops paging; pages already in flight are finished and checkpointed before the job ends.
+     */
+    public AdminDtos.RescoreStatus cancel(Long testId) {
+        Job job = jobs.get(testId);
+        if (job != null) {
+            job.cancelRequested = true;
+            return status(job);
+        }
+        // Running on another node: it sees the flag at its next checkpoint or heartbeat
+        BatchJobEntity checkpoint = transactionTemplate.execute(s -> {
+            BatchJobEntity row = batchJobRepository.findByIdForUpdate(KEY_PREFIX + testId)
+                    .filter(this::isLive)
+                    .orElseThrow(() -> new ResponseStatusException(HttpStatus.CONFLICT, "No hay un recálculo en curso para este test"));
+            row.setStatus(BatchJobEntity.CANCELLING);
+            return batchJobRepository.save(row);
+        });
+        return status(testId, checkpoint);
+    }
+
+    /**
+     * Refreshes the rows of the jobs running here, so other nodes don't take them for dead
+     * while a slow page runs, and picks up cancels requested through other nodes.
+     */
+    @Scheduled(fixedDelayString = "${app.rescore.heartbeat-ms:30000}", scheduler = SchedulingConfig.PERIODIC)
+    @ClusterJob(ClusterJob.Mode.EVERY_NODE)
+    void heartbeat() {
+        for (Job job : jobs.values()) {
+            try {
+                checkpoint(job, BatchJobEntity.RUNNING, null);
+            } catch (RuntimeException e) {
+                logger.warn("Re-scoring heartbeat for test {} failed: {}", job.testId, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        jobs.values().forEach(job -> job.cancelRequested = true);
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private void run(Job job) {
+        Deque<Chunk> inFlight = new ArrayDeque<>();
+        String outcome = BatchJobEntity.COMPLETED;
+        String message = null;
+        try {
+            long after = job.cursor;
+            while (!job.cancelRequested) {
+                List<Long> userIds = userAnswerRepository.findAnsweringUserIdsAfter(job.testId, after, PageRequest.of(0, chunkSize));
+                if (userIds.isEmpty()) break;
+                after = userIds.get(userIds.size() - 1);
+                inFlight.add(new Chunk(after, userIds.size(), workers.submit(() -> rescoreChunk(job.testId, userIds))));
+                if (inFlight.size() >= threads) completeOldest(job, inFlight);
+            }
+            while (!inFlight.isEmpty()) completeOldest(job, inFlight);
+            if (job.cancelRequested) outcome = BatchJobEntity.CANCELLED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            outcome = BatchJobEntity.CANCELLED;
+        } catch (Exception e) {
+            logger.error("Re-scoring of test {} failed after user id {}", job.testId, job.cursor, e);
+            outcome = BatchJobEntity.FAILED;
+            message = e instanceof ExecutionException && e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            inFlight.forEach(chunk -> chunk.future.cancel(false));
+        } finally {
+            try {
+                checkpoint(job, outcome, message);
+            } finally {
+                jobs.remove(job.testId, job);
+            }
+            logger.info("Re-scoring of test {} {}: {} users re-scored, {} failed",
+                    job.testId, outcome.toLowerCase(), job.processed.get(), job.failed.get());
+        }
+    }
+
+    // Pages finish out of order; the checkpoint only moves past a page once all earlier ones are done
+    private void completeOldest(Job job, Deque<Chunk> inFlight) throws InterruptedException, ExecutionException {
+        Chunk chunk = inFlight.poll();
+        int failed = chunk.future.get();
+        job.processed.addAndGet(chunk.size - failed);
+        job.failed.addAndGet(failed);
+        job.cursor = chunk.lastUserId;
+        checkpoint(job, BatchJobEntity.RUNNING, null);
+    }
+
+    /**
+     * @return number of users that could not be re-scored
+     */
+    private int rescoreChunk(Long testId, List<Long> userIds) {
+        try {
+            transactionTemplate.executeWithoutResult(s -> scoreAndSave(testId, userIds));
+            return 0;
+        } catch (RuntimeException e) {
+            logger.warn("Re-scoring {} users of test {} failed, retrying one by one: {}", userIds.size(), testId, e.getMessage());
+        }
+        int failed = 0;
+        for (Long userId : userIds) {
+            try {
+                transactionTemplate.executeWithoutResult(s -> scoreAndSave(testId, List.of(userId)));
+            } catch (RuntimeException e) {
+                failed++;
+                logger.error("Re-scoring user {} of test {} failed", userId, testId, e);
+            }
+        }
+        return failed;
+    }
+
+    private void scoreAndSave(Long testId, List<Long> userIds) {
+        TestEntity test = testRepository.findById(testId).orElseThrow();
+        ScoringModel model = scoringModelCache.get(test);
+        List<Object[]> rows = userAnswerRepository.findScoringRowsForUsers(userIds, testId);
+
+        // Rows come grouped by user; score each user's slice
+        List<Long> scoredUsers = new ArrayList<>(userIds.size());
+        List<ScoringModel.Scores> scores = new ArrayList<>(userIds.size());
+        int from = 0;
+        for (int i = 1; i <= rows.size(); i++) {
+            if (i == rows.size() || !rows.get(i)[3].equals(rows.get(from)[3])) {
+                scoredUsers.add((Long) rows.get(from)[3]);
+                scores.add(model.score(rows.subList(from, i)));
+                from = i;
+            }
+        }
+        if (!scoredUsers.isEmpty()) {
+            testResultService.saveScores(model, scoredUsers, scores);
+        }
+    }
+
+    /**
+     * Takes the test's row under a row lock, so only one node starts its re-scoring; a row left
+     * RUNNING by a node that stopped updating it is taken over and resumed.
+     */
+    private BatchJobEntity claim(Long testId, boolean restart, long total) {
+        BatchJobEntity checkpoint = batchJobRepository.findByIdForUpdate(KEY_PREFIX + testId).orElse(null);
+        if (checkpoint != null && isLive(checkpoint)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Ya hay un recálculo en curso para este test");
+        }
+        Instant now = Instant.now();
+        if (restart || checkpoint == null || BatchJobEntity.COMPLETED.equals(checkpoint.getStatus())) {
+            checkpoint = new BatchJobEntity();
+            checkpoint.setJobKey(KEY_PREFIX + testId);
+            checkpoint.setStartedAt(now);
+        }
+        checkpoint.setStatus(BatchJobEntity.RUNNING);
+        checkpoint.setTotal(total);
+        checkpoint.setMessage(null);
+        checkpoint.setFinishedAt(null);
+        checkpoint.setUpdatedAt(now);
+        return batchJobRepository.save(checkpoint);
+    }
+
+    private void checkpoint(Job job, String status, String message) {
+        transactionTemplate.executeWithoutResult(s -> {
+            BatchJobEntity checkpoint = batchJobRepository.findByIdForUpdate(KEY_PREFIX + job.testId).orElseThrow();
+            boolean active = BatchJobEntity.RUNNING.equals(checkpoint.getStatus())
+                    || BatchJobEntity.CANCELLING.equals(checkpoint.getStatus());
+            // A heartbeat racing the final checkpoint must not reopen the job
+            if (BatchJobEntity.RUNNING.equals(status) && !active) return;
+            if (BatchJobEntity.CANCELLING.equals(checkpoint.getStatus())) job.cancelRequested = true;
+            checkpoint.setStatus(BatchJobEntity.RUNNING.equals(status) && job.cancelRequested ? BatchJobEntity.CANCELLING : status);
+            checkpoint.setCursorId(job.cursor);
+            checkpoint.setProcessed(job.processed.get());
+            checkpoint.setFailed(job.failed.get());
+            checkpoint.setMessage(message);
+            checkpoint.setUpdatedAt(Instant.now());
+            if (!BatchJobEntity.RUNNING.equals(status)) checkpoint.setFinishedAt(Instant.now());
+            batchJobRepository.save(checkpoint);
+        });
+    }
+
+    /** Whether a node is running the job: RUNNING or CANCELLING, and updated recently */
+    private boolean isLive(BatchJobEntity checkpoint) {
+        boolean active = BatchJobEntity.RUNNING.equals(checkpoint.getStatus())
+                || BatchJobEntity.CANCELLING.equals(checkpoint.getStatus());
+        return active && checkpoint.getUpdatedAt().isAfter(Instant.now().minusMillis(staleAfterMs));
+    }
+
+    /** Status as last written by whichever node runs or ran the job */
+    private AdminDtos.RescoreStatus status(Long testId, BatchJobEntity checkpoint) {
+        String status = checkpoint.getStatus();
+        boolean active = BatchJobEntity.RUNNING.equals(status) || BatchJobEntity.CANCELLING.equals(status);
+        // Left running by a node that stopped updating it: crashed or shut down mid-job
+        if (active && !isLive(checkpoint)) status = "INTERRUPTED";
+        return new AdminDtos.RescoreStatus(testId, status, checkpoint.getProcessed(), checkpoint.getFailed(),
+                checkpoint.getTotal(), checkpoint.getCursorId(), 0.0, checkpoint.getStartedAt(),
+                checkpoint.getUpdatedAt(), checkpoint.getFinishedAt(), checkpoint.getMessage());
+    }
+
+    private AdminDtos.RescoreStatus status(Job job) {
+        long seconds = Math.max(1, Duration.between(job.runStartedAt, Instant.now()).toSeconds());
+        double usersPerSecond = (double) (job.processed.get() - job.processedAtStart) / seconds;
+        return new AdminDtos.RescoreStatus(job.testId, job.cancelRequested ? "CANCELLING" : BatchJobEntity.RUNNING,
+                job.processed.get(), job.failed.get(), job.total, job.cursor, usersPerSecond,
+                job.startedAt, Instant.now(), null, null);
+    }
+
+    private record Chunk(long lastUserId, int size, Future<Integer> future) {}
+
+    private static final class Job {
+        final Long testId;
+        final Long total;
+        final Instant startedAt;
+        final Instant runStartedAt = Instant.now();
+        final long processedAtStart;
+        final AtomicLong processed;
+        final AtomicLong failed;
+        volatile long cursor;
+        volatile boolean cancelRequested;
+
+        Job(Long testId, BatchJobEntity checkpoint) {
+            this.testId = testId;
+            this.total = checkpoint.getTotal();
+            this.startedAt = checkpoint.getStartedAt();
+            this.processedAtStart = checkpoint.getProcessed();
+            this.processed = new AtomicLong(checkpoint.getProcessed());
+            this.failed = new AtomicLong(checkpoint.getFailed());
+            this.cursor = checkpoint.getCursorId();
+        }
+    }
+}
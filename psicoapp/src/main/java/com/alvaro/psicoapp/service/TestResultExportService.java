@@ -13,9 +13,12 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.IOException;
-
+/**
+ * Authorisation and auditing run synchronously; the workbook itself is written to the
+ * response by {@link ExcelExportService} after the controller returns.
+ */
 @Service
 public class TestResultExportService {
     private final UserRepository userRepository;
@@ -40,7 +43,7 @@ public class TestResultExportService {
     }
 
     @Transactional(readOnly = true)
-    public ResponseEntity<byte[]> exportUserTestResults(UserEntity requester, Long userId, Long testId) throws IOException {
+    public ResponseEntity<StreamingResponseBody> exportUserTestResults(UserEntity requester, Long userId, Long testId) {
 
         if (!RoleConstants.PSYCHOLOGIST.equals(requester.getRole())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Solo psicólogos pueden exportar resultados de pacientes");
@@ -56,15 +59,14 @@ public class TestResultExportService {
 
         auditService.logDataExport(requester.getId(), requester.getRole(), userId, "TEST_RESULTS", "EXCEL");
 
-        byte[] excelBytes = excelExportService.exportTestResults(userId, testId);
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
         headers.setContentDispositionFormData("attachment", "resultados_" + test.getCode() + "_" + user.getId() + ".xlsx");
-        return ResponseEntity.ok().headers(headers).body(excelBytes);
+        return ResponseEntity.ok().headers(headers).body(out -> excelExportService.writeTestResults(userId, testId, out));
     }
 
     @Transactional(readOnly = true)
-    public ResponseEntity<byte[]> exportUserAllResults(UserEntity requester, Long userId) throws IOException {
+    public ResponseEntity<StreamingResponseBody> exportUserAllResults(UserEntity requester, Long userId) {
 
         if (!RoleConstants.PSYCHOLOGIST.equals(requester.getRole())) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Solo psicólogos pueden exportar resultados de pacientes");
@@ -79,12 +81,11 @@ public class TestResultExportService {
 
         auditService.logDataExport(requester.getId(), requester.getRole(), userId, "ALL_TEST_RESULTS", "EXCEL");
 
-        byte[] excelBytes = excelExportService.exportUserResults(userId);
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
         String safeName = user.getName().replaceAll("[^a-zA-Z0-9]", "_");
         headers.setContentDispositionFormData("attachment", "resultados_" + safeName + ".xlsx");
-        return ResponseEntity.ok().headers(headers).body(excelBytes);
+        return ResponseEntity.ok().headers(headers).body(out -> excelExportService.writeUserResults(userId, out));
     }
 
     @Transactional
@@ -95,23 +96,21 @@ public class TestResultExportService {
     }
 
     @Transactional(readOnly = true)
-    public ResponseEntity<byte[]> exportMyResults(String principalEmail) throws IOException {
+    public ResponseEntity<StreamingResponseBody> exportMyResults(String principalEmail) {
         UserEntity user = userRepository.findByEmail(principalEmail).orElseThrow();
-        byte[] excelBytes = excelExportService.exportUserResults(user.getId());
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
         headers.setContentDispositionFormData("attachment", "resultados_" + user.getEmail() + ".xlsx");
-        return ResponseEntity.ok().headers(headers).body(excelBytes);
+        return ResponseEntity.ok().headers(headers).body(out -> excelExportService.writeUserResults(user.getId(), out));
     }
 
     @Transactional(readOnly = true)
-    public ResponseEntity<byte[]> exportMyTestResults(String principalEmail, Long testId) throws IOException {
+    public ResponseEntity<StreamingResponseBody> exportMyTestResults(String principalEmail, Long testId) {
         UserEntity user = userRepository.findByEmail(principalEmail).orElseThrow();
-        byte[] excelBytes = excelExportService.exportTestResults(user.getId(), testId);
         TestEntity test = testRepository.findById(testId).orElseThrow();
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
         headers.setContentDispositionFormData("attachment", "resultados_" + test.getCode() + ".xlsx");
-        return ResponseEntity.ok().headers(headers).body(excelBytes);
+        return ResponseEntity.ok().headers(headers).body(out -> excelExportService.writeTestResults(user.getId(), testId, out));
     }
 }
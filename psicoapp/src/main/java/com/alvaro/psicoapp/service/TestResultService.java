@@ -3,9 +3,11 @@ package com.alvaro.psicoapp.service;
 import com.alvaro.psicoapp.domain.*;
 import com.alvaro.psicoapp.dto.TestResultDtos;
 import com.alvaro.psicoapp.repository.*;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import com.alvaro.psicoapp.util.FormulaEvaluator;
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -16,12 +18,27 @@ public class TestResultService {
 	private final TestRepository testRepository;
 	private final TestResultRepository testResultRepository;
 	private final FactorResultRepository factorResultRepository;
-	private final SubfactorRepository subfactorRepository;
-	private final FactorRepository factorRepository;
-	private final QuestionRepository questionRepository;
-	private final AnswerRepository answerRepository;
 	private final UserPsychologistRepository userPsychologistRepository;
 	private final AuditService auditService;
+	private final ScoringModelCache scoringModelCache;
+	private final ScoreNormService scoreNormService;
+	private final JdbcTemplate jdbcTemplate;
+
+	private static final String UPSERT_TEST_RESULT_SQL =
+			"INSERT INTO test_results (user_id, test_id, subfactor_id, score, max_score, percentage, created_at) " +
+			"VALUES (?, ?, ?, ?, ?, ?, ?) " +
+			"ON CONFLICT (user_id, test_id, subfactor_id) DO UPDATE SET score = EXCLUDED.score, " +
+			"max_score = EXCLUDED.max_score, percentage = EXCLUDED.percentage, created_at = EXCLUDED.created_at";
+	private static final String UPSERT_FACTOR_RESULT_SQL =
+			"INSERT INTO factor_results (user_id, test_id, factor_id, score, max_score, percentage, created_at) " +
+			"VALUES (?, ?, ?, ?, ?, ?, ?) " +
+			"ON CONFLICT (user_id, test_id, factor_id) DO UPDATE SET score = EXCLUDED.score, " +
+			"max_score = EXCLUDED.max_score, percentage = EXCLUDED.percentage, created_at = EXCLUDED.created_at";
+	// Factor rows of the given users that are not among the (user, factor) pairs just scored
+	private static final String DELETE_STALE_FACTOR_RESULTS_SQL =
+			"DELETE FROM factor_results fr WHERE fr.test_id = ? AND fr.user_id = ANY (?) AND NOT EXISTS (" +
+			"SELECT 1 FROM unnest(?::bigint[], ?::bigint[]) AS s(user_id, factor_id) " +
+			"WHERE s.user_id = fr.user_id AND s.factor_id = fr.factor_id)";
 
 	public TestResultService(
 			UserAnswerRepository userAnswerRepository,
@@ -29,203 +46,155 @@ public class TestResultService {
 			TestRepository testRepository,
 			TestResultRepository testResultRepository,
 			FactorResultRepository factorResultRepository,
-			SubfactorRepository subfactorRepository,
-			FactorRepository factorRepository,
-			QuestionRepository questionRepository,
-			AnswerRepository answerRepository,
 			UserPsychologistRepository userPsychologistRepository,
-			AuditService auditService) {
+			AuditService auditService,
+			ScoringModelCache scoringModelCache,
+			ScoreNormService scoreNormService,
+			JdbcTemplate jdbcTemplate) {
 		this.userAnswerRepository = userAnswerRepository;
 		this.userRepository = userRepository;
 		this.testRepository = testRepository;
 		this.testResultRepository = testResultRepository;
 		this.factorResultRepository = factorResultRepository;
-		this.subfactorRepository = subfactorRepository;
-		this.factorRepository = factorRepository;
-		this.questionRepository = questionRepository;
-		this.answerRepository = answerRepository;
 		this.userPsychologistRepository = userPsychologistRepository;
 		this.auditService = auditService;
+		this.scoringModelCache = scoringModelCache;
+		this.scoreNormService = scoreNormService;
+		this.jdbcTemplate = jdbcTemplate;
 	}
 
+	/**
+	 * Scores the user's answers to a test and stores one row per subfactor and factor with a
+	 * result. The test structure comes from the cached {@link ScoringModel}, answers from a
+	 * single projection query; rows are written with two JDBC batch upserts.
+	 */
 	@Transactional
 	public void calculateAndSaveResults(UserEntity user, TemporarySessionEntity session, TestEntity test) {
-
-		List<UserAnswerEntity> userAnswers;
-		if (user != null) {
-			userAnswers = userAnswerRepository.findByUser(user).stream()
-					.filter(ua -> ua.getQuestion().getTest().getId().equals(test.getId()))
-					.collect(Collectors.toList());
-		} else if (session != null) {
-			userAnswers = userAnswerRepository.findBySession(session).stream()
-					.filter(ua -> ua.getQuestion().getTest().getId().equals(test.getId()))
-					.collect(Collectors.toList());
-		} else {
+		if (user == null && session == null) {
 			throw new IllegalArgumentException("Debe proporcionar usuario o sesión");
 		}
-
-		if (userAnswers.isEmpty()) {
+		// Anonymous sessions are scored once their answers are transferred to the new user
+		if (user == null) {
 			return;
 		}
 
-		if (user == null) {
+		List<Object[]> answers = userAnswerRepository.findScoringRows(user.getId(), test.getId());
+		if (answers.isEmpty()) {
 			return;
 		}
 
-		boolean useGaussian = "tca".equalsIgnoreCase(test.getCategory());
-
-		List<SubfactorEntity> subfactors = subfactorRepository.findByTestOrderByPositionAsc(test);
-
-		Map<Long, TestResultEntity> subfactorResults = new HashMap<>();
-		for (SubfactorEntity subfactor : subfactors) {
-
-			List<QuestionEntity> subfactorQuestions = questionRepository.findByTestAndSubfactor(test, subfactor);
-
-			double totalScore = 0.0;
-			double maxScore = 0.0;
+		ScoringModel model = scoringModelCache.get(test);
+		ScoringModel.Scores scores = model.score(answers);
 
-			for (QuestionEntity question : subfactorQuestions) {
-
-				Optional<UserAnswerEntity> userAnswer = userAnswers.stream()
-						.filter(ua -> ua.getQuestion().getId().equals(question.getId()))
-						.findFirst();
-
-				List<AnswerEntity> answers = answerRepository.findByQuestionOrderByPositionAsc(question);
-				double questionMaxScore = answers.stream()
-						.mapToDouble(a -> a.getValue() != null ? a.getValue().doubleValue() : 0.0)
-						.max()
-						.orElse(0.0);
-				maxScore += questionMaxScore;
-
-				if (userAnswer.isPresent()) {
-					UserAnswerEntity ua = userAnswer.get();
-					double score = 0.0;
-
-					if (ua.getAnswer() != null && ua.getAnswer().getValue() != null) {
-						score = ua.getAnswer().getValue().doubleValue();
-					} else if (ua.getNumericValue() != null) {
-						score = ua.getNumericValue();
-					}
-
-					// Items inversos: invertir la puntuación
-					if (Boolean.TRUE.equals(question.getInverse()) && questionMaxScore > 0) {
-						score = questionMaxScore - score;
-					}
+		// Pending JPA changes (e.g. answers saved in this transaction) must reach the DB first
+		testResultRepository.flush();
+		saveScores(model, List.of(user.getId()), List.of(scores));
+	}
 
-					totalScore += score;
-				}
+	/**
+	 * Writes the scores of one or more users of the same test with one batch per table.
+	 * Subfactors without a result keep their previous row; factors are replaced as a whole,
+	 * so stale rows for factors without a result are removed. The population norms are
+	 * updated with the replaced and new values after commit.
+	 */
+	@Transactional
+	public void saveScores(ScoringModel model, List<Long> userIds, List<ScoringModel.Scores> scores) {
+		List<Object[]> subfactorRows = new ArrayList<>();
+		List<Object[]> factorRows = new ArrayList<>();
+		for (int u = 0; u < userIds.size(); u++) {
+			Long userId = userIds.get(u);
+			ScoringModel.Scores userScores = scores.get(u);
+			for (int i = 0; i < model.subfactorCount(); i++) {
+				double max = userScores.subfactorMax(i);
+				if (max <= 0) continue;
+				double score = userScores.subfactorScore(i);
+				subfactorRows.add(new Object[]{userId, model.subfactorId(i), score, max, model.percentage(score, max)});
 			}
-
-			if (maxScore > 0) {
-				double percentage = useGaussian
-						? FormulaEvaluator.gaussianPercentile(totalScore, maxScore)
-						: (totalScore / maxScore) * 100.0;
-
-				List<TestResultEntity> existingResults = testResultRepository.findByUserAndTest(user, test);
-				for (TestResultEntity existing : existingResults) {
-					if (existing.getSubfactor() != null && existing.getSubfactor().getId().equals(subfactor.getId())) {
-						testResultRepository.delete(existing);
-					}
-				}
-
-				testResultRepository.flush();
-
-				TestResultEntity result = new TestResultEntity();
-				result.setUser(user);
-				result.setTest(test);
-				result.setSubfactor(subfactor);
-				result.setScore(totalScore);
-				result.setMaxScore(maxScore);
-				result.setPercentage(percentage);
-				testResultRepository.save(result);
-				subfactorResults.put(subfactor.getId(), result);
+			for (int i = 0; i < model.factorCount(); i++) {
+				double max = userScores.factorMax(i);
+				if (max <= 0) continue;
+				double score = userScores.factorScore(i);
+				factorRows.add(new Object[]{userId, model.factorId(i), score, max, model.percentage(score, max)});
 			}
 		}
 
-		// Build subfactor scores by code for formula evaluation
-		Map<String, double[]> subfactorScoresByCode = new HashMap<>();
-		for (SubfactorEntity sf : subfactors) {
-			TestResultEntity r = subfactorResults.get(sf.getId());
-			if (r != null) {
-				subfactorScoresByCode.put(sf.getCode(), new double[]{r.getScore(), r.getMaxScore()});
-			}
+		Long testId = model.getTestId();
+		List<ScoreNormService.Change> removed = previousValues(testId, userIds, subfactorRows);
+		List<ScoreNormService.Change> added = new ArrayList<>(subfactorRows.size() + factorRows.size());
+		for (Object[] row : subfactorRows) {
+			added.add(new ScoreNormService.Change(ScoreNormEntity.SUBFACTOR, (Long) row[1], (Double) row[2], (Double) row[3]));
 		}
-		Set<String> allSubfactorCodes = subfactors.stream()
-				.map(SubfactorEntity::getCode).collect(Collectors.toSet());
-
-		// Two-pass factor evaluation:
-		// Pass 1: factors whose formulas only reference subfactors
-		// Pass 2: factors whose formulas reference other factors (e.g. IG = INV + IV)
-		List<FactorEntity> factors = factorRepository.findByTestOrderByPositionAsc(test);
-		Map<String, double[]> factorScoresByCode = new HashMap<>();
-
-		List<FactorEntity> pass1 = new ArrayList<>();
-		List<FactorEntity> pass2 = new ArrayList<>();
-		for (FactorEntity factor : factors) {
-			String formula = factor.getFormula();
-			if (formula != null && !formula.isBlank()
-					&& FormulaEvaluator.referencesFactors(formula, allSubfactorCodes)) {
-				pass2.add(factor);
-			} else {
-				pass1.add(factor);
-			}
+		for (Object[] row : factorRows) {
+			added.add(new ScoreNormService.Change(ScoreNormEntity.FACTOR, (Long) row[1], (Double) row[2], (Double) row[3]));
 		}
 
-		// Delete existing factor results once
-		factorResultRepository.findByUserAndTest(user, test).forEach(factorResultRepository::delete);
-		factorResultRepository.flush();
-
-		for (FactorEntity factor : pass1) {
-			evaluateAndSaveFactor(factor, user, test, subfactorScoresByCode, factorScoresByCode, allSubfactorCodes, useGaussian);
-		}
-		for (FactorEntity factor : pass2) {
-			evaluateAndSaveFactor(factor, user, test, subfactorScoresByCode, factorScoresByCode, allSubfactorCodes, useGaussian);
+		Timestamp now = Timestamp.from(Instant.now());
+		upsert(UPSERT_TEST_RESULT_SQL, testId, subfactorRows, now);
+		Object[] scoredUsers = new Object[factorRows.size()];
+		Object[] scoredFactors = new Object[factorRows.size()];
+		for (int i = 0; i < factorRows.size(); i++) {
+			scoredUsers[i] = factorRows.get(i)[0];
+			scoredFactors[i] = factorRows.get(i)[1];
 		}
+		jdbcTemplate.update(DELETE_STALE_FACTOR_RESULTS_SQL, ps -> {
+			ps.setLong(1, testId);
+			ps.setArray(2, ps.getConnection().createArrayOf("bigint", userIds.toArray()));
+			ps.setArray(3, ps.getConnection().createArrayOf("bigint", scoredUsers));
+			ps.setArray(4, ps.getConnection().createArrayOf("bigint", scoredFactors));
+		});
+		upsert(UPSERT_FACTOR_RESULT_SQL, testId, factorRows, now);
+		scoreNormService.recordAfterCommit(testId, removed, added);
 	}
 
-	private void evaluateAndSaveFactor(FactorEntity factor, UserEntity user, TestEntity test,
-									   Map<String, double[]> subfactorScoresByCode,
-									   Map<String, double[]> factorScoresByCode,
-									   Set<String> allSubfactorCodes,
-									   boolean useGaussian) {
-		double totalScore;
-		double totalMax;
-		String formula = factor.getFormula();
-
-		if (formula != null && !formula.isBlank()) {
-			// Formula-based evaluation
-			double[] result = FormulaEvaluator.evaluate(formula, subfactorScoresByCode, factorScoresByCode, factor.getCode());
-			if (result == null) return;
-			totalScore = result[0];
-			totalMax = result[1];
-		} else {
-			// Fallback: simple sum of child subfactors (backwards compat for factors without formula)
-			List<SubfactorEntity> factorSubfactors = subfactorRepository.findByFactorId(factor.getId());
-			totalScore = 0.0;
-			totalMax = 0.0;
-			for (SubfactorEntity sf : factorSubfactors) {
-				double[] scores = subfactorScoresByCode.get(sf.getCode());
-				if (scores != null) {
-					totalScore += scores[0];
-					totalMax += scores[1];
-				}
-			}
-			if (totalMax <= 0) return;
-		}
+	/**
+	 * Current values that the write is about to replace: subfactor rows being upserted and
+	 * every factor row of these users (factors are rewritten or deleted as a whole).
+	 */
+	private List<ScoreNormService.Change> previousValues(Long testId, List<Long> userIds, List<Object[]> subfactorRows) {
+		Set<String> rewritten = new HashSet<>();
+		for (Object[] row : subfactorRows) rewritten.add(row[0] + ":" + row[1]);
+		Object[] users = userIds.toArray();
+		List<ScoreNormService.Change> removed = new ArrayList<>();
+		jdbcTemplate.query("SELECT user_id, subfactor_id, score, max_score FROM test_results WHERE test_id = ? AND user_id = ANY (?)",
+				ps -> {
+					ps.setLong(1, testId);
+					ps.setArray(2, ps.getConnection().createArrayOf("bigint", users));
+				},
+				rs -> {
+					if (rewritten.contains(rs.getLong(1) + ":" + rs.getLong(2))) {
+						removed.add(new ScoreNormService.Change(ScoreNormEntity.SUBFACTOR, rs.getLong(2), rs.getDouble(3), rs.getDouble(4)));
+					}
+				});
+		jdbcTemplate.query("SELECT factor_id, score, max_score FROM factor_results WHERE test_id = ? AND user_id = ANY (?)",
+				ps -> {
+					ps.setLong(1, testId);
+					ps.setArray(2, ps.getConnection().createArrayOf("bigint", users));
+				},
+				rs -> {
+					removed.add(new ScoreNormService.Change(ScoreNormEntity.FACTOR, rs.getLong(1), rs.getDouble(2), rs.getDouble(3)));
+				});
+		return removed;
+	}
+
+	private Double subfactorPercentile(TestResultEntity r) {
+		return scoreNormService.percentile(ScoreNormEntity.SUBFACTOR, r.getSubfactor().getId(), r.getScore(), r.getMaxScore());
+	}
+
+	private Double factorPercentile(FactorResultEntity r) {
+		return scoreNormService.percentile(ScoreNormEntity.FACTOR, r.getFactor().getId(), r.getScore(), r.getMaxScore());
+	}
 
-		double percentage = useGaussian
-				? FormulaEvaluator.gaussianPercentile(totalScore, totalMax)
-				: (totalScore / totalMax) * 100.0;
-		factorScoresByCode.put(factor.getCode(), new double[]{totalScore, totalMax});
-
-		FactorResultEntity factorResult = new FactorResultEntity();
-		factorResult.setUser(user);
-		factorResult.setTest(test);
-		factorResult.setFactor(factor);
-		factorResult.setScore(totalScore);
-		factorResult.setMaxScore(totalMax);
-		factorResult.setPercentage(percentage);
-		factorResultRepository.save(factorResult);
+	private void upsert(String sql, Long testId, List<Object[]> rows, Timestamp now) {
+		if (rows.isEmpty()) return;
+		jdbcTemplate.batchUpdate(sql, rows, rows.size(), (ps, row) -> {
+			ps.setLong(1, (Long) row[0]);
+			ps.setLong(2, testId);
+			ps.setLong(3, (Long) row[1]);
+			ps.setDouble(4, (Double) row[2]);
+			ps.setDouble(5, (Double) row[3]);
+			ps.setDouble(6, (Double) row[4]);
+			ps.setTimestamp(7, now);
+		});
 	}
 
 	@Transactional
@@ -338,7 +307,7 @@ public class TestResultService {
 					result.getSubfactor().getCode(), result.getSubfactor().getName(),
 					result.getScore(), result.getMaxScore(), result.getPercentage(),
 					result.getSubfactor().getMinLabel(), result.getSubfactor().getMaxLabel(),
-					result.getSubfactor().getCutoffs()));
+					result.getSubfactor().getCutoffs(), subfactorPercentile(result)));
 			testTitles.put(testId, result.getTest().getTitle());
 		}
 		for (FactorResultEntity result : factorResults) {
@@ -347,7 +316,7 @@ public class TestResultService {
 			factorsByTest.get(testId).add(new TestResultDtos.FactorResultDto(
 					result.getFactor().getCode(), result.getFactor().getName(),
 					result.getScore(), result.getMaxScore(), result.getPercentage(),
-					result.getFactor().getMinLabel(), result.getFactor().getMaxLabel()));
+					result.getFactor().getMinLabel(), result.getFactor().getMaxLabel(), factorPercentile(result)));
 		}
 		Set<Long> allTestIds = new HashSet<>();
 		allTestIds.addAll(subfactorsByTest.keySet());
@@ -369,12 +338,12 @@ public class TestResultService {
 				.map(r -> new TestResultDtos.SubfactorResultDto(r.getSubfactor().getCode(), r.getSubfactor().getName(),
 						r.getScore(), r.getMaxScore(), r.getPercentage(),
 						r.getSubfactor().getMinLabel(), r.getSubfactor().getMaxLabel(),
-						r.getSubfactor().getCutoffs()))
+						r.getSubfactor().getCutoffs(), subfactorPercentile(r)))
 				.collect(Collectors.toList());
 		var factors = factorResults.stream()
 				.map(r -> new TestResultDtos.FactorResultDto(r.getFactor().getCode(), r.getFactor().getName(),
 						r.getScore(), r.getMaxScore(), r.getPercentage(),
-						r.getFactor().getMinLabel(), r.getFactor().getMaxLabel()))
+						r.getFactor().getMinLabel(), r.getFactor().getMaxLabel(), factorPercentile(r)))
 				.collect(Collectors.toList());
 		return new TestResultDtos.TestResultsResponse(test.getId(), test.getTitle(), subfactors, factors);
 	}
@@ -409,11 +378,11 @@ public class TestResultService {
 				r.getSubfactor().getId(), r.getSubfactor().getCode(), r.getSubfactor().getName(),
 				r.getScore(), r.getMaxScore(), r.getPercentage(),
 				r.getSubfactor().getMinLabel(), r.getSubfactor().getMaxLabel(),
-				r.getSubfactor().getCutoffs())).collect(Collectors.toList());
+				r.getSubfactor().getCutoffs(), subfactorPercentile(r))).collect(Collectors.toList());
 		var factors = factorResults.stream().map(r -> new TestResultDtos.FactorResultDetailDto(
 				r.getFactor().getId(), r.getFactor().getCode(), r.getFactor().getName(),
 				r.getScore(), r.getMaxScore(), r.getPercentage(),
-				r.getFactor().getMinLabel(), r.getFactor().getMaxLabel())).collect(Collectors.toList());
+				r.getFactor().getMinLabel(), r.getFactor().getMaxLabel(), factorPercentile(r))).collect(Collectors.toList());
 		return new TestResultDtos.UserTestResultsResponse(user.getId(), user.getEmail(), test.getId(), test.getTitle(), subfactors, factors);
 	}
 }
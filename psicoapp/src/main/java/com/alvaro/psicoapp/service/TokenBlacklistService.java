@@ -1,5 +1,6 @@
 package com.alvaro.psicoapp.service;
 
+import com.alvaro.psicoapp.config.SchedulingConfig;
 import com.alvaro.psicoapp.domain.TokenBlacklistEntity;
 import com.alvaro.psicoapp.repository.TokenBlacklistRepository;
 import com.alvaro.psicoapp.security.JwtService;
@@ -75,7 +76,7 @@ public class TokenBlacklistService {
     /**
      * Scheduled cleanup of expired blacklist entries every 15 minutes.
      */
-    @Scheduled(fixedRate = 900000)
+    @Scheduled(fixedRate = 900000, scheduler = SchedulingConfig.PERIODIC)
     @Transactional
     public void cleanupExpiredEntries() {
         int removed = tokenBlacklistRepository.deleteExpiredTokens(Instant.now());
@@ -0,0 +1,203 @@
+package com.alvaro.psicoapp.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed upload storage shared by task files, clinic documents and avatars.
+ *
+ * An upload is spooled once into the staging directory (a rename when the multipart temp file
+ * is on the same filesystem) and hashed with SHA-256 in a single read; the blob is stored as
+ * &lt;sha256&gt;.&lt;ext&gt; in its namespace, so identical uploads share one object. Each
+ * namespace/key has a reference count in stored_blobs, taken in the caller's transaction and
+ * dropped by {@link #release}; the object is deleted once the last reference is gone.
+ *
+ * Writers of the same key are serialised with a transaction-scoped advisory lock, so a blob
+ * being deleted and stored again at the same time can't end up referenced but missing.
+ * Files stored before this (random UUID names, no row) are deleted on their first release.
+ * Avatars get thumbnails rendered after the upload commits and removed with the original.
+ */
+@Service
+public class UploadStorageService {
+    private static final Logger logger = LoggerFactory.getLogger(UploadStorageService.class);
+    private static final Pattern EXTENSION = Pattern.compile("[a-z0-9]{1,10}");
+
+    public static final String TASKS = "tasks";
+    public static final String CLINIC_DOCS = "clinic-docs";
+    public static final String AVATARS = "avatars";
+
+    public record StoredFile(String key, String sha256, long size, boolean deduplicated) {}
+
+    private final BlobStore blobStore;
+    private final AvatarThumbnailService avatarThumbnailService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Path stagingDir;
+
+    public UploadStorageService(BlobStore blobStore, AvatarThumbnailService avatarThumbnailService,
+                                JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                @Value("${app.storage.staging-dir:uploads/.staging}") String stagingDir) {
+        this.blobStore = blobStore;
+        this.avatarThumbnailService = avatarThumbnailService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionTemplate.PROPAGATION_REQUIRES_NEW);
+        this.stagingDir = Paths.get(stagingDir).toAbsolutePath();
+    }
+
+    /**
+     * Stores the upload and takes a reference to it in the current transaction. If the
+     * transaction rolls back, the reference is dropped and a blob nobody else uses is deleted.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public StoredFile store(String namespace, MultipartFile file) {
+        Path staged = null;
+        try {
+            Files.createDirectories(stagingDir);
+            staged = Files.createTempFile(stagingDir, "upload-", ".tmp");
+            // File overload: Tomcat renames its spooled part instead of copying when it can
+            file.transferTo(staged.toFile());
+            long size = Files.size(staged);
+            String sha256 = sha256(staged);
+            String key = sha256 + extension(file.getOriginalFilename());
+
+            lock(namespace, key);
+            boolean deduplicated = reference(namespace, key, sha256, size);
+            if (!deduplicated || !blobStore.exists(namespace, key)) {
+                blobStore.put(namespace, key, staged, sha256, file.getContentType());
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    if (AVATARS.equals(namespace) && !deduplicated) avatarThumbnailService.generateAsync(key);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) deleteIfUnreferenced(namespace, key);
+                }
+            });
+            return new StoredFile(key, sha256, size, deduplicated);
+        } catch (IOException e) {
+            logger.error("Error al guardar archivo en {}", namespace, e);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Error al guardar el archivo");
+        } finally {
+            if (staged != null) {
+                try { Files.deleteIfExists(staged); } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    /**
+     * Drops one reference; once the transaction commits, a blob without references is deleted.
+     */
+    @Transactional
+    public void release(String namespace, String key) {
+        if (key == null || key.isBlank()) return;
+        lock(namespace, key);
+        jdbcTemplate.update("UPDATE stored_blobs SET ref_count = ref_count - 1, updated_at = now() "
+                + "WHERE namespace = ? AND object_key = ? AND ref_count > 0", namespace, key);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deleteIfUnreferenced(namespace, key);
+            }
+        });
+    }
+
+    /**
+     * @param storedPath a stored path or name such as /uploads/tasks/abc.pdf or clinic-docs/abc.pdf
+     * @return the key within its namespace
+     */
+    public static String keyOf(String storedPath) {
+        if (storedPath == null) return null;
+        return storedPath.substring(storedPath.lastIndexOf('/') + 1);
+    }
+
+    /** @return true if the key already had a row, i.e. the content was uploaded before */
+    private boolean reference(String namespace, String key, String sha256, long size) {
+        List<Integer> previous = jdbcTemplate.queryForList(
+                "SELECT ref_count FROM stored_blobs WHERE namespace = ? AND object_key = ?", Integer.class, namespace, key);
+        jdbcTemplate.update("INSERT INTO stored_blobs (namespace, object_key, sha256, size_bytes, ref_count, created_at, updated_at) "
+                + "VALUES (?, ?, ?, ?, 1, now(), now()) "
+                + "ON CONFLICT (namespace, object_key) DO UPDATE SET ref_count = stored_blobs.ref_count + 1, updated_at = now()",
+                namespace, key, sha256, size);
+        return !previous.isEmpty() && previous.get(0) > 0;
+    }
+
+    private void deleteIfUnreferenced(String namespace, String key) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                lock(namespace, key);
+                List<Integer> refs = jdbcTemplate.queryForList(
+                        "SELECT ref_count FROM stored_blobs WHERE namespace = ? AND object_key = ?", Integer.class, namespace, key);
+                if (!refs.isEmpty() && refs.get(0) > 0) return;
+                jdbcTemplate.update("DELETE FROM stored_blobs WHERE namespace = ? AND object_key = ?", namespace, key);
+                try {
+                    blobStore.delete(namespace, key);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                if (AVATARS.equals(namespace)) avatarThumbnailService.delete(key);
+            });
+        } catch (RuntimeException e) {
+            logger.warn("No se pudo borrar el archivo {}/{}", namespace, key, e);
+        }
+    }
+
+    private void lock(String namespace, String key) {
+        jdbcTemplate.queryForList("SELECT pg_advisory_xact_lock(hashtextextended(?, 0))", namespace + "/" + key);
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String extension(String originalFilename) {
+        if (originalFilename == null) return "";
+        int dot = originalFilename.lastIndexOf('.');
+        if (dot < 0) return "";
+        String ext = originalFilename.substring(dot + 1).toLowerCase(Locale.ROOT);
+        return EXTENSION.matcher(ext).matches() ? "." + ext : "";
+    }
+}
@@ -9,15 +9,19 @@ import com.alvaro.psicoapp.repository.AppointmentRepository;
 import com.alvaro.psicoapp.repository.PsychAbsenceRepository;
 import com.alvaro.psicoapp.repository.PsychologistProfileRepository;
 import com.alvaro.psicoapp.repository.WeeklyScheduleRepository;
+import com.alvaro.psicoapp.util.IntervalIndex;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.time.*;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -25,20 +29,33 @@ import java.util.stream.Collectors;
 public class WeeklyScheduleService {
     private static final Logger logger = LoggerFactory.getLogger(WeeklyScheduleService.class);
     private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final int INSERT_BATCH_SIZE = 100;
+    /** Weeks of FREE slots the Sunday job and "generate now" create */
+    public static final int WEEKS_AHEAD = 2;
+    private static final String INSERT_FREE_SLOT_SQL =
+            "INSERT INTO appointments (psychologist_id, start_time, end_time, status, price, tax_exempt, tax_rate, " +
+            "tax_amount, total_amount, payment_status, created_at, modality, payment_method, billing_type, version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 'ONLINE', 'STRIPE', 'PRIVATE', 0)";
 
     private final WeeklyScheduleRepository weeklyScheduleRepository;
     private final AppointmentRepository appointmentRepository;
     private final PsychAbsenceRepository psychAbsenceRepository;
     private final PsychologistProfileRepository psychologistProfileRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final AvailabilityIndex availabilityIndex;
 
     public WeeklyScheduleService(WeeklyScheduleRepository weeklyScheduleRepository,
                                   AppointmentRepository appointmentRepository,
                                   PsychAbsenceRepository psychAbsenceRepository,
-                                  PsychologistProfileRepository psychologistProfileRepository) {
+                                  PsychologistProfileRepository psychologistProfileRepository,
+                                  JdbcTemplate jdbcTemplate,
+                                  AvailabilityIndex availabilityIndex) {
         this.weeklyScheduleRepository = weeklyScheduleRepository;
         this.appointmentRepository = appointmentRepository;
         this.psychAbsenceRepository = psychAbsenceRepository;
         this.psychologistProfileRepository = psychologistProfileRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.availabilityIndex = availabilityIndex;
     }
 
     @Transactional(readOnly = true)
@@ -115,18 +132,25 @@ public class WeeklyScheduleService {
             sessionPrice = BigDecimal.ZERO;
         }
 
-        // Get the psychologist UserEntity from one of the schedule entries
-        UserEntity psychologist = schedule.get(0).getPsychologist();
+        // Virtual slots may be materialised concurrently; the load below must see them
+        AvailabilityEngine.lockSlots(jdbcTemplate, psychologistId);
 
         ZonedDateTime now = ZonedDateTime.now(AppTimezone.APP_ZONE);
-        LocalDate startDate = now.toLocalDate();
-        // If it's past midday, start from tomorrow to avoid creating slots in the past today
-        if (now.getHour() >= 12) {
-            startDate = startDate.plusDays(1);
+        Instant[] horizon = horizon(now, weeksAhead);
+        LocalDate startDate = horizon[0].atZone(AppTimezone.APP_ZONE).toLocalDate();
+        LocalDate endDate = horizon[1].atZone(AppTimezone.APP_ZONE).toLocalDate();
+
+        // One load of everything that can collide inside the horizon; conflicts are then resolved in memory
+        IntervalIndex<Boolean> taken = new IntervalIndex<>();
+        for (Object[] row : appointmentRepository.findActiveIntervals(psychologistId, horizon[0], horizon[1])) {
+            taken.add((Instant) row[1], (Instant) row[2], Boolean.TRUE);
+        }
+        IntervalIndex<Boolean> absences = new IntervalIndex<>();
+        for (PsychAbsenceEntity absence : psychAbsenceRepository.findOverlapping(psychologistId, horizon[0], horizon[1])) {
+            absences.add(absence.getStartTime(), absence.getEndTime(), Boolean.TRUE);
         }
-        LocalDate endDate = startDate.plusWeeks(weeksAhead);
 
-        int created = 0;
+        List<Instant[]> newSlots = new ArrayList<>();
         int skipped = 0;
 
         for (LocalDate date = startDate; date.isBefore(endDate); date = date.plusDays(1)) {
@@ -137,26 +161,47 @@ public class WeeklyScheduleService {
                 if (!entry.getDayOfWeek().equals(dayOfWeek)) continue;
 
                 // Process block 1
-                var result1 = generateSlotsForBlock(psychologist, date, entry.getStartTime1(), entry.getEndTime1(), sessionPrice, now);
-                created += result1[0];
-                skipped += result1[1];
+                skipped += collectSlotsForBlock(date, entry.getStartTime1(), entry.getEndTime1(), now, taken, absences, newSlots);
 
                 // Process block 2 if present
                 if (entry.getStartTime2() != null && entry.getEndTime2() != null) {
-                    var result2 = generateSlotsForBlock(psychologist, date, entry.getStartTime2(), entry.getEndTime2(), sessionPrice, now);
-                    created += result2[0];
-                    skipped += result2[1];
+                    skipped += collectSlotsForBlock(date, entry.getStartTime2(), entry.getEndTime2(), now, taken, absences, newSlots);
                 }
             }
         }
 
-        logger.info("Generated slots for psychologist {}: {} created, {} skipped", psychologistId, created, skipped);
-        return new GenerateResult(created, skipped);
+        insertFreeSlots(psychologistId, newSlots, sessionPrice);
+        if (!newSlots.isEmpty()) {
+            // Batch inserts bypass JPA, so the cached window is dropped rather than patched
+            availabilityIndex.invalidate(psychologistId);
+        }
+
+        logger.info("Generated slots for psychologist {}: {} created, {} skipped", psychologistId, newSlots.size(), skipped);
+        return new GenerateResult(newSlots.size(), skipped);
+    }
+
+    /**
+     * The days generateSlots fills when run at {@code now}, as [start, end): weeksAhead weeks from
+     * today, or from tomorrow once it's past midday. AvailabilityEngine offers the same window.
+     */
+    static Instant[] horizon(ZonedDateTime now, int weeksAhead) {
+        LocalDate startDate = now.toLocalDate();
+        // If it's past midday, start from tomorrow to avoid creating slots in the past today
+        if (now.getHour() >= 12) {
+            startDate = startDate.plusDays(1);
+        }
+        return new Instant[]{startDate.atStartOfDay(AppTimezone.APP_ZONE).toInstant(),
+                startDate.plusWeeks(weeksAhead).atStartOfDay(AppTimezone.APP_ZONE).toInstant()};
     }
 
-    private int[] generateSlotsForBlock(UserEntity psychologist, LocalDate date, String startTimeStr, String endTimeStr,
-                                         BigDecimal price, ZonedDateTime now) {
-        int created = 0;
+    /**
+     * Walks a schedule block hour by hour and appends the free candidates to {@code out}.
+     * Accepted slots are added to {@code taken} so a later block can't produce a duplicate.
+     *
+     * @return number of skipped candidates
+     */
+    private int collectSlotsForBlock(LocalDate date, String startTimeStr, String endTimeStr, ZonedDateTime now,
+                                     IntervalIndex<Boolean> taken, IntervalIndex<Boolean> absences, List<Instant[]> out) {
         int skipped = 0;
 
         LocalTime blockStart = LocalTime.parse(startTimeStr);
@@ -167,73 +212,50 @@ public class WeeklyScheduleService {
             LocalTime slotEnd = slotStart.plusHours(1);
 
             ZonedDateTime startZdt = ZonedDateTime.of(date, slotStart, AppTimezone.APP_ZONE);
-            ZonedDateTime endZdt = ZonedDateTime.of(date, slotEnd, AppTimezone.APP_ZONE);
-
             Instant startInstant = startZdt.toInstant();
-            Instant endInstant = endZdt.toInstant();
-
-            // Skip if slot is in the past
-            if (startZdt.isBefore(now)) {
-                skipped++;
-                slotStart = slotEnd;
-                continue;
-            }
-
-            // Check for existing appointment at this time (any status)
-            boolean appointmentExists = hasExistingAppointment(psychologist.getId(), startInstant, endInstant);
-            if (appointmentExists) {
-                skipped++;
-                slotStart = slotEnd;
-                continue;
-            }
+            Instant endInstant = ZonedDateTime.of(date, slotEnd, AppTimezone.APP_ZONE).toInstant();
+            slotStart = slotEnd;
 
-            // Check for absences overlapping this slot
-            boolean absenceExists = hasAbsenceOverlap(psychologist.getId(), startInstant, endInstant);
-            if (absenceExists) {
+            // Skip if the slot is in the past, collides with an existing appointment (any status
+            // except CANCELLED) or falls inside an absence
+            if (startZdt.isBefore(now)
+                    || taken.overlaps(startInstant, endInstant)
+                    || absences.overlaps(startInstant, endInstant)) {
                 skipped++;
-                slotStart = slotEnd;
                 continue;
             }
 
-            // Create the FREE appointment slot
-            AppointmentEntity appointment = new AppointmentEntity();
-            appointment.setPsychologist(psychologist);
-            appointment.setStartTime(startInstant);
-            appointment.setEndTime(endInstant);
-            appointment.setStatus(AppointmentStatusEnum.FREE);
-            appointment.setPrice(price);
-            // Tax: default exempt (sanitary service)
-            appointment.setTaxExempt(true);
-            appointment.setTaxRate(BigDecimal.ZERO);
-            appointment.setTaxAmount(BigDecimal.ZERO);
-            appointment.setTotalAmount(price);
-
-            appointmentRepository.save(appointment);
-            created++;
-
-            slotStart = slotEnd;
+            taken.add(startInstant, endInstant, Boolean.TRUE);
+            out.add(new Instant[]{startInstant, endInstant});
         }
 
-        return new int[]{created, skipped};
+        return skipped;
     }
 
-    private boolean hasExistingAppointment(Long psychologistId, Instant start, Instant end) {
-        // Find appointments that overlap with [start, end)
-        // An existing appointment overlaps if its start < end AND its end > start
-        List<AppointmentEntity> existing = appointmentRepository
-                .findByPsychologist_IdAndStartTimeBetweenOrderByStartTimeAsc(
-                        psychologistId, start.minusSeconds(3599), end.plusSeconds(3599));
-        return existing.stream()
-                .filter(apt -> AppointmentStatusEnum.CANCELLED != apt.getStatus())
-                .anyMatch(apt -> start.isBefore(apt.getEndTime()) && end.isAfter(apt.getStartTime()));
-    }
-
-    private boolean hasAbsenceOverlap(Long psychologistId, Instant start, Instant end) {
-        List<PsychAbsenceEntity> absences = psychAbsenceRepository.findOverlapping(psychologistId, start, end);
-        return !absences.isEmpty();
+    /**
+     * Inserts FREE slots with JDBC batches. JPA can't batch these: appointments use IDENTITY ids,
+     * which makes Hibernate issue one INSERT per entity. Runs inside the caller's transaction.
+     */
+    private void insertFreeSlots(Long psychologistId, List<Instant[]> slots, BigDecimal price) {
+        if (slots.isEmpty()) return;
+        Timestamp createdAt = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate(INSERT_FREE_SLOT_SQL, slots, INSERT_BATCH_SIZE, (ps, slot) -> {
+            ps.setLong(1, psychologistId);
+            ps.setTimestamp(2, Timestamp.from(slot[0]));
+            ps.setTimestamp(3, Timestamp.from(slot[1]));
+            ps.setString(4, AppointmentStatusEnum.FREE.name());
+            ps.setBigDecimal(5, price);
+            // Tax: default exempt (sanitary service)
+            ps.setBoolean(6, true);
+            ps.setBigDecimal(7, BigDecimal.ZERO);
+            ps.setBigDecimal(8, BigDecimal.ZERO);
+            ps.setBigDecimal(9, price);
+            ps.setString(10, PaymentStatusEnum.PENDING.name());
+            ps.setTimestamp(11, createdAt);
+        });
     }
 
-    private BigDecimal getSessionPrice(Long psychologistId) {
+    public BigDecimal getSessionPrice(Long psychologistId) {
         return psychologistProfileRepository.findByUser_Id(psychologistId)
                 .map(profile -> {
                     String pricesJson = profile.getSessionPrices();
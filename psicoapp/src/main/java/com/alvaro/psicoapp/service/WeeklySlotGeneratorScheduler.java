@@ -1,13 +1,21 @@
 package com.alvaro.psicoapp.service;
 
+import com.alvaro.psicoapp.config.SchedulingConfig;
 import com.alvaro.psicoapp.dto.WeeklyScheduleDtos.GenerateResult;
 import com.alvaro.psicoapp.repository.WeeklyScheduleRepository;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Component
 public class WeeklySlotGeneratorScheduler {
@@ -15,19 +23,35 @@ public class WeeklySlotGeneratorScheduler {
 
     private final WeeklyScheduleService weeklyScheduleService;
     private final WeeklyScheduleRepository weeklyScheduleRepository;
+    private final JobLeaseService jobLeases;
+    // Bounded so a full run never takes more than a few connections from the Hikari pool
+    private final ExecutorService executor;
 
     public WeeklySlotGeneratorScheduler(WeeklyScheduleService weeklyScheduleService,
-                                         WeeklyScheduleRepository weeklyScheduleRepository) {
+                                         WeeklyScheduleRepository weeklyScheduleRepository,
+                                         JobLeaseService jobLeases,
+                                         @Value("${app.slots.generator-threads:4}") int generatorThreads) {
         this.weeklyScheduleService = weeklyScheduleService;
         this.weeklyScheduleRepository = weeklyScheduleRepository;
+        this.jobLeases = jobLeases;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, generatorThreads),
+                Thread.ofPlatform().name("slot-generator-", 1).daemon().factory());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
     }
 
     /**
      * Runs every Sunday at 2AM (Europe/Madrid).
      * Generates FREE appointment slots for the next 2 weeks
      * based on each psychologist's weekly schedule.
+     * Psychologists are processed in parallel, each one in its own transaction. With several
+     * replicas they are split by ID range and each node generates the ranges it claims.
      */
-    @Scheduled(cron = "0 0 2 * * SUN")
+    @Scheduled(cron = "0 0 2 * * SUN", scheduler = SchedulingConfig.BULK)
+    @ClusterJob(ClusterJob.Mode.PARTITIONED)
     public void generateWeeklySlots() {
         logger.info("Starting weekly slot generation...");
 
@@ -38,23 +62,44 @@ public class WeeklySlotGeneratorScheduler {
             return;
         }
 
+        long minId = Collections.min(psychologistIds);
+        long maxId = Collections.max(psychologistIds);
+        jobLeases.forEachPartition(minId, maxId, partition -> {
+            List<Long> ids = psychologistIds.stream().filter(partition::contains).toList();
+            if (!ids.isEmpty()) generate(ids, partition);
+        });
+    }
+
+    private void generate(List<Long> psychologistIds, JobLeaseService.Partition partition) {
+        List<Future<GenerateResult>> futures = new ArrayList<>(psychologistIds.size());
+        for (Long psychId : psychologistIds) {
+            futures.add(executor.submit(() -> weeklyScheduleService.generateSlots(psychId, WeeklyScheduleService.WEEKS_AHEAD)));
+        }
+
         int totalCreated = 0;
         int totalSkipped = 0;
         int errors = 0;
 
-        for (Long psychId : psychologistIds) {
+        for (int i = 0; i < futures.size(); i++) {
+            Long psychId = psychologistIds.get(i);
             try {
-                GenerateResult result = weeklyScheduleService.generateSlots(psychId, 2);
+                GenerateResult result = futures.get(i).get();
                 totalCreated += result.slotsCreated();
                 totalSkipped += result.slotsSkipped();
                 logger.info("Psychologist {}: {} created, {} skipped", psychId, result.slotsCreated(), result.slotsSkipped());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                logger.warn("Weekly slot generation interrupted after {} psychologists", i);
+                return;
             } catch (Exception e) {
                 errors++;
-                logger.error("Error generating slots for psychologist {}: {}", psychId, e.getMessage(), e);
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                logger.error("Error generating slots for psychologist {}: {}", psychId, cause.getMessage(), cause);
             }
         }
 
-        logger.info("Weekly slot generation completed: {} psychologists processed, {} slots created, {} skipped, {} errors",
-                psychologistIds.size(), totalCreated, totalSkipped, errors);
+        logger.info("Weekly slot generation completed for partition {}/{}: {} psychologists processed, {} slots created, {} skipped, {} errors",
+                partition.index() + 1, partition.count(), psychologistIds.size(), totalCreated, totalSkipped, errors);
     }
 }
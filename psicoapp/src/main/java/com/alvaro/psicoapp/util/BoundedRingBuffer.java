@@ -0,0 +1,113 @@
+package com.alvaro.psicoapp.util;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer/multi-consumer queue backed by a ring of slots.
+ *
+ * Each slot carries a sequence number that tells producers and consumers whose turn it is,
+ * so offer/poll only contend on a single CAS of the tail/head counter and never block.
+ * {@link #offer} returns false when the ring is full; what to do then (wait, spill, drop)
+ * is up to the caller. Capacity is rounded up to a power of two.
+ */
+public final class BoundedRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> items;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong(); // next position to read
+    private final AtomicLong tail = new AtomicLong(); // next position to write
+
+    public BoundedRingBuffer(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        int size = capacity == 1 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.items = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+    }
+
+    /**
+     * @return false if the ring is full
+     */
+    public boolean offer(E item) {
+        if (item == null) throw new NullPointerException();
+        long pos = tail.get();
+        for (;;) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    items.set(index, item);
+                    // Publishes the item: consumers wait for sequence == pos + 1
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                // Another producer claimed this position; retry with the new tail
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * @return the oldest item, or null if the ring is empty
+     */
+    public E poll() {
+        long pos = head.get();
+        for (;;) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    E item = items.getAndSet(index, null);
+                    // Frees the slot for the producer one lap ahead
+                    sequences.set(index, pos + mask + 1);
+                    return item;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    /**
+     * Moves up to {@code max} items into {@code out}.
+     *
+     * @return number of items moved
+     */
+    public int drainTo(Collection<? super E> out, int max) {
+        int moved = 0;
+        E item;
+        while (moved < max && (item = poll()) != null) {
+            out.add(item);
+            moved++;
+        }
+        return moved;
+    }
+
+    /**
+     * Approximate under concurrent use.
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -6,6 +6,7 @@ import java.util.*;
  * Parses and evaluates factor formulas like "A+F+N(-)+Q2(-)" or "INV+IV".
  * Terms are subfactor/factor codes separated by '+'. Codes may contain
  * suffixes like "(-)" which are part of the code, not operators.
+ * Formulas are compiled once per test ({@link #compile}) and evaluated over a score table.
  */
 public final class FormulaEvaluator {
 
@@ -47,64 +48,132 @@ public final class FormulaEvaluator {
 	}
 
 	/**
-	 * Returns true if any term in the formula is NOT a known subfactor code,
-	 * meaning the formula references other factors and needs pass-2 evaluation.
+	 * Factor formulas of one test compiled into an evaluation plan. Scores live in a single
+	 * table: indexes [0, subfactorCount) are subfactors, the next factorCount entries factors.
+	 * Each factor is an array of table indexes to sum, and factors are evaluated in
+	 * dependency order, so factors built on other factors (IG = INV + IV) need no extra pass.
 	 */
-	public static boolean referencesFactors(String formula, Set<String> subfactorCodes) {
-		for (String term : parseTerms(formula)) {
-			if (!subfactorCodes.contains(term)) {
-				return true;
+	public static final class CompiledFormulas {
+		private final int subfactorCount;
+		private final int[][] terms;
+		private final int[] order;
+		private final boolean cyclic;
+
+		private CompiledFormulas(int subfactorCount, int[][] terms, int[] order, boolean cyclic) {
+			this.subfactorCount = subfactorCount;
+			this.terms = terms;
+			this.order = order;
+			this.cyclic = cyclic;
+		}
+
+		public int subfactorCount() { return subfactorCount; }
+		public int factorCount() { return terms.length; }
+		public int tableSize() { return subfactorCount + terms.length; }
+		public int factorSlot(int factorIndex) { return subfactorCount + factorIndex; }
+		/** True if the formulas had a dependency cycle (only possible when compiled non-strict). */
+		public boolean isCyclic() { return cyclic; }
+
+		/**
+		 * Fills the factor entries of the table from the subfactor entries, in place and
+		 * without allocating. Entries with max &lt;= 0 mean "no result" and are skipped as terms,
+		 * like unresolvable codes.
+		 */
+		public void evaluate(double[] score, double[] max) {
+			for (int f : order) {
+				double total = 0.0;
+				double totalMax = 0.0;
+				for (int t : terms[f]) {
+					if (max[t] <= 0) continue;
+					total += score[t];
+					totalMax += max[t];
+				}
+				int slot = subfactorCount + f;
+				if (totalMax > 0) {
+					score[slot] = total;
+					max[slot] = totalMax;
+				} else {
+					score[slot] = 0.0;
+					max[slot] = 0.0;
+				}
 			}
 		}
-		return false;
 	}
 
 	/**
-	 * Evaluates a formula by resolving each term against subfactor scores first,
-	 * then factor scores. Returns {score, maxScore} or null if any term is unresolved.
+	 * Parses every factor formula of a test once and orders the factors topologically.
+	 * Terms resolve to a subfactor code first, then to another factor's code; self references
+	 * and unknown codes are dropped. Ties keep position order.
 	 *
-	 * @param formula          e.g. "A+F+N(-)+Q2(-)"
-	 * @param subfactorScores  map of subfactor code → double[]{score, maxScore}
-	 * @param factorScores     map of factor code → double[]{score, maxScore}
-	 * @param selfCode         the factor's own code, excluded from lookups to avoid self-reference
+	 * @param subfactorCodes subfactor codes, by subfactor index
+	 * @param factorCodes    factor codes, by factor index
+	 * @param formulas       formula per factor; null or blank means "sum of {@code children}"
+	 * @param children       child subfactor indexes per factor, used for factors without formula
+	 * @param strict         if true a dependency cycle throws; otherwise factors in a cycle are
+	 *                       evaluated in position order and see not-yet-evaluated factors as missing
+	 * @throws IllegalArgumentException on a cycle in strict mode
 	 */
-	public static double[] evaluate(String formula,
-									Map<String, double[]> subfactorScores,
-									Map<String, double[]> factorScores,
-									String selfCode) {
-		List<String> terms = parseTerms(formula);
-		if (terms.isEmpty()) {
-			return null;
-		}
-
-		double totalScore = 0.0;
-		double totalMax = 0.0;
-
-		for (String term : terms) {
-			double[] resolved = null;
+	public static CompiledFormulas compile(List<String> subfactorCodes, List<String> factorCodes,
+										   List<String> formulas, int[][] children, boolean strict) {
+		int subfactorCount = subfactorCodes.size();
+		int factorCount = factorCodes.size();
+		Map<String, Integer> subfactorIndex = new HashMap<>();
+		for (int i = 0; i < subfactorCount; i++) subfactorIndex.putIfAbsent(subfactorCodes.get(i), i);
+		Map<String, Integer> factorIndex = new HashMap<>();
+		for (int i = 0; i < factorCount; i++) factorIndex.putIfAbsent(factorCodes.get(i), i);
 
-			// Try subfactor first
-			if (subfactorScores.containsKey(term)) {
-				resolved = subfactorScores.get(term);
-			}
-			// Then try factor (for calculated factors like IG = INV + IV)
-			else if (factorScores != null && !term.equals(selfCode) && factorScores.containsKey(term)) {
-				resolved = factorScores.get(term);
+		int[][] terms = new int[factorCount][];
+		List<Set<Integer>> dependencies = new ArrayList<>(factorCount);
+		for (int f = 0; f < factorCount; f++) {
+			Set<Integer> deps = new LinkedHashSet<>();
+			String formula = formulas.get(f);
+			if (formula == null || formula.isBlank()) {
+				terms[f] = children[f] != null ? children[f].clone() : new int[0];
+			} else {
+				List<Integer> resolved = new ArrayList<>();
+				for (String term : parseTerms(formula)) {
+					Integer sf = subfactorIndex.get(term);
+					if (sf != null) {
+						resolved.add(sf);
+						continue;
+					}
+					Integer other = factorIndex.get(term);
+					if (other != null && other != f) {
+						resolved.add(subfactorCount + other);
+						deps.add(other);
+					}
+				}
+				terms[f] = resolved.stream().mapToInt(Integer::intValue).toArray();
 			}
+			dependencies.add(deps);
+		}
 
-			if (resolved == null) {
-				// Term unresolvable — skip silently (subfactor may have 0 questions answered)
-				continue;
+		// Kahn-style ordering, picking the lowest ready index each round to keep position order
+		int[] order = new int[factorCount];
+		boolean[] done = new boolean[factorCount];
+		boolean cyclic = false;
+		for (int n = 0; n < factorCount; n++) {
+			int next = -1;
+			for (int f = 0; f < factorCount && next < 0; f++) {
+				if (!done[f] && allDone(dependencies.get(f), done)) next = f;
 			}
-
-			totalScore += resolved[0];
-			totalMax += resolved[1];
+			if (next < 0) {
+				if (strict) {
+					List<String> cycle = new ArrayList<>();
+					for (int f = 0; f < factorCount; f++) if (!done[f]) cycle.add(factorCodes.get(f));
+					throw new IllegalArgumentException("Dependencia circular entre factores: " + String.join(", ", cycle));
+				}
+				cyclic = true;
+				for (int f = 0; f < factorCount && next < 0; f++) if (!done[f]) next = f;
+			}
+			done[next] = true;
+			order[n] = next;
 		}
+		return new CompiledFormulas(subfactorCount, terms, order, cyclic);
+	}
 
-		if (totalMax <= 0) {
-			return null;
-		}
-		return new double[]{totalScore, totalMax};
+	private static boolean allDone(Set<Integer> deps, boolean[] done) {
+		for (int d : deps) if (!done[d]) return false;
+		return true;
 	}
 
 	/**
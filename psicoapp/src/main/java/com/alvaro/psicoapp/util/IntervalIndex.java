@@ -0,0 +1,139 @@
+package com.alvaro.psicoapp.util;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Sorted index of half-open time intervals [start, end) used for in-memory
+ * overlap checks (appointments, absences) instead of one DB range query per candidate.
+ *
+ * Intervals are keyed by start time; a lookup scans the entries whose start lies in
+ * [queryStart - maxLength, queryEnd), where maxLength is the longest interval currently held.
+ * That is O(log n + m), m being the entries starting in that range: close to the k matches
+ * when intervals have similar lengths (appointments), but one long interval widens every
+ * lookup, so long and short intervals belong in separate indexes (as absences and
+ * appointments are in AvailabilityIndex).
+ * Not thread-safe — callers that share an instance must synchronise externally.
+ */
+public final class IntervalIndex<T> {
+
+    public record Entry<T>(long start, long end, T value) {
+        public boolean overlaps(long otherStart, long otherEnd) {
+            return start < otherEnd && end > otherStart;
+        }
+    }
+
+    private final TreeMap<Long, List<Entry<T>>> byStart = new TreeMap<>();
+    // Count of held intervals per length, so maxLength shrinks back when the longest is removed
+    private final TreeMap<Long, Integer> lengths = new TreeMap<>();
+    private int size;
+
+    public void add(Instant start, Instant end, T value) {
+        add(start.toEpochMilli(), end.toEpochMilli(), value);
+    }
+
+    public void add(long start, long end, T value) {
+        if (end <= start) return;
+        byStart.computeIfAbsent(start, k -> new ArrayList<>(1)).add(new Entry<>(start, end, value));
+        lengths.merge(end - start, 1, Integer::sum);
+        size++;
+    }
+
+    /**
+     * Removes every entry starting at {@code start} whose value matches.
+     */
+    public boolean remove(Instant start, Predicate<T> matcher) {
+        List<Entry<T>> bucket = byStart.get(start.toEpochMilli());
+        if (bucket == null) return false;
+        int before = bucket.size();
+        removeMatching(bucket, matcher);
+        if (bucket.isEmpty()) byStart.remove(start.toEpochMilli());
+        return bucket.size() != before;
+    }
+
+    /**
+     * Removes every entry whose value matches, regardless of its position. O(n).
+     */
+    public boolean removeIf(Predicate<T> matcher) {
+        boolean removed = false;
+        Iterator<Map.Entry<Long, List<Entry<T>>>> it = byStart.entrySet().iterator();
+        while (it.hasNext()) {
+            List<Entry<T>> bucket = it.next().getValue();
+            if (removeMatching(bucket, matcher)) {
+                removed = true;
+                if (bucket.isEmpty()) it.remove();
+            }
+        }
+        return removed;
+    }
+
+    private boolean removeMatching(List<Entry<T>> bucket, Predicate<T> matcher) {
+        return bucket.removeIf(e -> {
+            if (!matcher.test(e.value())) return false;
+            lengths.computeIfPresent(e.end() - e.start(), (length, count) -> count > 1 ? count - 1 : null);
+            size--;
+            return true;
+        });
+    }
+
+    public boolean overlaps(Instant start, Instant end) {
+        return overlaps(start.toEpochMilli(), end.toEpochMilli(), null);
+    }
+
+    /**
+     * @param ignore entries whose value matches are skipped (e.g. the appointment being edited); may be null
+     */
+    public boolean overlaps(long start, long end, Predicate<T> ignore) {
+        for (List<Entry<T>> bucket : candidates(start, end).values()) {
+            for (Entry<T> e : bucket) {
+                if (e.overlaps(start, end) && (ignore == null || !ignore.test(e.value()))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public List<T> overlapping(Instant start, Instant end) {
+        long s = start.toEpochMilli();
+        long en = end.toEpochMilli();
+        List<T> result = new ArrayList<>();
+        for (List<Entry<T>> bucket : candidates(s, en).values()) {
+            for (Entry<T> e : bucket) {
+                if (e.overlaps(s, en)) result.add(e.value());
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Length of the longest interval held, in ms: how far back of a query a lookup scans */
+    public long maxLength() {
+        return lengths.isEmpty() ? 0 : lengths.lastKey();
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        byStart.clear();
+        lengths.clear();
+        size = 0;
+    }
+
+    private NavigableMap<Long, List<Entry<T>>> candidates(long start, long end) {
+        if (end <= start || byStart.isEmpty()) return Collections.emptyNavigableMap();
+        return byStart.subMap(start - maxLength(), true, end, false);
+    }
+}
@@ -0,0 +1,36 @@
+package com.alvaro.psicoapp.util;
+
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of reusable objects that are costly to create and not thread-safe (JCA
+ * Cipher/Mac instances). Stands in for a per-thread cache, which does nothing on virtual
+ * threads: each request gets a new thread, so every ThreadLocal is filled once and dropped.
+ *
+ * Never blocks: {@link #borrow} creates a new object when none is idle, and {@link #release}
+ * drops the object when {@code capacity} are already idle. Size it to the number of callers
+ * that can use an object at the same moment (CPU-bound work: the carrier threads).
+ */
+public final class ObjectPool<T> {
+    private final BoundedRingBuffer<T> idle;
+    private final Supplier<T> factory;
+
+    public ObjectPool(int capacity, Supplier<T> factory) {
+        this.idle = new BoundedRingBuffer<>(capacity);
+        this.factory = factory;
+    }
+
+    public T borrow() {
+        T item = idle.poll();
+        return item != null ? item : factory.get();
+    }
+
+    /** Returns an object taken with {@link #borrow}; the caller must not use it afterwards */
+    public void release(T item) {
+        idle.offer(item);
+    }
+
+    public int idle() {
+        return idle.size();
+    }
+}
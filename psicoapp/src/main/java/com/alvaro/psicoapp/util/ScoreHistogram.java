@@ -0,0 +1,177 @@
+package com.alvaro.psicoapp.util;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Distribution of one scale's scores, as counts over fixed bins of score / maxScore.
+ *
+ * Scores are sums of small integer answer values, so 200 bins (0.5% wide) keep distinct
+ * scores apart for any scale with max &lt;= 200 and lose nothing that matters beyond that.
+ * Updates are O(1); {@link #percentile} is O(1) on a cumulative table rebuilt lazily after
+ * changes. Values can be removed again, so a re-scored result replaces the old one.
+ */
+public final class ScoreHistogram {
+    public static final int BINS = 200;
+
+    private final long[] counts = new long[BINS];
+    private long total;
+    // Cumulative counts below each bin; null when stale
+    private volatile long[] cumulative;
+
+    public static int bin(double score, double maxScore) {
+        if (maxScore <= 0) return 0;
+        double ratio = score / maxScore;
+        // Epsilon keeps exact fractions like 3/20 from landing one bin low
+        int bin = (int) (ratio * BINS + 1e-9);
+        return Math.max(0, Math.min(BINS - 1, bin));
+    }
+
+    public synchronized void add(double score, double maxScore) {
+        counts[bin(score, maxScore)]++;
+        total++;
+        cumulative = null;
+    }
+
+    /**
+     * @return false if the value's bin was already empty and nothing was removed
+     */
+    public synchronized boolean remove(double score, double maxScore) {
+        int bin = bin(score, maxScore);
+        if (counts[bin] == 0) return false;
+        counts[bin]--;
+        total--;
+        cumulative = null;
+        return true;
+    }
+
+    /**
+     * Adds signed per-bin changes (e.g. another node's unflushed adds and removes); a bin
+     * never goes below zero.
+     */
+    public synchronized void addCounts(long[] delta) {
+        total = 0;
+        for (int b = 0; b < BINS; b++) {
+            counts[b] = Math.max(0, counts[b] + delta[b]);
+            total += counts[b];
+        }
+        cumulative = null;
+    }
+
+    /** Replaces every count at once, so readers never see a half-applied reload */
+    public synchronized void setCounts(long[] values) {
+        total = 0;
+        for (int b = 0; b < BINS; b++) {
+            counts[b] = Math.max(0, values[b]);
+            total += counts[b];
+        }
+        cumulative = null;
+    }
+
+    /** Copy of the per-bin counts */
+    public synchronized long[] counts() {
+        return counts.clone();
+    }
+
+    public synchronized long total() {
+        return total;
+    }
+
+    /**
+     * Mid-rank percentile (0-100) of a score within the population: share of results below
+     * its bin plus half of those in it.
+     */
+    public double percentile(double score, double maxScore) {
+        long[] cum = cumulative();
+        long n = cum[BINS];
+        if (n == 0) return 50.0;
+        int bin = bin(score, maxScore);
+        double below = cum[bin];
+        double within = cum[bin + 1] - cum[bin];
+        return (below + within / 2.0) / n * 100.0;
+    }
+
+    /**
+     * Score ratio (0-1, bin midpoint) at quantile q (0-1).
+     */
+    public double quantile(double q) {
+        long[] cum = cumulative();
+        long n = cum[BINS];
+        if (n == 0) return 0.0;
+        double rank = Math.max(1, Math.ceil(q * n));
+        for (int b = 0; b < BINS; b++) {
+            if (cum[b + 1] >= rank) return (b + 0.5) / BINS;
+        }
+        return 1.0;
+    }
+
+    /**
+     * Counts merged into {@code buckets} equal-width buckets, for charts.
+     */
+    public synchronized long[] buckets(int buckets) {
+        long[] out = new long[buckets];
+        for (int b = 0; b < BINS; b++) out[b * buckets / BINS] += counts[b];
+        return out;
+    }
+
+    private long[] cumulative() {
+        long[] cum = cumulative;
+        if (cum != null) return cum;
+        synchronized (this) {
+            cum = new long[BINS + 1];
+            for (int b = 0; b < BINS; b++) cum[b + 1] = cum[b] + counts[b];
+            cumulative = cum;
+            return cum;
+        }
+    }
+
+    /**
+     * Sparse encoding: (gap to previous non-empty bin, count) pairs as unsigned varints.
+     * A typical scale takes a few dozen bytes.
+     */
+    public synchronized byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int previous = -1;
+        for (int b = 0; b < BINS; b++) {
+            if (counts[b] == 0) continue;
+            writeVarint(out, b - previous);
+            writeVarint(out, counts[b]);
+            previous = b;
+        }
+        return out.toByteArray();
+    }
+
+    public static ScoreHistogram fromBytes(byte[] bytes) {
+        ScoreHistogram histogram = new ScoreHistogram();
+        if (bytes == null) return histogram;
+        int[] pos = {0};
+        int bin = -1;
+        while (pos[0] < bytes.length) {
+            bin += (int) readVarint(bytes, pos);
+            long count = readVarint(bytes, pos);
+            if (bin < 0 || bin >= BINS) throw new IllegalArgumentException("Histograma corrupto");
+            histogram.counts[bin] = count;
+            histogram.total += count;
+        }
+        return histogram;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(byte[] bytes, int[] pos) {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            if (pos[0] >= bytes.length || shift > 63) throw new IllegalArgumentException("Histograma corrupto");
+            byte b = bytes[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+            shift += 7;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+-- One result row per (user, test, subfactor) and per (user, test, factor), so scoring can
+-- write results with INSERT ... ON CONFLICT instead of delete + flush + insert.
+
+-- Keep only the newest row of any duplicate left by earlier concurrent submissions
+DELETE FROM test_results t
+USING test_results d
+WHERE t.user_id = d.user_id
+  AND t.test_id = d.test_id
+  AND t.subfactor_id = d.subfactor_id
+  AND t.id < d.id;
+
+DELETE FROM factor_results t
+USING factor_results d
+WHERE t.user_id = d.user_id
+  AND t.test_id = d.test_id
+  AND t.factor_id = d.factor_id
+  AND t.id < d.id;
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_test_results_user_test_subfactor
+    ON test_results(user_id, test_id, subfactor_id);
+CREATE UNIQUE INDEX IF NOT EXISTS ux_factor_results_user_test_factor
+    ON factor_results(user_id, test_id, factor_id);
@@ -0,0 +1,13 @@
+-- Checkpoints of resumable background jobs (bulk re-scoring, ...)
+CREATE TABLE IF NOT EXISTS batch_jobs (
+    job_key VARCHAR(100) PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    cursor_id BIGINT NOT NULL DEFAULT 0,
+    processed BIGINT NOT NULL DEFAULT 0,
+    failed BIGINT NOT NULL DEFAULT 0,
+    total BIGINT,
+    message VARCHAR(1000),
+    started_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    finished_at TIMESTAMP WITH TIME ZONE
+);
@@ -0,0 +1,14 @@
+-- Population score distribution per subfactor / factor, used for normed percentiles.
+-- bins holds sparse varint-encoded counts over 200 bins of score / max_score.
+CREATE TABLE IF NOT EXISTS score_norms (
+    id BIGSERIAL PRIMARY KEY,
+    test_id BIGINT NOT NULL,
+    scale_type VARCHAR(10) NOT NULL,
+    scale_id BIGINT NOT NULL,
+    sample_size BIGINT NOT NULL DEFAULT 0,
+    bins BYTEA NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    CONSTRAINT ux_score_norms_scale UNIQUE (scale_type, scale_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_score_norms_test ON score_norms(test_id);
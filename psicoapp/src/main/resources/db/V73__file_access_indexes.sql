@@ -0,0 +1,5 @@
+-- File download authorisation resolves a stored path to its owner with one indexed lookup
+CREATE INDEX IF NOT EXISTS idx_task_files_file_path ON task_files(file_path);
+CREATE INDEX IF NOT EXISTS idx_tasks_psychologist_id ON tasks(psychologist_id);
+CREATE INDEX IF NOT EXISTS idx_tasks_user_id ON tasks(user_id);
+CREATE INDEX IF NOT EXISTS idx_clinic_docs_company_file ON clinic_patient_documents(company_id, file_name);
@@ -0,0 +1,11 @@
+-- Content-addressed uploads: one row per stored object with its reference count
+CREATE TABLE IF NOT EXISTS stored_blobs (
+    namespace VARCHAR(50) NOT NULL,
+    object_key VARCHAR(100) NOT NULL,
+    sha256 CHAR(64) NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    ref_count INT NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (namespace, object_key)
+);
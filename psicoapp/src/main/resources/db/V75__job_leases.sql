@@ -0,0 +1,15 @@
+-- Leases of scheduled jobs across replicas (JobLeaseService). One row per job, plus one per
+-- ID-range partition of a partitioned job run (lease_key job@run#partition). last_run is the
+-- last cron occurrence run under a job lease, so a late replica can't take it again for that occurrence
+CREATE TABLE IF NOT EXISTS job_leases (
+    lease_key VARCHAR(200) PRIMARY KEY,
+    owner VARCHAR(200),
+    fencing_token BIGINT NOT NULL DEFAULT 0,
+    range_from BIGINT,
+    range_to BIGINT,
+    acquired_at TIMESTAMP WITH TIME ZONE,
+    heartbeat_at TIMESTAMP WITH TIME ZONE,
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    completed_at TIMESTAMP WITH TIME ZONE,
+    last_run TIMESTAMP WITH TIME ZONE
+);
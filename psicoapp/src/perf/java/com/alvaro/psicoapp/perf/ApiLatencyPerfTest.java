@@ -0,0 +1,213 @@
+package com.alvaro.psicoapp.perf;
+
+import com.alvaro.psicoapp.perf.PerfDataGenerator.Dataset;
+import com.alvaro.psicoapp.perf.PerfDataGenerator.Patient;
+import com.alvaro.psicoapp.perf.ScenarioRunner.Call;
+import com.alvaro.psicoapp.perf.ScenarioRunner.Result;
+import com.alvaro.psicoapp.perf.ScenarioRunner.Scenario;
+import com.alvaro.psicoapp.security.JwtService;
+import com.alvaro.psicoapp.service.ChatEncryptionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * p50/p99 of the main patient, psychologist and clinic endpoints against a generated dataset
+ * (see {@link PerfDataGenerator}), checked against perf/budgets.properties. Not part of the
+ * normal build (src/perf is only compiled with -Pperf); run with:
+ *
+ *   mvn -Pperf test
+ *   mvn -Pperf test -Dperf.scale.patients-per-psychologist=45 -Dperf.requests=1000
+ *
+ * Each run writes target/perf/perf-report-<platform|virtual>.json (scale, row counts,
+ * per-scenario latencies and SQL statements per request), so platform and virtual threads can
+ * be compared side by side under the same load:
+ *
+ *   mvn -Pperf test -Dperf.concurrency=200
+ *   mvn -Pperf test -Dperf.concurrency=200 -Dspring.threads.virtual.enabled=true
+ */
+@Tag("perf")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("perf")
+@Import(EmbeddedPostgresConfig.class)
+class ApiLatencyPerfTest {
+    private static final Logger logger = LoggerFactory.getLogger(ApiLatencyPerfTest.class);
+
+    /** Spreads consecutive requests across the dataset instead of walking it in order */
+    private static final int STRIDE = 7919;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired private JdbcTemplate jdbc;
+    @Autowired private ChatEncryptionService chatEncryptionService;
+    @Autowired private PasswordEncoder passwordEncoder;
+    @Autowired private JwtService jwtService;
+    @Autowired private MeterRegistry meterRegistry;
+    @Autowired private Environment env;
+
+    private final Map<String, String> tokens = new ConcurrentHashMap<>();
+
+    @Test
+    @DisplayName("Main endpoints stay within their latency budgets on a realistic dataset")
+    void endpointsStayWithinBudgets() throws Exception {
+        PerfScale scale = PerfScale.from(env);
+        Dataset data = new PerfDataGenerator(jdbc, chatEncryptionService, passwordEncoder, scale).generate();
+        int warmup = env.getProperty("perf.warmup", Integer.class, 50);
+        int requests = env.getProperty("perf.requests", Integer.class, 400);
+        int concurrency = env.getProperty("perf.concurrency", Integer.class, 8);
+
+        List<Result> results = new ArrayList<>();
+        try (ScenarioRunner runner = new ScenarioRunner(URI.create("http://localhost:" + port), concurrency, meterRegistry)) {
+            for (Scenario scenario : scenarios(data)) {
+                Result result = runner.run(scenario, warmup, requests);
+                logger.info("{}: p50 {} ms, p99 {} ms, max {} ms, {} SQL/request, {} errors", result.name(),
+                        fmt(result.p50Ms()), fmt(result.p99Ms()), fmt(result.maxMs()), fmt(result.sqlPerRequest()),
+                        result.errors());
+                results.add(result);
+            }
+        }
+        writeReport(scale, data, concurrency, threads(), results);
+
+        List<String> failures = checkBudgets(results, loadBudgets());
+        assertTrue(failures.isEmpty(), () -> "Perf budgets exceeded:\n  " + String.join("\n  ", failures));
+    }
+
+    private List<Scenario> scenarios(Dataset data) {
+        List<Patient> patients = data.patients();
+        List<Patient> chatPatients = data.chatPatients();
+        List<String> clinics = data.clinicEmails();
+        Instant now = Instant.now();
+        String agendaRange = "?from=" + now.minus(Duration.ofDays(7)) + "&to=" + now.plus(Duration.ofDays(7));
+
+        return List.of(
+                new Scenario("login", "POST", "/api/auth/login", i -> {
+                    Patient p = pick(patients, i);
+                    return new Call("/api/auth/login", null,
+                            "{\"email\":\"" + p.email() + "\",\"password\":\"" + PerfDataGenerator.PASSWORD + "\"}");
+                }),
+                get("patient.my-appointments", "/api/calendar/my-appointments",
+                        i -> patientCall(pick(patients, i), "/api/calendar/my-appointments")),
+                get("patient.past-appointments", "/api/calendar/past-appointments",
+                        i -> patientCall(pick(patients, i), "/api/calendar/past-appointments")),
+                get("patient.chat-history", "/api/chat/history",
+                        i -> patientCall(pick(chatPatients, i), "/api/chat/history")),
+                get("patient.matching", "/api/matching/psychologists",
+                        i -> patientCall(pick(patients, i), "/api/matching/psychologists")),
+                get("psychologist.patients", "/api/psych/patients",
+                        i -> psychologistCall(data, pick(patients, i), "/api/psych/patients")),
+                get("psychologist.chat-history", "/api/chat/history",
+                        i -> {
+                            Patient p = pick(chatPatients, i);
+                            return psychologistCall(data, p, "/api/chat/history?userId=" + p.id());
+                        }),
+                get("psychologist.mood-entries", "/api/psych/patients/{patientId}/mood-entries",
+                        i -> {
+                            Patient p = pick(patients, i);
+                            return psychologistCall(data, p, "/api/psych/patients/" + p.id() + "/mood-entries");
+                        }),
+                get("psychologist.billing-appointments", "/api/calendar/psychologist/billing-appointments",
+                        i -> psychologistCall(data, pick(patients, i), "/api/calendar/psychologist/billing-appointments")),
+                get("clinic.agenda", "/api/clinic/agenda",
+                        i -> new Call("/api/clinic/agenda" + agendaRange, token("company:" + pick(clinics, i)), null)),
+                get("clinic.patients", "/api/clinic/patients",
+                        i -> new Call("/api/clinic/patients", token("company:" + pick(clinics, i)), null)));
+    }
+
+    private static Scenario get(String name, String uri, IntFunction<Call> call) {
+        return new Scenario(name, "GET", uri, call);
+    }
+
+    private Call patientCall(Patient patient, String path) {
+        return new Call(path, token(patient.email()), null);
+    }
+
+    private Call psychologistCall(Dataset data, Patient patient, String path) {
+        return new Call(path, token(data.psychologistEmails().get(patient.psychologistId())), null);
+    }
+
+    private String token(String subject) {
+        return tokens.computeIfAbsent(subject, jwtService::generateAccessToken);
+    }
+
+    private static <T> T pick(List<T> values, int i) {
+        return values.get((int) ((long) i * STRIDE % values.size()));
+    }
+
+    private static Properties loadBudgets() throws IOException {
+        Properties budgets = new Properties();
+        try (InputStream in = ApiLatencyPerfTest.class.getResourceAsStream("/perf/budgets.properties")) {
+            budgets.load(in);
+        }
+        return budgets;
+    }
+
+    /** A scenario fails on any error response, or on a p50, p99 or SQL/request above its budget */
+    private static List<String> checkBudgets(List<Result> results, Properties budgets) {
+        List<String> failures = new ArrayList<>();
+        for (Result r : results) {
+            if (r.errors() > 0) {
+                failures.add(r.name() + ": " + r.errors() + " error responses " + r.statusCounts());
+            }
+            check(failures, r.name(), "p50", r.p50Ms(), budgets);
+            check(failures, r.name(), "p99", r.p99Ms(), budgets);
+            check(failures, r.name(), "sql", r.sqlPerRequest(), budgets);
+        }
+        return failures;
+    }
+
+    private static void check(List<String> failures, String scenario, String metric, double value, Properties budgets) {
+        String budget = budgets.getProperty(scenario + "." + metric);
+        if (budget != null && value > Double.parseDouble(budget)) {
+            failures.add(scenario + ": " + metric + " " + fmt(value) + " > budget " + budget);
+        }
+    }
+
+    private String threads() {
+        return env.getProperty("spring.threads.virtual.enabled", Boolean.class, false) ? "virtual" : "platform";
+    }
+
+    private static void writeReport(PerfScale scale, Dataset data, int concurrency, String threads,
+                                    List<Result> results) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("finishedAt", Instant.now().toString());
+        report.put("threads", threads);
+        report.put("scale", scale);
+        report.put("concurrency", concurrency);
+        report.put("rows", new TreeMap<>(data.rows()));
+        report.put("results", results);
+        Path dir = Files.createDirectories(Path.of("target", "perf"));
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(dir.resolve("perf-report-" + threads + ".json").toFile(), report);
+    }
+
+    private static String fmt(double value) {
+        return String.format(Locale.ROOT, "%.1f", value);
+    }
+}
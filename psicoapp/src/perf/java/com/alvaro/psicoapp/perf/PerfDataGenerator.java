@@ -0,0 +1,413 @@
+package com.alvaro.psicoapp.perf;
+
+import com.alvaro.psicoapp.config.AppTimezone;
+import com.alvaro.psicoapp.domain.RoleConstants;
+import com.alvaro.psicoapp.service.ChatEncryptionService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.*;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Fills an empty schema with clinics, psychologists and their patients, appointment history,
+ * ratings, mood diaries, matching test answers and encrypted chat, sized by {@link PerfScale}.
+ * Everything is drawn from one seeded Random, so a seed gives the same people, answers and
+ * calendar shape (relative to today) on every run.
+ *
+ * Rows go in with plain JDBC batches and explicit ids, then each identity sequence is moved
+ * past them so the application's own inserts keep working. Chat is the exception to "plain":
+ * messages are encrypted through {@link ChatEncryptionService}, which also creates the
+ * conversation rows and their salts, so the history endpoints decrypt real ciphertext.
+ */
+public class PerfDataGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(PerfDataGenerator.class);
+
+    /** Password of every generated account, clinics included */
+    public static final String PASSWORD = "perf-Password-1";
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int FIRST_HOUR = 9;
+    private static final int SESSION_MINUTES = 50;
+    private static final int WEEKS_AHEAD = 4;
+    private static final BigDecimal PRICE = new BigDecimal("60.00");
+
+    private static final List<String> FIRST_NAMES = List.of("Lucía", "Hugo", "Martina", "Mateo", "Sofía", "Leo",
+            "Julia", "Daniel", "Paula", "Pablo", "Valeria", "Álvaro", "Carmen", "Javier", "Elena", "Marcos");
+    private static final List<String> LAST_NAMES = List.of("García", "Martínez", "López", "Sánchez", "Pérez",
+            "Gómez", "Fernández", "Ruiz", "Díaz", "Moreno", "Álvarez", "Romero", "Navarro", "Torres");
+    private static final List<String> EMOTIONS = List.of("Alegría", "Tristeza", "Ansiedad", "Calma", "Enfado",
+            "Gratitud", "Cansancio", "Ilusión");
+    private static final List<String> ACTIVITIES = List.of("Trabajo", "Deporte", "Lectura", "Familia", "Amigos",
+            "Descanso", "Estudio");
+    private static final List<String> CHAT_LINES = List.of(
+            "Hola, ¿cómo has pasado la semana?",
+            "Bastante mejor, aunque el martes tuve un momento de ansiedad en el trabajo.",
+            "¿Pudiste aplicar la respiración que practicamos en la última sesión?",
+            "Sí, me ayudó a calmarme en unos minutos.",
+            "Me alegra leerlo. Apúntalo en el diario para comentarlo el jueves.",
+            "De acuerdo, ¿podemos cambiar la sesión a la tarde?",
+            "Claro, te propongo el jueves a las 18:00.",
+            "Perfecto, gracias.");
+
+    private static final String PATIENT_TEST = "PATIENT_MATCHING";
+    private static final String PSYCH_TEST = "PSYCHOLOGIST_MATCHING";
+    private static final int MATCHING_QUESTIONS = 16;
+
+    /** Answer texts the matching scorer looks for; positions missing here are free-text questions */
+    private static final Map<Integer, List<String>> PATIENT_OPTIONS = Map.of(
+            1, List.of("Terapia individual", "Terapia de pareja", "Terapia para menor de edad"),
+            6, List.of("Sí", "No"),
+            8, List.of("Ansiedad", "Estrés", "Depresión", "Problemas de pareja", "Duelo", "Autoestima",
+                    "Trauma o experiencias difíciles", "TDAH, atención u organización", "Adicciones o consumo"),
+            9, List.of("Menos de 1 mes", "1–6 meses", "Más de 6 meses", "Años"),
+            10, List.of("Poco", "Bastante", "Mucho", "Muchísimo"),
+            12, List.of("Sí", "No"),
+            13, List.of("Mujer", "Hombre", "Indiferente"),
+            14, List.of("Español", "Inglés", "Catalán"),
+            15, List.of("Más práctico", "Más exploratorio", "Equilibrado"),
+            16, List.of("Mañanas", "Tardes", "Fines de semana"));
+
+    private static final Map<Integer, List<String>> PSYCH_OPTIONS = Map.ofEntries(
+            Map.entry(1, List.of("Terapia individual adultos", "Terapia de pareja", "Terapia infantojuvenil")),
+            Map.entry(2, List.of("Sí", "No")),
+            Map.entry(3, List.of("< 1 año", "1–3 años", "3–7 años", "> 7 años")),
+            Map.entry(4, List.of("< 1 año", "1–3 años", "3–7 años", "> 7 años")),
+            Map.entry(5, List.of("Ansiedad", "Depresión", "Pareja", "Familia", "Duelo", "Trauma", "Autoestima",
+                    "Conducta alimentaria", "Adicciones", "Sexualidad", "TDAH")),
+            Map.entry(6, List.of("Casos leves", "Casos moderados", "Casos complejos", "Me adapto")),
+            Map.entry(8, List.of("Más práctica", "Más exploratoria", "Equilibrada")),
+            Map.entry(9, List.of("Adultos 18–30", "Adultos 30–50", "Adultos +50", "Todas las edades")),
+            Map.entry(10, List.of("Alta", "Media", "Baja")),
+            Map.entry(11, List.of("Español", "Inglés", "Catalán", "Francés")),
+            Map.entry(13, List.of("Mujer", "Hombre")),
+            Map.entry(14, List.of("Mañanas", "Tardes", "Fines de semana")),
+            Map.entry(16, List.of("Sí, habitualmente", "En algunos casos", "No")));
+
+    private static final Set<Integer> PATIENT_MULTIPLE = Set.of(8, 14, 16);
+    private static final Set<Integer> PSYCH_MULTIPLE = Set.of(1, 5, 11, 14);
+
+    public record Patient(long id, String email, long psychologistId, boolean hasChat) {}
+
+    public record Dataset(List<String> clinicEmails,
+                          Map<Long, String> psychologistEmails,
+                          List<Patient> patients,
+                          Map<String, Integer> rows) {
+
+        public List<Patient> chatPatients() {
+            return patients.stream().filter(Patient::hasChat).toList();
+        }
+    }
+
+    private record Question(long id, int position, List<Long> answerIds, boolean multiple) {}
+
+    private final JdbcTemplate jdbc;
+    private final ChatEncryptionService chatEncryptionService;
+    private final PasswordEncoder passwordEncoder;
+    private final PerfScale scale;
+    private final Random random;
+    private final Map<String, Integer> rows = new LinkedHashMap<>();
+
+    public PerfDataGenerator(JdbcTemplate jdbc, ChatEncryptionService chatEncryptionService,
+                             PasswordEncoder passwordEncoder, PerfScale scale) {
+        // One weekday slot per patient and psychologist, FIRST_HOUR..19:00, Monday to Friday
+        if (scale.patientsPerPsychologist() > 5 * (19 - FIRST_HOUR)) {
+            throw new IllegalArgumentException("patients-per-psychologist must be at most " + 5 * (19 - FIRST_HOUR));
+        }
+        this.jdbc = jdbc;
+        this.chatEncryptionService = chatEncryptionService;
+        this.passwordEncoder = passwordEncoder;
+        this.scale = scale;
+        this.random = new Random(scale.seed());
+    }
+
+    public Dataset generate() {
+        long started = System.nanoTime();
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        String passwordHash = passwordEncoder.encode(PASSWORD);
+
+        List<String> clinicEmails = clinics(passwordHash, now);
+        Map<Long, String> psychologistEmails = psychologists(passwordHash, now);
+        List<Patient> patients = patients(passwordHash, now, new ArrayList<>(psychologistEmails.keySet()));
+        appointments(patients, psychologistEmails.keySet(), now);
+        moodEntries(patients, now);
+        matchingAnswers(patients, psychologistEmails.keySet(), now);
+        patients = chat(patients, now);
+
+        for (String table : rows.keySet()) {
+            jdbc.queryForObject("SELECT setval(pg_get_serial_sequence(?, 'id'), (SELECT max(id) FROM " + table + "))",
+                    Long.class, table);
+        }
+        logger.info("Perf dataset (seed {}) generated in {} s: {}", scale.seed(),
+                Duration.ofNanos(System.nanoTime() - started).toSeconds(), rows);
+        return new Dataset(clinicEmails, psychologistEmails, patients, Map.copyOf(rows));
+    }
+
+    private List<String> clinics(String passwordHash, Instant now) {
+        List<String> emails = new ArrayList<>();
+        List<Object[]> batch = new ArrayList<>();
+        for (int c = 1; c <= scale.clinics(); c++) {
+            String email = "clinica" + c + "@perf.test";
+            emails.add(email);
+            batch.add(new Object[]{c, "Clínica Perf " + c, email, passwordHash, "PERF-CLINIC-" + c,
+                    ts(now.minus(Duration.ofDays(365L * scale.years()))), false});
+        }
+        insert("companies", "id, name, email, password_hash, referral_code, created_at, public_visible", batch);
+        return emails;
+    }
+
+    private Map<Long, String> psychologists(String passwordHash, Instant now) {
+        Map<Long, String> emails = new LinkedHashMap<>();
+        List<Object[]> users = new ArrayList<>();
+        List<Object[]> profiles = new ArrayList<>();
+        for (int p = 1; p <= scale.psychologists(); p++) {
+            int clinicIndex = (p - 1) / Math.max(1, scale.psychologistsPerClinic());
+            Long companyId = clinicIndex < scale.clinics() ? (long) clinicIndex + 1 : null;
+            String email = "psicologo" + p + "@perf.test";
+            emails.put((long) p, email);
+            users.add(user(p, email, RoleConstants.PSYCHOLOGIST, companyId, 30 + random.nextInt(30), passwordHash, now));
+            profiles.add(new Object[]{p, p, "Psicóloga sanitaria con enfoque cognitivo-conductual.",
+                    "[\"Español\",\"Inglés\"]", true, ts(now), "M-" + (10000 + p), ts(now), PRICE});
+        }
+        insert("users", USER_COLUMNS, users);
+        insert("psychologist_profiles",
+                "id, user_id, bio, languages, approved, approved_at, license_number, updated_at, default_price", profiles);
+        return emails;
+    }
+
+    private List<Patient> patients(String passwordHash, Instant now, List<Long> psychologistIds) {
+        List<Patient> patients = new ArrayList<>();
+        List<Object[]> users = new ArrayList<>();
+        List<Object[]> assignments = new ArrayList<>();
+        long id = psychologistIds.size();
+        for (long psychologistId : psychologistIds) {
+            for (int i = 0; i < scale.patientsPerPsychologist(); i++) {
+                id++;
+                String email = "paciente" + id + "@perf.test";
+                patients.add(new Patient(id, email, psychologistId, false));
+                users.add(user(id, email, RoleConstants.USER, null, 18 + random.nextInt(50), passwordHash, now));
+                assignments.add(new Object[]{id, psychologistId,
+                        ts(now.minus(Duration.ofDays(365L * scale.years() + 7))), "ACTIVE"});
+            }
+        }
+        insert("users", USER_COLUMNS, users);
+        insert("user_psychologist", "user_id, psychologist_id, assigned_at, status", assignments);
+        return patients;
+    }
+
+    private static final String USER_COLUMNS = "id, name, email, password_hash, role, company_id, age, gender, "
+            + "created_at, email_verified, failed_login_attempts, lockout_count, totp_enabled, dark_mode, is_full, "
+            + "gdpr_consent_at, gdpr_consent_version, health_data_consent_at";
+
+    private Object[] user(long id, String email, String role, Long companyId, int age, String passwordHash, Instant now) {
+        String name = pick(FIRST_NAMES) + " " + pick(LAST_NAMES) + " " + pick(LAST_NAMES);
+        Timestamp created = ts(now.minus(Duration.ofDays(365L * scale.years() + 14)));
+        return new Object[]{id, name, email, passwordHash, role, companyId, age, random.nextBoolean() ? "FEMALE" : "MALE",
+                created, true, 0, 0, false, false, false, created, "2.0", created};
+    }
+
+    /**
+     * Each patient keeps one weekly slot with their psychologist (weekday and hour from their
+     * index), so confirmed sessions never collide on the partial unique index; psychologists
+     * also publish a few free evening slots ahead.
+     */
+    private void appointments(List<Patient> patients, Collection<Long> psychologistIds, Instant now) {
+        LocalDate today = LocalDate.ofInstant(now, AppTimezone.APP_ZONE);
+        LocalDate firstMonday = today.minusYears(scale.years()).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        LocalDate end = today.plusWeeks(WEEKS_AHEAD);
+        List<Object[]> appointments = new ArrayList<>();
+        List<Object[]> ratings = new ArrayList<>();
+        long id = 0;
+        long ratingId = 0;
+
+        Map<Long, Integer> slotByPsychologist = new HashMap<>();
+        for (Patient patient : patients) {
+            int slot = slotByPsychologist.merge(patient.psychologistId(), 1, Integer::sum) - 1;
+            int day = slot % 5;
+            int hour = FIRST_HOUR + slot / 5;
+            for (LocalDate monday = firstMonday; monday.isBefore(end); monday = monday.plusWeeks(1)) {
+                Instant start = monday.plusDays(day).atTime(hour, 0).atZone(AppTimezone.APP_ZONE).toInstant();
+                boolean past = start.isBefore(now);
+                if (past && random.nextDouble() >= scale.attendance()) continue;
+                id++;
+                appointments.add(appointment(id, patient.psychologistId(), patient.id(), start, "CONFIRMED",
+                        past ? "PAID" : "PENDING"));
+                if (past && random.nextInt(3) == 0) {
+                    Timestamp rated = ts(start.plus(Duration.ofHours(2)));
+                    ratings.add(new Object[]{++ratingId, id, patient.id(), patient.psychologistId(),
+                            3 + random.nextInt(3), random.nextBoolean() ? "Muy buena sesión" : null, rated, rated});
+                }
+            }
+        }
+        for (long psychologistId : psychologistIds) {
+            for (LocalDate date = today.plusDays(1); date.isBefore(end); date = date.plusDays(1)) {
+                if (date.getDayOfWeek().getValue() > 5) continue;
+                Instant start = date.atTime(19, 0).atZone(AppTimezone.APP_ZONE).toInstant();
+                appointments.add(appointment(++id, psychologistId, null, start, "FREE", "PENDING"));
+            }
+        }
+        insert("appointments", "id, psychologist_id, user_id, start_time, end_time, status, price, tax_exempt, "
+                + "total_amount, created_at, confirmed_at, payment_status, service, modality, payment_method, "
+                + "billing_type, version", appointments);
+        insert("appointment_ratings",
+                "id, appointment_id, user_id, psychologist_id, rating, comment, created_at, updated_at", ratings);
+    }
+
+    private static Object[] appointment(long id, long psychologistId, Long userId, Instant start, String status,
+                                        String paymentStatus) {
+        Timestamp booked = ts(start.minus(Duration.ofDays(7)));
+        return new Object[]{id, psychologistId, userId, ts(start), ts(start.plus(Duration.ofMinutes(SESSION_MINUTES))),
+                status, PRICE, true, PRICE, booked, userId != null ? booked : null, paymentStatus,
+                "Terapia individual", "ONLINE", "STRIPE", "PRIVATE", 0L};
+    }
+
+    private void moodEntries(List<Patient> patients, Instant now) {
+        LocalDate today = LocalDate.ofInstant(now, AppTimezone.APP_ZONE);
+        List<Object[]> entries = new ArrayList<>();
+        long id = 0;
+        for (Patient patient : patients) {
+            for (int d = scale.moodDays() - 1; d >= 0; d--) {
+                if (random.nextInt(10) >= 6) continue;
+                LocalDate date = today.minusDays(d);
+                Timestamp written = ts(date.atTime(21, 0).atZone(AppTimezone.APP_ZONE).toInstant());
+                entries.add(new Object[]{++id, patient.id(), Date.valueOf(date), 1 + random.nextInt(5),
+                        "[\"" + pick(EMOTIONS) + "\",\"" + pick(EMOTIONS) + "\"]", "[\"" + pick(ACTIVITIES) + "\"]",
+                        random.nextInt(4) == 0 ? "Día complicado, pero he salido a caminar." : null, written, written});
+            }
+        }
+        insert("daily_mood_entries",
+                "id, user_id, entry_date, mood_rating, emotions, activities, notes, created_at, updated_at", entries);
+    }
+
+    private void matchingAnswers(List<Patient> patients, Collection<Long> psychologistIds, Instant now) {
+        long[] ids = new long[3];
+        List<Object[]> tests = new ArrayList<>();
+        List<Object[]> questions = new ArrayList<>();
+        List<Object[]> answers = new ArrayList<>();
+        List<Question> patientQuestions = matchingTest(PATIENT_TEST, PATIENT_OPTIONS, PATIENT_MULTIPLE, ids, tests, questions, answers, now);
+        List<Question> psychQuestions = matchingTest(PSYCH_TEST, PSYCH_OPTIONS, PSYCH_MULTIPLE, ids, tests, questions, answers, now);
+        insert("tests", "id, code, title, active, category, created_at", tests);
+        insert("questions", "id, test_id, text, type, position, inverse", questions);
+        insert("answers", "id, question_id, text, value, position, is_correct", answers);
+
+        List<Object[]> userAnswers = new ArrayList<>();
+        long id = 0;
+        Timestamp answered = ts(now.minus(Duration.ofDays(365L * scale.years())));
+        for (Patient patient : patients) {
+            id = answer(patient.id(), patientQuestions, id, answered, userAnswers);
+        }
+        for (long psychologistId : psychologistIds) {
+            id = answer(psychologistId, psychQuestions, id, answered, userAnswers);
+        }
+        insert("user_answers", "id, user_id, question_id, answer_id, text_value, created_at", userAnswers);
+    }
+
+    private static List<Question> matchingTest(String code, Map<Integer, List<String>> options, Set<Integer> multiple,
+                                               long[] ids, List<Object[]> tests, List<Object[]> questions,
+                                               List<Object[]> answers, Instant now) {
+        long testId = ++ids[0];
+        tests.add(new Object[]{testId, code, "Test de matching " + testId, true, "MATCHING", ts(now)});
+        List<Question> result = new ArrayList<>();
+        for (int position = 1; position <= MATCHING_QUESTIONS; position++) {
+            long questionId = ++ids[1];
+            List<String> texts = options.getOrDefault(position, List.of());
+            String type = texts.isEmpty() ? "TEXT" : multiple.contains(position) ? "MULTIPLE" : "SINGLE";
+            questions.add(new Object[]{questionId, testId, "Pregunta " + position, type, position, false});
+            List<Long> answerIds = new ArrayList<>();
+            for (int a = 0; a < texts.size(); a++) {
+                long answerId = ++ids[2];
+                answers.add(new Object[]{answerId, questionId, texts.get(a), a + 1, a + 1, false});
+                answerIds.add(answerId);
+            }
+            result.add(new Question(questionId, position, answerIds, multiple.contains(position)));
+        }
+        return result;
+    }
+
+    private long answer(long userId, List<Question> questions, long id, Timestamp answered, List<Object[]> userAnswers) {
+        for (Question question : questions) {
+            if (question.answerIds().isEmpty()) {
+                userAnswers.add(new Object[]{++id, userId, question.id(), null, "Respuesta libre " + question.position(), answered});
+                continue;
+            }
+            List<Long> shuffled = new ArrayList<>(question.answerIds());
+            Collections.shuffle(shuffled, random);
+            int picks = question.multiple() ? 1 + random.nextInt(Math.min(3, shuffled.size())) : 1;
+            for (long answerId : shuffled.subList(0, picks)) {
+                userAnswers.add(new Object[]{++id, userId, question.id(), answerId, null, answered});
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Conversations for a seeded sample of patients, a message every few hours back from now.
+     * Key derivation (PBKDF2 per conversation) dominates, so conversations encrypt in parallel;
+     * each draws from its own Random, so the sample and texts stay deterministic.
+     */
+    private List<Patient> chat(List<Patient> patients, Instant now) {
+        List<Patient> shuffled = new ArrayList<>(patients);
+        Collections.shuffle(shuffled, random);
+        Set<Long> withChat = new HashSet<>();
+        shuffled.stream().limit(scale.chatConversations()).forEach(p -> withChat.add(p.id()));
+        List<Patient> chatPatients = patients.stream().filter(p -> withChat.contains(p.id())).toList();
+
+        List<List<Object[]>> conversations = IntStream.range(0, chatPatients.size()).parallel()
+                .mapToObj(i -> conversation(chatPatients.get(i), now))
+                .toList();
+        List<Object[]> messages = new ArrayList<>();
+        long id = 0;
+        for (List<Object[]> conversation : conversations) {
+            for (Object[] message : conversation) {
+                message[0] = ++id;
+                messages.add(message);
+            }
+        }
+        insert("chat_messages", "id, psychologist_id, user_id, sender, content, created_at", messages);
+
+        return patients.stream()
+                .map(p -> withChat.contains(p.id()) ? new Patient(p.id(), p.email(), p.psychologistId(), true) : p)
+                .toList();
+    }
+
+    private List<Object[]> conversation(Patient patient, Instant now) {
+        Random conversationRandom = new Random(scale.seed() ^ patient.id());
+        int count = scale.messagesPerConversation();
+        List<Object[]> messages = new ArrayList<>(count);
+        for (int m = 0; m < count; m++) {
+            String text = CHAT_LINES.get(conversationRandom.nextInt(CHAT_LINES.size()));
+            String sender = conversationRandom.nextBoolean() ? "USER" : "PSYCHOLOGIST";
+            Instant sent = now.minus(Duration.ofHours(6L * (count - m))).plusSeconds(conversationRandom.nextInt(3600));
+            messages.add(new Object[]{null, patient.psychologistId(), patient.id(), sender,
+                    chatEncryptionService.encrypt(text, patient.psychologistId(), patient.id()), ts(sent)});
+        }
+        return messages;
+    }
+
+    private void insert(String table, String columns, List<Object[]> batch) {
+        String placeholders = String.join(", ", Collections.nCopies(columns.split(",").length, "?"));
+        String sql = "INSERT INTO " + table + " (" + columns + ") VALUES (" + placeholders + ")";
+        for (int from = 0; from < batch.size(); from += BATCH_SIZE) {
+            jdbc.batchUpdate(sql, batch.subList(from, Math.min(batch.size(), from + BATCH_SIZE)));
+        }
+        if (!"user_psychologist".equals(table)) {
+            rows.merge(table, batch.size(), Integer::sum);
+        }
+    }
+
+    private <T> T pick(List<T> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private static Timestamp ts(Instant instant) {
+        return Timestamp.from(instant);
+    }
+}
@@ -0,0 +1,45 @@
+package com.alvaro.psicoapp.perf;
+
+import org.springframework.core.env.Environment;
+
+/**
+ * How much data {@link PerfDataGenerator} creates; perf.scale.* in application-perf.yml,
+ * overridable with -D on the Maven command line. The same seed and scale always produce the
+ * same dataset, so two runs differ only in the code under test.
+ *
+ * Patients see their psychologist weekly for `years` up to today, skipping a session with
+ * probability 1 - attendance, plus the next four weeks booked ahead.
+ */
+public record PerfScale(long seed,
+                        int clinics,
+                        int psychologistsPerClinic,
+                        int independentPsychologists,
+                        int patientsPerPsychologist,
+                        int years,
+                        double attendance,
+                        int moodDays,
+                        int chatConversations,
+                        int messagesPerConversation) {
+
+    public static PerfScale from(Environment env) {
+        return new PerfScale(
+                env.getProperty("perf.seed", Long.class, 42L),
+                env.getProperty("perf.scale.clinics", Integer.class, 3),
+                env.getProperty("perf.scale.psychologists-per-clinic", Integer.class, 6),
+                env.getProperty("perf.scale.independent-psychologists", Integer.class, 12),
+                env.getProperty("perf.scale.patients-per-psychologist", Integer.class, 25),
+                env.getProperty("perf.scale.years", Integer.class, 2),
+                env.getProperty("perf.scale.attendance", Double.class, 0.8),
+                env.getProperty("perf.scale.mood-days", Integer.class, 180),
+                env.getProperty("perf.scale.chat-conversations", Integer.class, 120),
+                env.getProperty("perf.scale.messages-per-conversation", Integer.class, 150));
+    }
+
+    public int psychologists() {
+        return clinics * psychologistsPerClinic + independentPsychologists;
+    }
+
+    public int patients() {
+        return psychologists() * patientsPerPsychologist;
+    }
+}
@@ -0,0 +1,142 @@
+package com.alvaro.psicoapp.perf;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * Drives one scenario at a time against the running server: `concurrency` clients send
+ * warm-up requests, then the measured ones, and the latencies go into nearest-rank p50/p99.
+ *
+ * Every request carries its own X-Forwarded-For, which RateLimitFilter honours from
+ * localhost, so the per-IP limits never throttle the run and each request is a new client.
+ * SQL per request comes from http.server.requests.sql.statements (SqlMetrics) for the
+ * scenario's mapped uri, as a delta over the measured requests.
+ */
+class ScenarioRunner implements AutoCloseable {
+
+    /** call gives the i-th request; uri is the mapped pattern SqlMetrics tags it with */
+    record Scenario(String name, String method, String uri, IntFunction<Call> call) {}
+
+    /** token: bearer access token or null; body: JSON for POST, null for GET */
+    record Call(String path, String token, String body) {}
+
+    record Result(String name, int requests, int errors, double p50Ms, double p99Ms, double maxMs,
+                  double sqlPerRequest, Map<Integer, Long> statusCounts) {}
+
+    private final URI baseUri;
+    private final int concurrency;
+    private final MeterRegistry registry;
+    private final HttpClient client;
+    private final ExecutorService executor;
+    private final AtomicLong clientAddresses = new AtomicLong();
+
+    ScenarioRunner(URI baseUri, int concurrency, MeterRegistry registry) {
+        this.baseUri = baseUri;
+        this.concurrency = concurrency;
+        this.registry = registry;
+        this.executor = Executors.newFixedThreadPool(concurrency);
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(executor)
+                .build();
+    }
+
+    Result run(Scenario scenario, int warmup, int requests) throws InterruptedException {
+        send(scenario, 0, warmup, null, new ConcurrentHashMap<>());
+
+        DistributionSummary sql = registry.find("http.server.requests.sql.statements")
+                .tags("method", scenario.method(), "uri", scenario.uri()).summary();
+        long sqlCountBefore = sql != null ? sql.count() : 0;
+        double sqlTotalBefore = sql != null ? sql.totalAmount() : 0;
+
+        long[] nanos = new long[requests];
+        Map<Integer, Long> statusCounts = new ConcurrentHashMap<>();
+        send(scenario, warmup, requests, nanos, statusCounts);
+
+        sql = registry.find("http.server.requests.sql.statements")
+                .tags("method", scenario.method(), "uri", scenario.uri()).summary();
+        long sqlCount = sql != null ? sql.count() - sqlCountBefore : 0;
+        double sqlPerRequest = sqlCount > 0 ? (sql.totalAmount() - sqlTotalBefore) / sqlCount : Double.NaN;
+
+        int errors = statusCounts.entrySet().stream()
+                .filter(e -> e.getKey() >= 400 || e.getKey() < 0)
+                .mapToInt(e -> e.getValue().intValue()).sum();
+        Arrays.sort(nanos);
+        return new Result(scenario.name(), requests, errors, millis(percentile(nanos, 50)),
+                millis(percentile(nanos, 99)), millis(nanos[nanos.length - 1]), sqlPerRequest, Map.copyOf(statusCounts));
+    }
+
+    /** Sends requests [offset, offset + count) from `concurrency` workers; status -1 is an I/O failure */
+    private void send(Scenario scenario, int offset, int count, long[] nanos, Map<Integer, Long> statusCounts)
+            throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int w = 0; w < concurrency; w++) {
+            Thread.ofPlatform().name("perf-client-" + w).start(() -> {
+                try {
+                    for (int i = next.getAndIncrement(); i < count; i = next.getAndIncrement()) {
+                        HttpRequest request = request(scenario, scenario.call().apply(offset + i));
+                        long start = System.nanoTime();
+                        int status;
+                        try {
+                            status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        } catch (java.io.IOException e) {
+                            status = -1;
+                        }
+                        if (nanos != null) nanos[i] = System.nanoTime() - start;
+                        statusCounts.merge(status, 1L, Long::sum);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+
+    private HttpRequest request(Scenario scenario, Call call) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(baseUri.resolve(call.path()))
+                .header("X-Forwarded-For", nextClientAddress())
+                .timeout(Duration.ofSeconds(30));
+        if (call.token() != null) builder.header("Authorization", "Bearer " + call.token());
+        if (call.body() != null) builder.header("Content-Type", "application/json");
+        return builder.method(scenario.method(), call.body() != null
+                ? HttpRequest.BodyPublishers.ofString(call.body())
+                : HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private String nextClientAddress() {
+        long n = clientAddresses.incrementAndGet();
+        return "10." + (n >> 16 & 0xff) + "." + (n >> 8 & 0xff) + "." + (n & 0xff);
+    }
+
+    /** Nearest-rank percentile of sorted values */
+    static long percentile(long[] sorted, int p) {
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
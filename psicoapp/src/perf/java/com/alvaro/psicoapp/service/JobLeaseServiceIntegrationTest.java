@@ -0,0 +1,220 @@
+package com.alvaro.psicoapp.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The job_leases SQL of JobLeaseService against a real PostgreSQL: several services on one
+ * database stand for several replicas. Heartbeats run on a long TTL, so the tests drive them.
+ */
+@Tag("integration")
+class JobLeaseServiceIntegrationTest {
+    private static final long TTL_MS = 600_000;
+
+    private static EmbeddedPostgres postgres;
+    private static DataSource dataSource;
+    private static JdbcTemplate jdbc;
+
+    private final List<JobLeaseService> nodes = new ArrayList<>();
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+        dataSource = postgres.getPostgresDatabase();
+        jdbc = new JdbcTemplate(dataSource);
+        try (Connection connection = dataSource.getConnection()) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/V75__job_leases.sql"));
+        }
+    }
+
+    @AfterAll
+    static void stopDatabase() throws Exception {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void clean() {
+        jdbc.update("TRUNCATE job_leases");
+    }
+
+    @AfterEach
+    void stopNodes() {
+        nodes.forEach(JobLeaseService::shutdown);
+    }
+
+    @Test
+    @DisplayName("tryAcquire - one holder at a time; an expired lease is taken over with a new token")
+    void acquire_andTakeOverAfterExpiry() {
+        JobLeaseService a = node("a");
+        JobLeaseService b = node("b");
+
+        JobLeaseService.Lease first = a.tryAcquire("Job.run", null).orElseThrow();
+        assertTrue(b.tryAcquire("Job.run", null).isEmpty());
+        assertTrue(b.isHeldElsewhere("Job.run"));
+        assertFalse(a.isHeldElsewhere("Job.run"));
+
+        expire("Job.run");
+        JobLeaseService.Lease second = b.tryAcquire("Job.run", null).orElseThrow();
+
+        assertEquals(first.token() + 1, second.token());
+        assertEquals(b.nodeId(), jdbc.queryForObject("SELECT owner FROM job_leases WHERE lease_key = 'Job.run'", String.class));
+        assertTrue(a.tryAcquire("Job.run", null).isEmpty());
+    }
+
+    @Test
+    @DisplayName("fence - passes for the current token, fails and marks the lease lost once taken over")
+    void fence_checksToken() {
+        JobLeaseService a = node("a");
+        JobLeaseService b = node("b");
+        JobLeaseService.Lease stale = a.tryAcquire("Job.run", null).orElseThrow();
+        a.fence(stale);
+
+        expire("Job.run");
+        JobLeaseService.Lease current = b.tryAcquire("Job.run", null).orElseThrow();
+
+        assertThrows(IllegalStateException.class, () -> a.fence(stale));
+        assertFalse(stale.isHeld());
+        b.fence(current);
+        assertTrue(current.isHeld());
+    }
+
+    @Test
+    @DisplayName("release - a late replica can't take the lease again for an occurrence already run")
+    void release_recordsOccurrence() {
+        JobLeaseService a = node("a");
+        JobLeaseService b = node("b");
+        Instant nine = Instant.parse("2026-10-19T09:00:00Z");
+
+        JobLeaseService.Lease lease = a.tryAcquire("ReminderScheduler.sendMoodReminders", nine).orElseThrow();
+        a.release(lease, nine);
+
+        // Released, so free, but that occurrence is done: minutes or hours late makes no difference
+        assertFalse(b.isHeldElsewhere("ReminderScheduler.sendMoodReminders"));
+        assertTrue(b.tryAcquire("ReminderScheduler.sendMoodReminders", nine).isEmpty());
+        assertTrue(b.tryAcquire("ReminderScheduler.sendMoodReminders", nine.minus(1, ChronoUnit.DAYS)).isEmpty());
+        assertEquals(Timestamp.from(nine), jdbc.queryForObject(
+                "SELECT last_run FROM job_leases WHERE lease_key = 'ReminderScheduler.sendMoodReminders'", Timestamp.class));
+
+        // A manual run isn't an occurrence and leaves last_run alone
+        JobLeaseService.Lease manual = b.tryAcquire("ReminderScheduler.sendMoodReminders", null).orElseThrow();
+        b.release(manual, null);
+        Instant tomorrow = nine.plus(1, ChronoUnit.DAYS);
+        JobLeaseService.Lease next = b.tryAcquire("ReminderScheduler.sendMoodReminders", tomorrow).orElseThrow();
+        b.release(next, tomorrow);
+        assertEquals(Timestamp.from(tomorrow), jdbc.queryForObject(
+                "SELECT last_run FROM job_leases WHERE lease_key = 'ReminderScheduler.sendMoodReminders'", Timestamp.class));
+    }
+
+    @Test
+    @DisplayName("heartbeat - skips a lease share-locked by a fenced transaction without losing it, renews after commit")
+    void heartbeat_skipsFencedRow() throws Exception {
+        JobLeaseService a = node("a");
+        JobLeaseService.Lease lease = a.tryAcquire("Job.run", null).orElseThrow();
+        jdbc.update("UPDATE job_leases SET heartbeat_at = now() - interval '1 minute' WHERE lease_key = 'Job.run'");
+        Timestamp before = heartbeatAt("Job.run");
+        ExecutorService heartbeatThread = Executors.newSingleThreadExecutor();
+        try {
+            new TransactionTemplate(new DataSourceTransactionManager(dataSource)).executeWithoutResult(tx -> {
+                a.fence(lease);
+                // From another connection, as the heartbeat thread does: must not wait for this commit
+                Future<?> heartbeat = heartbeatThread.submit(a::heartbeat);
+                assertDoesNotThrow(() -> heartbeat.get(5, TimeUnit.SECONDS));
+            });
+            assertTrue(lease.isHeld());
+            assertEquals(before, heartbeatAt("Job.run"));
+
+            heartbeatThread.submit(a::heartbeat).get(5, TimeUnit.SECONDS);
+            assertTrue(heartbeatAt("Job.run").after(before));
+        } finally {
+            heartbeatThread.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("forEachPartition - two nodes share out the ID ranges of a run, each range run exactly once")
+    void forEachPartition_sharedByNodes() throws Exception {
+        JobLeaseService a = node("a");
+        JobLeaseService b = node("b");
+        Map<Integer, String> ranBy = new ConcurrentHashMap<>();
+        List<String> duplicates = new CopyOnWriteArrayList<>();
+        CyclicBarrier start = new CyclicBarrier(2);
+        ExecutorService replicas = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<?>> runs = new ArrayList<>();
+            for (JobLeaseService node : List.of(a, b)) {
+                runs.add(replicas.submit(() -> {
+                    start.await();
+                    try {
+                        return node.runAs("WeeklySlotGeneratorScheduler.generateWeeklySlots", "2026-10-18T02:00:00Z", null, () -> {
+                            node.forEachPartition(1, 10_000, p -> {
+                                if (ranBy.putIfAbsent(p.index(), node.nodeId()) != null) duplicates.add("partition " + p.index());
+                                node.fence();
+                                sleep(100);
+                            });
+                            return null;
+                        });
+                    } catch (Throwable e) {
+                        throw new ExecutionException(e);
+                    }
+                }));
+            }
+            for (Future<?> run : runs) run.get(30, TimeUnit.SECONDS);
+        } finally {
+            replicas.shutdownNow();
+        }
+
+        assertEquals(List.of(), duplicates);
+        assertEquals(8, ranBy.size());
+        assertTrue(ranBy.containsValue(a.nodeId()) && ranBy.containsValue(b.nodeId()), ranBy.toString());
+        assertEquals(0, jdbc.queryForObject(
+                "SELECT count(*) FROM job_leases WHERE lease_key LIKE 'WeeklySlotGeneratorScheduler.generateWeeklySlots@%' "
+                + "AND completed_at IS NULL", Long.class));
+    }
+
+    private JobLeaseService node(String name) {
+        JobLeaseService node = new JobLeaseService(jdbc, new SimpleMeterRegistry(), true, name, TTL_MS, 8);
+        nodes.add(node);
+        return node;
+    }
+
+    /** As if the holder had stopped heartbeating a TTL ago */
+    private static void expire(String key) {
+        jdbc.update("UPDATE job_leases SET expires_at = now() - interval '1 second' WHERE lease_key = ?", key);
+    }
+
+    private static Timestamp heartbeatAt(String key) {
+        return jdbc.queryForObject("SELECT heartbeat_at FROM job_leases WHERE lease_key = ?", Timestamp.class, key);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
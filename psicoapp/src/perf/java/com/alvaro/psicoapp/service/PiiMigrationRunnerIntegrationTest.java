@@ -0,0 +1,208 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.domain.BatchJobEntity;
+import com.alvaro.psicoapp.dto.AdminDtos;
+import com.alvaro.psicoapp.repository.BatchJobRepository;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * PiiMigrationRunner's paging, checkpoints and optimistic updates against a real PostgreSQL.
+ * The runner writes users with plain JDBC; its checkpoint row is kept in a map.
+ */
+@Tag("integration")
+class PiiMigrationRunnerIntegrationTest {
+    private static final PiiEncryptionService OLD_KEY = new PiiEncryptionService("old-pii-key", 1, "", 0);
+    private static final PiiEncryptionService NEW_KEY = new PiiEncryptionService("new-pii-key", 2, "1:old-pii-key", 0);
+
+    private static EmbeddedPostgres postgres;
+    private static DataSource dataSource;
+    private static JdbcTemplate jdbc;
+
+    private final Map<String, BatchJobEntity> batchJobs = new ConcurrentHashMap<>();
+    private PiiMigrationRunner runner;
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+        dataSource = postgres.getPostgresDatabase();
+        jdbc = new JdbcTemplate(dataSource);
+        // Only the columns the runner reads and writes
+        jdbc.execute("CREATE TABLE users (id BIGSERIAL PRIMARY KEY, name VARCHAR(500), email VARCHAR(500), totp_secret VARCHAR(500))");
+    }
+
+    @AfterAll
+    static void stopDatabase() throws Exception {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void seed() {
+        jdbc.update("TRUNCATE users RESTART IDENTITY");
+        for (int i = 1; i <= 10; i++) {
+            // Odd ids in plaintext, even ones under the old key; totp_secret mostly NULL
+            boolean plain = i % 2 == 1;
+            String email = "user" + i + "@example.com";
+            jdbc.update("INSERT INTO users (name, email, totp_secret) VALUES (?, ?, ?)",
+                    plain ? "User " + i : OLD_KEY.encrypt("User " + i),
+                    plain ? email : OLD_KEY.encryptDeterministic(email),
+                    i == 4 ? OLD_KEY.encrypt("TOTPSECRET") : null);
+        }
+    }
+
+    @AfterEach
+    void stopRunner() throws InterruptedException {
+        if (runner != null) runner.shutdown();
+    }
+
+    @Test
+    @DisplayName("start - rewrites plaintext and old-key rows to the current key, NULL columns included")
+    void start_migratesEveryRow() {
+        runner = runner(jdbc, 3, 2);
+
+        AdminDtos.PiiMigrationStatus status = await(runner.start(false));
+
+        assertEquals(BatchJobEntity.COMPLETED, status.status());
+        assertEquals(10, status.processed());
+        assertEquals(0, status.failed());
+        assertEquals(10L, status.cursorUserId());
+        assertAllCurrent(1, 10);
+        assertEquals("TOTPSECRET", NEW_KEY.decrypt(jdbc.queryForObject("SELECT totp_secret FROM users WHERE id = 4", String.class)));
+    }
+
+    @Test
+    @DisplayName("start - resumes after the checkpoint of an interrupted run")
+    void start_resumesFromCheckpoint() {
+        BatchJobEntity checkpoint = new BatchJobEntity();
+        checkpoint.setJobKey("pii-migration");
+        checkpoint.setStatus(BatchJobEntity.RUNNING);
+        checkpoint.setCursorId(6L);
+        checkpoint.setProcessed(6L);
+        checkpoint.setFailed(0L);
+        checkpoint.setStartedAt(Instant.now().minusSeconds(60));
+        checkpoint.setUpdatedAt(Instant.now().minusSeconds(30));
+        batchJobs.put("pii-migration", checkpoint);
+        runner = runner(jdbc, 3, 2);
+        assertEquals("INTERRUPTED", runner.getStatus().status());
+
+        AdminDtos.PiiMigrationStatus status = await(runner.start(false));
+
+        assertEquals(BatchJobEntity.COMPLETED, status.status());
+        assertEquals(10, status.processed());
+        // Ids up to the checkpoint were not touched again
+        assertEquals("user1@example.com", jdbc.queryForObject("SELECT email FROM users WHERE id = 1", String.class));
+        assertAllCurrent(7, 10);
+    }
+
+    @Test
+    @DisplayName("migrateChunk - a row the app changed after it was read is skipped, not overwritten")
+    void chunk_concurrentChange_skipped() {
+        runner = runner(hooked(lastId -> {
+            // The app saves user 2 between the runner's read and its update
+            if (lastId == 3) jdbc.update("UPDATE users SET name = 'Changed' WHERE id = 2");
+        }), 3, 1);
+
+        AdminDtos.PiiMigrationStatus status = await(runner.start(false));
+
+        assertEquals(BatchJobEntity.COMPLETED, status.status());
+        assertEquals(9, status.processed());
+        assertEquals(1, status.failed());
+        assertNotNull(status.message());
+        assertEquals("Changed", jdbc.queryForObject("SELECT name FROM users WHERE id = 2", String.class));
+        assertTrue(NEW_KEY.needsReencryption(jdbc.queryForObject("SELECT email FROM users WHERE id = 2", String.class), true));
+
+        // The next run picks it up
+        status = await(runner.start(false));
+        assertEquals(BatchJobEntity.COMPLETED, status.status());
+        assertAllCurrent(1, 10);
+    }
+
+    @Test
+    @DisplayName("run - the checkpoint never passes a page that did not finish, even if later pages did")
+    void checkpoint_staysBehindFailedPage() throws InterruptedException {
+        runner = runner(hooked(lastId -> {
+            if (lastId == 2) throw new IllegalStateException("connection reset");
+        }), 2, 3);
+
+        AdminDtos.PiiMigrationStatus status = await(runner.start(false));
+
+        assertEquals(BatchJobEntity.FAILED, status.status());
+        assertEquals(0L, status.cursorUserId());
+        // Later pages ran on other workers, but the first one failed
+        assertTrue(NEW_KEY.needsReencryption(jdbc.queryForObject("SELECT email FROM users WHERE id = 1", String.class), true));
+
+        runner.shutdown();
+        runner = runner(jdbc, 2, 3);
+        status = await(runner.start(false));
+        assertEquals(BatchJobEntity.COMPLETED, status.status());
+        assertAllCurrent(1, 10);
+    }
+
+    private static void assertAllCurrent(long fromId, long toId) {
+        jdbc.query("SELECT id, name, email FROM users WHERE id BETWEEN ? AND ? ORDER BY id", rs -> {
+            long id = rs.getLong("id");
+            assertFalse(NEW_KEY.needsReencryption(rs.getString("email"), true), "email of " + id);
+            assertFalse(NEW_KEY.needsReencryption(rs.getString("name"), false), "name of " + id);
+            assertEquals("user" + id + "@example.com", NEW_KEY.decryptDeterministic(rs.getString("email")));
+        }, fromId, toId);
+    }
+
+    /** Runs {@code afterRead} with the page's last id once the page's rows have been read */
+    private static JdbcTemplate hooked(LongConsumer afterRead) {
+        return new JdbcTemplate(dataSource) {
+            @Override
+            public void query(String sql, RowCallbackHandler rch, Object... args) {
+                super.query(sql, rch, args);
+                if (sql.startsWith("SELECT id, name, email, totp_secret FROM users")) afterRead.accept((Long) args[1]);
+            }
+        };
+    }
+
+    private PiiMigrationRunner runner(JdbcTemplate jdbcTemplate, int chunkSize, int threads) {
+        BatchJobRepository repository = mock(BatchJobRepository.class);
+        when(repository.findById(anyString())).thenAnswer(inv -> Optional.ofNullable(batchJobs.get(inv.<String>getArgument(0))));
+        when(repository.save(any(BatchJobEntity.class))).thenAnswer(inv -> {
+            BatchJobEntity entity = inv.getArgument(0);
+            batchJobs.put(entity.getJobKey(), entity);
+            return entity;
+        });
+        return new PiiMigrationRunner(NEW_KEY, jdbcTemplate, repository, new DataSourceTransactionManager(dataSource), chunkSize, threads);
+    }
+
+    private AdminDtos.PiiMigrationStatus await(AdminDtos.PiiMigrationStatus started) {
+        assertEquals(BatchJobEntity.RUNNING, started.status());
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            AdminDtos.PiiMigrationStatus status = runner.getStatus();
+            if (!BatchJobEntity.RUNNING.equals(status.status()) && !"CANCELLING".equals(status.status())) return status;
+            assertTrue(System.currentTimeMillis() < deadline, "migration still running");
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
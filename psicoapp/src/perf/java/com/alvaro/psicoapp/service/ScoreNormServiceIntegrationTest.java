@@ -0,0 +1,175 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.domain.ScoreNormEntity;
+import com.alvaro.psicoapp.repository.FactorRepository;
+import com.alvaro.psicoapp.repository.ScoreNormRepository;
+import com.alvaro.psicoapp.repository.SubfactorRepository;
+import com.alvaro.psicoapp.repository.TestRepository;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The score_norms merge of ScoreNormService against a real PostgreSQL: several services on
+ * one database stand for several replicas.
+ */
+@Tag("integration")
+class ScoreNormServiceIntegrationTest {
+    private static final long TEST_ID = 3L;
+    private static final long SCALE_ID = 11L;
+
+    private static EmbeddedPostgres postgres;
+    private static DataSource dataSource;
+    private static JdbcTemplate jdbc;
+
+    @BeforeAll
+    static void startDatabase() throws Exception {
+        postgres = EmbeddedPostgres.builder().start();
+        dataSource = postgres.getPostgresDatabase();
+        jdbc = new JdbcTemplate(dataSource);
+        try (Connection connection = dataSource.getConnection()) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/V72__score_norms.sql"));
+        }
+        // Only the columns the rebuild reads
+        jdbc.execute("CREATE TABLE test_results (id BIGSERIAL PRIMARY KEY, test_id BIGINT, subfactor_id BIGINT, "
+                + "score DOUBLE PRECISION, max_score DOUBLE PRECISION)");
+        jdbc.execute("CREATE TABLE factor_results (id BIGSERIAL PRIMARY KEY, test_id BIGINT, factor_id BIGINT, "
+                + "score DOUBLE PRECISION, max_score DOUBLE PRECISION)");
+    }
+
+    @AfterAll
+    static void stopDatabase() throws Exception {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void clean() {
+        jdbc.update("TRUNCATE score_norms, test_results, factor_results");
+    }
+
+    @Test
+    @DisplayName("flush - two nodes' changes to one scale add up; a reload shows each node the other's")
+    void flush_twoNodes_addUp() {
+        ScoreNormService a = node(jdbc, 50);
+        ScoreNormService b = node(jdbc, 50);
+
+        record(a, 40, 10);
+        record(b, 25, 12);
+        a.flush();
+        b.flush();
+
+        assertEquals(65L, storedSampleSize());
+        assertNull(a.percentile(ScoreNormEntity.SUBFACTOR, SCALE_ID, 10, 20), "40 results, below the minimum sample");
+        a.reload();
+        assertEquals(40 / 65.0 * 50, a.percentile(ScoreNormEntity.SUBFACTOR, SCALE_ID, 10, 20), 1e-9);
+    }
+
+    @Test
+    @DisplayName("flush - concurrent flushes from several nodes lose nothing, removals included")
+    void flush_concurrent_loseNothing() throws Exception {
+        List<ScoreNormService> nodes = List.of(node(jdbc, 1), node(jdbc, 1), node(jdbc, 1), node(jdbc, 1));
+        ExecutorService pool = Executors.newFixedThreadPool(nodes.size());
+        try {
+            List<Future<?>> runs = nodes.stream().<Future<?>>map(node -> pool.submit(() -> {
+                for (int round = 0; round < 20; round++) {
+                    record(node, 5, round % 20);
+                    node.recordAfterCommit(TEST_ID,
+                            List.of(new ScoreNormService.Change(ScoreNormEntity.SUBFACTOR, SCALE_ID, round % 20, 20)), List.of());
+                    node.flush();
+                }
+            })).toList();
+            for (Future<?> run : runs) run.get();
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(4 * 20 * 4L, storedSampleSize());
+    }
+
+    @Test
+    @DisplayName("rebuild - results recorded while the scan runs are kept and flushed on top of the rebuilt counts")
+    void rebuild_keepsChangesDuringScan() {
+        for (int i = 0; i < 10; i++) {
+            jdbc.update("INSERT INTO test_results (test_id, subfactor_id, score, max_score) VALUES (?, ?, ?, 20)", TEST_ID, SCALE_ID, i);
+        }
+        ScoreNormService[] node = new ScoreNormService[1];
+        JdbcTemplate hooked = new JdbcTemplate(dataSource) {
+            private boolean fired;
+
+            @Override
+            public void query(String sql, RowCallbackHandler rch, Object... args) {
+                super.query(sql, rch, args);
+                if (!fired && sql.contains("FROM test_results")) {
+                    fired = true;
+                    // A result saved by another request while the rebuild is scanning
+                    record(node[0], 1, 15);
+                }
+            }
+        };
+        node[0] = node(hooked, 1);
+        record(node[0], 3, 5);
+        node[0].flush();
+        assertEquals(3L, storedSampleSize());
+
+        assertEquals(10, node[0].rebuild(TEST_ID));
+        assertEquals(10L, storedSampleSize());
+        // The in-memory view already counts it; the next flush stores it
+        assertEquals(100.0 * 10.5 / 11, node[0].percentile(ScoreNormEntity.SUBFACTOR, SCALE_ID, 15, 20), 1e-9);
+        node[0].flush();
+        assertEquals(11L, storedSampleSize());
+    }
+
+    private static void record(ScoreNormService node, int results, double score) {
+        List<ScoreNormService.Change> added = new ArrayList<>();
+        for (int i = 0; i < results; i++) added.add(new ScoreNormService.Change(ScoreNormEntity.SUBFACTOR, SCALE_ID, score, 20));
+        node.recordAfterCommit(TEST_ID, List.of(), added);
+    }
+
+    private static long storedSampleSize() {
+        return jdbc.queryForObject("SELECT sample_size FROM score_norms WHERE scale_type = ? AND scale_id = ?",
+                Long.class, ScoreNormEntity.SUBFACTOR, SCALE_ID);
+    }
+
+    private static ScoreNormService node(JdbcTemplate jdbcTemplate, long minSample) {
+        ScoreNormRepository repository = mock(ScoreNormRepository.class);
+        when(repository.findByScaleTypeAndScaleId(any(), any())).thenAnswer(inv -> jdbc.query(
+                "SELECT test_id, sample_size, bins FROM score_norms WHERE scale_type = ? AND scale_id = ?", (rs, i) -> {
+                    ScoreNormEntity entity = new ScoreNormEntity();
+                    entity.setTestId(rs.getLong(1));
+                    entity.setSampleSize(rs.getLong(2));
+                    entity.setBins(rs.getBytes(3));
+                    return entity;
+                }, inv.getArgument(0), inv.getArgument(1)).stream().findFirst());
+        when(repository.findByTestId(any())).thenAnswer(inv -> jdbc.query(
+                "SELECT scale_type, scale_id FROM score_norms WHERE test_id = ?", (rs, i) -> {
+                    ScoreNormEntity entity = new ScoreNormEntity();
+                    entity.setScaleType(rs.getString(1));
+                    entity.setScaleId(rs.getLong(2));
+                    return entity;
+                }, (Long) inv.getArgument(0)));
+        return new ScoreNormService(repository, mock(TestRepository.class), mock(SubfactorRepository.class),
+                mock(FactorRepository.class), jdbcTemplate, new DataSourceTransactionManager(dataSource), minSample);
+    }
+}
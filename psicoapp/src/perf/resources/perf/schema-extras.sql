@@ -0,0 +1,48 @@
+-- Run after Hibernate creates the schema from the entities (application-perf.yml): the parts of
+-- src/main/resources/db that the entities don't declare, so queries see production's indexes.
+
+CREATE TABLE IF NOT EXISTS stored_blobs (
+    namespace VARCHAR(50) NOT NULL,
+    object_key VARCHAR(100) NOT NULL,
+    sha256 CHAR(64) NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    ref_count INT NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    updated_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (namespace, object_key)
+);
+
+CREATE INDEX IF NOT EXISTS idx_consent_requests_user_status ON consent_requests(user_id, status);
+CREATE INDEX IF NOT EXISTS idx_consent_requests_psych_user ON consent_requests(psychologist_id, user_id);
+CREATE INDEX IF NOT EXISTS idx_questions_test_id ON questions(test_id);
+CREATE INDEX IF NOT EXISTS idx_questions_subfactor_id ON questions(subfactor_id);
+CREATE INDEX IF NOT EXISTS idx_subfactors_test_id ON subfactors(test_id);
+CREATE INDEX IF NOT EXISTS idx_subfactors_factor_id ON subfactors(factor_id);
+CREATE INDEX IF NOT EXISTS idx_factors_test_id ON factors(test_id);
+CREATE INDEX IF NOT EXISTS idx_user_answers_session_id ON user_answers(session_id);
+CREATE INDEX IF NOT EXISTS idx_test_results_user_test ON test_results(user_id, test_id);
+CREATE INDEX IF NOT EXISTS idx_factor_results_user_test ON factor_results(user_id, test_id);
+CREATE INDEX IF NOT EXISTS idx_clinic_invitations_company ON clinic_invitations(company_id);
+CREATE INDEX IF NOT EXISTS idx_clinic_invitations_token ON clinic_invitations(token);
+CREATE INDEX IF NOT EXISTS idx_clinic_docs_patient ON clinic_patient_documents(company_id, patient_id);
+CREATE INDEX IF NOT EXISTS idx_clinic_docs_company_file ON clinic_patient_documents(company_id, file_name);
+CREATE INDEX IF NOT EXISTS idx_clinic_chat ON clinic_chat_messages(company_id, patient_id, created_at);
+CREATE INDEX IF NOT EXISTS idx_clinic_rooms_company ON clinic_rooms(company_id);
+CREATE UNIQUE INDEX IF NOT EXISTS idx_unique_active_appointment
+    ON appointments (psychologist_id, start_time)
+    WHERE status IN ('BOOKED', 'CONFIRMED');
+CREATE INDEX IF NOT EXISTS idx_appointments_recurrence ON appointments(recurrence_group_id);
+CREATE INDEX IF NOT EXISTS idx_psych_absences_psych_time ON psych_absences(psychologist_id, start_time, end_time);
+CREATE INDEX IF NOT EXISTS idx_assigned_tests_evaluation_test_id ON assigned_tests(evaluation_test_id);
+CREATE INDEX IF NOT EXISTS idx_audit_logs_created_at ON audit_logs(created_at);
+CREATE INDEX IF NOT EXISTS idx_audit_logs_entity ON audit_logs(entity_type, entity_id);
+CREATE INDEX IF NOT EXISTS idx_audit_logs_performed_by ON audit_logs(performed_by_id, created_at);
+CREATE UNIQUE INDEX IF NOT EXISTS idx_companies_slug ON companies(slug) WHERE slug IS NOT NULL;
+CREATE INDEX IF NOT EXISTS idx_waiting_list_company_status ON waiting_list(company_id, status);
+CREATE INDEX IF NOT EXISTS idx_clinic_admins_user ON clinic_admins(user_id, status);
+CREATE INDEX IF NOT EXISTS idx_insurance_companies_company ON insurance_companies(company_id);
+CREATE INDEX IF NOT EXISTS idx_insurance_policies_patient ON insurance_patient_policies(patient_id);
+CREATE INDEX IF NOT EXISTS idx_task_files_file_path ON task_files(file_path);
+CREATE INDEX IF NOT EXISTS idx_tasks_psychologist_id ON tasks(psychologist_id);
+CREATE INDEX IF NOT EXISTS idx_tasks_user_id ON tasks(user_id);
+CREATE INDEX IF NOT EXISTS idx_users_avatar_url ON users(avatar_url) WHERE avatar_url IS NOT NULL;
@@ -0,0 +1,78 @@
+package com.alvaro.psicoapp.monitoring;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstrumentedDataSourceTest {
+
+    /** A pool whose connections accept any statement and return nothing */
+    private static DataSource fakePool() {
+        Connection connection = fake(Connection.class, (proxy, method, args) -> switch (method.getName()) {
+            case "prepareStatement" -> fake(PreparedStatement.class, (p, m, a) -> m.getName().equals("executeUpdate") ? 1 : null);
+            case "createStatement" -> fake(Statement.class, (p, m, a) -> m.getName().equals("executeUpdate") ? 1 : null);
+            default -> null;
+        });
+        return fake(DataSource.class, (proxy, method, args) -> method.getName().equals("getConnection") ? connection : null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T fake(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    @Test
+    @DisplayName("counts statements per SQL text and folds nested scopes into the outer one")
+    void countsStatements() throws SQLException {
+        DataSource dataSource = new InstrumentedDataSource(fakePool());
+
+        try (SqlStats.Scope outer = SqlStats.begin()) {
+            try (SqlStats.Scope request = SqlStats.begin(); Connection connection = dataSource.getConnection()) {
+                for (long id = 1; id <= 3; id++) {
+                    PreparedStatement ps = connection.prepareStatement("select * from users where id = ?");
+                    ps.setLong(1, id);
+                    ps.executeQuery();
+                }
+                assertEquals(1, connection.createStatement().executeUpdate("update users set name = 'x'"));
+
+                SqlStats.Snapshot snapshot = request.snapshot();
+                assertEquals(4, snapshot.statements());
+                assertEquals("select * from users where id = ?", snapshot.mostRepeatedSql());
+                assertEquals(3, snapshot.mostRepeatedCount());
+            }
+            assertEquals(4, outer.snapshot().statements());
+            assertEquals(3, outer.snapshot().mostRepeatedCount());
+        }
+    }
+
+    @Test
+    @DisplayName("statements outside any scope aren't recorded")
+    void noScope() throws SQLException {
+        DataSource dataSource = new InstrumentedDataSource(fakePool());
+        try (Connection connection = dataSource.getConnection()) {
+            connection.prepareStatement("select 1").executeQuery();
+        }
+        try (SqlStats.Scope scope = SqlStats.begin()) {
+            assertEquals(0, scope.snapshot().statements());
+        }
+    }
+
+    @Test
+    @QueryBudget(2)
+    @DisplayName("@QueryBudget - a test within its budget passes")
+    void withinBudget() throws SQLException {
+        DataSource dataSource = new InstrumentedDataSource(fakePool());
+        try (Connection connection = dataSource.getConnection()) {
+            connection.prepareStatement("select 1").executeQuery();
+            connection.prepareStatement("select 2").executeQuery();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.alvaro.psicoapp.monitoring;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Fails the test if it runs more SQL statements than declared, counting everything executed
+ * on the test thread through {@link InstrumentedDataSource} (MockMvc requests included).
+ * Put it on tests that exercise an endpoint or a DTO mapper prone to N+1 queries:
+ *
+ * <pre>
+ * &#64;Test
+ * &#64;QueryBudget(4)
+ * void clinicAgenda_isConstantInQueries() { mockMvc.perform(get("/api/clinic/agenda")) ... }
+ * </pre>
+ *
+ * On a class it applies to every test method that doesn't declare its own.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@ExtendWith(QueryBudgetExtension.class)
+public @interface QueryBudget {
+    /** Maximum number of statements */
+    int value();
+}
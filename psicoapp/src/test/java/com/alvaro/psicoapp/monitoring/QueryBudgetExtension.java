@@ -0,0 +1,40 @@
+package com.alvaro.psicoapp.monitoring;
+
+import org.junit.jupiter.api.extension.AfterEachCallback;
+import org.junit.jupiter.api.extension.BeforeEachCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.platform.commons.support.AnnotationSupport;
+import org.opentest4j.AssertionFailedError;
+
+import java.util.Optional;
+
+/** Enforces {@link QueryBudget}; registered by the annotation itself */
+public class QueryBudgetExtension implements BeforeEachCallback, AfterEachCallback {
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(QueryBudgetExtension.class);
+
+    @Override
+    public void beforeEach(ExtensionContext context) {
+        if (budget(context).isPresent()) {
+            context.getStore(NAMESPACE).put("scope", SqlStats.begin());
+        }
+    }
+
+    @Override
+    public void afterEach(ExtensionContext context) {
+        SqlStats.Scope scope = context.getStore(NAMESPACE).remove("scope", SqlStats.Scope.class);
+        if (scope == null) return;
+        scope.close();
+        SqlStats.Snapshot sql = scope.snapshot();
+        int max = budget(context).orElseThrow().value();
+        if (sql.statements() > max) {
+            throw new AssertionFailedError("Query budget exceeded: " + sql.statements() + " SQL statements, budget "
+                    + max + SqlMetrics.mostRepeated(sql), max, sql.statements());
+        }
+    }
+
+    private static Optional<QueryBudget> budget(ExtensionContext context) {
+        return context.getTestMethod()
+                .flatMap(method -> AnnotationSupport.findAnnotation(method, QueryBudget.class))
+                .or(() -> context.getTestClass().flatMap(type -> AnnotationSupport.findAnnotation(type, QueryBudget.class)));
+    }
+}
@@ -0,0 +1,78 @@
+package com.alvaro.psicoapp.security.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitFilterTest {
+
+    private SimpleMeterRegistry registry;
+    private ConcurrencyLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        // 2 connections x 1 request each, 50 ms wait for a permit
+        filter = new ConcurrencyLimitFilter(registry, 2, 1, 50);
+    }
+
+    @Test
+    @DisplayName("doFilter - a synchronous request gives its permit back when the chain returns")
+    void syncRequest_releasesOnReturn() throws Exception {
+        filter.doFilter(request(), new MockHttpServletResponse(), (req, res) -> assertEquals(1.0, available()));
+
+        assertEquals(2.0, available());
+    }
+
+    @Test
+    @DisplayName("doFilter - an async request holds its permit until the response completes")
+    void asyncRequest_releasesOnComplete() throws Exception {
+        MockHttpServletRequest request = request();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain streaming = (req, res) -> req.startAsync();
+
+        filter.doFilter(request, response, streaming);
+        assertEquals(1.0, available());
+
+        MockHttpServletRequest second = request();
+        filter.doFilter(second, new MockHttpServletResponse(), streaming);
+        assertEquals(0.0, available());
+        MockHttpServletResponse shed = new MockHttpServletResponse();
+        filter.doFilter(request(), shed, (req, res) -> fail("no permit should be left"));
+        assertEquals(503, shed.getStatus());
+
+        ((MockAsyncContext) request.getAsyncContext()).complete();
+        ((MockAsyncContext) second.getAsyncContext()).complete();
+        assertEquals(2.0, available());
+    }
+
+    @Test
+    @DisplayName("doFilter - a chain that fails after starting async still releases its permit once")
+    void asyncRequest_chainThrows_releasesOnce() {
+        MockHttpServletRequest request = request();
+
+        assertThrows(IllegalStateException.class, () -> filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            req.startAsync();
+            throw new IllegalStateException("handler failed");
+        }));
+
+        assertEquals(2.0, available());
+    }
+
+    private double available() {
+        return registry.get("http.server.requests.permits.available").gauge().value();
+    }
+
+    private static MockHttpServletRequest request() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/gdpr/export");
+        request.setAsyncSupported(true);
+        return request;
+    }
+}
@@ -0,0 +1,194 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.domain.AuditLogEntity;
+import com.alvaro.psicoapp.repository.AuditLogRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AuditWriterTest {
+
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private AuditLogRepository auditLogRepository;
+
+    @TempDir Path spillDir;
+
+    /** Actions of every event the mocked DB accepted, in insert order */
+    private final List<String> inserted = new CopyOnWriteArrayList<>();
+    private final List<AuditWriter> started = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        started.forEach(AuditWriter::stop);
+    }
+
+    @Test
+    @DisplayName("submit - batches reach the DB through one batchUpdate, flushed on stop")
+    void submit_writesBatches() {
+        acceptInserts();
+        AuditWriter writer = start(3, AuditWriter.OverflowPolicy.SPILL);
+
+        for (int i = 0; i < 7; i++) writer.submit(event("A" + i));
+        writer.stop();
+
+        assertEquals(List.of("A0", "A1", "A2", "A3", "A4", "A5", "A6"), inserted);
+        assertTrue(spillFiles().isEmpty());
+    }
+
+    @Test
+    @DisplayName("submit - events the DB can't take are spilled to disk, then replayed oldest first on the next start")
+    void dbDown_spillThenReplay() throws IOException {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+        AuditWriter down = start(2, AuditWriter.OverflowPolicy.SPILL);
+        for (int i = 0; i < 5; i++) down.submit(event("S" + i));
+        down.stop();
+
+        List<Path> files = spillFiles();
+        assertEquals(1, files.size());
+        List<String> lines = Files.readAllLines(files.get(0), StandardCharsets.UTF_8);
+        assertEquals(5, lines.size());
+        assertTrue(lines.get(0).contains("\"action\":\"S0\""));
+
+        reset(jdbcTemplate);
+        acceptInserts();
+        start(2, AuditWriter.OverflowPolicy.SPILL);
+
+        awaitTrue(() -> inserted.size() == 5 && spillFiles().isEmpty());
+        assertEquals(List.of("S0", "S1", "S2", "S3", "S4"), inserted);
+    }
+
+    @Test
+    @DisplayName("replay - a DB failure midway keeps the unwritten tail for the next attempt")
+    void replay_partialFailure_keepsTail() throws IOException {
+        AuditWriter stopped = new AuditWriter(jdbcTemplate, 16, 2, 10, AuditWriter.OverflowPolicy.SPILL, 0, spillDir.toString());
+        // Not started: everything goes straight to the spill file
+        for (int i = 0; i < 5; i++) stopped.submit(event("R" + i));
+        stopped.stop();
+        assertEquals(1, spillFiles().size());
+
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(inv -> {
+                    Collection<AuditWriter.Event> batch = inv.getArgument(1);
+                    batch.forEach(e -> inserted.add(e.action()));
+                    return new int[][]{};
+                })
+                .thenThrow(new DataAccessResourceFailureException("connection lost"));
+        AuditWriter writer = start(2, AuditWriter.OverflowPolicy.SPILL);
+        awaitTrue(() -> inserted.size() == 2);
+        writer.stop();
+
+        assertEquals(List.of("R0", "R1"), inserted);
+        List<Path> files = spillFiles();
+        assertEquals(1, files.size());
+        List<String> tail = Files.readAllLines(files.get(0), StandardCharsets.UTF_8);
+        assertEquals(3, tail.size());
+        assertTrue(tail.get(0).contains("\"action\":\"R2\""));
+    }
+
+    @Test
+    @DisplayName("write - a constraint violation drops only the offending row, not its batch")
+    void integrityViolation_dropsOnlyBadRow() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(inv -> {
+                    Collection<AuditWriter.Event> batch = inv.getArgument(1);
+                    if (batch.stream().anyMatch(e -> e.action().equals("BAD"))) {
+                        throw new DataIntegrityViolationException("value too long");
+                    }
+                    batch.forEach(e -> inserted.add(e.action()));
+                    return new int[][]{};
+                });
+        AuditWriter writer = start(3, AuditWriter.OverflowPolicy.SPILL);
+
+        writer.submit(event("OK1"));
+        writer.submit(event("BAD"));
+        writer.submit(event("OK2"));
+        writer.stop();
+
+        assertEquals(List.of("OK1", "OK2"), inserted);
+        assertTrue(spillFiles().isEmpty());
+    }
+
+    @Test
+    @DisplayName("persistAudit - GDPR actions are saved in the caller's transaction by default, others queued")
+    void auditService_syncActionsByDefault() {
+        AuditWriter writer = mock(AuditWriter.class);
+        AuditService auditService = new AuditService(auditLogRepository, writer, AuditService.Durability.ASYNC,
+                Set.of(AuditService.ACCOUNT_ERASURE, AuditService.CONSENT_SIGN,
+                        AuditService.HEALTH_CONSENT_WITHDRAWAL, AuditService.DATA_EXPORT));
+
+        auditService.persistAudit(AuditService.ACCOUNT_ERASURE, "USER", 1L, 1L, "USER", null, 1L, null);
+        auditService.persistAudit(AuditService.DATA_EXPORT, "USER", 1L, 1L, "USER", "Ana", 1L, null);
+        auditService.persistAudit("BOOK_APPOINTMENT", "APPOINTMENT", 9L, 1L, "USER", "Ana", null, null);
+
+        verify(auditLogRepository, times(2)).save(any(AuditLogEntity.class));
+        verify(writer).submit(argThat(e -> e.action().equals("BOOK_APPOINTMENT")));
+        verifyNoMoreInteractions(writer);
+    }
+
+    private void acceptInserts() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(inv -> {
+                    Collection<AuditWriter.Event> batch = inv.getArgument(1);
+                    batch.forEach(e -> inserted.add(e.action()));
+                    return new int[][]{};
+                });
+    }
+
+    private AuditWriter start(int batchSize, AuditWriter.OverflowPolicy overflow) {
+        AuditWriter writer = new AuditWriter(jdbcTemplate, 16, batchSize, 10, overflow, 0, spillDir.toString());
+        writer.start();
+        started.add(writer);
+        return writer;
+    }
+
+    private List<Path> spillFiles() {
+        try (Stream<Path> files = Files.list(spillDir)) {
+            return files.sorted().toList();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not met within 5 s");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static AuditWriter.Event event(String action) {
+        return new AuditWriter.Event(action, "APPOINTMENT", 1L, 2L, "USER", "Ana", 3L, null, Instant.now());
+    }
+}
@@ -0,0 +1,171 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.config.AppTimezone;
+import com.alvaro.psicoapp.domain.AppointmentEntity;
+import com.alvaro.psicoapp.domain.PsychAbsenceEntity;
+import com.alvaro.psicoapp.domain.UserEntity;
+import com.alvaro.psicoapp.domain.WeeklyScheduleEntity;
+import com.alvaro.psicoapp.repository.AppointmentRepository;
+import com.alvaro.psicoapp.repository.PsychAbsenceRepository;
+import com.alvaro.psicoapp.repository.PsychologistProfileRepository;
+import com.alvaro.psicoapp.repository.UserRepository;
+import com.alvaro.psicoapp.repository.WeeklyScheduleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AvailabilityEngineTest {
+
+    private static final long PSYCH_ID = 42L;
+
+    @Mock private WeeklyScheduleRepository weeklyScheduleRepository;
+    @Mock private AppointmentRepository appointmentRepository;
+    @Mock private PsychAbsenceRepository psychAbsenceRepository;
+    @Mock private PsychologistProfileRepository psychologistProfileRepository;
+    @Mock private UserRepository userRepository;
+    @Mock private JdbcTemplate jdbcTemplate;
+
+    private WeeklyScheduleService weeklyScheduleService;
+    private AvailabilityEngine engine;
+    private UserEntity psychologist;
+    private LocalDate today;
+
+    @BeforeEach
+    void setUp() {
+        AvailabilityIndex index = new AvailabilityIndex(appointmentRepository, psychAbsenceRepository, 120, 5);
+        weeklyScheduleService = new WeeklyScheduleService(weeklyScheduleRepository, appointmentRepository,
+                psychAbsenceRepository, psychologistProfileRepository, jdbcTemplate, index);
+        engine = new AvailabilityEngine(weeklyScheduleRepository, appointmentRepository, psychAbsenceRepository,
+                userRepository, weeklyScheduleService, index, jdbcTemplate, true);
+        psychologist = new UserEntity();
+        psychologist.setId(PSYCH_ID);
+        today = LocalDate.now(AppTimezone.APP_ZONE);
+    }
+
+    @Test
+    @DisplayName("getVirtualSlots - offers exactly the slots generateSlots would insert")
+    void virtualSlots_matchGeneratedSlots() {
+        List<WeeklyScheduleEntity> rules = new ArrayList<>();
+        for (int day = 0; day < 7; day++) rules.add(rule(day, "09:00", "13:30", "16:00", "19:00"));
+        // Overlaps Monday's first block: both modes must drop the duplicates the same way
+        rules.add(rule(0, "08:30", "11:30", null, null));
+        when(weeklyScheduleRepository.findByPsychologist_IdAndEnabledTrue(PSYCH_ID)).thenReturn(rules);
+        when(psychologistProfileRepository.findByUser_Id(PSYCH_ID)).thenReturn(Optional.empty());
+        Instant booked = at(today.plusDays(3), "10:00");
+        List<Object[]> appointments = new ArrayList<>();
+        appointments.add(new Object[]{7L, booked, booked.plus(Duration.ofHours(1))});
+        when(appointmentRepository.findActiveIntervals(eq(PSYCH_ID), any(), any())).thenReturn(appointments);
+        PsychAbsenceEntity absence = new PsychAbsenceEntity();
+        absence.setId(3L);
+        absence.setStartTime(at(today.plusDays(5), "00:00"));
+        absence.setEndTime(at(today.plusDays(6), "00:00"));
+        when(psychAbsenceRepository.findOverlapping(eq(PSYCH_ID), any(), any())).thenReturn(List.of(absence));
+
+        List<String> generated = generatedSlots();
+        List<String> offered = engine.getVirtualSlots(psychologist, Instant.now().minus(Duration.ofDays(1)),
+                Instant.now().plus(Duration.ofDays(60))).stream().map(s -> s.getStartTime() + "/" + s.getEndTime()).toList();
+
+        assertFalse(generated.isEmpty());
+        assertEquals(generated, offered);
+        assertTrue(offered.stream().noneMatch(s -> s.startsWith(booked.toString())));
+        assertTrue(offered.stream().noneMatch(s -> s.startsWith(today.plusDays(5).toString())
+                && Instant.parse(s.substring(0, s.indexOf('/'))).isBefore(absence.getEndTime())
+                && !Instant.parse(s.substring(0, s.indexOf('/'))).isBefore(absence.getStartTime())));
+    }
+
+    @Test
+    @DisplayName("getVirtualSlots - nothing past the generator's two-week window, however far the request reaches")
+    void virtualSlots_stopAtHorizon() {
+        when(weeklyScheduleRepository.findByPsychologist_IdAndEnabledTrue(PSYCH_ID))
+                .thenReturn(List.of(rule(today.getDayOfWeek().getValue() - 1, "09:00", "10:00", null, null)));
+        when(psychologistProfileRepository.findByUser_Id(PSYCH_ID)).thenReturn(Optional.empty());
+        when(appointmentRepository.findActiveIntervals(eq(PSYCH_ID), any(), any())).thenReturn(List.of());
+        when(psychAbsenceRepository.findOverlapping(eq(PSYCH_ID), any(), any())).thenReturn(List.of());
+
+        List<AppointmentEntity> slots = engine.getVirtualSlots(psychologist, Instant.now(), Instant.now().plus(Duration.ofDays(90)));
+
+        Instant[] horizon = WeeklyScheduleService.horizon(ZonedDateTime.now(AppTimezone.APP_ZONE), WeeklyScheduleService.WEEKS_AHEAD);
+        assertFalse(slots.isEmpty());
+        assertTrue(slots.size() <= 3, "slots " + slots.size());
+        for (AppointmentEntity slot : slots) {
+            assertTrue(slot.getStartTime().isBefore(horizon[1]));
+            assertFalse(slot.getStartTime().isBefore(horizon[0]));
+            assertTrue(AvailabilityEngine.isVirtualId(slot.getId()));
+            assertEquals(PSYCH_ID, AvailabilityEngine.psychologistIdOf(slot.getId()));
+            assertEquals(slot.getStartTime(), AvailabilityEngine.startOf(slot.getId()));
+        }
+    }
+
+    @Test
+    @DisplayName("horizon - from today in the morning, from tomorrow once it's past midday, two weeks long")
+    void horizon_middayRule() {
+        LocalDate day = LocalDate.of(2026, 10, 19);
+        Instant[] morning = WeeklyScheduleService.horizon(ZonedDateTime.of(day, LocalTime.of(11, 59), AppTimezone.APP_ZONE), 2);
+        Instant[] afternoon = WeeklyScheduleService.horizon(ZonedDateTime.of(day, LocalTime.of(12, 0), AppTimezone.APP_ZONE), 2);
+
+        assertEquals(at(day, "00:00"), morning[0]);
+        assertEquals(at(day.plusWeeks(2), "00:00"), morning[1]);
+        assertEquals(at(day.plusDays(1), "00:00"), afternoon[0]);
+        assertEquals(at(day.plusDays(1).plusWeeks(2), "00:00"), afternoon[1]);
+    }
+
+    @Test
+    @DisplayName("getVirtualSlots - off: no virtual slots and no queries")
+    void disabled_offersNothing() {
+        AvailabilityEngine disabled = new AvailabilityEngine(weeklyScheduleRepository, appointmentRepository,
+                psychAbsenceRepository, userRepository, weeklyScheduleService,
+                new AvailabilityIndex(appointmentRepository, psychAbsenceRepository, 120, 5), jdbcTemplate, false);
+
+        assertFalse(disabled.isEnabled());
+        assertTrue(disabled.getVirtualSlots(psychologist, Instant.now(), Instant.now().plus(Duration.ofDays(14))).isEmpty());
+        verifyNoInteractions(weeklyScheduleRepository, appointmentRepository, psychAbsenceRepository);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> generatedSlots() {
+        weeklyScheduleService.generateSlots(PSYCH_ID, WeeklyScheduleService.WEEKS_AHEAD);
+        ArgumentCaptor<Collection<Instant[]>> inserted = ArgumentCaptor.forClass(Collection.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), inserted.capture(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        return inserted.getValue().stream()
+                .sorted((a, b) -> a[0].compareTo(b[0]))
+                .map(s -> s[0] + "/" + s[1])
+                .toList();
+    }
+
+    private WeeklyScheduleEntity rule(int dayOfWeek, String start1, String end1, String start2, String end2) {
+        WeeklyScheduleEntity rule = new WeeklyScheduleEntity();
+        rule.setPsychologist(psychologist);
+        rule.setDayOfWeek(dayOfWeek);
+        rule.setEnabled(true);
+        rule.setStartTime1(start1);
+        rule.setEndTime1(end1);
+        rule.setStartTime2(start2);
+        rule.setEndTime2(end2);
+        return rule;
+    }
+
+    private static Instant at(LocalDate date, String time) {
+        return ZonedDateTime.of(date, LocalTime.parse(time), AppTimezone.APP_ZONE).toInstant();
+    }
+}
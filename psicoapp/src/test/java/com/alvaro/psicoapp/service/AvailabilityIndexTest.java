@@ -0,0 +1,220 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.domain.AppointmentEntity;
+import com.alvaro.psicoapp.domain.AppointmentStatusEnum;
+import com.alvaro.psicoapp.domain.PsychAbsenceEntity;
+import com.alvaro.psicoapp.domain.UserEntity;
+import com.alvaro.psicoapp.repository.AppointmentRepository;
+import com.alvaro.psicoapp.repository.PsychAbsenceRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AvailabilityIndexTest {
+
+    private static final long PSYCH_ID = 5L;
+
+    @Mock private AppointmentRepository appointmentRepository;
+    @Mock private PsychAbsenceRepository psychAbsenceRepository;
+
+    private AvailabilityIndex index;
+    private UserEntity psychologist;
+    private Instant base;
+    /** Rows the mocked DB returns for findActiveIntervals */
+    private final List<Object[]> rows = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        index = new AvailabilityIndex(appointmentRepository, psychAbsenceRepository, 120, 5);
+        psychologist = new UserEntity();
+        psychologist.setId(PSYCH_ID);
+        base = Instant.now().truncatedTo(ChronoUnit.HOURS).plus(Duration.ofDays(2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("checks - one window load serves later checks and batch conflicts")
+    void checks_servedFromWindow() {
+        stubDb();
+        rows.add(row(1L, at(0), at(1)));
+
+        assertTrue(index.hasAppointmentOverlap(PSYCH_ID, at(0), at(1), null));
+        assertFalse(index.hasAppointmentOverlap(PSYCH_ID, at(0), at(1), 1L));
+        assertFalse(index.hasAbsenceOverlap(PSYCH_ID, at(0), at(1)));
+        boolean[] conflicts = index.findConflicts(PSYCH_ID, List.of(
+                new Instant[]{at(0), at(1)}, new Instant[]{at(1), at(2)}, new Instant[]{at(-1), at(0)}));
+
+        assertArrayEquals(new boolean[]{true, false, false}, conflicts);
+        verify(appointmentRepository, times(1)).findActiveIntervals(eq(PSYCH_ID), any(), any());
+    }
+
+    @Test
+    @DisplayName("checks - ranges before the window go to the DB")
+    void checks_beforeWindow_queryDb() {
+        Instant past = Instant.now().minus(Duration.ofDays(10));
+        when(appointmentRepository.findActiveIntervals(PSYCH_ID, past, past.plus(Duration.ofHours(1))))
+                .thenReturn(List.<Object[]>of(row(9L, past, past.plus(Duration.ofHours(1)))));
+
+        assertTrue(index.hasAppointmentOverlap(PSYCH_ID, past, past.plus(Duration.ofHours(1)), null));
+        assertFalse(index.hasAppointmentOverlap(PSYCH_ID, past, past.plus(Duration.ofHours(1)), 9L));
+    }
+
+    @Test
+    @DisplayName("write hooks - applied to the cached window after commit, not before, and not on rollback")
+    void hooks_afterCommit() {
+        stubDb();
+        assertFalse(index.hasAppointmentOverlap(PSYCH_ID, at(3), at(4), null));
+
+        TransactionSynchronizationManager.initSynchronization();
+        index.appointmentSaved(appointment(2L, at(3), at(4), AppointmentStatusEnum.REQUESTED));
+        assertFalse(index.hasAppointmentOverlap(PSYCH_ID, at(3), at(4), null));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+        assertTrue(index.hasAppointmentOverlap(PSYCH_ID, at(3), at(4), null));
+
+        TransactionSynchronizationManager.initSynchronization();
+        index.appointmentSaved(appointment(2L, at(3), at(4), AppointmentStatusEnum.CANCELLED));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        // Rolled back: the window is dropped and reloaded from the DB, where the row was never written
+        assertFalse(index.hasAppointmentOverlap(PSYCH_ID, at(3), at(4), null));
+        verify(appointmentRepository, times(2)).findActiveIntervals(eq(PSYCH_ID), any(), any());
+    }
+
+    @Test
+    @DisplayName("write hooks - moving or cancelling an appointment frees its old slot; absences tracked too")
+    void hooks_moveCancelAndAbsences() {
+        stubDb();
+        rows.add(row(4L, at(0), at(1)));
+        assertTrue(index.hasAppointmentOverlap(PSYCH_ID, at(0), at(1), null));
+
+        index.appointmentSaved(appointment(4L, at(5), at(6), AppointmentStatusEnum.CONFIRMED));
+        assertFalse(index.hasAppointmentOverlap(PSYCH_ID, at(0), at(1), null));
+        assertTrue(index.hasAppointmentOverlap(PSYCH_ID, at(5), at(6), null));
+
+        index.appointmentSaved(appointment(4L, at(5), at(6), AppointmentStatusEnum.CANCELLED));
+        assertFalse(index.hasAppointmentOverlap(PSYCH_ID, at(5), at(6), null));
+
+        PsychAbsenceEntity absence = new PsychAbsenceEntity();
+        absence.setId(8L);
+        absence.setPsychologist(psychologist);
+        absence.setStartTime(at(24));
+        absence.setEndTime(at(72));
+        index.absenceSaved(absence);
+        assertTrue(index.hasAbsenceOverlap(PSYCH_ID, at(30), at(31)));
+        index.absenceDeleted(absence);
+        assertFalse(index.hasAbsenceOverlap(PSYCH_ID, at(30), at(31)));
+        verify(appointmentRepository, times(1)).findActiveIntervals(eq(PSYCH_ID), any(), any());
+    }
+
+    @Test
+    @DisplayName("window - a load that read the DB before a concurrent commit is used once but not cached")
+    void window_staleLoadDiscarded() {
+        when(psychAbsenceRepository.findOverlapping(eq(PSYCH_ID), any(), any())).thenReturn(List.of());
+        AppointmentEntity committed = appointment(6L, at(2), at(3), AppointmentStatusEnum.REQUESTED);
+        when(appointmentRepository.findActiveIntervals(eq(PSYCH_ID), any(), any()))
+                .thenAnswer(inv -> {
+                    // Another request commits its booking while this load is reading: it finds
+                    // no window to patch, and the rows read here are already out of date
+                    index.appointmentSaved(committed);
+                    return List.of();
+                })
+                .thenAnswer(inv -> List.<Object[]>of(row(6L, at(2), at(3))));
+
+        assertFalse(index.hasAppointmentOverlap(PSYCH_ID, at(2), at(3), null));
+        assertTrue(index.hasAppointmentOverlap(PSYCH_ID, at(2), at(3), null));
+        assertTrue(index.hasAppointmentOverlap(PSYCH_ID, at(2), at(3), null));
+        verify(appointmentRepository, times(2)).findActiveIntervals(eq(PSYCH_ID), any(), any());
+    }
+
+    @Test
+    @DisplayName("invalidate - drops the window after commit, so bulk inserts are seen on the next check")
+    void invalidate_afterCommit() {
+        stubDb();
+        assertFalse(index.hasAppointmentOverlap(PSYCH_ID, at(7), at(8), null));
+
+        TransactionSynchronizationManager.initSynchronization();
+        index.invalidate(PSYCH_ID);
+        rows.add(row(10L, at(7), at(8)));
+        assertFalse(index.hasAppointmentOverlap(PSYCH_ID, at(7), at(8), null));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertTrue(index.hasAppointmentOverlap(PSYCH_ID, at(7), at(8), null));
+        verify(appointmentRepository, times(2)).findActiveIntervals(eq(PSYCH_ID), any(), any());
+    }
+
+    @Test
+    @DisplayName("write checks - see rows committed elsewhere while the cached window is still stale")
+    void forWrite_bypassesCachedWindow() {
+        stubDb();
+        assertFalse(index.hasAppointmentOverlap(PSYCH_ID, at(9), at(10), null));
+
+        // Committed by another replica: no hook runs here, so the cached window misses it
+        rows.add(row(11L, at(9), at(10)));
+        assertFalse(index.hasAppointmentOverlap(PSYCH_ID, at(9), at(10), null));
+
+        assertTrue(index.hasAppointmentOverlapForWrite(PSYCH_ID, at(9), at(10), null));
+        assertFalse(index.hasAppointmentOverlapForWrite(PSYCH_ID, at(9), at(10), 11L));
+        assertArrayEquals(new boolean[]{true, false}, index.findConflictsForWrite(PSYCH_ID, List.of(
+                new Instant[]{at(9), at(10)}, new Instant[]{at(10), at(11)})));
+        assertArrayEquals(new boolean[]{false, false}, index.findAbsenceConflictsForWrite(PSYCH_ID, List.of(
+                new Instant[]{at(9), at(10)}, new Instant[]{at(10), at(11)})));
+        // The uncached reads leave the stale window in place for read paths until it expires
+        assertFalse(index.hasAppointmentOverlap(PSYCH_ID, at(9), at(10), null));
+    }
+
+    private void stubDb() {
+        when(appointmentRepository.findActiveIntervals(eq(PSYCH_ID), any(), any())).thenAnswer(inv -> new ArrayList<>(rows));
+        when(psychAbsenceRepository.findOverlapping(eq(PSYCH_ID), any(), any())).thenReturn(List.of());
+    }
+
+    /** Ends the test's fake transaction the way the transaction manager would */
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization sync : synchronizations) {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) sync.afterCommit();
+            sync.afterCompletion(status);
+        }
+    }
+
+    private AppointmentEntity appointment(Long id, Instant start, Instant end, AppointmentStatusEnum status) {
+        AppointmentEntity appointment = new AppointmentEntity();
+        appointment.setId(id);
+        appointment.setPsychologist(psychologist);
+        appointment.setStartTime(start);
+        appointment.setEndTime(end);
+        appointment.setStatus(status);
+        return appointment;
+    }
+
+    private static Object[] row(Long id, Instant start, Instant end) {
+        return new Object[]{id, start, end};
+    }
+
+    private Instant at(int hours) {
+        return base.plus(Duration.ofHours(hours));
+    }
+}
@@ -0,0 +1,55 @@
+package com.alvaro.psicoapp.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AvatarThumbnailServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @DisplayName("thumbnailUrl - rounds up to an offered size and leaves external avatars alone")
+    void thumbnailUrl() {
+        assertEquals("/uploads/avatars/thumbs/48/abc.jpg", AvatarThumbnailService.thumbnailUrl("/uploads/avatars/abc.jpg", 40));
+        assertEquals("/uploads/avatars/thumbs/128/abc.jpg", AvatarThumbnailService.thumbnailUrl("/uploads/avatars/abc.jpg", 96));
+        assertEquals("/uploads/avatars/thumbs/256/abc.jpg", AvatarThumbnailService.thumbnailUrl("/uploads/avatars/abc.jpg", 1024));
+        assertEquals("https://lh3.googleusercontent.com/a/x", AvatarThumbnailService.thumbnailUrl("https://lh3.googleusercontent.com/a/x", 48));
+        assertNull(AvatarThumbnailService.thumbnailUrl(null, 48));
+    }
+
+    @Test
+    @DisplayName("get - renders a square thumbnail from the original and stores it")
+    void get_rendersAndStores() throws Exception {
+        LocalBlobStore store = new LocalBlobStore(tempDir.resolve("uploads"));
+        Path original = tempDir.resolve("uploads").resolve(UploadStorageService.AVATARS).resolve("abc.png");
+        Files.createDirectories(original.getParent());
+        ImageIO.write(new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB), "png", original.toFile());
+        AvatarThumbnailService service = new AvatarThumbnailService(store, tempDir.resolve("staging").toString(), 1, 1);
+        try {
+            AvatarThumbnailService.Thumbnail thumbnail = service.get("abc.png", 128);
+
+            assertEquals("image/jpeg", thumbnail.contentType());
+            assertEquals("\"abc-128.jpg\"", thumbnail.etag());
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(thumbnail.bytes()));
+            assertEquals(128, image.getWidth());
+            assertEquals(128, image.getHeight());
+            assertTrue(store.exists(AvatarThumbnailService.THUMBNAILS, "abc-128.jpg"));
+
+            assertNull(service.get("abc.png", 100));
+            assertNull(service.get("missing.png", 48));
+            assertNull(service.get("../abc.png", 48));
+        } finally {
+            service.shutdown();
+        }
+    }
+}
@@ -65,6 +65,9 @@ class CalendarServiceTest {
     @Mock
     private AuditService auditService;
 
+    @Mock
+    private AvailabilityEngine availabilityEngine;
+
     private CalendarService calendarService;
 
     private UserEntity psychologist;
@@ -81,7 +84,9 @@ class CalendarServiceTest {
                 psychAbsenceRepository,
                 emailService,
                 notificationService,
-                auditService
+                auditService,
+                new AvailabilityIndex(appointmentRepository, psychAbsenceRepository, 120, 5),
+                availabilityEngine
         );
 
         psychologist = new UserEntity();
@@ -110,8 +115,7 @@ class CalendarServiceTest {
         req.end = end;
         req.price = new BigDecimal("50.00");
 
-        when(appointmentRepository.findByPsychologist_IdAndStartTimeBetweenOrderByStartTimeAsc(
-                eq(1L), any(Instant.class), any(Instant.class)))
+        when(appointmentRepository.findActiveIntervals(eq(1L), any(Instant.class), any(Instant.class)))
                 .thenReturn(Collections.emptyList());
         when(psychAbsenceRepository.findOverlapping(eq(1L), any(Instant.class), any(Instant.class)))
                 .thenReturn(Collections.emptyList());
@@ -184,9 +188,9 @@ class CalendarServiceTest {
         req.end = end;
         req.price = new BigDecimal("50.00");
 
-        when(appointmentRepository.findByPsychologist_IdAndStartTimeBetweenOrderByStartTimeAsc(
-                eq(1L), any(Instant.class), any(Instant.class)))
-                .thenReturn(List.of(existingSlot));
+        when(appointmentRepository.findActiveIntervals(eq(1L), any(Instant.class), any(Instant.class)))
+                .thenReturn(List.<Object[]>of(new Object[]{
+                        existingSlot.getId(), existingSlot.getStartTime(), existingSlot.getEndTime()}));
 
         IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
                 () -> calendarService.createSlot(psychologist, req));
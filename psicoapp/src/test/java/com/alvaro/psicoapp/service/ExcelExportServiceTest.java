@@ -0,0 +1,155 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.domain.TestEntity;
+import com.alvaro.psicoapp.repository.FactorResultRepository;
+import com.alvaro.psicoapp.repository.TestRepository;
+import com.alvaro.psicoapp.repository.TestResultRepository;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExcelExportServiceTest {
+
+    private static final long USER_ID = 4L;
+
+    @Mock private TestResultRepository testResultRepository;
+    @Mock private FactorResultRepository factorResultRepository;
+    @Mock private TestRepository testRepository;
+
+    private ExcelExportService service;
+    /** Result rows as findExportPage returns them: {testId, title, subfactorId, name, code, score, max, percentage} */
+    private final List<Object[]> results = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        service = new ExcelExportService(testResultRepository, factorResultRepository, testRepository);
+        // Test 1 spans the first page boundary; test 2 reuses subfactor ids below that boundary
+        for (long sf = 1; sf <= 700; sf++) results.add(result(1L, "Ansiedad", sf, sf % 10 == 0 ? null : sf / 10.0));
+        for (long sf : new long[]{5, 9, 12}) results.add(result(2L, "Ansiedad", sf, 1.0));
+    }
+
+    @Test
+    @DisplayName("writeUserResults - keyset pages on (testId, subfactorId) return every row once across ties")
+    void writeUserResults_pagesAcrossTies() throws IOException {
+        stubKeysetPages();
+        when(factorResultRepository.findExportRows(USER_ID, 1L))
+                .thenReturn(List.<Object[]>of(new Object[]{"Neuroticismo", "N", 30.0, 50.0, 60.0}));
+        when(factorResultRepository.findExportRows(USER_ID, 2L)).thenReturn(List.of());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writeUserResults(USER_ID, out);
+
+        verify(testResultRepository).findExportPage(eq(USER_ID), eq(0L), eq(Long.MAX_VALUE), eq(0L), eq(0L), any());
+        verify(testResultRepository).findExportPage(eq(USER_ID), eq(0L), eq(Long.MAX_VALUE), eq(1L), eq(500L), any());
+        verifyNoMoreInteractions(testResultRepository);
+
+        try (XSSFWorkbook workbook = read(out)) {
+            assertEquals(2, workbook.getNumberOfSheets());
+            Sheet first = workbook.getSheetAt(0);
+            assertEquals("Ansiedad", first.getSheetName());
+            assertEquals("Resultados del Test: Ansiedad", first.getRow(0).getCell(0).getStringCellValue());
+            assertEquals("Subfactor", first.getRow(2).getCell(0).getStringCellValue());
+            // Rows past the in-memory window were flushed to disk and still come back, in order
+            for (int i = 0; i < 700; i++) {
+                assertEquals("SF1-" + (i + 1), first.getRow(3 + i).getCell(1).getStringCellValue());
+            }
+            assertEquals(CellType.BLANK, first.getRow(3 + 9).getCell(4).getCellType());
+            assertEquals(0.1, first.getRow(3).getCell(4).getNumericCellValue(), 1e-9);
+            assertEquals("Factor General", first.getRow(704).getCell(0).getStringCellValue());
+            assertEquals("Neuroticismo", first.getRow(705).getCell(0).getStringCellValue());
+            assertEquals(60.0, first.getRow(705).getCell(4).getNumericCellValue(), 1e-9);
+
+            Sheet second = workbook.getSheetAt(1);
+            assertEquals("Ansiedad (2)", second.getSheetName());
+            assertEquals(List.of("SF2-5", "SF2-9", "SF2-12"),
+                    List.of(second.getRow(3).getCell(1).getStringCellValue(), second.getRow(4).getCell(1).getStringCellValue(),
+                            second.getRow(5).getCell(1).getStringCellValue()));
+            assertNull(second.getRow(6));
+        }
+    }
+
+    @Test
+    @DisplayName("writeTestResults - pages one test by subfactor id; a test without results still gets its sheet")
+    void writeTestResults_oneSheet() throws IOException {
+        stubKeysetPages();
+        TestEntity test = new TestEntity();
+        test.setId(1L);
+        test.setTitle("Ansiedad: rasgo/estado");
+        TestEntity empty = new TestEntity();
+        empty.setId(3L);
+        empty.setTitle("Depresión");
+        when(testRepository.findById(1L)).thenReturn(Optional.of(test));
+        when(testRepository.findById(3L)).thenReturn(Optional.of(empty));
+        when(factorResultRepository.findExportRows(eq(USER_ID), anyLong())).thenReturn(List.of());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.writeTestResults(USER_ID, 1L, out);
+
+        verify(testResultRepository).findExportPage(eq(USER_ID), eq(1L), eq(1L), eq(1L), eq(0L), any());
+        verify(testResultRepository).findExportPage(eq(USER_ID), eq(1L), eq(1L), eq(1L), eq(500L), any());
+        try (XSSFWorkbook workbook = read(out)) {
+            assertEquals(1, workbook.getNumberOfSheets());
+            Sheet sheet = workbook.getSheetAt(0);
+            // Characters Excel rejects in sheet names are replaced
+            assertEquals("Ansiedad  rasgo estado", sheet.getSheetName());
+            assertEquals(702, sheet.getLastRowNum());
+            assertEquals("SF1-700", sheet.getRow(702).getCell(1).getStringCellValue());
+        }
+
+        out.reset();
+        service.writeTestResults(USER_ID, 3L, out);
+        try (XSSFWorkbook workbook = read(out)) {
+            Sheet sheet = workbook.getSheetAt(0);
+            assertEquals("Depresión", sheet.getSheetName());
+            assertEquals("Resultados del Test: Depresión", sheet.getRow(0).getCell(0).getStringCellValue());
+            assertEquals(0, sheet.getLastRowNum());
+        }
+    }
+
+    /** Answers findExportPage with the query's keyset predicate over {@link #results} */
+    private void stubKeysetPages() {
+        when(testResultRepository.findExportPage(eq(USER_ID), anyLong(), anyLong(), anyLong(), anyLong(), any(Pageable.class)))
+                .thenAnswer(inv -> {
+                    long fromTestId = inv.getArgument(1);
+                    long toTestId = inv.getArgument(2);
+                    long afterTestId = inv.getArgument(3);
+                    long afterSubfactorId = inv.getArgument(4);
+                    Pageable page = inv.getArgument(5);
+                    return results.stream()
+                            .filter(r -> (Long) r[0] >= fromTestId && (Long) r[0] <= toTestId)
+                            .filter(r -> (Long) r[0] > afterTestId || ((Long) r[0] == afterTestId && (Long) r[2] > afterSubfactorId))
+                            .sorted(Comparator.<Object[], Long>comparing(r -> (Long) r[0]).thenComparing(r -> (Long) r[2]))
+                            .limit(page.getPageSize())
+                            .toList();
+                });
+    }
+
+    private static Object[] result(Long testId, String title, long subfactorId, Double percentage) {
+        return new Object[]{testId, title, subfactorId, "Subfactor " + subfactorId, "SF" + testId + "-" + subfactorId,
+                (double) subfactorId, 100.0, percentage};
+    }
+
+    private static XSSFWorkbook read(ByteArrayOutputStream out) throws IOException {
+        return new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()));
+    }
+}
@@ -0,0 +1,121 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.service.ExcelSheetReader.CellKind;
+import com.alvaro.psicoapp.service.ExcelSheetReader.SheetCell;
+import com.alvaro.psicoapp.service.ExcelSheetReader.SheetRow;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExcelSheetReaderTest {
+
+    @TempDir Path tmp;
+
+    @Test
+    @DisplayName("readXlsx - SAX rows keep POI cell types, cached formula results, row gaps and the column cap")
+    void readXlsx_cellTypes() throws Exception {
+        Path file = tmp.resolve("sheet.xlsx");
+        try (Workbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+            fill(workbook);
+            workbook.write(out);
+        }
+
+        List<SheetRow> rows = new ArrayList<>();
+        ExcelSheetReader.readXlsx(file.toFile(), rows::add);
+
+        assertExpectedRows(rows);
+    }
+
+    @Test
+    @DisplayName("readXls - the HSSF path yields the same rows as the SAX one")
+    void readXls_sameRows() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Workbook workbook = new HSSFWorkbook()) {
+            fill(workbook);
+            workbook.write(out);
+        }
+
+        List<SheetRow> rows = new ArrayList<>();
+        ExcelSheetReader.readXls(new ByteArrayInputStream(out.toByteArray()), rows::add);
+
+        assertExpectedRows(rows);
+    }
+
+    @Test
+    @DisplayName("readXlsx - inline strings (as streaming writers produce them) over thousands of rows, first sheet only")
+    void readXlsx_inlineStringsManyRows() throws Exception {
+        Path file = tmp.resolve("large.xlsx");
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(100); OutputStream out = Files.newOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("Preguntas");
+            for (int i = 0; i < 5000; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue("Pregunta " + i);
+                row.createCell(1).setCellValue(i);
+            }
+            workbook.createSheet("Otra").createRow(0).createCell(0).setCellValue("no se lee");
+            workbook.write(out);
+            workbook.dispose();
+        }
+
+        List<SheetRow> rows = new ArrayList<>();
+        ExcelSheetReader.readXlsx(file.toFile(), rows::add);
+
+        assertEquals(5000, rows.size());
+        SheetRow last = rows.get(4999);
+        assertEquals(4999, last.index());
+        assertEquals(new SheetCell(CellKind.STRING, "Pregunta 4999", null), last.cell(0));
+        assertEquals(new SheetCell(CellKind.NUMERIC, null, 4999.0), last.cell(1));
+    }
+
+    /** Row 0: every cell type plus a sixth column; row 1 missing; row 2 sparse; row 3 a number stored as text */
+    private static void fill(Workbook workbook) {
+        Sheet sheet = workbook.createSheet("Test");
+        Row first = sheet.createRow(0);
+        first.createCell(0).setCellValue("Título");
+        first.createCell(1).setCellValue(3);
+        first.createCell(2).setCellValue(true);
+        first.createCell(3).setCellFormula("B1*2");
+        first.createCell(4).setCellFormula("A1&\"!\"");
+        first.createCell(5).setCellValue("fuera del límite");
+        sheet.createRow(2).createCell(2).setCellValue("solo C");
+        sheet.createRow(3).createCell(0).setCellValue("3");
+        workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+    }
+
+    private static void assertExpectedRows(List<SheetRow> rows) {
+        assertEquals(List.of(0, 2, 3), rows.stream().map(SheetRow::index).toList());
+
+        SheetRow first = rows.get(0);
+        assertEquals(new SheetCell(CellKind.STRING, "Título", null), first.cell(0));
+        assertEquals(new SheetCell(CellKind.NUMERIC, null, 3.0), first.cell(1));
+        assertEquals(new SheetCell(CellKind.BOOLEAN, "true", null), first.cell(2));
+        assertEquals(new SheetCell(CellKind.FORMULA, null, 6.0), first.cell(3));
+        assertEquals(new SheetCell(CellKind.FORMULA, "Título!", null), first.cell(4));
+        assertEquals(ExcelSheetReader.MAX_COLUMNS, first.cells().length);
+        assertNull(first.cell(5));
+
+        SheetRow sparse = rows.get(1);
+        assertNull(sparse.cell(0));
+        assertNull(sparse.cell(1));
+        assertEquals(new SheetCell(CellKind.STRING, "solo C", null), sparse.cell(2));
+
+        assertEquals(new SheetCell(CellKind.STRING, "3", null), rows.get(2).cell(0));
+    }
+}
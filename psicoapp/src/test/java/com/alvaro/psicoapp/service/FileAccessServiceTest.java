@@ -0,0 +1,81 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.domain.RoleConstants;
+import com.alvaro.psicoapp.domain.UserEntity;
+import com.alvaro.psicoapp.repository.ClinicPatientDocumentRepository;
+import com.alvaro.psicoapp.repository.TaskFileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class FileAccessServiceTest {
+
+    private static final String PATH = "/uploads/tasks/a.pdf";
+
+    @Mock
+    private TaskFileRepository taskFileRepository;
+
+    @Mock
+    private ClinicPatientDocumentRepository clinicPatientDocumentRepository;
+
+    private FileAccessService fileAccessService;
+
+    @BeforeEach
+    void setUp() {
+        fileAccessService = new FileAccessService(taskFileRepository, clinicPatientDocumentRepository, 60);
+    }
+
+    private static UserEntity user(Long id, String role) {
+        UserEntity user = new UserEntity();
+        user.setId(id);
+        user.setRole(role);
+        return user;
+    }
+
+    @Test
+    @DisplayName("checkTaskFile - psychologist grant is looked up once and then cached")
+    void checkTaskFile_psychologist_cachesGrant() {
+        UserEntity psychologist = user(2L, RoleConstants.PSYCHOLOGIST);
+        when(taskFileRepository.existsByFilePathAndTask_Psychologist_Id(PATH, 2L)).thenReturn(true);
+
+        fileAccessService.checkTaskFile(psychologist, PATH);
+        fileAccessService.checkTaskFile(psychologist, PATH);
+
+        verify(taskFileRepository, times(1)).existsByFilePathAndTask_Psychologist_Id(PATH, 2L);
+        verify(taskFileRepository, never()).existsByFilePathAndTask_User_Id(any(), any());
+    }
+
+    @Test
+    @DisplayName("checkTaskFile - patient without the file is denied every time")
+    void checkTaskFile_patient_deniedNotCached() {
+        UserEntity patient = user(1L, RoleConstants.USER);
+        when(taskFileRepository.existsByFilePathAndTask_User_Id(PATH, 1L)).thenReturn(false);
+
+        for (int i = 0; i < 2; i++) {
+            ResponseStatusException ex = assertThrows(ResponseStatusException.class,
+                    () -> fileAccessService.checkTaskFile(patient, PATH));
+            assertEquals(HttpStatus.FORBIDDEN, ex.getStatusCode());
+        }
+        verify(taskFileRepository, times(2)).existsByFilePathAndTask_User_Id(PATH, 1L);
+    }
+
+    @Test
+    @DisplayName("checkClinicDoc - grants are per company")
+    void checkClinicDoc_grantsPerCompany() {
+        when(clinicPatientDocumentRepository.existsByCompanyIdAndFileName(10L, "clinic-docs/x.pdf")).thenReturn(true);
+        when(clinicPatientDocumentRepository.existsByCompanyIdAndFileName(11L, "clinic-docs/x.pdf")).thenReturn(false);
+
+        fileAccessService.checkClinicDoc(10L, "clinic-docs/x.pdf");
+        assertThrows(ResponseStatusException.class, () -> fileAccessService.checkClinicDoc(11L, "clinic-docs/x.pdf"));
+    }
+}
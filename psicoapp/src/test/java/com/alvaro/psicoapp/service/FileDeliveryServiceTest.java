@@ -0,0 +1,245 @@
+package com.alvaro.psicoapp.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class FileDeliveryServiceTest {
+
+    private static final String DIRECTORY = "documents";
+    private static final Instant MODIFIED = Instant.parse("2024-03-01T10:15:30.250Z");
+    private static final String SHA256_NAME = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08.pdf";
+
+    @TempDir Path root;
+
+    private FileDeliveryService service;
+    private final byte[] pdf = new byte[2000];
+
+    @BeforeEach
+    void setUp() throws IOException {
+        service = new FileDeliveryService(new LocalBlobStore(root));
+        for (int i = 0; i < pdf.length; i++) pdf[i] = (byte) i;
+        write("informe.pdf", pdf);
+    }
+
+    @Test
+    @DisplayName("parseRange - bounded, open-ended and suffix ranges")
+    void parseRange_singleRanges() {
+        assertArrayEquals(new long[]{0, 99}, FileDeliveryService.parseRange("bytes=0-99", 1000));
+        assertArrayEquals(new long[]{900, 999}, FileDeliveryService.parseRange("bytes=900-", 1000));
+        assertArrayEquals(new long[]{800, 999}, FileDeliveryService.parseRange("bytes=-200", 1000));
+        // End past the file is clamped
+        assertArrayEquals(new long[]{500, 999}, FileDeliveryService.parseRange("bytes=500-5000", 1000));
+    }
+
+    @Test
+    @DisplayName("parseRange - unsatisfiable ranges are empty, unsupported ones serve the whole file")
+    void parseRange_unsatisfiableOrIgnored() {
+        assertEquals(0, FileDeliveryService.parseRange("bytes=1000-", 1000).length);
+        assertEquals(0, FileDeliveryService.parseRange("bytes=-0", 1000).length);
+        assertNull(FileDeliveryService.parseRange("bytes=0-9,20-29", 1000));
+        assertNull(FileDeliveryService.parseRange("items=0-9", 1000));
+        assertNull(FileDeliveryService.parseRange("bytes=9-0", 1000));
+    }
+
+    @Test
+    @DisplayName("serve - whole file with validators; a matching If-None-Match or If-Modified-Since gets a bodiless 304")
+    void serve_validators_notModified() throws IOException {
+        MockHttpServletResponse first = serve("informe.pdf", request());
+
+        assertEquals(HttpStatus.OK.value(), first.getStatus());
+        assertArrayEquals(pdf, first.getContentAsByteArray());
+        assertEquals(2000, first.getContentLengthLong());
+        assertEquals("application/pdf", first.getContentType());
+        assertEquals("bytes", first.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals("private, no-cache", first.getHeader(HttpHeaders.CACHE_CONTROL));
+        // Last-Modified has second precision, and so does the ETag built from it
+        assertEquals(MODIFIED.getEpochSecond() * 1000, first.getDateHeader(HttpHeaders.LAST_MODIFIED));
+        String etag = first.getHeader(HttpHeaders.ETAG);
+        assertEquals("\"7d0-" + Long.toHexString(MODIFIED.getEpochSecond() * 1000) + "\"", etag);
+
+        MockHttpServletRequest byTag = request();
+        byTag.addHeader(HttpHeaders.IF_NONE_MATCH, "\"otra\", W/" + etag);
+        MockHttpServletResponse notModified = serve("informe.pdf", byTag);
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), notModified.getStatus());
+        assertEquals(0, notModified.getContentAsByteArray().length);
+        assertEquals(etag, notModified.getHeader(HttpHeaders.ETAG));
+
+        MockHttpServletRequest byDate = request();
+        byDate.addHeader(HttpHeaders.IF_MODIFIED_SINCE, MODIFIED.toEpochMilli());
+        assertEquals(HttpStatus.NOT_MODIFIED.value(), serve("informe.pdf", byDate).getStatus());
+
+        // If-None-Match wins over If-Modified-Since
+        MockHttpServletRequest changed = request();
+        changed.addHeader(HttpHeaders.IF_NONE_MATCH, "\"otra\"");
+        changed.addHeader(HttpHeaders.IF_MODIFIED_SINCE, MODIFIED.toEpochMilli());
+        assertArrayEquals(pdf, serve("informe.pdf", changed).getContentAsByteArray());
+    }
+
+    @Test
+    @DisplayName("serve - a single range gets a 206 with its slice; a range past the end gets a 416")
+    void serve_ranges() throws IOException {
+        MockHttpServletRequest bounded = request();
+        bounded.addHeader(HttpHeaders.RANGE, "bytes=100-199");
+        MockHttpServletResponse partial = serve("informe.pdf", bounded);
+
+        assertEquals(HttpStatus.PARTIAL_CONTENT.value(), partial.getStatus());
+        assertEquals("bytes 100-199/2000", partial.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(100, partial.getContentLengthLong());
+        assertArrayEquals(Arrays.copyOfRange(pdf, 100, 200), partial.getContentAsByteArray());
+
+        MockHttpServletRequest suffix = request();
+        suffix.addHeader(HttpHeaders.RANGE, "bytes=-10");
+        assertArrayEquals(Arrays.copyOfRange(pdf, 1990, 2000), serve("informe.pdf", suffix).getContentAsByteArray());
+
+        MockHttpServletRequest pastEnd = request();
+        pastEnd.addHeader(HttpHeaders.RANGE, "bytes=2000-");
+        MockHttpServletResponse unsatisfiable = serve("informe.pdf", pastEnd);
+        assertEquals(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value(), unsatisfiable.getStatus());
+        assertEquals("bytes */2000", unsatisfiable.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(0, unsatisfiable.getContentAsByteArray().length);
+    }
+
+    @Test
+    @DisplayName("serve - a range whose If-Range no longer matches gets the whole file with a 200")
+    void serve_ifRangeMismatch_wholeFile() throws IOException {
+        String etag = serve("informe.pdf", request()).getHeader(HttpHeaders.ETAG);
+
+        MockHttpServletRequest matching = request();
+        matching.addHeader(HttpHeaders.RANGE, "bytes=0-9");
+        matching.addHeader(HttpHeaders.IF_RANGE, etag);
+        assertEquals(HttpStatus.PARTIAL_CONTENT.value(), serve("informe.pdf", matching).getStatus());
+
+        for (String stale : new String[]{"\"7d0-0\"", "W/" + etag, "Fri, 01 Mar 2024 09:00:00 GMT"}) {
+            MockHttpServletRequest request = request();
+            request.addHeader(HttpHeaders.RANGE, "bytes=0-9");
+            request.addHeader(HttpHeaders.IF_RANGE, stale);
+            MockHttpServletResponse response = serve("informe.pdf", request);
+
+            assertEquals(HttpStatus.OK.value(), response.getStatus(), stale);
+            assertNull(response.getHeader(HttpHeaders.CONTENT_RANGE));
+            assertArrayEquals(pdf, response.getContentAsByteArray());
+        }
+
+        MockHttpServletRequest byDate = request();
+        byDate.addHeader(HttpHeaders.RANGE, "bytes=0-9");
+        byDate.addHeader(HttpHeaders.IF_RANGE, "Fri, 01 Mar 2024 10:15:30 GMT");
+        assertEquals(HttpStatus.PARTIAL_CONTENT.value(), serve("informe.pdf", byDate).getStatus());
+    }
+
+    @Test
+    @DisplayName("serve - content-addressed (SHA-256) names are cached for a year as immutable")
+    void serve_contentAddressed_immutable() throws IOException {
+        write(SHA256_NAME, pdf);
+
+        assertEquals("private, max-age=31536000, immutable", serve(SHA256_NAME, request()).getHeader(HttpHeaders.CACHE_CONTROL));
+        assertEquals("private, no-cache", serve("informe.pdf", request()).getHeader(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @Test
+    @DisplayName("serve - text is sent from a .gz variant written on first use, with its own ETag; identity otherwise")
+    void serve_gzipVariant() throws IOException {
+        byte[] text = "sesión 1: todo bien\n".repeat(200).getBytes(StandardCharsets.UTF_8);
+        write("notas.txt", text);
+        Path variant = root.resolve(DIRECTORY).resolve("notas.txt.gz");
+
+        MockHttpServletRequest gzip = request();
+        gzip.addHeader(HttpHeaders.ACCEPT_ENCODING, "br;q=0, gzip, deflate");
+        MockHttpServletResponse compressed = serve("notas.txt", gzip);
+
+        assertTrue(Files.exists(variant));
+        assertEquals("gzip", compressed.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, compressed.getHeader(HttpHeaders.VARY));
+        assertEquals(Files.size(variant), compressed.getContentLengthLong());
+        assertTrue(compressed.getHeader(HttpHeaders.ETAG).endsWith("-gzip\""));
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.getContentAsByteArray()))) {
+            assertArrayEquals(text, in.readAllBytes());
+        }
+
+        // A gzip refused with q=0 falls back to the plain file
+        MockHttpServletRequest refused = request();
+        refused.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0");
+        MockHttpServletResponse identity = serve("notas.txt", refused);
+        assertNull(identity.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, identity.getHeader(HttpHeaders.VARY));
+        assertNotEquals(compressed.getHeader(HttpHeaders.ETAG), identity.getHeader(HttpHeaders.ETAG));
+        assertArrayEquals(text, identity.getContentAsByteArray());
+
+        // Binary types are never compressed
+        MockHttpServletRequest pdfGzip = request();
+        pdfGzip.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        assertNull(serve("informe.pdf", pdfGzip).getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertFalse(Files.exists(root.resolve(DIRECTORY).resolve("informe.pdf.gz")));
+    }
+
+    @Test
+    @DisplayName("serve - a store without local files redirects to a presigned URL; one without either is an error")
+    void serve_remoteStore_redirects() throws IOException {
+        BlobStore remote = mock(BlobStore.class);
+        when(remote.localPath(DIRECTORY, "informe.pdf")).thenReturn(null);
+        when(remote.presignedGet(eq(DIRECTORY), eq("informe.pdf"), any()))
+                .thenReturn(Optional.of(URI.create("https://bucket.example/documents/informe.pdf?X-Amz-Signature=abc")));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        new FileDeliveryService(remote).serve(DIRECTORY, "informe.pdf", request(), response);
+
+        assertEquals(HttpStatus.FOUND.value(), response.getStatus());
+        assertEquals("https://bucket.example/documents/informe.pdf?X-Amz-Signature=abc", response.getRedirectedUrl());
+        assertEquals("private, no-store", response.getHeader(HttpHeaders.CACHE_CONTROL));
+
+        when(remote.presignedGet(eq(DIRECTORY), eq("informe.pdf"), any())).thenReturn(Optional.empty());
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> new FileDeliveryService(remote).serve(DIRECTORY, "informe.pdf", request(), new MockHttpServletResponse()));
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, e.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("serve - traversal names are rejected and missing files are a 404")
+    void serve_badNameOrMissing() {
+        assertEquals(HttpStatus.BAD_REQUEST, assertThrows(ResponseStatusException.class,
+                () -> serve("../secreto.pdf", request())).getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, assertThrows(ResponseStatusException.class,
+                () -> serve("otro.pdf", request())).getStatusCode());
+    }
+
+    private MockHttpServletResponse serve(String filename, MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.serve(DIRECTORY, filename, request, response);
+        return response;
+    }
+
+    private static MockHttpServletRequest request() {
+        return new MockHttpServletRequest("GET", "/api/files");
+    }
+
+    /** Writes an upload with a fixed mtime, a while ago so a variant written now is never stale */
+    private void write(String filename, byte[] content) throws IOException {
+        Path file = root.resolve(DIRECTORY).resolve(filename);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+        Files.setLastModifiedTime(file, FileTime.from(MODIFIED));
+    }
+}
@@ -0,0 +1,199 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.domain.AppointmentStatusEnum;
+import com.alvaro.psicoapp.domain.RoleConstants;
+import com.alvaro.psicoapp.domain.UserEntity;
+import com.alvaro.psicoapp.repository.*;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GdprExportServiceTest {
+
+    @Mock
+    private DailyMoodEntryRepository dailyMoodEntryRepository;
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Mock
+    private TaskRepository taskRepository;
+
+    @Mock
+    private EvaluationTestResultRepository evaluationTestResultRepository;
+
+    @Mock
+    private UserAnswerRepository userAnswerRepository;
+
+    @Mock
+    private NotificationRepository notificationRepository;
+
+    @Mock
+    private ChatMessageRepository chatMessageRepository;
+
+    @Mock
+    private ChatEncryptionService chatEncryptionService;
+
+    @Mock
+    private AuditService auditService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private UserEntity testUser;
+
+    @BeforeEach
+    void setUp() {
+        testUser = new UserEntity();
+        testUser.setId(1L);
+        testUser.setName("Test User");
+        testUser.setEmail("test@example.com");
+        testUser.setRole(RoleConstants.USER);
+        testUser.setBirthDate(LocalDate.of(1995, 6, 15));
+    }
+
+    private GdprExportService service(int pageSize) {
+        return new GdprExportService(dailyMoodEntryRepository, appointmentRepository, taskRepository,
+                evaluationTestResultRepository, userAnswerRepository, notificationRepository, chatMessageRepository,
+                chatEncryptionService, auditService, objectMapper, pageSize);
+    }
+
+    private byte[] export(GdprExportService service, GdprExportService.Format format) throws IOException {
+        ResponseEntity<StreamingResponseBody> response = service.export(testUser, format);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    @DisplayName("export - writes every category and decrypts chat per conversation")
+    void export_json_allCategories() throws IOException {
+        when(dailyMoodEntryRepository.findExportPage(eq(1L), eq(0L), any())).thenReturn(List.<Object[]>of(
+                new Object[]{10L, LocalDate.of(2025, 3, 1), 4, "happy,calm", "reading", "alone", "home", "Good day"}));
+        when(appointmentRepository.findExportPage(eq(1L), eq(0L), any())).thenReturn(List.<Object[]>of(
+                new Object[]{20L, Instant.parse("2025-03-02T10:00:00Z"), Instant.parse("2025-03-02T11:00:00Z"), AppointmentStatusEnum.BOOKED, null}));
+        when(taskRepository.findExportPage(eq(1L), eq(0L), any())).thenReturn(List.<Object[]>of(
+                new Object[]{30L, "Meditation exercise", "Practice 10 minutes", null, Instant.parse("2025-03-01T09:00:00Z")}));
+        when(evaluationTestResultRepository.findExportPage(eq(1L), eq(0L), any())).thenReturn(List.<Object[]>of(
+                new Object[]{40L, "Anxiety Scale", new BigDecimal("15.5"), "moderate", Instant.parse("2025-03-03T09:00:00Z")}));
+        when(userAnswerRepository.findExportPage(eq(1L), eq(0L), any())).thenReturn(List.<Object[]>of(
+                new Object[]{50L, "Some question", null, 3.0, "free text"}));
+        when(chatMessageRepository.findExportPage(eq(1L), eq(0L), any())).thenReturn(List.<Object[]>of(
+                new Object[]{60L, 7L, "USER", Instant.parse("2025-03-04T09:00:00Z"), "c1", null},
+                new Object[]{61L, 8L, "PSYCHOLOGIST", Instant.parse("2025-03-04T09:01:00Z"), "c2", "file.pdf"},
+                new Object[]{62L, 7L, "PSYCHOLOGIST", Instant.parse("2025-03-04T09:02:00Z"), "c3", null}));
+        when(chatEncryptionService.decryptAll(List.of("c1", "c3"), 7L, 1L)).thenReturn(Arrays.asList("hola", null));
+        when(chatEncryptionService.decryptAll(List.of("c2"), 8L, 1L)).thenReturn(List.of("buenas"));
+
+        JsonNode result = objectMapper.readTree(export(service(500), GdprExportService.Format.JSON));
+
+        verify(auditService).persistAudit(AuditService.DATA_EXPORT, "USER", 1L, 1L, RoleConstants.USER, "Test User", 1L,
+                "{\"format\":\"JSON\"}");
+        verifyNoMoreInteractions(auditService);
+        List<String> fields = new ArrayList<>();
+        result.fieldNames().forEachRemaining(fields::add);
+        assertEquals(List.of("profile", "moodEntries", "appointments", "tasks", "evaluationResults",
+                "testAnswers", "notifications", "chatMessages"), fields);
+
+        assertEquals("Test User", result.at("/profile/name").asText());
+        assertEquals("1995-06-15", result.at("/profile/birthDate").asText());
+        assertEquals("2025-03-01", result.at("/moodEntries/0/date").asText());
+        assertEquals(4, result.at("/moodEntries/0/moodRating").asInt());
+        assertEquals("BOOKED", result.at("/appointments/0/status").asText());
+        assertFalse(result.at("/tasks/0/completed").asBoolean());
+        assertEquals(15.5, result.at("/evaluationResults/0/score").asDouble());
+        assertTrue(result.at("/testAnswers/0/answer").isNull());
+        assertEquals("free text", result.at("/testAnswers/0/textValue").asText());
+        assertEquals(0, result.get("notifications").size());
+
+        // Message order is kept; undecryptable content is masked
+        JsonNode chat = result.get("chatMessages");
+        assertEquals("hola", chat.at("/0/content").asText());
+        assertEquals("buenas", chat.at("/1/content").asText());
+        assertTrue(chat.at("/1/hasAttachment").asBoolean());
+        assertEquals("[encrypted]", chat.at("/2/content").asText());
+    }
+
+    @Test
+    @DisplayName("export - pages each category by the last id read")
+    void export_json_keysetPaging() throws IOException {
+        when(dailyMoodEntryRepository.findExportPage(eq(1L), eq(0L), any())).thenReturn(List.<Object[]>of(
+                new Object[]{3L, LocalDate.of(2025, 3, 1), 1, null, null, null, null, null},
+                new Object[]{5L, LocalDate.of(2025, 3, 2), 2, null, null, null, null, null}));
+        when(dailyMoodEntryRepository.findExportPage(eq(1L), eq(5L), any())).thenReturn(List.<Object[]>of(
+                new Object[]{9L, LocalDate.of(2025, 3, 3), 3, null, null, null, null, null}));
+
+        JsonNode result = objectMapper.readTree(export(service(2), GdprExportService.Format.JSON));
+
+        JsonNode moods = result.get("moodEntries");
+        assertEquals(3, moods.size());
+        assertEquals(3, moods.at("/2/moodRating").asInt());
+        verify(dailyMoodEntryRepository, times(2)).findExportPage(eq(1L), any(), any());
+    }
+
+    @Test
+    @DisplayName("export - zip holds one JSON file per category")
+    void export_zip_oneFilePerCategory() throws IOException {
+        when(taskRepository.findExportPage(eq(1L), eq(0L), any())).thenReturn(List.<Object[]>of(
+                new Object[]{30L, "Meditation exercise", null, Instant.parse("2025-03-05T09:00:00Z"), Instant.parse("2025-03-01T09:00:00Z")}));
+
+        byte[] zip = export(service(500), GdprExportService.Format.ZIP);
+
+        verify(auditService).persistAudit(AuditService.DATA_EXPORT, "USER", 1L, 1L, RoleConstants.USER, "Test User", 1L,
+                "{\"format\":\"ZIP\"}");
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                names.add(entry.getName());
+                JsonNode content = objectMapper.readTree(in.readAllBytes());
+                if (entry.getName().equals("tasks.json")) {
+                    assertEquals(1, content.size());
+                    assertTrue(content.at("/0/completed").asBoolean());
+                }
+            }
+        }
+        assertEquals(List.of("profile.json", "moodEntries.json", "appointments.json", "tasks.json",
+                "evaluationResults.json", "testAnswers.json", "notifications.json", "chatMessages.json"), names);
+    }
+
+    @Test
+    @DisplayName("export - audited only once the body is written; a failure mid-stream is audited as failed")
+    void export_auditedOnCompletion() throws IOException {
+        when(taskRepository.findExportPage(eq(1L), eq(0L), any())).thenThrow(new IllegalStateException("connection reset"));
+
+        ResponseEntity<StreamingResponseBody> response = service(500).export(testUser, GdprExportService.Format.JSON);
+        verifyNoInteractions(auditService);
+
+        assertThrows(IllegalStateException.class, () -> response.getBody().writeTo(new ByteArrayOutputStream()));
+        verify(auditService).persistAudit(AuditService.DATA_EXPORT_FAILED, "USER", 1L, 1L, RoleConstants.USER, "Test User", 1L,
+                "{\"format\":\"JSON\",\"error\":\"IllegalStateException\"}");
+        verify(auditService, never()).persistAudit(eq(AuditService.DATA_EXPORT), any(), any(), any(), any(), any(), any(), any());
+    }
+}
@@ -0,0 +1,56 @@
+package com.alvaro.psicoapp.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobLeaseServiceTest {
+
+    @Test
+    @DisplayName("split - near-equal ranges that put every ID in exactly one partition")
+    void split_coversEveryIdOnce() {
+        List<JobLeaseService.Partition> partitions = JobLeaseService.split(10, 109, 8);
+
+        assertEquals(8, partitions.size());
+        assertEquals(Long.MIN_VALUE, partitions.get(0).fromId());
+        assertEquals(Long.MAX_VALUE, partitions.get(7).toId());
+        for (long id = 0; id < 200; id++) {
+            long owners = 0;
+            for (JobLeaseService.Partition p : partitions) if (p.contains(id)) owners++;
+            assertEquals(1, owners, "id " + id);
+        }
+        for (int i = 1; i < 7; i++) {
+            long width = partitions.get(i).toId() - partitions.get(i).fromId();
+            assertTrue(width == 12 || width == 13, "width " + width);
+        }
+    }
+
+    @Test
+    @DisplayName("split - no more partitions than IDs in the range")
+    void split_fewIds() {
+        assertEquals(3, JobLeaseService.split(5, 7, 8).size());
+        assertEquals(1, JobLeaseService.split(5, 5, 8).size());
+        assertEquals(1, JobLeaseService.split(7, 5, 8).size());
+    }
+
+    @Test
+    @DisplayName("single instance - leases are always granted and every partition runs locally")
+    void disabled_runsLocally() throws Throwable {
+        JobLeaseService service = new JobLeaseService(null, new SimpleMeterRegistry(), false, "node", 60000, 4);
+
+        assertTrue(service.tryAcquire("Job.run", null).isPresent());
+        assertFalse(service.isHeldElsewhere("Job.run"));
+        List<Integer> ran = new ArrayList<>();
+        service.runAs("Job.run", "run-1", null, () -> {
+            service.fence();
+            service.forEachPartition(1, 100, p -> ran.add(p.index()));
+            return null;
+        });
+        assertEquals(List.of(0, 1, 2, 3), ran);
+    }
+}
@@ -0,0 +1,88 @@
+package com.alvaro.psicoapp.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PiiEncryptionServiceTest {
+
+    private final PiiEncryptionService service = new PiiEncryptionService("test-pii-key", 1, "", 0);
+
+    @Test
+    @DisplayName("encrypt/decrypt - round trip with a fresh IV per call")
+    void randomized_roundTrip() {
+        String first = service.encrypt("José Pérez");
+        String second = service.encrypt("José Pérez");
+
+        assertTrue(first.startsWith("ENC:"));
+        assertNotEquals(first, second);
+        assertEquals(List.of("José Pérez", "José Pérez", "plain"), service.decryptAll(List.of(first, second, "plain")));
+    }
+
+    @Test
+    @DisplayName("encryptDeterministic - same value twice in a row on one thread, memo disabled")
+    void deterministic_repeatedOnSameThread() {
+        String first = service.encryptDeterministic("Ana@Example.com");
+        String again = service.encryptDeterministic("ana@example.com");
+        String other = service.encryptDeterministic("luis@example.com");
+
+        assertEquals(first, again);
+        assertEquals(first, service.encryptDeterministic("ana@example.com"));
+        assertNotEquals(first, other);
+        assertEquals("ana@example.com", service.decryptDeterministic(first));
+        assertEquals("luis@example.com", new PiiEncryptionService("test-pii-key", 1, "", 100).decryptDeterministic(other));
+    }
+
+    @Test
+    @DisplayName("decrypt - tampered values are returned as stored")
+    void decrypt_tampered() {
+        String value = service.encrypt("secreto");
+        char flipped = value.charAt(10) == 'A' ? 'B' : 'A';
+        String tampered = value.substring(0, 10) + flipped + value.substring(11);
+
+        assertEquals(tampered, service.decrypt(tampered));
+        assertEquals("ENC:AAAA", service.decrypt("ENC:AAAA"));
+    }
+
+    @Test
+    @DisplayName("reencrypt - rotates old-key and plaintext values to the current version")
+    void reencrypt_keyRotation() {
+        String oldName = service.encrypt("Ana");
+        String oldEmail = service.encryptDeterministic("ana@example.com");
+        PiiEncryptionService rotated = new PiiEncryptionService("new-pii-key", 2, "1:test-pii-key", 0);
+
+        assertEquals("Ana", rotated.decrypt(oldName));
+        assertEquals("ana@example.com", rotated.decryptDeterministic(oldEmail));
+        assertTrue(rotated.needsReencryption(oldName, false));
+        assertTrue(rotated.needsReencryption("plain", false));
+
+        String newName = rotated.reencrypt(oldName, false);
+        String newEmail = rotated.reencrypt(oldEmail, true);
+        assertTrue(newName.startsWith("ENC:v2:"));
+        assertEquals(rotated.encryptDeterministic("ana@example.com"), newEmail);
+        assertFalse(rotated.needsReencryption(newName, false));
+        assertEquals(newName, rotated.reencrypt(newName, false));
+        assertEquals("Ana", rotated.decrypt(newName));
+        // The old key alone can't read the new version and returns it as stored
+        assertEquals(newName, service.decrypt(newName));
+    }
+
+    @Test
+    @DisplayName("deterministicLookupValues - every stored form of an email while a rotation is migrated")
+    void lookupValues_everyKeyVersion() {
+        String oldEmail = service.encryptDeterministic("ana@example.com");
+        PiiEncryptionService rotated = new PiiEncryptionService("new-pii-key", 2, "1:test-pii-key", 10);
+
+        List<String> values = rotated.deterministicLookupValues("Ana@example.com");
+
+        assertEquals(List.of("Ana@example.com", rotated.encryptDeterministic("ana@example.com"), oldEmail), values);
+        assertSame(values, rotated.deterministicLookupValues("Ana@example.com"));
+        // Without previous keys: the plaintext and current form only
+        assertEquals(List.of("ana@example.com", oldEmail), service.deterministicLookupValues("ana@example.com"));
+        assertEquals(Collections.singletonList(null), rotated.deterministicLookupValues(null));
+    }
+}
@@ -0,0 +1,164 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.config.SchedulingConfig;
+import com.alvaro.psicoapp.dto.AdminDtos;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScheduledJobServiceTest {
+
+    /** What the jobs did; kept outside Jobs, whose fields the AOP proxy doesn't share */
+    static class Probe {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger slowRuns = new AtomicInteger();
+        final AtomicReference<String> slowThread = new AtomicReference<>();
+    }
+
+    /** Jobs as the app declares them; not scheduled here, the test calls or triggers them */
+    public static class Jobs {
+        private final Probe probe;
+
+        public Jobs(Probe probe) {
+            this.probe = probe;
+        }
+
+        @Scheduled(fixedRate = 60_000)
+        public void slow() throws InterruptedException {
+            probe.slowRuns.incrementAndGet();
+            probe.slowThread.set(Thread.currentThread().getName());
+            probe.started.countDown();
+            probe.release.await(10, TimeUnit.SECONDS);
+        }
+
+        @Scheduled(cron = "0 0 3 * * *", scheduler = SchedulingConfig.BULK)
+        public void nightly() {
+        }
+
+        @Scheduled(fixedDelay = 60_000, scheduler = SchedulingConfig.CRITICAL)
+        public void failing() {
+            throw new IllegalStateException("boom");
+        }
+    }
+
+    @EnableAspectJAutoProxy(proxyTargetClass = true)
+    static class AopConfig {
+    }
+
+    private AnnotationConfigApplicationContext context;
+    private ScheduledJobService service;
+    private Jobs jobs;
+    private final Probe probe = new Probe();
+    private MeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        context = new AnnotationConfigApplicationContext();
+        context.register(AopConfig.class, SchedulingConfig.class, ScheduledJobAspect.class, ScheduledJobService.class, Jobs.class);
+        context.registerBean(MeterRegistry.class, () -> registry);
+        context.registerBean(Probe.class, () -> probe);
+        context.registerBean(JobLeaseService.class,
+                () -> new JobLeaseService((JdbcTemplate) null, registry, false, "node", 60000, 4));
+        context.refresh();
+        service = context.getBean(ScheduledJobService.class);
+        jobs = context.getBean(Jobs.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        probe.release.countDown();
+        context.close();
+    }
+
+    @Test
+    @DisplayName("trigger - 404 for an unknown job")
+    void trigger_unknown() {
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> service.trigger("Jobs.nope"));
+        assertEquals(HttpStatus.NOT_FOUND, e.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("trigger - runs on the job's lane, 409 while running, overlapping runs skipped")
+    void trigger_runsOnLane() throws Exception {
+        service.trigger("Jobs.slow");
+        assertTrue(probe.started.await(5, TimeUnit.SECONDS));
+        assertTrue(probe.slowThread.get().startsWith("periodic-"), probe.slowThread.get());
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> service.trigger("Jobs.slow"));
+        assertEquals(HttpStatus.CONFLICT, e.getStatusCode());
+
+        // A scheduled run arriving meanwhile is skipped by the run guard
+        jobs.slow();
+        assertEquals(1, probe.slowRuns.get());
+        assertEquals(1.0, registry.get("scheduled.jobs.skipped").tags("job", "Jobs.slow", "reason", "running").counter().count());
+
+        probe.release.countDown();
+        AdminDtos.ScheduledJobStatus status = awaitFinished("Jobs.slow");
+        assertEquals("success", status.lastOutcome());
+        assertTrue(status.lastManual());
+        assertEquals("periodic", status.lane());
+        assertEquals(1, registry.get("scheduled.jobs.duration").tags("job", "Jobs.slow", "outcome", "success").timer().count());
+        // Manual runs don't count as late scheduled runs
+        assertNull(registry.find("scheduled.jobs.lag").tags("job", "Jobs.slow").timer());
+    }
+
+    @Test
+    @DisplayName("execute - records the lag of scheduled runs and moves the next due time forward")
+    void execute_recordsLag() {
+        AdminDtos.ScheduledJobStatus before = status("Jobs.nightly");
+        assertNotNull(before.nextRunAt());
+        assertEquals("bulk", before.lane());
+
+        jobs.nightly();
+
+        assertEquals(1, registry.get("scheduled.jobs.lag").tags("job", "Jobs.nightly", "lane", "bulk").timer().count());
+        AdminDtos.ScheduledJobStatus after = status("Jobs.nightly");
+        assertFalse(after.lastManual());
+        assertFalse(after.running());
+        assertFalse(after.nextRunAt().isBefore(before.nextRunAt()));
+    }
+
+    @Test
+    @DisplayName("execute - failures are rethrown, recorded and don't leave the job marked as running")
+    void execute_failure() {
+        assertThrows(IllegalStateException.class, () -> jobs.failing());
+
+        AdminDtos.ScheduledJobStatus status = status("Jobs.failing");
+        assertEquals("failure", status.lastOutcome());
+        assertTrue(status.lastError().contains("boom"));
+        assertFalse(status.running());
+        assertEquals(1, registry.get("scheduled.jobs.duration").tags("job", "Jobs.failing", "outcome", "failure").timer().count());
+    }
+
+    private AdminDtos.ScheduledJobStatus status(String job) {
+        return service.list().stream().filter(s -> s.name().equals(job)).findFirst().orElseThrow();
+    }
+
+    private AdminDtos.ScheduledJobStatus awaitFinished(String job) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        AdminDtos.ScheduledJobStatus status = status(job);
+        while ((status.running() || status.lastOutcome() == null) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            status = status(job);
+        }
+        return status;
+    }
+}
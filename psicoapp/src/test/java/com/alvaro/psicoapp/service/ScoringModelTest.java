@@ -0,0 +1,394 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.domain.FactorEntity;
+import com.alvaro.psicoapp.domain.QuestionEntity;
+import com.alvaro.psicoapp.domain.SubfactorEntity;
+import com.alvaro.psicoapp.domain.TestEntity;
+import com.alvaro.psicoapp.util.FormulaEvaluator;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pins {@link ScoringModel} to what calculateAndSaveResults stored before the model existed:
+ * {@link PreviousScoring} is that code with the repository calls replaced by the fixture.
+ */
+class ScoringModelTest {
+
+    private static final double EPS = 1e-9;
+
+    @Test
+    @DisplayName("score - TCP: bipolar codes like N(-), inverse items and unanswered questions score as before")
+    void score_tcp_matchesPreviousScoring() {
+        Fixture tcp = tcp();
+        Random random = new Random(31);
+
+        for (int i = 0; i < 200; i++) {
+            assertSameAsPrevious(tcp, randomSubmission(tcp, random));
+        }
+    }
+
+    @Test
+    @DisplayName("score - TCA: Gaussian percentages and IG = INV + IV placed before the factors it sums")
+    void score_tca_matchesPreviousScoring() {
+        Fixture tca = tca();
+        Random random = new Random(32);
+
+        for (int i = 0; i < 200; i++) {
+            assertSameAsPrevious(tca, randomSubmission(tca, random));
+        }
+    }
+
+    @Test
+    @DisplayName("score - factors without formula, unknown and self terms, empty subfactors and formula cycles score as before")
+    void score_edgeCases_matchPreviousScoring() {
+        Fixture fixture = edgeCases();
+        Random random = new Random(33);
+
+        assertTrue(fixture.compile().hasFormulaCycle());
+        assertSameAsPrevious(fixture, List.of());
+        for (int i = 0; i < 200; i++) {
+            assertSameAsPrevious(fixture, randomSubmission(fixture, random));
+        }
+    }
+
+    @Test
+    @DisplayName("score - only the first answer to a question counts; answer value wins over numericValue")
+    void score_firstAnswerPerQuestion() {
+        Fixture fixture = new Fixture("generico");
+        FactorEntity factor = fixture.factor("F", "A");
+        SubfactorEntity a = fixture.subfactor("A", factor);
+        QuestionEntity q1 = fixture.question(a, false, 0, 1, 2, 3);
+        QuestionEntity q2 = fixture.question(a, true, 0, 1, 2, 3);
+        List<Object[]> rows = List.of(
+                new Object[]{q1.getId(), 1, 2.5},
+                new Object[]{q2.getId(), null, 0.5},
+                new Object[]{q1.getId(), 3, null},
+                new Object[]{999L, 3, null});
+
+        ScoringModel model = fixture.compile();
+        ScoringModel.Scores scores = model.score(rows);
+
+        // q1 = 1 (its second row is ignored), q2 inverse = 3 - 0.5
+        assertEquals(3.5, scores.subfactorScore(0), EPS);
+        assertEquals(6.0, scores.subfactorMax(0), EPS);
+        assertEquals(3.5, scores.factorScore(0), EPS);
+        assertEquals(6.0, scores.factorMax(0), EPS);
+        assertEquals(3.5 / 6.0 * 100.0, model.percentage(scores.factorScore(0), scores.factorMax(0)), EPS);
+        assertSameAsPrevious(fixture, rows);
+    }
+
+    @Test
+    @DisplayName("score - TCA golden values: IG sums INV and IV, percentages on the Gaussian curve")
+    void score_tca_goldenValues() {
+        Fixture tca = tca();
+        // Every TCA question is worth 0..2; answer 2 to the first half of each subfactor, nothing else
+        List<Object[]> rows = new ArrayList<>();
+        Map<Long, Integer> answeredPerSubfactor = new HashMap<>();
+        for (QuestionEntity q : tca.questions) {
+            int n = answeredPerSubfactor.merge(q.getSubfactor().getId(), 1, Integer::sum);
+            if (n <= 2) rows.add(new Object[]{q.getId(), 2, null});
+        }
+
+        ScoringModel model = tca.compile();
+        ScoringModel.Scores scores = model.score(rows);
+
+        assertEquals(List.of("IG", "INV", "IV"), tca.factors.stream().map(FactorEntity::getCode).toList());
+        assertEquals(16.0, scores.factorScore(0), EPS);
+        assertEquals(32.0, scores.factorMax(0), EPS);
+        assertEquals(8.0, scores.factorScore(1), EPS);
+        assertEquals(16.0, scores.factorMax(1), EPS);
+        assertEquals(50.0, model.percentage(scores.factorScore(0), scores.factorMax(0)), 1e-6);
+        assertEquals(FormulaEvaluator.gaussianPercentile(4.0, 8.0), model.percentage(scores.subfactorScore(0), scores.subfactorMax(0)), EPS);
+        assertSameAsPrevious(tca, rows);
+    }
+
+    private static void assertSameAsPrevious(Fixture fixture, List<Object[]> rows) {
+        ScoringModel model = fixture.compile();
+        ScoringModel.Scores scores = model.score(rows);
+        PreviousScoring previous = new PreviousScoring(fixture, rows);
+
+        for (int i = 0; i < model.subfactorCount(); i++) {
+            double[] expected = previous.subfactorResults.get(model.subfactorId(i));
+            String code = fixture.subfactors.get(i).getCode();
+            if (expected == null) {
+                assertTrue(scores.subfactorMax(i) <= 0, "subfactor " + code + " had no result before");
+                continue;
+            }
+            assertEquals(expected[0], scores.subfactorScore(i), EPS, "score of subfactor " + code);
+            assertEquals(expected[1], scores.subfactorMax(i), EPS, "max of subfactor " + code);
+            assertEquals(expected[2], model.percentage(scores.subfactorScore(i), scores.subfactorMax(i)), EPS, "percentage of subfactor " + code);
+        }
+        for (int i = 0; i < model.factorCount(); i++) {
+            double[] expected = previous.factorResults.get(model.factorId(i));
+            String code = fixture.factors.get(i).getCode();
+            if (expected == null) {
+                assertTrue(scores.factorMax(i) <= 0, "factor " + code + " had no result before");
+                continue;
+            }
+            assertEquals(expected[0], scores.factorScore(i), EPS, "score of factor " + code);
+            assertEquals(expected[1], scores.factorMax(i), EPS, "max of factor " + code);
+            assertEquals(expected[2], model.percentage(scores.factorScore(i), scores.factorMax(i)), EPS, "percentage of factor " + code);
+        }
+    }
+
+    /** Answers most questions, some by numericValue (in halves), some twice; questions outside the test are noise */
+    private static List<Object[]> randomSubmission(Fixture fixture, Random random) {
+        List<Object[]> rows = new ArrayList<>();
+        for (QuestionEntity q : fixture.questions) {
+            int answers = random.nextInt(10) == 0 ? 0 : random.nextInt(8) == 0 ? 2 : 1;
+            for (int a = 0; a < answers; a++) {
+                List<Integer> values = fixture.answerValues.get(q.getId());
+                if (values.isEmpty() || random.nextInt(6) == 0) {
+                    rows.add(new Object[]{q.getId(), null, random.nextBoolean() ? null : random.nextInt(9) / 2.0});
+                } else {
+                    rows.add(new Object[]{q.getId(), values.get(random.nextInt(values.size())), null});
+                }
+            }
+        }
+        if (random.nextBoolean()) rows.add(new Object[]{10_000L, 4, null});
+        Collections.shuffle(rows, random);
+        return rows;
+    }
+
+    /** The 16PF-style structure initTcpStructure creates, four questions per subfactor, every third one inverse */
+    private static Fixture tcp() {
+        Fixture f = new Fixture("personalidad");
+        FactorEntity f1 = f.factor("sociales", "A+F+N(-)+Q2(-)");
+        FactorEntity f2 = f.factor("autonomia", "E+H+Q2+Q1");
+        FactorEntity f3 = f.factor("apertura", "I+M+Q1_AP");
+        FactorEntity f4 = f.factor("autocontrol", "G+Q3");
+        FactorEntity f5 = f.factor("ansiedad", "C+O+L+Q4");
+        Map<String, FactorEntity> byCode = new LinkedHashMap<>();
+        for (String code : List.of("A", "C", "F", "N(-)", "Q2(-)")) byCode.put(code, f1);
+        for (String code : List.of("E", "H", "Q2", "Q1")) byCode.put(code, f2);
+        for (String code : List.of("I", "M", "Q1_AP")) byCode.put(code, f3);
+        for (String code : List.of("G", "Q3")) byCode.put(code, f4);
+        for (String code : List.of("O", "L", "Q4")) byCode.put(code, f5);
+        byCode.forEach((code, factor) -> {
+            SubfactorEntity sf = f.subfactor(code, factor);
+            for (int q = 0; q < 4; q++) f.question(sf, f.questions.size() % 3 == 0, 0, 1, 2);
+        });
+        return f;
+    }
+
+    /** initTcaStructure: IG = INV + IV sits first by position, INV = RA + APE, IV = RV + APN */
+    private static Fixture tca() {
+        Fixture f = new Fixture("TCA");
+        f.factor("IG", "INV+IV");
+        FactorEntity inv = f.factor("INV", "RA+APE");
+        FactorEntity iv = f.factor("IV", "RV+APN");
+        for (SubfactorEntity sf : List.of(f.subfactor("RA", inv), f.subfactor("APE", inv), f.subfactor("RV", iv), f.subfactor("APN", iv))) {
+            for (int q = 0; q < 4; q++) f.question(sf, false, 0, 2, 1);
+        }
+        return f;
+    }
+
+    private static Fixture edgeCases() {
+        Fixture f = new Fixture("generico");
+        FactorEntity sinFormula = f.factor("SUMA", null);
+        FactorEntity blanco = f.factor("BLANCO", "  ");
+        FactorEntity desconocido = f.factor("DESC", "A+NOEXISTE");
+        f.factor("PROPIO", "PROPIO+B");
+        f.factor("VACIO", "SINPREG");
+        f.factor("CICLO1", "CICLO2+A");
+        f.factor("CICLO2", "CICLO1+B");
+        f.factor("SOBRE", "SUMA+DESC+VACIO");
+
+        SubfactorEntity a = f.subfactor("A", sinFormula);
+        SubfactorEntity b = f.subfactor("B", sinFormula);
+        f.subfactor("SINPREG", blanco);
+        SubfactorEntity ceros = f.subfactor("CEROS", blanco);
+        SubfactorEntity sueltos = f.subfactor("SUELTOS", desconocido);
+
+        f.question(a, false, 0, 1, 2, 3);
+        f.question(a, true, 1, 3);
+        f.question(b, true, 0, 4);
+        f.question(b, false, 2, null, 5);
+        // Worth nothing: the subfactor has no result whatever the user answers
+        f.question(ceros, false, 0, null);
+        f.question(ceros, true);
+        // Only numericValue answers, no answer values at all
+        f.question(sueltos, false);
+        f.question(null, false, 0, 9);
+        return f;
+    }
+
+    /** A test definition plus the values of its questions' answers, the way ScoringModelCache loads them */
+    private static final class Fixture {
+        final TestEntity test = new TestEntity();
+        final List<FactorEntity> factors = new ArrayList<>();
+        final List<SubfactorEntity> subfactors = new ArrayList<>();
+        final List<QuestionEntity> questions = new ArrayList<>();
+        final Map<Long, List<Integer>> answerValues = new HashMap<>();
+        private long nextId = 1;
+
+        Fixture(String category) {
+            test.setId(nextId++);
+            test.setCategory(category);
+        }
+
+        FactorEntity factor(String code, String formula) {
+            FactorEntity factor = new FactorEntity();
+            factor.setId(nextId++);
+            factor.setTest(test);
+            factor.setCode(code);
+            factor.setFormula(formula);
+            factor.setPosition(factors.size() + 1);
+            factors.add(factor);
+            return factor;
+        }
+
+        SubfactorEntity subfactor(String code, FactorEntity factor) {
+            SubfactorEntity subfactor = new SubfactorEntity();
+            subfactor.setId(nextId++);
+            subfactor.setTest(test);
+            subfactor.setCode(code);
+            subfactor.setFactor(factor);
+            subfactor.setPosition(subfactors.size() + 1);
+            subfactors.add(subfactor);
+            return subfactor;
+        }
+
+        QuestionEntity question(SubfactorEntity subfactor, boolean inverse, Integer... values) {
+            QuestionEntity question = new QuestionEntity();
+            question.setId(nextId++);
+            question.setTest(test);
+            question.setSubfactor(subfactor);
+            question.setInverse(inverse);
+            question.setPosition(questions.size() + 1);
+            questions.add(question);
+            answerValues.put(question.getId(), Arrays.asList(values).stream().filter(v -> v != null).toList());
+            return question;
+        }
+
+        /** MAX(value) per question as the query returns it: nulls ignored, no row if no answer has a value */
+        Map<Long, Double> maxByQuestion() {
+            Map<Long, Double> max = new HashMap<>();
+            answerValues.forEach((id, values) -> values.stream().mapToDouble(Integer::doubleValue).max()
+                    .ifPresent(m -> max.put(id, m)));
+            return max;
+        }
+
+        ScoringModel compile() {
+            return ScoringModel.compile(test, questions, maxByQuestion(), subfactors, factors);
+        }
+    }
+
+    /**
+     * calculateAndSaveResults as it was before the compiled model: subfactors in position order summing
+     * the first answer to each of their questions, then factors in two passes (formulas over subfactors
+     * only, then formulas naming other factors), each term resolved against the results so far.
+     * Results are {score, max, percentage} by entity id; an entity without a result was not saved.
+     */
+    private static final class PreviousScoring {
+        final Map<Long, double[]> subfactorResults = new HashMap<>();
+        final Map<Long, double[]> factorResults = new HashMap<>();
+
+        PreviousScoring(Fixture fixture, List<Object[]> userAnswers) {
+            boolean useGaussian = "tca".equalsIgnoreCase(fixture.test.getCategory());
+            Map<String, double[]> subfactorScoresByCode = new HashMap<>();
+
+            for (SubfactorEntity subfactor : fixture.subfactors) {
+                double totalScore = 0.0;
+                double maxScore = 0.0;
+                for (QuestionEntity question : fixture.questions) {
+                    if (question.getSubfactor() == null || !question.getSubfactor().getId().equals(subfactor.getId())) continue;
+                    Object[] userAnswer = userAnswers.stream()
+                            .filter(ua -> question.getId().equals(ua[0]))
+                            .findFirst().orElse(null);
+                    double questionMaxScore = fixture.answerValues.get(question.getId()).stream()
+                            .mapToDouble(Integer::doubleValue).max().orElse(0.0);
+                    maxScore += questionMaxScore;
+
+                    if (userAnswer != null) {
+                        double score = 0.0;
+                        if (userAnswer[1] != null) {
+                            score = ((Number) userAnswer[1]).doubleValue();
+                        } else if (userAnswer[2] != null) {
+                            score = ((Number) userAnswer[2]).doubleValue();
+                        }
+                        if (Boolean.TRUE.equals(question.getInverse()) && questionMaxScore > 0) {
+                            score = questionMaxScore - score;
+                        }
+                        totalScore += score;
+                    }
+                }
+                if (maxScore > 0) {
+                    subfactorResults.put(subfactor.getId(), new double[]{totalScore, maxScore, percentage(totalScore, maxScore, useGaussian)});
+                    subfactorScoresByCode.put(subfactor.getCode(), new double[]{totalScore, maxScore});
+                }
+            }
+
+            Set<String> allSubfactorCodes = new HashSet<>();
+            for (SubfactorEntity sf : fixture.subfactors) allSubfactorCodes.add(sf.getCode());
+            List<FactorEntity> pass1 = new ArrayList<>();
+            List<FactorEntity> pass2 = new ArrayList<>();
+            for (FactorEntity factor : fixture.factors) {
+                String formula = factor.getFormula();
+                boolean referencesFactors = formula != null && !formula.isBlank()
+                        && FormulaEvaluator.parseTerms(formula).stream().anyMatch(t -> !allSubfactorCodes.contains(t));
+                (referencesFactors ? pass2 : pass1).add(factor);
+            }
+
+            Map<String, double[]> factorScoresByCode = new HashMap<>();
+            for (List<FactorEntity> pass : List.of(pass1, pass2)) {
+                for (FactorEntity factor : pass) {
+                    double[] result = evaluateFactor(fixture, factor, subfactorScoresByCode, factorScoresByCode);
+                    if (result == null) continue;
+                    factorScoresByCode.put(factor.getCode(), result);
+                    factorResults.put(factor.getId(), new double[]{result[0], result[1], percentage(result[0], result[1], useGaussian)});
+                }
+            }
+        }
+
+        private static double[] evaluateFactor(Fixture fixture, FactorEntity factor,
+                                               Map<String, double[]> subfactorScoresByCode,
+                                               Map<String, double[]> factorScoresByCode) {
+            double totalScore = 0.0;
+            double totalMax = 0.0;
+            String formula = factor.getFormula();
+            if (formula != null && !formula.isBlank()) {
+                for (String term : FormulaEvaluator.parseTerms(formula)) {
+                    double[] resolved = null;
+                    if (subfactorScoresByCode.containsKey(term)) {
+                        resolved = subfactorScoresByCode.get(term);
+                    } else if (!term.equals(factor.getCode()) && factorScoresByCode.containsKey(term)) {
+                        resolved = factorScoresByCode.get(term);
+                    }
+                    if (resolved == null) continue;
+                    totalScore += resolved[0];
+                    totalMax += resolved[1];
+                }
+            } else {
+                for (SubfactorEntity sf : fixture.subfactors) {
+                    if (sf.getFactor() == null || !sf.getFactor().getId().equals(factor.getId())) continue;
+                    double[] scores = subfactorScoresByCode.get(sf.getCode());
+                    if (scores != null) {
+                        totalScore += scores[0];
+                        totalMax += scores[1];
+                    }
+                }
+            }
+            return totalMax > 0 ? new double[]{totalScore, totalMax} : null;
+        }
+
+        private static double percentage(double score, double max, boolean useGaussian) {
+            return useGaussian
+                    ? FormulaEvaluator.gaussianPercentile(score, max)
+                    : (score / max) * 100.0;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.dto.TestImportDtos.BatchImportResult;
+import com.alvaro.psicoapp.dto.TestImportDtos.ImportRequest;
+import com.alvaro.psicoapp.dto.TestImportDtos.ImportResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TestBatchImportServiceTest {
+
+    @Mock private TestImportService testImportService;
+
+    private TestBatchImportService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new TestBatchImportService(testImportService, 4);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        service.shutdown();
+    }
+
+    @Test
+    @DisplayName("importTests - each test in its own call; outcomes in request order, failures mapped per test")
+    void importTests_outcomesInOrder() {
+        when(testImportService.importTest(any(ImportRequest.class), eq(false))).thenAnswer(inv -> {
+            ImportRequest req = inv.getArgument(0);
+            return switch (req.code) {
+                case "LENTO" -> {
+                    // Finishes after the others: the result still comes first
+                    Thread.sleep(100);
+                    yield response(req.code);
+                }
+                case "INVALIDO" -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El título del test es obligatorio");
+                case "ROTO" -> throw new IllegalStateException("connection reset");
+                default -> response(req.code);
+            };
+        });
+
+        List<BatchImportResult> results = service.importTests(
+                List.of(request("LENTO"), request("INVALIDO"), request("ROTO"), request("OK")), false);
+
+        assertEquals(List.of("LENTO", "INVALIDO", "ROTO", "OK"), results.stream().map(BatchImportResult::code).toList());
+        assertEquals(List.of(200, 400, 500, 200), results.stream().map(BatchImportResult::status).toList());
+        assertEquals("LENTO", results.get(0).result().code());
+        assertEquals("El título del test es obligatorio", results.get(1).error());
+        assertEquals("Error al importar el test", results.get(2).error());
+        assertNull(results.get(2).result());
+        verify(testImportService, times(4)).importTest(any(ImportRequest.class), eq(false));
+    }
+
+    @Test
+    @DisplayName("importTests - an empty request or more than 50 tests is rejected without importing anything")
+    void importTests_limits() {
+        List<ImportRequest> tooMany = new ArrayList<>();
+        IntStream.range(0, 51).forEach(i -> tooMany.add(request("T" + i)));
+
+        assertEquals(HttpStatus.BAD_REQUEST,
+                assertThrows(ResponseStatusException.class, () -> service.importTests(List.of(), true)).getStatusCode());
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> service.importTests(tooMany, true));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+        assertTrue(e.getReason().contains("50"));
+        verifyNoInteractions(testImportService);
+    }
+
+    private static ImportRequest request(String code) {
+        ImportRequest req = new ImportRequest();
+        req.code = code;
+        return req;
+    }
+
+    private static ImportResponse response(String code) {
+        return new ImportResponse(1L, code, 1, 1, false, Map.of());
+    }
+}
@@ -0,0 +1,252 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.config.CacheConfig;
+import com.alvaro.psicoapp.domain.AnswerEntity;
+import com.alvaro.psicoapp.domain.FactorEntity;
+import com.alvaro.psicoapp.domain.QuestionEntity;
+import com.alvaro.psicoapp.domain.SubfactorEntity;
+import com.alvaro.psicoapp.domain.TestEntity;
+import com.alvaro.psicoapp.dto.AdminDtos;
+import com.alvaro.psicoapp.dto.TestImportDtos;
+import com.alvaro.psicoapp.repository.*;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TestDefinitionCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private TestRepository testRepository;
+    private QuestionRepository questionRepository;
+    private AnnotationConfigApplicationContext context;
+
+    @BeforeEach
+    void setUp() {
+        testRepository = mock(TestRepository.class);
+        questionRepository = mock(QuestionRepository.class);
+        TestEntity test = test(7L, "T7");
+        when(testRepository.findById(7L)).thenReturn(Optional.of(test));
+        when(questionRepository.findDefinitionRows(7L)).thenReturn(rows(test));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (context != null) context.close();
+    }
+
+    @Test
+    @DisplayName("byId - builds the whole tree from the single definition query")
+    void byId_oneQuery() throws Exception {
+        TestDefinitionCache cache = new TestDefinitionCache(testRepository, questionRepository, objectMapper);
+
+        TestDefinitionCache.TestDefinition definition = cache.byId(7L);
+
+        var questions = definition.detail().questions();
+        assertEquals(2, questions.size());
+        assertEquals(List.of(11L, 12L), questions.stream().map(q -> q.id()).toList());
+        assertEquals(List.of("Nunca", "A veces", "Siempre"), questions.get(0).answers().stream().map(a -> a.text()).toList());
+        assertEquals("SF1", questions.get(0).subfactor().code());
+        assertEquals("F1", questions.get(0).subfactor().factor().code());
+        // A question without options comes back as one row with a null answer
+        assertTrue(questions.get(1).answers().isEmpty());
+        assertNull(questions.get(1).subfactor());
+        verify(questionRepository, times(1)).findDefinitionRows(7L);
+        verifyNoMoreInteractions(questionRepository);
+
+        JsonNode matching = objectMapper.readTree(definition.json(TestDefinitionCache.View.MATCHING).body());
+        assertFalse(matching.get("questions").get(0).has("subfactor"));
+        JsonNode initial = objectMapper.readTree(definition.json(TestDefinitionCache.View.INITIAL).body());
+        assertEquals("SF1", initial.get("questions").get(0).get("subfactor").get("code").asText());
+    }
+
+    @Test
+    @DisplayName("byId - null for a test that doesn't exist")
+    void byId_missing() {
+        TestDefinitionCache cache = new TestDefinitionCache(testRepository, questionRepository, objectMapper);
+
+        assertNull(cache.byId(99L));
+        verifyNoInteractions(questionRepository);
+    }
+
+    @Test
+    @DisplayName("toResponse - 200 with a strong ETag, 304 without body when If-None-Match matches")
+    void toResponse_etag() {
+        TestDefinitionCache.Json json = new TestDefinitionCache(testRepository, questionRepository, objectMapper)
+                .byId(7L).json(TestDefinitionCache.View.DETAIL);
+
+        ResponseEntity<byte[]> first = json.toResponse(request(null));
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertEquals(json.etag(), first.getHeaders().getETag());
+        assertTrue(json.etag().startsWith("\"") && !json.etag().startsWith("W/"));
+        assertEquals("no-cache", first.getHeaders().getCacheControl());
+        assertArrayEquals(json.body(), first.getBody());
+
+        ResponseEntity<byte[]> revalidated = json.toResponse(request(json.etag()));
+        assertEquals(HttpStatus.NOT_MODIFIED, revalidated.getStatusCode());
+        assertNull(revalidated.getBody());
+
+        assertEquals(HttpStatus.OK, json.toResponse(request("\"other\"")).getStatusCode());
+    }
+
+    @Test
+    @DisplayName("ETag - changes when the questionnaire changes")
+    void etag_followsContent() {
+        TestDefinitionCache cache = new TestDefinitionCache(testRepository, questionRepository, objectMapper);
+        String before = cache.byId(7L).json(TestDefinitionCache.View.DETAIL).etag();
+
+        TestEntity test = test(7L, "T7");
+        List<Object[]> changed = rows(test);
+        ((QuestionEntity) changed.get(0)[0]).setText("¿Cambiada?");
+        when(questionRepository.findDefinitionRows(7L)).thenReturn(changed);
+
+        assertNotEquals(before, cache.byId(7L).json(TestDefinitionCache.View.DETAIL).etag());
+    }
+
+    @Test
+    @DisplayName("cache - served from testDefinitions until an admin edit evicts it")
+    void cache_evictedByAdminEdits() {
+        startContext();
+        TestDefinitionCache cache = context.getBean(TestDefinitionCache.class);
+        AdminService adminService = context.getBean(AdminService.class);
+
+        cache.byId(7L);
+        cache.byId(7L);
+        verify(questionRepository, times(1)).findDefinitionRows(7L);
+
+        adminService.updateTest(7L, new AdminDtos.TestUpdate());
+        cache.byId(7L);
+        verify(questionRepository, times(2)).findDefinitionRows(7L);
+
+        adminService.deleteQuestion(11L);
+        cache.byId(7L);
+        verify(questionRepository, times(3)).findDefinitionRows(7L);
+    }
+
+    @Test
+    @DisplayName("cache - a dry-run import keeps the snapshots, a real import evicts them")
+    void cache_importEvictsOnlyWhenNotDryRun() {
+        startContext();
+        TestDefinitionCache cache = context.getBean(TestDefinitionCache.class);
+        TestImportService importService = context.getBean(TestImportService.class);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        when(testRepository.findByCode("NEW")).thenReturn(Optional.empty());
+        when(testRepository.save(any(TestEntity.class))).thenAnswer(inv -> {
+            TestEntity saved = inv.getArgument(0);
+            saved.setId(8L);
+            return saved;
+        });
+        doReturn(List.of(100L)).when(jdbcTemplate).queryForList(anyString(), eq(Long.class), any());
+
+        cache.byId(7L);
+        assertTrue(importService.importTest(importRequest(), true).dryRun());
+        cache.byId(7L);
+        verify(questionRepository, times(1)).findDefinitionRows(7L);
+
+        assertFalse(importService.importTest(importRequest(), false).dryRun());
+        cache.byId(7L);
+        verify(questionRepository, times(2)).findDefinitionRows(7L);
+    }
+
+    private void startContext() {
+        context = new AnnotationConfigApplicationContext();
+        context.register(CacheConfig.class);
+        context.registerBean(TestRepository.class, () -> testRepository);
+        context.registerBean(QuestionRepository.class, () -> questionRepository);
+        context.registerBean(ObjectMapper.class, () -> objectMapper);
+        context.registerBean(JdbcTemplate.class, () -> mock(JdbcTemplate.class));
+        for (Class<?> type : List.of(AnswerRepository.class, UserRepository.class, UserAnswerRepository.class,
+                SubfactorRepository.class, FactorRepository.class, UserPsychologistRepository.class,
+                EvaluationTestRepository.class, AppointmentRepository.class, PsychologistProfileRepository.class,
+                TaskFileRepository.class, NotificationService.class, EmailService.class, ScoringModelCache.class)) {
+            registerMock(type);
+        }
+        context.register(TestDefinitionCache.class, AdminService.class, TestImportService.class);
+        context.refresh();
+    }
+
+    private <T> void registerMock(Class<T> type) {
+        context.registerBean(type, () -> mock(type));
+    }
+
+    private static ServletWebRequest request(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/tests/7");
+        if (ifNoneMatch != null) request.addHeader("If-None-Match", ifNoneMatch);
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+
+    private static TestImportDtos.ImportRequest importRequest() {
+        TestImportDtos.ImportRequest req = new TestImportDtos.ImportRequest();
+        req.code = "NEW";
+        req.title = "Nuevo";
+        req.questions = List.of(new TestImportDtos.ParsedQuestion(1, "¿Pregunta?",
+                List.of(new TestImportDtos.ParsedAnswer("Sí", 1, 1))));
+        return req;
+    }
+
+    private static TestEntity test(Long id, String code) {
+        TestEntity test = new TestEntity();
+        test.setId(id);
+        test.setCode(code);
+        test.setTitle("Test " + code);
+        test.setActive(true);
+        return test;
+    }
+
+    /** Rows as findDefinitionRows returns them: one per answer, ordered by question */
+    private static List<Object[]> rows(TestEntity test) {
+        FactorEntity factor = new FactorEntity();
+        factor.setId(1L);
+        factor.setCode("F1");
+        factor.setName("Factor");
+        SubfactorEntity subfactor = new SubfactorEntity();
+        subfactor.setId(2L);
+        subfactor.setCode("SF1");
+        subfactor.setName("Subfactor");
+        subfactor.setFactor(factor);
+
+        QuestionEntity q1 = question(11L, test, 1, subfactor);
+        QuestionEntity q2 = question(12L, test, 2, null);
+        List<Object[]> rows = new ArrayList<>();
+        String[] texts = {"Nunca", "A veces", "Siempre"};
+        for (int i = 0; i < texts.length; i++) {
+            AnswerEntity a = new AnswerEntity();
+            a.setId(100L + i);
+            a.setQuestion(q1);
+            a.setText(texts[i]);
+            a.setValue(i);
+            a.setPosition(i + 1);
+            rows.add(new Object[]{q1, a});
+        }
+        rows.add(new Object[]{q2, null});
+        return rows;
+    }
+
+    private static QuestionEntity question(Long id, TestEntity test, int position, SubfactorEntity subfactor) {
+        QuestionEntity q = new QuestionEntity();
+        q.setId(id);
+        q.setTest(test);
+        q.setText("Pregunta " + position);
+        q.setType("SINGLE");
+        q.setPosition(position);
+        q.setSubfactor(subfactor);
+        return q;
+    }
+}
@@ -0,0 +1,226 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.domain.TestEntity;
+import com.alvaro.psicoapp.dto.TestImportDtos.ImportRequest;
+import com.alvaro.psicoapp.dto.TestImportDtos.ImportResponse;
+import com.alvaro.psicoapp.dto.TestImportDtos.ParseResult;
+import com.alvaro.psicoapp.dto.TestImportDtos.ParsedAnswer;
+import com.alvaro.psicoapp.dto.TestImportDtos.ParsedQuestion;
+import com.alvaro.psicoapp.repository.FactorRepository;
+import com.alvaro.psicoapp.repository.SubfactorRepository;
+import com.alvaro.psicoapp.repository.TestRepository;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TestImportServiceTest {
+
+    @Mock private TestRepository testRepository;
+    @Mock private FactorRepository factorRepository;
+    @Mock private SubfactorRepository subfactorRepository;
+    @Mock private JdbcTemplate jdbcTemplate;
+
+    private TestImportService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new TestImportService(testRepository, factorRepository, subfactorRepository, jdbcTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @DisplayName("parseExcel - generic sheet streamed past the detection rows: questions in col A, answers with values")
+    void parseExcel_generic() throws IOException {
+        List<Object[]> rows = new ArrayList<>();
+        for (int q = 1; q <= 6; q++) {
+            rows.add(new Object[]{q + " - Pregunta número " + q});
+            rows.add(new Object[]{"Sí", 3});
+            rows.add(new Object[]{"No", 0});
+        }
+
+        ParseResult result = service.parseExcel(xlsx("generico.xlsx", rows));
+
+        assertEquals(6, result.questionCount());
+        ParsedQuestion last = result.questions().get(5);
+        assertEquals(6, last.position());
+        assertEquals("Pregunta número 6", last.text());
+        assertEquals(List.of(new ParsedAnswer("Sí", 3, 1), new ParsedAnswer("No", 0, 2)), last.answers());
+        assertTrue(result.timingsMs().containsKey("parse"));
+    }
+
+    @Test
+    @DisplayName("parseExcel - Delphos sheet: title from row 0, questions in col D, points in col B")
+    void parseExcel_delphos() throws IOException {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{"Test de hábitos"});
+        for (int i = 1; i < 6; i++) rows.add(new Object[]{});
+        rows.add(new Object[]{"Correcta", "Puntos", "Respuesta", "Pregunta/respuestas"});
+        rows.add(new Object[]{null, null, null, "1 - ¿Haces deporte?:"});
+        rows.add(new Object[]{null, 2, "X", "A menudo"});
+        rows.add(new Object[]{null, 0, null, "Nunca"});
+        rows.add(new Object[]{null, null, null, "2 - ¿Lees?"});
+        rows.add(new Object[]{null, 1, null, "A veces"});
+
+        ParseResult result = service.parseExcel(xlsx("delphos.xlsx", rows));
+
+        assertEquals("Test de hábitos", result.detectedTitle());
+        assertEquals(2, result.questionCount());
+        ParsedQuestion first = result.questions().get(0);
+        assertEquals(1, first.position());
+        assertEquals("¿Haces deporte?", first.text());
+        assertEquals(List.of(new ParsedAnswer("A menudo", 2, 1), new ParsedAnswer("Nunca", 0, 2)), first.answers());
+    }
+
+    @Test
+    @DisplayName("parseExcel - rejects files that are neither .xlsx nor .xls")
+    void parseExcel_wrongExtension() {
+        MockMultipartFile file = new MockMultipartFile("file", "preguntas.csv", "text/csv", "a,b".getBytes());
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> service.parseExcel(file));
+
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("importTest - reports the first 20 problems of the whole request and counts the rest, before touching the DB")
+    void importTest_errorsCapped() {
+        ImportRequest req = request("MUCHOS", 25, 0);
+        for (int i = 0; i < 25; i++) req.questions.set(i, new ParsedQuestion(i + 1, " ", List.of()));
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> service.importTest(req, false));
+
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+        assertTrue(e.getReason().startsWith("Pregunta 1: el texto es obligatorio; Pregunta 2:"));
+        assertTrue(e.getReason().contains("Pregunta 20: el texto es obligatorio (y 5 errores más)"));
+        assertFalse(e.getReason().contains("Pregunta 21"));
+        verifyNoInteractions(testRepository, jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("importTest - a code stays reserved until the importing transaction completes, whatever its outcome")
+    void importTest_codeReservedUntilCompletion() {
+        when(testRepository.findByCode("DUP")).thenReturn(Optional.empty());
+        TransactionSynchronizationManager.initSynchronization();
+
+        service.importTest(request("DUP", 1, 1), true);
+        ResponseStatusException inFlight = assertThrows(ResponseStatusException.class,
+                () -> service.importTest(request("DUP", 1, 1), true));
+        assertEquals(HttpStatus.CONFLICT, inFlight.getStatusCode());
+        assertTrue(inFlight.getReason().startsWith("Ya se está importando"));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        // An import rejected by the existence check still releases the code on rollback
+        when(testRepository.findByCode("DUP")).thenReturn(Optional.of(new TestEntity()));
+        TransactionSynchronizationManager.initSynchronization();
+        ResponseStatusException exists = assertThrows(ResponseStatusException.class,
+                () -> service.importTest(request("DUP", 1, 1), true));
+        assertTrue(exists.getReason().startsWith("Ya existe"));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        when(testRepository.findByCode("DUP")).thenReturn(Optional.empty());
+        assertTrue(service.importTest(request("DUP", 1, 1), true).dryRun());
+    }
+
+    @Test
+    @DisplayName("importTest - question ids come from one nextval block; questions and answers go in one batch each")
+    @SuppressWarnings("unchecked")
+    void importTest_idBlockAndBatches() {
+        when(testRepository.findByCode("NUEVO")).thenReturn(Optional.empty());
+        when(testRepository.save(any(TestEntity.class))).thenAnswer(inv -> {
+            TestEntity test = inv.getArgument(0);
+            test.setId(77L);
+            return test;
+        });
+        when(jdbcTemplate.queryForList(startsWith("SELECT nextval"), eq(Long.class), eq(3)))
+                .thenReturn(List.of(100L, 101L, 102L));
+
+        ImportResponse response = service.importTest(request("NUEVO", 3, 2), false);
+
+        assertEquals(77L, response.testId());
+        assertEquals(3, response.questionsCreated());
+        assertEquals(6, response.answersCreated());
+        assertFalse(response.dryRun());
+        assertTrue(response.timingsMs().keySet().containsAll(List.of("validate", "structure", "questions", "answers", "total")));
+
+        ArgumentCaptor<List<Object[]>> questions = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<Object[]>> answers = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO questions"), questions.capture());
+        verify(jdbcTemplate).batchUpdate(startsWith("INSERT INTO answers"), answers.capture());
+        verify(jdbcTemplate, times(1)).queryForList(anyString(), eq(Long.class), any(Object[].class));
+        assertArrayEquals(new Object[]{101L, 77L, "Pregunta 2", 2}, questions.getValue().get(1));
+        assertEquals(List.of(100L, 100L, 101L, 101L, 102L, 102L),
+                answers.getValue().stream().map(row -> row[0]).toList());
+        assertArrayEquals(new Object[]{102L, "Respuesta 3.2", 1, 2}, answers.getValue().get(5));
+        verifyNoInteractions(factorRepository, subfactorRepository);
+    }
+
+    private static ImportRequest request(String code, int questions, int answersPerQuestion) {
+        ImportRequest req = new ImportRequest();
+        req.code = code;
+        req.title = "Test " + code;
+        req.questions = new ArrayList<>();
+        for (int q = 1; q <= questions; q++) {
+            List<ParsedAnswer> answers = new ArrayList<>();
+            for (int a = 1; a <= answersPerQuestion; a++) answers.add(new ParsedAnswer("Respuesta " + q + "." + a, a - 1, a));
+            req.questions.add(new ParsedQuestion(q, "Pregunta " + q, answers));
+        }
+        return req;
+    }
+
+    /** One row per array; String and Integer values become text and numeric cells, null leaves the cell empty */
+    private static MockMultipartFile xlsx(String filename, List<Object[]> rows) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet();
+            for (int i = 0; i < rows.size(); i++) {
+                Row row = sheet.createRow(i);
+                Object[] values = rows.get(i);
+                for (int col = 0; col < values.length; col++) {
+                    if (values[col] instanceof String s) row.createCell(col).setCellValue(s);
+                    else if (values[col] instanceof Integer n) row.createCell(col).setCellValue(n);
+                }
+            }
+            workbook.write(out);
+        }
+        return new MockMultipartFile("file", filename,
+                "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", out.toByteArray());
+    }
+
+    /** Ends the test's fake transaction the way the transaction manager would */
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization sync : synchronizations) sync.afterCompletion(status);
+    }
+}
@@ -0,0 +1,235 @@
+package com.alvaro.psicoapp.service;
+
+import com.alvaro.psicoapp.domain.BatchJobEntity;
+import com.alvaro.psicoapp.domain.TestEntity;
+import com.alvaro.psicoapp.dto.AdminDtos;
+import com.alvaro.psicoapp.repository.BatchJobRepository;
+import com.alvaro.psicoapp.repository.TestRepository;
+import com.alvaro.psicoapp.repository.UserAnswerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Two services over the same mocked batch_jobs rows stand for two nodes behind the load balancer.
+ */
+@ExtendWith(MockitoExtension.class)
+class TestRescoringServiceTest {
+
+    private static final long TEST_ID = 12L;
+    private static final String JOB_KEY = "rescore:" + TEST_ID;
+
+    @Mock private TestRepository testRepository;
+    @Mock private UserAnswerRepository userAnswerRepository;
+    @Mock private BatchJobRepository batchJobRepository;
+    @Mock private TestResultService testResultService;
+    @Mock private ScoringModelCache scoringModelCache;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    /** The batch_jobs table */
+    private final Map<String, BatchJobEntity> batchJobs = new ConcurrentHashMap<>();
+    /** Users whose scores were saved, in save order */
+    private final List<Long> saved = new CopyOnWriteArrayList<>();
+    private final List<TestRescoringService> nodes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        TestEntity test = new TestEntity();
+        test.setId(TEST_ID);
+        ScoringModel model = mock(ScoringModel.class);
+        List<Long> users = LongStream.rangeClosed(1, 10).boxed().toList();
+
+        lenient().when(testRepository.existsById(TEST_ID)).thenReturn(true);
+        lenient().when(testRepository.findById(TEST_ID)).thenReturn(Optional.of(test));
+        lenient().when(scoringModelCache.get(test)).thenReturn(model);
+        lenient().when(model.score(anyList())).thenReturn(new ScoringModel.Scores(new double[0], new double[0], 0));
+        lenient().when(userAnswerRepository.countAnsweringUsers(TEST_ID)).thenReturn((long) users.size());
+        lenient().when(userAnswerRepository.findAnsweringUserIdsAfter(eq(TEST_ID), anyLong(), any(Pageable.class)))
+                .thenAnswer(inv -> {
+                    long after = inv.getArgument(1);
+                    Pageable page = inv.getArgument(2);
+                    return users.stream().filter(id -> id > after).limit(page.getPageSize()).toList();
+                });
+        lenient().when(userAnswerRepository.findScoringRowsForUsers(anyCollection(), eq(TEST_ID)))
+                .thenAnswer(inv -> inv.<Collection<Long>>getArgument(0).stream()
+                        .map(userId -> new Object[]{1L, 2, null, userId}).toList());
+        lenient().doAnswer(inv -> {
+            saved.addAll(inv.getArgument(1));
+            return null;
+        }).when(testResultService).saveScores(any(), anyList(), anyList());
+
+        lenient().when(batchJobRepository.findById(anyString()))
+                .thenAnswer(inv -> Optional.ofNullable(batchJobs.get(inv.<String>getArgument(0))));
+        lenient().when(batchJobRepository.findByIdForUpdate(anyString()))
+                .thenAnswer(inv -> Optional.ofNullable(batchJobs.get(inv.<String>getArgument(0))));
+        lenient().when(batchJobRepository.save(any(BatchJobEntity.class))).thenAnswer(inv -> {
+            BatchJobEntity entity = inv.getArgument(0);
+            batchJobs.put(entity.getJobKey(), entity);
+            return entity;
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (TestRescoringService node : nodes) node.shutdown();
+    }
+
+    @Test
+    @DisplayName("start - scores every answering user page by page and stores the final checkpoint")
+    void start_rescoresEveryUser() {
+        TestRescoringService node = node();
+
+        AdminDtos.RescoreStatus status = await(node, node.start(TEST_ID, false));
+
+        assertEquals(BatchJobEntity.COMPLETED, status.status());
+        assertEquals(10, status.processed());
+        assertEquals(0, status.failed());
+        assertEquals(10L, status.cursorUserId());
+        assertEquals(LongStream.rangeClosed(1, 10).boxed().toList(), saved.stream().sorted().toList());
+        assertNotNull(batchJobs.get(JOB_KEY).getFinishedAt());
+    }
+
+    @Test
+    @DisplayName("rescoreChunk - a page that fails is retried user by user; only the bad user counts as failed")
+    void chunk_failure_retriedOneByOne() {
+        doAnswer(inv -> {
+            List<Long> userIds = inv.getArgument(1);
+            if (userIds.contains(7L)) throw new IllegalStateException("bad answers");
+            saved.addAll(userIds);
+            return null;
+        }).when(testResultService).saveScores(any(), anyList(), anyList());
+        TestRescoringService node = node();
+
+        AdminDtos.RescoreStatus status = await(node, node.start(TEST_ID, false));
+
+        assertEquals(BatchJobEntity.COMPLETED, status.status());
+        assertEquals(9, status.processed());
+        assertEquals(1, status.failed());
+        assertFalse(saved.contains(7L));
+        assertTrue(saved.containsAll(List.of(6L, 8L)));
+    }
+
+    @Test
+    @DisplayName("start - refused while another node keeps the job's row fresh; status shows that node's progress")
+    void start_runningOnAnotherNode_conflict() {
+        batchJobs.put(JOB_KEY, row(BatchJobEntity.RUNNING, 3L, Instant.now().minusSeconds(5)));
+        TestRescoringService node = node();
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> node.start(TEST_ID, false));
+
+        assertEquals(HttpStatus.CONFLICT, e.getStatusCode());
+        AdminDtos.RescoreStatus status = node.getStatus(TEST_ID);
+        assertEquals(BatchJobEntity.RUNNING, status.status());
+        assertEquals(3L, status.cursorUserId());
+        verify(userAnswerRepository, never()).findAnsweringUserIdsAfter(any(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("start - a row its node stopped updating is INTERRUPTED and resumed from its checkpoint")
+    void start_staleRow_resumes() {
+        batchJobs.put(JOB_KEY, row(BatchJobEntity.RUNNING, 6L, Instant.now().minusSeconds(600)));
+        TestRescoringService node = node();
+        assertEquals("INTERRUPTED", node.getStatus(TEST_ID).status());
+
+        AdminDtos.RescoreStatus status = await(node, node.start(TEST_ID, false));
+
+        assertEquals(BatchJobEntity.COMPLETED, status.status());
+        assertEquals(10, status.processed());
+        assertEquals(List.of(7L, 8L, 9L, 10L), saved.stream().sorted().toList());
+        verify(userAnswerRepository).findAnsweringUserIdsAfter(eq(TEST_ID), eq(6L), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("cancel - through another node flags the row; the running node stops at its next heartbeat or checkpoint")
+    void cancel_fromAnotherNode() throws InterruptedException {
+        CountDownLatch pagesInFlight = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(inv -> {
+            pagesInFlight.countDown();
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            saved.addAll(inv.getArgument(1));
+            return null;
+        }).when(testResultService).saveScores(any(), anyList(), anyList());
+        TestRescoringService a = node();
+        TestRescoringService b = node();
+
+        a.start(TEST_ID, false);
+        // Both workers hold a page before the cancel arrives
+        assertTrue(pagesInFlight.await(5, TimeUnit.SECONDS));
+        assertEquals(HttpStatus.CONFLICT,
+                assertThrows(ResponseStatusException.class, () -> b.start(TEST_ID, false)).getStatusCode());
+        assertEquals(BatchJobEntity.CANCELLING, b.cancel(TEST_ID).status());
+        a.heartbeat();
+        AdminDtos.RescoreStatus cancelling = a.getStatus(TEST_ID);
+        assertEquals(BatchJobEntity.CANCELLING, cancelling.status());
+        release.countDown();
+
+        AdminDtos.RescoreStatus status = await(a, cancelling);
+        assertEquals(BatchJobEntity.CANCELLED, status.status());
+        // The two pages in flight when the cancel arrived were finished, nothing after them
+        assertEquals(6, status.processed());
+        assertEquals(6L, status.cursorUserId());
+        assertEquals(BatchJobEntity.CANCELLED, b.getStatus(TEST_ID).status());
+    }
+
+    private TestRescoringService node() {
+        TestRescoringService node = new TestRescoringService(testRepository, userAnswerRepository, batchJobRepository,
+                testResultService, scoringModelCache, transactionManager, 3, 2, 60_000);
+        nodes.add(node);
+        return node;
+    }
+
+    private static BatchJobEntity row(String status, long cursor, Instant updatedAt) {
+        BatchJobEntity row = new BatchJobEntity();
+        row.setJobKey(JOB_KEY);
+        row.setStatus(status);
+        row.setCursorId(cursor);
+        row.setProcessed(cursor);
+        row.setFailed(0L);
+        row.setTotal(10L);
+        row.setStartedAt(updatedAt.minusSeconds(60));
+        row.setUpdatedAt(updatedAt);
+        return row;
+    }
+
+    private static AdminDtos.RescoreStatus await(TestRescoringService node, AdminDtos.RescoreStatus started) {
+        assertTrue(BatchJobEntity.RUNNING.equals(started.status()) || BatchJobEntity.CANCELLING.equals(started.status()));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            AdminDtos.RescoreStatus status = node.getStatus(TEST_ID);
+            if (!BatchJobEntity.RUNNING.equals(status.status()) && !BatchJobEntity.CANCELLING.equals(status.status())) {
+                return status;
+            }
+            assertTrue(System.currentTimeMillis() < deadline, "re-scoring still running");
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.alvaro.psicoapp.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FormulaEvaluatorTest {
+
+    private static final int[][] NO_CHILDREN = new int[3][];
+
+    @Test
+    @DisplayName("parseTerms - keeps parenthesized suffixes as part of the code")
+    void parseTerms_suffixes() {
+        assertEquals(List.of("A", "F", "N(-)", "Q2(-)"), FormulaEvaluator.parseTerms("A+F+N(-)+Q2(-)"));
+        assertEquals(List.of(), FormulaEvaluator.parseTerms("  "));
+    }
+
+    @Test
+    @DisplayName("compile - a factor referencing a later factor is evaluated after it")
+    void compile_factorOnLaterFactor_dependencyOrder() {
+        FormulaEvaluator.CompiledFormulas plan = FormulaEvaluator.compile(
+                List.of("A", "B"),
+                List.of("IG", "INV", "IV"),
+                Arrays.asList("INV+IV", "A", "B"),
+                NO_CHILDREN, true);
+
+        double[] score = {3, 4, 0, 0, 0};
+        double[] max = Arrays.copyOf(new double[]{5, 10}, plan.tableSize());
+        plan.evaluate(score, max);
+
+        assertFalse(plan.isCyclic());
+        assertEquals(7, score[plan.factorSlot(0)]);
+        assertEquals(15, max[plan.factorSlot(0)]);
+    }
+
+    @Test
+    @DisplayName("compile - strict mode rejects a dependency cycle")
+    void compile_cycle_strictThrows() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> FormulaEvaluator.compile(
+                List.of("A"), List.of("X", "Y", "Z"), Arrays.asList("Y", "X", "A"), NO_CHILDREN, true));
+
+        assertTrue(e.getMessage().contains("X, Y"));
+    }
+
+    @Test
+    @DisplayName("compile - lenient mode flags the cycle and still evaluates")
+    void compile_cycle_lenientFlagged() {
+        FormulaEvaluator.CompiledFormulas plan = FormulaEvaluator.compile(
+                List.of("A"), List.of("X", "Y", "Z"), Arrays.asList("Y+A", "X", "A"), NO_CHILDREN, false);
+
+        double[] score = {2, 0, 0, 0};
+        double[] max = {4, 0, 0, 0};
+        plan.evaluate(score, max);
+
+        assertTrue(plan.isCyclic());
+        assertEquals(2, score[plan.factorSlot(2)]);
+    }
+
+    @Test
+    @DisplayName("evaluate - terms without result are skipped; blank formula sums children")
+    void evaluate_skipsMissingTerms_blankUsesChildren() {
+        FormulaEvaluator.CompiledFormulas plan = FormulaEvaluator.compile(
+                List.of("A", "B", "C"), List.of("F1", "F2"), Arrays.asList("A+B+UNKNOWN", null),
+                new int[][]{null, {2}}, true);
+
+        double[] score = {1, 9, 6, 0, 0};
+        double[] max = {3, 0, 8, 0, 0};
+        plan.evaluate(score, max);
+
+        assertEquals(1, score[plan.factorSlot(0)]);
+        assertEquals(3, max[plan.factorSlot(0)]);
+        assertEquals(6, score[plan.factorSlot(1)]);
+        assertEquals(8, max[plan.factorSlot(1)]);
+    }
+}
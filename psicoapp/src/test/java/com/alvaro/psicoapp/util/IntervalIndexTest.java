@@ -0,0 +1,87 @@
+package com.alvaro.psicoapp.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntervalIndexTest {
+
+    private static final Instant BASE = Instant.parse("2026-03-02T09:00:00Z");
+
+    private static Instant at(int hours) {
+        return BASE.plus(hours, ChronoUnit.HOURS);
+    }
+
+    @Test
+    @DisplayName("overlaps - half-open intervals: touching edges do not collide")
+    void overlaps_touchingEdges_noCollision() {
+        IntervalIndex<Long> index = new IntervalIndex<>();
+        index.add(at(0), at(1), 1L);
+
+        assertFalse(index.overlaps(at(1), at(2)));
+        assertFalse(index.overlaps(at(-1), at(0)));
+        assertTrue(index.overlaps(at(0), at(1)));
+    }
+
+    @Test
+    @DisplayName("overlaps - a long interval starting well before the query is still found")
+    void overlaps_longIntervalStartingEarlier_found() {
+        IntervalIndex<Long> index = new IntervalIndex<>();
+        index.add(at(-48), at(48), 1L);
+        index.add(at(5), at(6), 2L);
+
+        assertTrue(index.overlaps(at(10), at(11)));
+        assertEquals(List.of(1L, 2L), index.overlapping(at(5), at(6)));
+    }
+
+    @Test
+    @DisplayName("overlaps - ignore predicate skips the excluded entry")
+    void overlaps_ignorePredicate_skipsEntry() {
+        IntervalIndex<Long> index = new IntervalIndex<>();
+        index.add(at(0), at(1), 7L);
+
+        long start = at(0).toEpochMilli();
+        long end = at(1).toEpochMilli();
+        assertFalse(index.overlaps(start, end, id -> id == 7L));
+        assertTrue(index.overlaps(start, end, id -> id == 8L));
+    }
+
+    @Test
+    @DisplayName("remove - removing by start and value frees the interval")
+    void remove_byStartAndValue_freesInterval() {
+        IntervalIndex<Long> index = new IntervalIndex<>();
+        index.add(at(0), at(1), 1L);
+        index.add(at(0), at(1), 2L);
+
+        assertTrue(index.remove(at(0), id -> id == 1L));
+        assertEquals(1, index.size());
+        assertTrue(index.removeIf(id -> id == 2L));
+        assertTrue(index.isEmpty());
+        assertFalse(index.overlaps(at(0), at(1)));
+    }
+
+    @Test
+    @DisplayName("maxLength - shrinks back when the longest interval is removed")
+    void maxLength_followsRemovals() {
+        IntervalIndex<Long> index = new IntervalIndex<>();
+        index.add(at(-48), at(48), 1L);
+        index.add(at(0), at(1), 2L);
+        index.add(at(3), at(4), 3L);
+        assertEquals(96 * 3_600_000L, index.maxLength());
+
+        index.removeIf(id -> id == 1L);
+        assertEquals(3_600_000L, index.maxLength());
+        assertTrue(index.overlaps(at(3), at(5)));
+        assertFalse(index.overlaps(at(10), at(11)));
+
+        index.remove(at(0), id -> id == 2L);
+        index.remove(at(3), id -> id == 3L);
+        assertEquals(0, index.maxLength());
+        assertTrue(index.isEmpty());
+    }
+}
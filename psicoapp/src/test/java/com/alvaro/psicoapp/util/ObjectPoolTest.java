@@ -0,0 +1,40 @@
+package com.alvaro.psicoapp.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ObjectPoolTest {
+
+    @Test
+    @DisplayName("borrow - reuses released objects and creates new ones only when none is idle")
+    void borrow_reusesReleased() {
+        AtomicInteger created = new AtomicInteger();
+        ObjectPool<StringBuilder> pool = new ObjectPool<>(2, () -> {
+            created.incrementAndGet();
+            return new StringBuilder();
+        });
+
+        StringBuilder first = pool.borrow();
+        StringBuilder second = pool.borrow();
+        assertNotSame(first, second);
+        pool.release(first);
+
+        assertSame(first, pool.borrow());
+        assertEquals(2, created.get());
+    }
+
+    @Test
+    @DisplayName("release - keeps at most capacity idle objects and drops the rest")
+    void release_boundedByCapacity() {
+        ObjectPool<Object> pool = new ObjectPool<>(2, Object::new);
+        Object[] borrowed = {pool.borrow(), pool.borrow(), pool.borrow()};
+
+        for (Object item : borrowed) pool.release(item);
+
+        assertEquals(2, pool.idle());
+    }
+}
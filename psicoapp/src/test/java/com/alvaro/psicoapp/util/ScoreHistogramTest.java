@@ -0,0 +1,66 @@
+package com.alvaro.psicoapp.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScoreHistogramTest {
+
+    @Test
+    @DisplayName("percentile - mid-rank position of a score within the population")
+    void percentile_midRank() {
+        ScoreHistogram histogram = new ScoreHistogram();
+        for (int score = 0; score < 10; score++) histogram.add(score, 20);
+
+        assertEquals(5.0, histogram.percentile(0, 20), 1e-9);
+        assertEquals(45.0, histogram.percentile(4, 20), 1e-9);
+        assertEquals(100.0, histogram.percentile(20, 20), 1e-9);
+    }
+
+    @Test
+    @DisplayName("remove - a replaced value no longer counts")
+    void remove_replacedValue() {
+        ScoreHistogram histogram = new ScoreHistogram();
+        histogram.add(3, 20);
+        histogram.add(15, 20);
+        histogram.remove(3, 20);
+        histogram.add(4, 20);
+
+        assertEquals(2, histogram.total());
+        assertEquals(25.0, histogram.percentile(4, 20), 1e-9);
+        assertEquals(0.0, histogram.percentile(3, 20), 1e-9);
+    }
+
+    @Test
+    @DisplayName("toBytes/fromBytes - round trip keeps every count")
+    void bytes_roundTrip() {
+        ScoreHistogram histogram = new ScoreHistogram();
+        for (int i = 0; i < 1000; i++) histogram.add(i % 37, 36);
+
+        ScoreHistogram copy = ScoreHistogram.fromBytes(histogram.toBytes());
+
+        assertEquals(histogram.total(), copy.total());
+        assertArrayEquals(histogram.buckets(ScoreHistogram.BINS), copy.buckets(ScoreHistogram.BINS));
+        assertEquals(histogram.quantile(0.5), copy.quantile(0.5), 1e-9);
+    }
+
+    @Test
+    @DisplayName("addCounts - signed per-bin changes merge into the counts, never below zero")
+    void addCounts_signedMerge() {
+        ScoreHistogram stored = new ScoreHistogram();
+        for (int i = 0; i < 4; i++) stored.add(10, 20);
+        long[] delta = new long[ScoreHistogram.BINS];
+        delta[ScoreHistogram.bin(10, 20)] = -1;
+        delta[ScoreHistogram.bin(5, 20)] = 3;
+        delta[ScoreHistogram.bin(15, 20)] = -2;
+
+        stored.addCounts(delta);
+
+        assertEquals(6, stored.total());
+        assertEquals(3, stored.counts()[ScoreHistogram.bin(10, 20)]);
+        assertEquals(0, stored.counts()[ScoreHistogram.bin(15, 20)]);
+        assertEquals(25.0, stored.percentile(5, 20), 1e-9);
+        assertFalse(stored.remove(15, 20));
+    }
+}